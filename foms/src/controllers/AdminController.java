@@ -1,7 +1,7 @@
 package controllers;
 
+import java.time.LocalDate;
 import java.util.InputMismatchException;
-import java.util.Scanner;
 
 import enums.Gender;
 import enums.Role;
@@ -13,14 +13,17 @@ import models.User;
 import services.AdminService;
 import stores.PaymentMethodStorage;
 import utils.ChangePage;
+import utils.TerminalInput;
 import utils.exceptions.AccountNotFoundException;
 import utils.exceptions.PageBackException;
 import utils.exceptions.PasswordMismatchException;
 import utils.exceptions.PasswordValidationException;
 import views.BranchListView;
 import views.PaymentMethodView;
+import views.SalesReportView;
 import views.StaffListView;
 import interfaces.IAdminService;
+import interfaces.ISalesReportView;
 
 /**
  * <p>The `AdminController` class is responsible for managing administrative tasks and operations.
@@ -41,7 +44,7 @@ public class AdminController {
     /**
      * The `Scanner` object used for reading user input.
      */
-    private static final Scanner sc = new Scanner(System.in);
+    private static final TerminalInput sc = new TerminalInput();
     /**
      * The `AdminService` object used to perform administrative operations.
      */
@@ -66,8 +69,9 @@ public class AdminController {
             System.out.println("\t4. Transfer Staff/Manager");
             System.out.println("\t5. Manage Payment Methods");
             System.out.println("\t6. Manage Branches");
-            System.out.println("\t7. Change Password");
-            System.out.println("\t8. Logout");
+            System.out.println("\t7. Sales Report");
+            System.out.println("\t8. Change Password");
+            System.out.println("\t9. Logout");
 
             System.out.println();
             System.out.print("Please enter your choice: ");
@@ -117,9 +121,14 @@ public class AdminController {
                         AdminController.start(user);
                         break;
                     case 7:
-                        changePassword(user);
+                        displaySalesReport();
+                        ChangePage.changePage();
+                        AdminController.start(user);
                         break;
                     case 8:
+                        changePassword(user);
+                        break;
+                    case 9:
                         System.out.println("Logging out...");
                         System.out.println("Logged out successfully.");
                         System.out.println("Press <enter> to continue.");
@@ -1150,4 +1159,59 @@ public class AdminController {
                 throw new PageBackException();       
         }            
     }    
-}
\ No newline at end of file
+
+    /**
+     * Displays a sales report of every branch for a period chosen by the user, read from the running sales totals.
+     */
+    private static void displaySalesReport() {
+        ChangePage.changePage();
+        System.out.println("Select the period of the report:");
+        System.out.println("\t1. Today");
+        System.out.println("\t2. Last 7 days");
+        System.out.println("\t3. Last 30 days");
+        System.out.println("\t4. All time");
+        System.out.print("Enter your choice: ");
+        int choice;
+        try {
+            choice = sc.nextInt();
+        } catch (InputMismatchException ime) {
+            System.out.println("Invalid input. Press <enter> to return to previous page.");
+            sc.nextLine();
+            sc.nextLine();
+            return;
+        }
+        sc.nextLine();
+        LocalDate today = LocalDate.now();
+        LocalDate from;
+        switch (choice) {
+            case 1:
+                from = today;
+                break;
+            case 2:
+                from = today.minusDays(6);
+                break;
+            case 3:
+                from = today.minusDays(29);
+                break;
+            case 4:
+                from = null;
+                today = null;
+                break;
+            default:
+                System.out.println("Invalid choice. Press <enter> to return to previous page.");
+                sc.nextLine();
+                return;
+        }
+        ChangePage.changePage();
+        System.out.println("Sales Report (" + (from == null ? "all time" : from + " to " + today) + ")");
+        System.out.println();
+        ISalesReportView salesReportView = new SalesReportView();
+        salesReportView.displayBranchSales(adminService.getSalesByBranch(from, today));
+        salesReportView.displaySalesSummary(adminService.getSalesByOrderType(from, today));
+        if (from != null) {
+            salesReportView.displayDailySales(adminService.getSalesByDay(from, today));
+        }
+        System.out.println("Press <enter> to continue.");
+        sc.nextLine();
+    }
+}
@@ -1,9 +1,7 @@
 package controllers;
-import java.time.Duration;
-import java.time.LocalDateTime;
 import java.util.InputMismatchException;
 import java.util.List;
-import java.util.Scanner;
+import java.util.concurrent.CompletionException;
 import enums.OrderStatus;
 import enums.OrderType;
 import interfaces.IBranchMenuItemView;
@@ -16,6 +14,7 @@ import models.OrderItem;
 import models.PaymentMethod;
 import services.CustomerService;
 import utils.ChangePage;
+import utils.TerminalInput;
 import utils.exceptions.PageBackException;
 import views.BranchMenuItemView;
 import views.OrderDetailsView;
@@ -29,19 +28,11 @@ public class CustomerController {
     /**
      * The Scanner object to take input from the user.
      */
-    private static final Scanner sc = new Scanner(System.in);
+    private static final TerminalInput sc = new TerminalInput();
     /**
      * The ICustomerService instance to interact with the CustomerService class.
      */
     protected static final ICustomerService customerService = new CustomerService();
-    /**
-     * The IBranchMenuItemView instance to interact with the BranchMenuItemView class.
-     */
-    protected static IBranchMenuItemView branchMenuItemView;
-    /**
-     * The IOrderView instance to interact with the OrderView class.
-     */
-    protected static IOrderView orderView;
 
     /**
      * Constructs a new CustomerController.
@@ -118,7 +109,7 @@ public class CustomerController {
             sc.nextLine();
             return;
         }
-        Order order = customerService.getOrder(orderID);
+        Order order = customerService.getOrder(branchID, orderID);
         if(order == null){
             System.out.println("Order not found.");
             System.out.println("Press <enter> to continue.");
@@ -131,14 +122,7 @@ public class CustomerController {
             sc.nextLine();
             return;
         }
-        if(order.getOrderStatus() == OrderStatus.READY){
-            LocalDateTime currDateTime = LocalDateTime.now();
-            long seconds = Duration.between(order.getReadyTime(), currDateTime).getSeconds();
-            if(seconds > 300){
-                customerService.setOrderStatus(orderID);
-            }
-        }
-        orderView = new OrderStatusView();
+        IOrderView orderView = new OrderStatusView();
         orderView.displayOrderDetails(order);
         System.out.println("Press <enter> to continue.");
         sc.nextLine();
@@ -157,8 +141,11 @@ public class CustomerController {
             }
             switch(choice){
                 case 1:
-                    customerService.collectOrder(orderID);
-                    System.out.println("Order collected successfully.");
+                    if (customerService.collectOrder(branchID, orderID)) {
+                        System.out.println("Order collected successfully.");
+                    } else {
+                        System.out.println("Order is no longer ready for collection.");
+                    }
                     System.out.println("Press <enter> to continue.");
                     sc.nextLine();
                     return;
@@ -309,7 +296,7 @@ public class CustomerController {
         ChangePage.changePage();
         List<BranchMenuItem> branchMenuItems = customerService.getBranchMenuItemList(branchID);
         int index = 1;
-        branchMenuItemView = new BranchMenuItemView();
+        IBranchMenuItemView branchMenuItemView = new BranchMenuItemView();
         for (BranchMenuItem item : branchMenuItems) {
             branchMenuItemView.displayBranchMenuItem(item, index);
             index++;
@@ -348,13 +335,13 @@ public class CustomerController {
             return;
         }
         try {
-            if(quantity > item.getAvailability()){
-                System.out.println("Sorry, the quantity you have entered exceeds our stock.");
+            if (quantity < 1){
+                System.out.println("Invalid quantity. Please try again.");
                 System.out.println("Press <enter> to try again.");
                 sc.nextLine();
                 throw new PageBackException();
-            }else if (quantity < 1){
-                System.out.println("Invalid quantity. Please try again.");
+            }else if(!customerService.reserveItem(cart, branchID, item, quantity)){
+                System.out.println("Sorry, the quantity you have entered exceeds our stock.");
                 System.out.println("Press <enter> to try again.");
                 sc.nextLine();
                 throw new PageBackException();
@@ -362,8 +349,6 @@ public class CustomerController {
         } catch (PageBackException e) {
             return;
         }
-        item.setAvailability(item.getAvailability()-quantity);
-        customerService.updateBranchMenuItem(item);
         System.out.println("Do you have any Special Requests?");
         System.out.println("\t1. Yes");
         System.out.println("\t2. No");
@@ -372,6 +357,7 @@ public class CustomerController {
             specialRequestChoice = sc.nextInt();
             sc.nextLine();
         } catch (InputMismatchException ime) {
+            customerService.releaseItem(cart, item, quantity);
             System.out.println("Invalid input. Press <enter> to continue.");
             sc.nextLine();
             sc.nextLine();
@@ -436,8 +422,8 @@ public class CustomerController {
                 System.out.println("Press <enter> to continue.");
                 sc.nextLine();
                 throw new PageBackException();
-            }else if(quantity > branchMenuItem.getAvailability() + item.getQuantity()) {
-                System.out.println("Sorry, the quantity you have entered exceeds the quantity in your cart.");
+            }else if(quantity > oldQuantity && (branchMenuItem == null || !customerService.reserveItem(cart, branchID, branchMenuItem, quantity - oldQuantity))) {
+                System.out.println("Sorry, the quantity you have entered exceeds our stock.");
                 System.out.println("Press <enter> to continue.");
                 sc.nextLine();
                 throw new PageBackException();
@@ -445,9 +431,10 @@ public class CustomerController {
         } catch (PageBackException e) {
             return;
         }
+        if (quantity < oldQuantity) {
+            customerService.releaseItem(cart, branchMenuItem, oldQuantity - quantity);
+        }
         cart.editItem(itemName, quantity);
-        branchMenuItem.setAvailability(branchMenuItem.getAvailability() + oldQuantity - quantity);
-        customerService.updateBranchMenuItem(branchMenuItem);
         System.out.println("Item quantity updated successfully.");
         System.out.println("Press <enter> to continue.");
         sc.nextLine();
@@ -483,8 +470,7 @@ public class CustomerController {
         }
         BranchMenuItem branchMenuItem = customerService.getBranchMenuItem(branchID, itemName);
         cart.removeItem(itemName);
-        branchMenuItem.setAvailability(branchMenuItem.getAvailability() + item.getQuantity());
-        customerService.updateBranchMenuItem(branchMenuItem);
+        customerService.releaseItem(cart, branchMenuItem, item.getQuantity());
         System.out.println("Item removed successfully.");
         System.out.println("Press <enter> to continue.");
         sc.nextLine();
@@ -500,7 +486,6 @@ public class CustomerController {
      * @return A Boolean indicating if the checkout was successful.
      */
     private static Boolean checkoutCart(int branchID, OrderType orderType, Cart cart){
-        orderView = new OrderDetailsView();
         ChangePage.changePage();
         if(cart.getOrderItems().isEmpty()){
             System.out.println("Your cart is empty. Please add items to your cart before checking out.");
@@ -535,19 +520,8 @@ public class CustomerController {
                     System.out.println("Press <enter> to continue.");
                     sc.nextLine();
                     return false;
-                }else{
-                    cardPaymentMethod.pay(cart.getTotalPrice());
-                    System.out.println("Press <enter> to continue.");
-                    sc.nextLine();
-                    Order order = new Order(customerService.getNextOrderID(), branchID, cart.getOrderItems(), orderType, cart.getTotalPrice());
-                    customerService.newOrder(order);
-                    ChangePage.changePage();
-                    System.out.println("Order placed successfully.");
-                    orderView.displayOrderDetails(order);
-                    System.out.println("Press <enter> to continue.");
-                    sc.nextLine();
-                    return true;
                 }
+                return placeOrder(branchID, orderType, cart, cardPaymentMethod);
             case 2:
                 PaymentMethod onlinePaymentMethod = onlinePaymentProcess();
                 if(onlinePaymentMethod == null){
@@ -555,19 +529,8 @@ public class CustomerController {
                     System.out.println("Press <enter> to continue.");
                     sc.nextLine();
                     return false;
-                }else{
-                    onlinePaymentMethod.pay(cart.getTotalPrice());
-                    System.out.println("Press <enter> to continue.");
-                    sc.nextLine();
-                    Order order = new Order(customerService.getNextOrderID(), branchID, cart.getOrderItems(), orderType, cart.getTotalPrice());
-                    customerService.newOrder(order);
-                    ChangePage.changePage();
-                    System.out.println("Order placed successfully.");
-                    orderView.displayOrderDetails(order);
-                    System.out.println("Press <enter> to continue.");
-                    sc.nextLine();
-                    return true;
                 }
+                return placeOrder(branchID, orderType, cart, onlinePaymentMethod);
             default:
                 System.out.println("Invalid choice. Press <enter> to continue.");
                 sc.nextLine();
@@ -575,6 +538,65 @@ public class CustomerController {
         }
     }
 
+    /**
+     * Pays for the cart and places the order once the payment succeeds.
+     * The stock in the cart is held while the payment is in progress, and only sold once it succeeds.
+     * If the stock can no longer be sold, the payment is refunded. Otherwise the order is stored before
+     * the customer is prompted, so a session that ends at the prompt still has its paid order recorded.
+     *
+     * @param branchID The ID of the branch.
+     * @param orderType The type of the order (Dine-In or Takeaway).
+     * @param cart The cart to be checked out.
+     * @param paymentMethod The payment method to charge.
+     * @return A Boolean indicating if the order was placed.
+     */
+    private static Boolean placeOrder(int branchID, OrderType orderType, Cart cart, PaymentMethod paymentMethod){
+        if(!customerService.holdCart(cart)){
+            System.out.println("Sorry, some items in your cart are no longer available. Please edit your cart and try again.");
+            System.out.println("Press <enter> to continue.");
+            sc.nextLine();
+            return false;
+        }
+        System.out.println("Paying " + String.format("%.2f", cart.getTotalPrice()) + " using " + paymentMethod.getPaymentMethod() + " " + paymentMethod.getType() + ".");
+        System.out.println("Processing payment...");
+        String transactionID;
+        try {
+            transactionID = customerService.pay(cart, paymentMethod).join();
+        } catch (CompletionException e) {
+            System.out.println(e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+            System.out.println("Payment failed. Please try again.");
+            System.out.println("Press <enter> to continue.");
+            sc.nextLine();
+            return false;
+        }
+        if(!customerService.commitCart(cart)){
+            System.out.println("Sorry, some items in your cart are no longer available.");
+            try {
+                customerService.refund(cart, transactionID).join();
+                System.out.println("Your payment has been refunded. Transaction ID: " + transactionID);
+            } catch (CompletionException e) {
+                System.out.println(e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+                System.out.println("Your payment could not be refunded. Please contact the staff with Transaction ID: " + transactionID);
+            }
+            System.out.println("Please edit your cart and try again.");
+            System.out.println("Press <enter> to continue.");
+            sc.nextLine();
+            return false;
+        }
+        Order order = new Order(customerService.getNextOrderID(), branchID, cart.getOrderItems(), orderType, cart.getTotalPrice());
+        customerService.newOrder(order);
+        System.out.println(paymentMethod.getPaymentMethod() + " Payment successful! Transaction ID: " + transactionID);
+        System.out.println("Press <enter> to continue.");
+        sc.nextLine();
+        ChangePage.changePage();
+        System.out.println("Order placed successfully.");
+        IOrderView orderView = new OrderDetailsView();
+        orderView.displayOrderDetails(order);
+        System.out.println("Press <enter> to continue.");
+        sc.nextLine();
+        return true;
+    }
+
     /**
      * Cancels the entire order and clears the cart.
      * 
@@ -583,11 +605,7 @@ public class CustomerController {
      */
     private static void cancelOrder(Cart cart, int branchID){
         ChangePage.changePage();
-        for (OrderItem item : cart.getOrderItems()) {
-            BranchMenuItem branchMenuItem = customerService.getBranchMenuItem(branchID, item.getItemName());
-            branchMenuItem.setAvailability(branchMenuItem.getAvailability() + item.getQuantity());
-            customerService.updateBranchMenuItem(branchMenuItem);
-        }
+        customerService.releaseCart(cart);
         cart.getOrderItems().clear();
         System.out.println("Order cancelled successfully.");
     }
@@ -3,9 +3,9 @@ package controllers;
 import services.LoginService;
 import models.Account;
 import models.User;
-import java.util.Scanner;
 
 import interfaces.IAuthorisationService;
+import utils.TerminalInput;
 import utils.exceptions.AccountNotFoundException;
 import utils.exceptions.PageBackException;
 import utils.exceptions.PasswordMismatchException;
@@ -18,7 +18,7 @@ public class LoginController {
     /**
      * The scanner to be used for user input.
      */
-    private static final Scanner scanner = new Scanner(System.in);
+    private static final TerminalInput scanner = new TerminalInput();
 
     /**
      * The LoginService instance to be used for login operations.
@@ -1,10 +1,8 @@
 package controllers;
 
-import java.time.Duration;
-import java.time.LocalDateTime;
+import java.time.LocalDate;
 import java.util.InputMismatchException;
 import java.util.List;
-import java.util.Scanner;
 
 import enums.Role;
 import enums.OrderStatus;
@@ -12,12 +10,14 @@ import interfaces.IBranchMenuItemView;
 import interfaces.IBranchUserView;
 import interfaces.IManagerService;
 import interfaces.IOrderView;
+import interfaces.ISalesReportView;
 import models.BranchMenuItem;
 import models.BranchUser;
 import models.Order;
 import models.User;
 import services.ManagerService;
 import utils.ChangePage;
+import utils.TerminalInput;
 import utils.exceptions.AccountNotFoundException;
 import utils.exceptions.PageBackException;
 import utils.exceptions.PasswordMismatchException;
@@ -25,6 +25,7 @@ import utils.exceptions.PasswordValidationException;
 import views.BranchMenuItemView;
 import views.BranchUserView;
 import views.OrderDetailsView;
+import views.SalesReportView;
 
 
 /**
@@ -36,7 +37,7 @@ public class ManagerController {
     /**
      * The scanner to be used for user input.
      */
-    private static final Scanner sc = new Scanner(System.in);
+    private static final TerminalInput sc = new TerminalInput();
 
     /**
      * The service class for managing branch manager operations.
@@ -44,19 +45,9 @@ public class ManagerController {
     protected static final IManagerService managerService = new ManagerService();
 
     /**
-     * The view class for displaying order details.
+     * The number of pending orders displayed at once, from the head of the kitchen queue.
      */
-    protected static IOrderView orderView;
-
-    /**
-     * The view class for displaying branch users.
-     */
-    protected static IBranchUserView branchUserView;
-
-    /**
-     * The view class for displaying branch menu items.
-     */
-    protected static IBranchMenuItemView branchMenuItemView;
+    private static final int pendingOrderPageSize = 10;
 
     /**
      * Starts the manager interface for the given user.
@@ -77,8 +68,9 @@ public class ManagerController {
             System.out.println("\t3. Process order");
             System.out.println("\t4. Display Staff List in Branch");
             System.out.println("\t5. Manage Menu");
-            System.out.println("\t6. Change password");
-            System.out.println("\t7. Log out");
+            System.out.println("\t6. Sales report");
+            System.out.println("\t7. Change password");
+            System.out.println("\t8. Log out");
             System.out.println();
             System.out.print("Enter your choice: ");
             int choice;
@@ -110,9 +102,12 @@ public class ManagerController {
                         manageMenu(branchID);
                         break;
                     case 6:
-                        changePassword(user);
+                        displaySalesReport(branchID);
                         break;
                     case 7:
+                        changePassword(user);
+                        break;
+                    case 8:
                         System.out.println("Logging out...");
                         System.out.println("Logged out successfully.");
                         System.out.println("Press <enter> to continue.");
@@ -137,34 +132,20 @@ public class ManagerController {
      */
     private static void displayPendingOrders(int branchID) {
         ChangePage.changePage();
-        Boolean flag = true;
-        orderView = new OrderDetailsView();
-        List<Order> orders = managerService.getOrders(branchID);
-        if (orders != null && orders.size() > 0){
-            for (Order order : orders) {
-                if(order.getOrderStatus() == OrderStatus.PREPARING){
-                    orderView.displayOrderDetails(order);
-                    flag = false;
-                }
-            }
-            if(flag == false){
-                System.out.println("Press <enter> to continue.");
-                sc.nextLine();
-                return;
-            }
-        }
-        if(orders.size() > 0 && flag == true){
+        IOrderView orderView = new OrderDetailsView();
+        List<Order> orders = managerService.getPendingOrders(branchID, pendingOrderPageSize);
+        if (orders.isEmpty()) {
             System.out.println("No pending orders.");
             System.out.println("Press <enter> to continue.");
             sc.nextLine();
             return;
         }
-        else {
-            System.out.println("No pending orders.");
-            System.out.println("Press <enter> to continue.");
-            sc.nextLine();
-            return;
+        for (Order order : orders) {
+            orderView.displayOrderDetails(order);
         }
+        System.out.println("Showing the next " + orders.size() + " of " + managerService.getPendingOrderCount(branchID) + " pending orders.");
+        System.out.println("Press <enter> to continue.");
+        sc.nextLine();
     }
 
 
@@ -175,7 +156,7 @@ public class ManagerController {
      */
     private static void viewOrderDetails(int branchID) {
         ChangePage.changePage();
-        orderView = new OrderDetailsView();
+        IOrderView orderView = new OrderDetailsView();
         System.out.print("Enter order ID: ");
         int orderID;
         try {
@@ -187,7 +168,7 @@ public class ManagerController {
             return;
         }
         sc.nextLine();
-        Order order = managerService.getOrder(orderID);
+        Order order = managerService.getOrder(branchID, orderID);
         if (order == null) {
             System.out.println("Order not found.");
             System.out.println("Press <enter> to continue.");
@@ -200,13 +181,6 @@ public class ManagerController {
             sc.nextLine();
             return;
         }
-        if(order.getOrderStatus() == OrderStatus.READY){
-            LocalDateTime currDateTime = LocalDateTime.now();
-            long seconds = Duration.between(order.getReadyTime(), currDateTime).getSeconds();
-            if(seconds > 300){
-                managerService.cancelOrder(orderID);
-            }
-        }
         orderView.displayOrderDetails(order);
         System.out.println("Press <enter> to continue.");
         sc.nextLine();
@@ -232,7 +206,7 @@ public class ManagerController {
             sc.nextLine();
             return;
         }
-        Order order = managerService.getOrder(orderID);
+        Order order = managerService.getOrder(branchID, orderID);
         if (order == null) {
             System.out.println("Order not found.");
             System.out.println("Press <enter> to continue.");
@@ -245,7 +219,7 @@ public class ManagerController {
             sc.nextLine();
             return;
         }
-        Boolean success = managerService.updateOrderStatus(orderID);
+        Boolean success = managerService.updateOrderStatus(branchID, orderID);
         if (success) {
             System.out.println("Order processed successfully.");
             System.out.println("Press <enter> to continue.");
@@ -294,7 +268,7 @@ public class ManagerController {
         ChangePage.changePage();
         List<BranchUser> users = managerService.getStaffList(branchID);
         String branchName = managerService.getBranchName(branchID);
-        branchUserView = new BranchUserView();
+        IBranchUserView branchUserView = new BranchUserView();
         if (users != null && users.size() > 0){
             System.out.println(" =============== Staff ===============");
             for (BranchUser user : users) {
@@ -401,7 +375,7 @@ public class ManagerController {
         }
         String category;
         System.out.println("Select item category:");
-        int counter = managerService.displayMenuCategories();
+        int counter = managerService.displayMenuCategories(branchID);
         System.out.println(counter + ". Add new category");
         System.out.print("Enter your choice: ");
         int categoryChoice;
@@ -421,9 +395,9 @@ public class ManagerController {
         } else if (categoryChoice == counter) {
             System.out.print("Enter new category: ");
             category = sc.nextLine();
-            managerService.addCategory(category);
+            managerService.addCategory(branchID, category);
         } else {
-            category = managerService.getCategories().get(categoryChoice - 1);
+            category = managerService.getCategories(branchID).get(categoryChoice - 1);
         }
         System.out.println("Enter item price:");
         double itemPrice;
@@ -480,7 +454,7 @@ public class ManagerController {
     private static void viewMenu(int branchID){
         ChangePage.changePage();
         List<BranchMenuItem> items = managerService.getBranchMenuItemList(branchID);
-        branchMenuItemView = new BranchMenuItemView();
+        IBranchMenuItemView branchMenuItemView = new BranchMenuItemView();
         int counter = 1; 
         for (BranchMenuItem item : items) {
             branchMenuItemView.displayBranchMenuItem(item, counter);
@@ -499,7 +473,7 @@ public class ManagerController {
     private static void removeItemFromMenu(int branchID) {
         ChangePage.changePage();
         List<BranchMenuItem> items = managerService.getBranchMenuItemList(branchID);
-        branchMenuItemView = new BranchMenuItemView();
+        IBranchMenuItemView branchMenuItemView = new BranchMenuItemView();
         int counter = 1; 
         for (BranchMenuItem item : items) {
             branchMenuItemView.displayBranchMenuItem(item, counter);
@@ -530,7 +504,7 @@ public class ManagerController {
     private static void editItemPrice(int branchID) {
         ChangePage.changePage();
         List<BranchMenuItem> items = managerService.getBranchMenuItemList(branchID);
-        branchMenuItemView = new BranchMenuItemView();
+        IBranchMenuItemView branchMenuItemView = new BranchMenuItemView();
         int counter = 1; 
         for (BranchMenuItem item : items) {
             branchMenuItemView.displayBranchMenuItem(item, counter);
@@ -582,7 +556,7 @@ public class ManagerController {
     private static void editItemAvailability(int branchID) {
         ChangePage.changePage();
         List<BranchMenuItem> items = managerService.getBranchMenuItemList(branchID);
-        branchMenuItemView = new BranchMenuItemView();
+        IBranchMenuItemView branchMenuItemView = new BranchMenuItemView();
         int counter = 1; 
         for (BranchMenuItem item : items) {
             branchMenuItemView.displayBranchMenuItem(item, counter);
@@ -610,8 +584,7 @@ public class ManagerController {
                     sc.nextLine();
                     return;
                 }
-                item.setAvailability(availability);
-                managerService.editBranchMenuItem(item);
+                managerService.setBranchMenuItemAvailability(item, availability);
                 System.out.println("Availability updated successfully.");
                 System.out.println("Press <enter> to continue.");
                 sc.nextLine();
@@ -633,7 +606,7 @@ public class ManagerController {
     private static void editItemDescription(int branchID) {
         ChangePage.changePage();
         List<BranchMenuItem> items = managerService.getBranchMenuItemList(branchID);
-        branchMenuItemView = new BranchMenuItemView();
+        IBranchMenuItemView branchMenuItemView = new BranchMenuItemView();
         int counter = 1; 
         for (BranchMenuItem item : items) {
             branchMenuItemView.displayBranchMenuItem(item, counter);
@@ -658,4 +631,60 @@ public class ManagerController {
         sc.nextLine();
         return;
     }
+
+    /**
+     * Displays a sales report of a branch for a period chosen by the user, read from the running sales totals.
+     *
+     * @param branchID The ID of the branch of the manager.
+     */
+    private static void displaySalesReport(int branchID) {
+        ChangePage.changePage();
+        System.out.println("Select the period of the report:");
+        System.out.println("\t1. Today");
+        System.out.println("\t2. Last 7 days");
+        System.out.println("\t3. Last 30 days");
+        System.out.println("\t4. All time");
+        System.out.print("Enter your choice: ");
+        int choice;
+        try {
+            choice = sc.nextInt();
+        } catch (InputMismatchException ime) {
+            System.out.println("Invalid input. Press <enter> to return to previous page.");
+            sc.nextLine();
+            sc.nextLine();
+            return;
+        }
+        sc.nextLine();
+        LocalDate today = LocalDate.now();
+        LocalDate from;
+        switch (choice) {
+            case 1:
+                from = today;
+                break;
+            case 2:
+                from = today.minusDays(6);
+                break;
+            case 3:
+                from = today.minusDays(29);
+                break;
+            case 4:
+                from = null;
+                today = null;
+                break;
+            default:
+                System.out.println("Invalid choice. Press <enter> to return to previous page.");
+                sc.nextLine();
+                return;
+        }
+        ChangePage.changePage();
+        System.out.println("Sales Report (" + (from == null ? "all time" : from + " to " + today) + ")");
+        System.out.println();
+        ISalesReportView salesReportView = new SalesReportView();
+        salesReportView.displaySalesSummary(managerService.getSalesByOrderType(branchID, from, today));
+        if (from != null) {
+            salesReportView.displayDailySales(managerService.getSalesByDay(branchID, from, today));
+        }
+        System.out.println("Press <enter> to continue.");
+        sc.nextLine();
+    }
 }
@@ -1,10 +1,7 @@
 package controllers;
 
-import java.time.Duration;
-import java.time.LocalDateTime;
 import java.util.InputMismatchException;
 import java.util.List;
-import java.util.Scanner;
 
 import enums.OrderStatus;
 import interfaces.IOrderView;
@@ -14,6 +11,7 @@ import models.Order;
 import models.User;
 import services.StaffService;
 import utils.ChangePage;
+import utils.TerminalInput;
 import utils.exceptions.AccountNotFoundException;
 import utils.exceptions.PageBackException;
 import utils.exceptions.PasswordMismatchException;
@@ -28,7 +26,7 @@ public class StaffController {
     /**
      * The scanner to be used for user input.
      */
-    private static final Scanner sc = new Scanner(System.in);
+    private static final TerminalInput sc = new TerminalInput();
 
     /**
      * The service to be used for staff operations.
@@ -36,9 +34,9 @@ public class StaffController {
     protected static final IStaffService staffService = new StaffService();
 
     /**
-     * The view to be used for order details.
+     * The number of pending orders displayed at once, from the head of the kitchen queue.
      */
-    protected static IOrderView orderView;
+    private static final int pendingOrderPageSize = 10;
 
     /**
      * Initiates the staff menu.
@@ -130,34 +128,20 @@ public class StaffController {
      */
     private static void displayPendingOrders(int branchID) {
         ChangePage.changePage();
-        Boolean flag = true;
-        orderView = new OrderDetailsView();
-        List<Order> orders = staffService.getOrders(branchID);
-        if (orders != null && orders.size() > 0){
-            for (Order order : orders) {
-                if(order.getOrderStatus() == OrderStatus.PREPARING){
-                    orderView.displayOrderDetails(order);
-                    flag = false;
-                }
-            }
-            if(flag == false){
-                System.out.println("Press <enter> to continue.");
-                sc.nextLine();
-                return;
-            }
-        }
-        if(orders.size() > 0 && flag == true){
+        IOrderView orderView = new OrderDetailsView();
+        List<Order> orders = staffService.getPendingOrders(branchID, pendingOrderPageSize);
+        if (orders.isEmpty()) {
             System.out.println("No pending orders.");
             System.out.println("Press <enter> to continue.");
             sc.nextLine();
             return;
         }
-        else {
-            System.out.println("No pending orders.");
-            System.out.println("Press <enter> to continue.");
-            sc.nextLine();
-            return;
+        for (Order order : orders) {
+            orderView.displayOrderDetails(order);
         }
+        System.out.println("Showing the next " + orders.size() + " of " + staffService.getPendingOrderCount(branchID) + " pending orders.");
+        System.out.println("Press <enter> to continue.");
+        sc.nextLine();
     }  
 
     /**
@@ -167,7 +151,7 @@ public class StaffController {
      */
     private static void viewOrderDetails(int branchID) {
         ChangePage.changePage();
-        orderView = new OrderDetailsView();
+        IOrderView orderView = new OrderDetailsView();
         System.out.print("Enter order ID: ");
         int orderID;
         try {
@@ -180,7 +164,7 @@ public class StaffController {
             sc.nextLine();
             return;
         }
-        Order order = staffService.getOrder(orderID);
+        Order order = staffService.getOrder(branchID, orderID);
         if (order == null) {
             System.out.println("Order not found.");
             System.out.println("Press <enter> to continue.");
@@ -193,13 +177,6 @@ public class StaffController {
             sc.nextLine();
             return;
         }
-        if(order.getOrderStatus() == OrderStatus.READY){
-            LocalDateTime currDateTime = LocalDateTime.now();
-            long seconds = Duration.between(order.getReadyTime(), currDateTime).getSeconds();
-            if(seconds > 300){
-                staffService.cancelOrder(orderID);
-            }
-        }
         orderView.displayOrderDetails(order);
         System.out.println("Press <enter> to continue.");
         sc.nextLine();
@@ -224,7 +201,7 @@ public class StaffController {
             sc.nextLine();
             return;
         }
-        Order order = staffService.getOrder(orderID);
+        Order order = staffService.getOrder(branchID, orderID);
         if (order == null) {
             System.out.println("Order not found.");
             System.out.println("Press <enter> to continue.");
@@ -237,7 +214,7 @@ public class StaffController {
             sc.nextLine();
             return;
         }
-        Boolean success = staffService.updateOrderStatus(orderID);
+        Boolean success = staffService.updateOrderStatus(branchID, orderID);
         if (success) {
             System.out.println("Order processed successfully.");
             System.out.println("Press <enter> to continue.");
@@ -1,11 +1,11 @@
 package controllers;
 
 import java.util.InputMismatchException;
-import java.util.Scanner;
 
 import models.Branch;
 import services.WelcomeService;
 import utils.ChangePage;
+import utils.TerminalInput;
 import interfaces.IWelcomeService;
 
 /**
@@ -21,7 +21,7 @@ public class Welcome {
     /**
      * The scanner to be used for user input.
      */
-    private static Scanner sc = new Scanner(System.in);
+    private static TerminalInput sc = new TerminalInput();
 
     /**
      * Provides an interactive welcome screen for the Fastfood ordering and management System (FOMS).
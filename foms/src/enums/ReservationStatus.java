@@ -0,0 +1,19 @@
+package enums;
+
+/**
+ * The possible status values for a reservation of menu item stock.
+ */
+public enum ReservationStatus {
+    /**
+     * Represents a reservation that is holding stock for a cart.
+     */
+    OPEN,
+    /**
+     * Represents a reservation whose stock has been sold with an order.
+     */
+    COMMITTED,
+    /**
+     * Represents a reservation whose stock has been returned, because the cart was cancelled or left idle for too long.
+     */
+    RELEASED
+}
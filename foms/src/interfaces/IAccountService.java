@@ -0,0 +1,35 @@
+package interfaces;
+
+import models.Account;
+
+/**
+ * The IAccountService interface provides keyed access to the user accounts, shared by every service
+ * that looks up or changes an account.
+ */
+public interface IAccountService {
+
+    /**
+     * Finds an account by its login ID.
+     *
+     * @param loginID the login ID of the account
+     * @return the account with the specified login ID, or null if no account is found
+     */
+    public Account findAccountByLoginID(String loginID);
+
+    /**
+     * Checks whether an account exists.
+     *
+     * @param loginID the login ID of the account
+     * @return true if an account with the specified login ID exists, false otherwise
+     */
+    public boolean exists(String loginID);
+
+    /**
+     * Sets the password of an account and saves the account.
+     *
+     * @param account the account
+     * @param newPassword the new password
+     * @throws IllegalArgumentException if the account is null
+     */
+    public void updatePassword(Account account, String newPassword);
+}
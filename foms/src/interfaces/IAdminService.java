@@ -1,10 +1,15 @@
 package interfaces;
 
+import java.time.LocalDate;
+import java.util.Map;
+
 import enums.Gender;
+import enums.OrderType;
 import enums.Role;
 import models.Branch;
 import models.BranchUser;
 import models.PaymentMethod;
+import models.SalesTotals;
 import models.User;
 import utils.exceptions.AccountNotFoundException;
 import utils.exceptions.PasswordMismatchException;
@@ -170,4 +175,31 @@ public interface IAdminService {
      * @return an array of BranchUser objects representing the staff list with the specified age.
      */
     public BranchUser[] getStaffList(int age);   
+
+    /**
+     * Retrieves the sales of every branch in a period, per branch.
+     *
+     * @param from the first day of the period, or null for no limit
+     * @param to the last day of the period, or null for no limit
+     * @return the sales totals of each branch with sales, keyed by branch name
+     */
+    public Map<String, SalesTotals> getSalesByBranch(LocalDate from, LocalDate to);
+
+    /**
+     * Retrieves the sales of every branch in a period, per order type.
+     *
+     * @param from the first day of the period, or null for no limit
+     * @param to the last day of the period, or null for no limit
+     * @return the sales totals of each order type with sales
+     */
+    public Map<OrderType, SalesTotals> getSalesByOrderType(LocalDate from, LocalDate to);
+
+    /**
+     * Retrieves the sales of every branch in a period, per day.
+     *
+     * @param from the first day of the period, or null for no limit
+     * @param to the last day of the period, or null for no limit
+     * @return the sales totals of each day with sales, in date order
+     */
+    public Map<LocalDate, SalesTotals> getSalesByDay(LocalDate from, LocalDate to);
 }
@@ -2,8 +2,10 @@ package interfaces;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import models.BranchMenuItem;
+import models.Cart;
 import models.Order;
 import models.PaymentMethod;
 
@@ -14,12 +16,13 @@ import models.PaymentMethod;
 public interface ICustomerService {
 
     /**
-     * Retrieves an order by its ID.
+     * Retrieves an order of a branch by its ID, reading only the orders of that branch.
      * 
+     * @param branchID The ID of the branch.
      * @param OrderID The unique identifier of the order.
-     * @return The Order object if found; otherwise, null.
+     * @return The Order object if the branch has it; otherwise, null.
      */
-    public Order getOrder(int OrderID);
+    public Order getOrder(int branchID, int OrderID);
 
     /**
      * Records a new order into the system.
@@ -38,12 +41,13 @@ public interface ICustomerService {
 
     
     /**
-     * Collects an order with the specified OrderID.
+     * Collects an order of a branch with the specified OrderID.
      * 
+     * @param branchID the ID of the branch
      * @param OrderID the ID of the order to be collected
      * @return true if the order was successfully collected, false otherwise
      */
-    public Boolean collectOrder(int OrderID);
+    public Boolean collectOrder(int branchID, int OrderID);
 
     /**
      * Retrieves the next available order ID to be used when creating a new order.
@@ -76,6 +80,69 @@ public interface ICustomerService {
      */
     public BranchMenuItem getBranchMenuItem(int branchID, String itemName);
 
+    /**
+     * Reserves stock of a menu item for a cart, so that it cannot be sold to another customer until
+     * the cart is checked out, cancelled or left idle for too long.
+     *
+     * @param cart The cart to reserve the stock for.
+     * @param branchID The ID of the branch the cart orders from.
+     * @param item The menu item to reserve.
+     * @param quantity The quantity to reserve.
+     * @return True if the stock was reserved, false if not enough of it is free.
+     */
+    public boolean reserveItem(Cart cart, int branchID, BranchMenuItem item, int quantity);
+
+    /**
+     * Releases stock of a menu item reserved for a cart.
+     *
+     * @param cart The cart holding the stock.
+     * @param item The menu item to release.
+     * @param quantity The quantity to release.
+     */
+    public void releaseItem(Cart cart, BranchMenuItem item, int quantity);
+
+    /**
+     * Releases all stock reserved for a cart, such as when the order is cancelled.
+     *
+     * @param cart The cart holding the stock.
+     */
+    public void releaseCart(Cart cart);
+
+    /**
+     * Keeps the stock reserved for a cart while it is being paid for, taking it again if the reservation expired.
+     * Each call starts a new checkout, whose payment is charged anew.
+     *
+     * @param cart The cart being checked out.
+     * @return True if the stock is held, false if the reservation expired and its stock has since been taken.
+     */
+    public boolean holdCart(Cart cart);
+
+    /**
+     * Pays for a cart without blocking. Paying again within the same checkout does not charge it twice.
+     *
+     * @param cart The cart being checked out.
+     * @param method The payment method to charge.
+     * @return A future completed with the ID of the transaction, or completed exceptionally if the payment failed.
+     */
+    public CompletableFuture<String> pay(Cart cart, PaymentMethod method);
+
+    /**
+     * Refunds the payment for a cart without blocking, such as when its stock could not be committed.
+     *
+     * @param cart The cart that was paid for.
+     * @param transactionID The ID of the transaction of the payment.
+     * @return A future completed once the payment is refunded, or completed exceptionally if the refund failed.
+     */
+    public CompletableFuture<Void> refund(Cart cart, String transactionID);
+
+    /**
+     * Commits the stock reserved for a cart, deducting it from the availability of the menu items.
+     *
+     * @param cart The cart being checked out.
+     * @return True if the stock was committed, false if the reservation expired and its stock has since been taken.
+     */
+    public boolean commitCart(Cart cart);
+
     /**
      * Retrieves a list of payment methods available for a specific type (e.g., credit card, online payment).
      *
@@ -85,17 +152,20 @@ public interface ICustomerService {
     public List<PaymentMethod> getPaymentMethods(String type);
 
     /**
-     * Retrieves the time when an order was marked ready for collection.
+     * Retrieves the time when an order of a branch was marked ready for collection.
      *
+     * @param branchID The ID of the branch.
      * @param OrderID The unique identifier of the order.
-     * @return The estimated time when the order will be ready.
+     * @return The estimated time when the order will be ready, or null if the branch has no such order.
      */
-    public LocalDateTime getReadyTime(int OrderID);
+    public LocalDateTime getReadyTime(int branchID, int OrderID);
 
     /**
-     * Sets the status of an order to indicate that it is ready for collection.
+     * Cancels an order of a branch that is still being prepared.
      *
+     * @param branchID The ID of the branch.
      * @param OrderID The unique identifier of the order.
+     * @return True if the order was cancelled, false if the branch has no such order or it is no longer being prepared.
      */
-    public void setOrderStatus(int OrderID);
+    public Boolean setOrderStatus(int branchID, int OrderID);
 }
@@ -1,13 +1,17 @@
 package interfaces;
 
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 
-
+import enums.OrderStatus;
+import enums.OrderType;
 import models.Order;
 import models.User;
 import models.Account;
 import models.BranchMenuItem;
 import models.BranchUser;
+import models.SalesTotals;
 import utils.exceptions.AccountNotFoundException;
 import utils.exceptions.PasswordMismatchException;
 import utils.exceptions.PasswordValidationException;
@@ -27,20 +31,48 @@ public interface IManagerService {
     public List<Order> getOrders(int branchID);
 
     /**
-     * Retrieves an order by its ID.
+     * Retrieves the orders of a given branch that have the given status.
+     *
+     * @param branchID the ID of the branch
+     * @param status the status of the orders
+     * @return a list of orders
+     */
+    public List<Order> getOrders(int branchID, OrderStatus status);
+
+    /**
+     * Retrieves the next orders the kitchen of a branch has to prepare, without going through the branch's other orders.
      *
+     * @param branchID the ID of the branch
+     * @param count the maximum number of orders to retrieve
+     * @return up to count orders being prepared, oldest first
+     */
+    public List<Order> getPendingOrders(int branchID, int count);
+
+    /**
+     * Retrieves the number of orders the kitchen of a branch has to prepare.
+     *
+     * @param branchID the ID of the branch
+     * @return the number of orders being prepared
+     */
+    public int getPendingOrderCount(int branchID);
+
+    /**
+     * Retrieves an order of a branch by its ID, reading only the orders of that branch.
+     *
+     * @param branchID the ID of the branch
      * @param orderID the ID of the order
-     * @return the order object
+     * @return the order object, or null if the branch has no such order
      */
-    public Order getOrder(int orderID);
+    public Order getOrder(int branchID, int orderID);
 
     /**
-     * Updates the status of an order.
+     * Updates the status of an order of a branch from "PREPARING" to "READY".
      *
+     * @param branchID the ID of the branch
      * @param orderID the ID of the order
-     * @return true if the order status is successfully updated, false otherwise
+     * @return true if the order status is successfully updated, false if the branch has no such order or it is no longer being prepared
      */
-    public Boolean updateOrderStatus(int orderID);
+    public Boolean updateOrderStatus(int branchID, int orderID);
 
     /**
      * Finds an account by its login ID.
@@ -92,6 +124,14 @@ public interface IManagerService {
      */
     public void editBranchMenuItem(BranchMenuItem item);
 
+    /**
+     * Sets the availability of an existing menu item of a branch.
+     *
+     * @param item the menu item to be restocked
+     * @param availability the new availability
+     */
+    public void setBranchMenuItemAvailability(BranchMenuItem item, int availability);
+
     /**
      * Removes a menu item from a branch.
      *
@@ -108,37 +148,62 @@ public interface IManagerService {
     public String getBranchName(int branchID);
 
     /**
-     * Displays the menu categories.
+     * Displays the menu categories of a branch.
      *
-     * @return the number of menu categories
+     * @param branchID the ID of the branch
+     * @return the number of menu categories, plus one
      */
-    public int displayMenuCategories();
+    public int displayMenuCategories(int branchID);
 
     /**
-     * Adds a new category to the menu.
+     * Adds a new category to the menu of a branch.
      *
+     * @param branchID the ID of the branch
      * @param category the category to be added
      */
-    public void addCategory(String category);
+    public void addCategory(int branchID, String category);
 
     /**
-     * Retrieves a list of menu categories.
+     * Retrieves the menu categories of a branch.
      *
+     * @param branchID the ID of the branch
      * @return a list of menu categories
      */
-    public List<String> getCategories();
+    public List<String> getCategories(int branchID);
 
     /**
-     * Retrieves the next available item ID.
+     * Allocates the next available item ID. Each call returns a new ID.
      *
      * @return the next item ID
      */
     public int getNextItemID();
 
     /**
-     * Cancels an order.
+     * Cancels an order of a branch that is still being prepared.
      *
+     * @param branchID the ID of the branch
      * @param orderID the ID of the order to be canceled
+     * @return true if the order was cancelled, false if the branch has no such order or it is no longer being prepared
+     */
+    public Boolean cancelOrder(int branchID, int orderID);
+
+    /**
+     * Retrieves the sales of a branch in a period, per order type.
+     *
+     * @param branchID the ID of the branch
+     * @param from the first day of the period, or null for no limit
+     * @param to the last day of the period, or null for no limit
+     * @return the sales totals of each order type with sales
+     */
+    public Map<OrderType, SalesTotals> getSalesByOrderType(int branchID, LocalDate from, LocalDate to);
+
+    /**
+     * Retrieves the sales of a branch in a period, per day.
+     *
+     * @param branchID the ID of the branch
+     * @param from the first day of the period, or null for no limit
+     * @param to the last day of the period, or null for no limit
+     * @return the sales totals of each day with sales, in date order
      */
-    public void cancelOrder(int orderID);
+    public Map<LocalDate, SalesTotals> getSalesByDay(int branchID, LocalDate from, LocalDate to);
 }
@@ -0,0 +1,73 @@
+package interfaces;
+
+import enums.OrderStatus;
+import models.Order;
+
+/**
+ * The IOrderListener interface is implemented by components that keep state derived from the orders,
+ * and are told about each change to them by {@link stores.OrderStorage}. Every method does nothing by
+ * default, so a listener only implements the changes it needs.
+ *
+ * <p>Listeners are called on the thread that made the change, after the change has been stored, and
+ * must not block. The next change to the orders of the same branch waits until they return.
+ */
+public interface IOrderListener {
+
+    /**
+     * Called after an order is added.
+     *
+     * @param order The added order.
+     */
+    public default void onOrderAdded(Order order) {
+    }
+
+    /**
+     * Called after the status of an order changes.
+     *
+     * @param order The updated order.
+     * @param previousStatus The status the order had before the change.
+     */
+    public default void onOrderStatusChanged(Order order, OrderStatus previousStatus) {
+    }
+
+    /**
+     * Called after an order is removed.
+     *
+     * @param order The removed order.
+     */
+    public default void onOrderRemoved(Order order) {
+    }
+
+    /**
+     * Called after an order is moved from the stored orders to the order archive. The order still
+     * happened, unlike a removed order.
+     *
+     * @param order The archived order.
+     */
+    public default void onOrderArchived(Order order) {
+    }
+
+    /**
+     * Called after every order of a branch is removed.
+     *
+     * @param branchID The ID of the branch.
+     */
+    public default void onBranchRemoved(int branchID) {
+    }
+
+    /**
+     * Called after the orders of a branch are read from disk, the first time the branch is accessed
+     * since the orders were last loaded.
+     *
+     * @param branchID The ID of the branch.
+     */
+    public default void onShardLoaded(int branchID) {
+    }
+
+    /**
+     * Called after the orders are read again from disk, so that any state derived from the orders
+     * held before is rebuilt.
+     */
+    public default void onOrdersReloaded() {
+    }
+}
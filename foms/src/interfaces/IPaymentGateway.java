@@ -0,0 +1,32 @@
+package interfaces;
+
+import java.util.concurrent.CompletableFuture;
+
+import models.PaymentMethod;
+
+/**
+ * The IPaymentGateway interface is implemented by the gateways that payments are charged through.
+ */
+public interface IPaymentGateway {
+
+    /**
+     * Charges an amount to a payment method without blocking the caller.
+     * Charging again with the same idempotency key must not charge twice, and completes with the
+     * transaction of the earlier charge if it succeeded.
+     *
+     * @param idempotencyKey The key identifying the payment across retries.
+     * @param method The payment method to charge.
+     * @param amount The amount to charge.
+     * @return A future completed with the ID of the transaction, or completed exceptionally if the charge failed.
+     */
+    public CompletableFuture<String> charge(String idempotencyKey, PaymentMethod method, double amount);
+
+    /**
+     * Refunds a charge in full without blocking the caller. Refunding a charge again must not refund it
+     * twice. Once refunded, the idempotency key of the charge may be charged again.
+     *
+     * @param transactionID The ID of the transaction of the charge.
+     * @return A future completed once the charge is refunded, or completed exceptionally if the refund failed.
+     */
+    public CompletableFuture<Void> refund(String transactionID);
+}
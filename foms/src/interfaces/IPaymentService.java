@@ -0,0 +1,36 @@
+package interfaces;
+
+import java.util.concurrent.CompletableFuture;
+
+import models.PaymentMethod;
+
+/**
+ * The IPaymentService interface provides the method for taking payments at checkout.
+ */
+public interface IPaymentService {
+
+    /**
+     * Takes a payment without blocking the caller. A payment made again with the same idempotency key
+     * while it is in progress or after it succeeded is not charged again, and completes with the same transaction.
+     * The key must not be reused for a different amount.
+     *
+     * @param idempotencyKey The key identifying the payment, such as the cart being checked out.
+     * @param method The payment method to charge.
+     * @param amount The amount to charge.
+     * @return A future completed with the ID of the transaction, or completed exceptionally with a
+     *         {@link utils.exceptions.PaymentFailedException} if the payment failed.
+     * @throws IllegalArgumentException if the key is in use by a payment of a different amount.
+     */
+    public CompletableFuture<String> pay(String idempotencyKey, PaymentMethod method, double amount);
+
+    /**
+     * Refunds a payment without blocking the caller, such as when the order it paid for cannot be placed.
+     * Once refunded, the idempotency key of the payment may be paid again.
+     *
+     * @param idempotencyKey The key identifying the payment.
+     * @param transactionID The ID of the transaction of the payment.
+     * @return A future completed once the payment is refunded, or completed exceptionally with a
+     *         {@link utils.exceptions.PaymentFailedException} if the refund failed.
+     */
+    public CompletableFuture<Void> refund(String idempotencyKey, String transactionID);
+}
@@ -0,0 +1,34 @@
+package interfaces;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+import enums.OrderType;
+import models.SalesTotals;
+
+/**
+ * The ISalesReportView interface provides methods to display sales reports.
+ */
+public interface ISalesReportView {
+
+    /**
+     * Displays the total sales of a period, the sales of each order type and the best-selling items.
+     *
+     * @param salesByOrderType the sales totals of each order type
+     */
+    public void displaySalesSummary(Map<OrderType, SalesTotals> salesByOrderType);
+
+    /**
+     * Displays the sales of each day of a period.
+     *
+     * @param salesByDay the sales totals of each day, in date order
+     */
+    public void displayDailySales(Map<LocalDate, SalesTotals> salesByDay);
+
+    /**
+     * Displays the sales of each branch in a period.
+     *
+     * @param salesByBranch the sales totals of each branch, keyed by branch name
+     */
+    public void displayBranchSales(Map<String, SalesTotals> salesByBranch);
+}
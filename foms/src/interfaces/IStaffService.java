@@ -2,6 +2,7 @@ package interfaces;
 
 import java.util.List;
 
+import enums.OrderStatus;
 import models.Account;
 import models.Order;
 import models.User;
@@ -23,20 +24,48 @@ public interface IStaffService {
     public List<Order> getOrders(int branchID);
 
     /**
-     * Retrieves an order by its ID.
+     * Retrieves the orders of a given branch that have the given status.
      *
+     * @param branchID the ID of the branch
+     * @param status the status of the orders
+     * @return a list of orders
+     */
+    public List<Order> getOrders(int branchID, OrderStatus status);
+
+    /**
+     * Retrieves the next orders the kitchen of a branch has to prepare, without going through the branch's other orders.
+     *
+     * @param branchID the ID of the branch
+     * @param count the maximum number of orders to retrieve
+     * @return up to count orders being prepared, oldest first
+     */
+    public List<Order> getPendingOrders(int branchID, int count);
+
+    /**
+     * Retrieves the number of orders the kitchen of a branch has to prepare.
+     *
+     * @param branchID the ID of the branch
+     * @return the number of orders being prepared
+     */
+    public int getPendingOrderCount(int branchID);
+
+    /**
+     * Retrieves an order of a branch by its ID, reading only the orders of that branch.
+     *
+     * @param branchID the ID of the branch
      * @param orderID the ID of the order
-     * @return the order object
+     * @return the order object, or null if the branch has no such order
      */
-    public Order getOrder(int orderID);
+    public Order getOrder(int branchID, int orderID);
 
     /**
-     * Updates the status of an order.
+     * Updates the status of an order of a branch from "PREPARING" to "READY".
      *
+     * @param branchID the ID of the branch
      * @param orderID the ID of the order
-     * @return true if the order status is successfully updated, false otherwise
+     * @return true if the order status is successfully updated, false if the branch has no such order or it is no longer being prepared
      */
-    public Boolean updateOrderStatus(int orderID);
+    public Boolean updateOrderStatus(int branchID, int orderID);
 
     /**
      * Finds an account by its login ID.
@@ -59,9 +88,11 @@ public interface IStaffService {
     public void changePassword(User user, String oldPassword, String newPassword) throws AccountNotFoundException, PasswordMismatchException, PasswordValidationException;
 
     /**
-     * Cancels an order.
+     * Cancels an order of a branch that is still being prepared.
      *
+     * @param branchID the ID of the branch
      * @param orderID the ID of the order to be canceled
+     * @return true if the order was cancelled, false if the branch has no such order or it is no longer being prepared
      */
-    public void cancelOrder(int orderID);
+    public Boolean cancelOrder(int branchID, int orderID);
 }
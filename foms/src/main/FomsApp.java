@@ -1,6 +1,13 @@
 package main;
 
+import java.util.Arrays;
+import java.util.List;
+
 import controllers.Welcome;
+import services.CSVDataService;
+import stores.OrderArchive;
+import stores.OrderExpiry;
+import stores.StoreBootstrap;
 
 /**
  * The main class of the FOMS application.
@@ -8,6 +15,11 @@ import controllers.Welcome;
  */
 public class FomsApp {
 
+    /**
+     * The port the server listens on if none is given.
+     */
+    private static final int defaultServerPort = 7070;
+
     /**
      * Private constructor to prevent instantiation.
      */
@@ -16,11 +28,43 @@ public class FomsApp {
 
     /**
      * The entry point of the application.
+     * Starts loading the stores in the background and waits only for the branches, which the welcome screen lists.
+     * Starts expiring uncollected orders and archiving old ones, then runs a session on the console, or serves sessions over a local socket in server mode.
      *
-     * @param args the command line arguments
+     * @param args the command line arguments; {@code --load-times} prints the time each store took to load,
+     *             {@code --server [port]} serves terminals on the given port (default 7070) instead of the console,
+     *             and {@code --export} exports the data to CSV files in {@code foms/data/export} and exits
      * @throws Exception Throws an exception if there are issues during the execution, such as input/output errors.
      */
     public static void main(String[] args) throws Exception {
+        List<String> options = Arrays.asList(args);
+        StoreBootstrap.start();
+        StoreBootstrap.await(StoreBootstrap.Store.BRANCH);
+        if (options.contains("--load-times")) {
+            StoreBootstrap.start().join();
+            StoreBootstrap.printLoadTimes();
+        }
+        if (options.contains("--export")) {
+            boolean exported = new CSVDataService().exportAll();
+            System.out.println(exported ? "Exported the data to foms/data/export." : "Some data could not be exported.");
+            return;
+        }
+        OrderExpiry.start();
+        OrderArchive.start();
+
+        int server = options.indexOf("--server");
+        if (server >= 0) {
+            int port = defaultServerPort;
+            if (server + 1 < args.length && !args[server + 1].startsWith("--")) {
+                port = Integer.parseInt(args[server + 1]);
+            }
+            try (FomsServer fomsServer = FomsServer.start(port)) {
+                System.out.println("FOMS server listening on localhost:" + fomsServer.getPort()
+                        + (fomsServer.usesVirtualThreads() ? " (virtual threads)" : " (platform threads)"));
+                fomsServer.awaitClose();
+            }
+            return;
+        }
 
         Welcome.welcome();
     }
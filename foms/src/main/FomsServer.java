@@ -0,0 +1,212 @@
+package main;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import controllers.Welcome;
+import utils.TerminalSession;
+
+/**
+ * <p>Serves FOMS to many terminals at once over a local TCP socket, such as every kiosk and kitchen
+ * display of a branch.
+ *
+ * <p>Each connection is a separate session that starts at the welcome screen, as if the application
+ * had been started on that terminal, and ends when the user exits or disconnects. Sessions run on
+ * virtual threads where the Java runtime provides them, and on a pool of platform threads otherwise.
+ * The input and output of each session are bound to its thread by a {@link TerminalSession}.
+ */
+public class FomsServer implements AutoCloseable {
+
+    /**
+     * The number of connections that may wait to be accepted.
+     */
+    private static final int backlog = 1024;
+
+    /**
+     * The socket that sessions connect to.
+     */
+    private final ServerSocket serverSocket;
+    /**
+     * Runs the sessions, one task per session.
+     */
+    private final ExecutorService sessions;
+    /**
+     * Whether the sessions run on virtual threads.
+     */
+    private final boolean virtualThreads;
+    /**
+     * The thread that accepts connections.
+     */
+    private final Thread acceptor;
+    /**
+     * The number of sessions currently connected.
+     */
+    private final AtomicInteger activeSessions = new AtomicInteger();
+    /**
+     * The highest number of sessions that were connected at the same time.
+     */
+    private final AtomicInteger peakSessions = new AtomicInteger();
+    /**
+     * The number of sessions accepted since the server started.
+     */
+    private final AtomicLong totalSessions = new AtomicLong();
+
+    /**
+     * Constructs a FomsServer listening on the given socket.
+     *
+     * @param serverSocket the bound socket to accept sessions on
+     */
+    private FomsServer(ServerSocket serverSocket) {
+        this.serverSocket = serverSocket;
+        ExecutorService virtual = newVirtualThreadExecutor();
+        this.virtualThreads = virtual != null;
+        this.sessions = virtual != null ? virtual : Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "foms-session");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.acceptor = new Thread(this::accept, "foms-server");
+    }
+
+    /**
+     * Starts a server accepting sessions on the given port of the loopback interface.
+     *
+     * @param port the port to listen on, or 0 to pick a free port
+     * @return the started server
+     * @throws IOException if the port cannot be bound
+     */
+    public static FomsServer start(int port) throws IOException {
+        ServerSocket serverSocket = new ServerSocket(port, backlog, InetAddress.getLoopbackAddress());
+        FomsServer server = new FomsServer(serverSocket);
+        server.acceptor.start();
+        return server;
+    }
+
+    /**
+     * Returns the port the server listens on.
+     *
+     * @return the port
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Checks whether sessions run on virtual threads.
+     *
+     * @return true if sessions run on virtual threads, false if they run on platform threads
+     */
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Returns the number of sessions currently connected.
+     *
+     * @return the number of active sessions
+     */
+    public int getActiveSessionCount() {
+        return activeSessions.get();
+    }
+
+    /**
+     * Returns the highest number of sessions that were connected at the same time.
+     *
+     * @return the peak number of sessions
+     */
+    public int getPeakSessionCount() {
+        return peakSessions.get();
+    }
+
+    /**
+     * Returns the number of sessions accepted since the server started.
+     *
+     * @return the number of sessions
+     */
+    public long getSessionCount() {
+        return totalSessions.get();
+    }
+
+    /**
+     * Waits until the server is closed.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void awaitClose() throws InterruptedException {
+        acceptor.join();
+    }
+
+    /**
+     * Stops accepting sessions and disconnects the sessions in progress.
+     */
+    @Override
+    public void close() {
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            System.out.println("Error closing server socket: " + e.getMessage());
+        }
+        sessions.shutdownNow();
+    }
+
+    /**
+     * Accepts connections until the server is closed, and starts a session for each.
+     */
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                sessions.execute(() -> serve(socket));
+            } catch (SocketException e) {
+                // The server socket was closed
+                return;
+            } catch (IOException e) {
+                System.out.println("Error accepting session: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Runs a session over a connection, from the welcome screen until the user exits or disconnects.
+     *
+     * @param socket the connection of the session
+     */
+    private void serve(Socket socket) {
+        totalSessions.incrementAndGet();
+        peakSessions.accumulateAndGet(activeSessions.incrementAndGet(), Math::max);
+        try (Socket connection = socket) {
+            connection.setTcpNoDelay(true);
+            TerminalSession.run(connection.getInputStream(), connection.getOutputStream(), Welcome::welcome);
+        } catch (NoSuchElementException | IOException e) {
+            // The terminal disconnected
+        } catch (Exception e) {
+            System.out.println("Session ended with an error: " + e.getMessage());
+        } finally {
+            activeSessions.decrementAndGet();
+        }
+    }
+
+    /**
+     * Creates an executor that starts a virtual thread for each task, if the Java runtime provides one.
+     * Looked up at run time, so that the application still runs on releases without virtual threads.
+     *
+     * @return the executor, or null if virtual threads are not available
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -16,6 +16,14 @@ public class Cart {
      * Represents the total price of the items in the cart.
      */
     private double totalPrice;
+    /**
+     * Represents the stock reserved for the items in the cart, or null if nothing has been reserved yet.
+     */
+    private Reservation reservation;
+    /**
+     * Represents the idempotency key of the checkout in progress, or null if the cart is not being checked out.
+     */
+    private String paymentKey;
 
     /**
      * Constructs an empty Cart object.
@@ -55,6 +63,42 @@ public class Cart {
         return totalPrice;
     }
 
+    /**
+     * Returns the stock reserved for the items in the cart.
+     *
+     * @return the reservation of the cart, or null if nothing has been reserved yet
+     */
+    public Reservation getReservation() {
+        return reservation;
+    }
+
+    /**
+     * Sets the stock reserved for the items in the cart.
+     *
+     * @param reservation the reservation of the cart
+     */
+    public void setReservation(Reservation reservation) {
+        this.reservation = reservation;
+    }
+
+    /**
+     * Returns the idempotency key of the checkout in progress.
+     *
+     * @return the idempotency key of the payment for the cart, or null if the cart is not being checked out
+     */
+    public String getPaymentKey() {
+        return paymentKey;
+    }
+
+    /**
+     * Sets the idempotency key of the checkout in progress.
+     *
+     * @param paymentKey the idempotency key of the payment for the cart
+     */
+    public void setPaymentKey(String paymentKey) {
+        this.paymentKey = paymentKey;
+    }
+
     /**
      * Adds an order item to the cart.
      * The total price of the cart is recalculated after adding the item.
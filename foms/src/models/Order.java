@@ -64,6 +64,30 @@ public class Order implements Serializable {
         this.readyTime = null;
     }
 
+    /**
+     * Reconstructs an existing Order object with all of its recorded state, such as when it is read back from a data file.
+     *
+     * @param orderID     the ID of the order
+     * @param branchID    the ID of the branch
+     * @param orderItems  the list of order items
+     * @param orderType   the type of the order
+     * @param totalPrice  the total price of the order
+     * @param orderStatus the status of the order
+     * @param orderTime   the time the order was placed
+     * @param readyTime   the time the order was ready for collection, or null if it has not been ready
+     */
+    public Order(int orderID, int branchID, List<OrderItem> orderItems, OrderType orderType, double totalPrice,
+            OrderStatus orderStatus, LocalDateTime orderTime, LocalDateTime readyTime) {
+        this.orderID = orderID;
+        this.branchID = branchID;
+        this.orderItems = orderItems;
+        this.totalPrice = totalPrice;
+        this.orderStatus = orderStatus;
+        this.orderType = orderType;
+        this.orderTime = orderTime;
+        this.readyTime = readyTime;
+    }
+
         /**
      * Gets the ID of the order.
      *
@@ -26,22 +26,6 @@ public class PaymentMethod implements Serializable {
         this.type = type;
     }
 
-    /**
-     * Pays the specified amount using the payment method.
-     * 
-     * @param amount the amount to be paid
-     */
-    public void pay(double amount) {
-        System.out.println("Paying " + amount + " using " + paymentMethod + " " + type +".");
-        System.out.println("Processing payment...");
-        try {
-            Thread.sleep(1000);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        }
-        System.out.println(paymentMethod + " Payment successful!");
-    }
-
     /**
      * Sets the type of the payment method.
      * 
@@ -0,0 +1,142 @@
+package models;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import enums.ReservationStatus;
+
+/**
+ * Represents the menu item stock held for a cart until it is checked out.
+ * A reservation expires if it is not used for some time, after which its stock is returned.
+ */
+public class Reservation {
+    /**
+     * The ID of the reservation.
+     */
+    private final int reservationID;
+    /**
+     * The ID of the branch whose stock is reserved.
+     */
+    private final int branchID;
+    /**
+     * The reserved quantity of each menu item, keyed by item ID.
+     */
+    private final HashMap<Integer, Integer> quantities = new HashMap<>();
+    /**
+     * The status of the reservation.
+     */
+    private ReservationStatus status = ReservationStatus.OPEN;
+    /**
+     * The time the reservation expires, in milliseconds since the epoch.
+     */
+    private long expiresAt;
+
+    /**
+     * Constructs an open Reservation that holds no stock yet.
+     *
+     * @param reservationID the ID of the reservation
+     * @param branchID the ID of the branch whose stock is reserved
+     * @param expiresAt the time the reservation expires, in milliseconds since the epoch
+     */
+    public Reservation(int reservationID, int branchID, long expiresAt) {
+        this.reservationID = reservationID;
+        this.branchID = branchID;
+        this.expiresAt = expiresAt;
+    }
+
+    /**
+     * Returns the ID of the reservation.
+     *
+     * @return the ID of the reservation
+     */
+    public int getReservationID() {
+        return reservationID;
+    }
+
+    /**
+     * Returns the ID of the branch whose stock is reserved.
+     *
+     * @return the ID of the branch
+     */
+    public int getBranchID() {
+        return branchID;
+    }
+
+    /**
+     * Returns the reserved quantity of a menu item.
+     *
+     * @param itemID the ID of the menu item
+     * @return the reserved quantity, or 0 if none is reserved
+     */
+    public int getQuantity(int itemID) {
+        return quantities.getOrDefault(itemID, 0);
+    }
+
+    /**
+     * Returns a copy of the reserved quantity of each menu item.
+     *
+     * @return the reserved quantities, keyed by item ID
+     */
+    public Map<Integer, Integer> getQuantities() {
+        return new HashMap<>(quantities);
+    }
+
+    /**
+     * Adds to the reserved quantity of a menu item. A negative amount reduces it, and an item whose
+     * quantity drops to 0 is no longer reserved.
+     *
+     * @param itemID the ID of the menu item
+     * @param amount the quantity to add
+     */
+    public void addQuantity(int itemID, int amount) {
+        int quantity = getQuantity(itemID) + amount;
+        if (quantity > 0) {
+            quantities.put(itemID, quantity);
+        } else {
+            quantities.remove(itemID);
+        }
+    }
+
+    /**
+     * Removes every reserved quantity.
+     */
+    public void clearQuantities() {
+        quantities.clear();
+    }
+
+    /**
+     * Returns the status of the reservation.
+     *
+     * @return the status of the reservation
+     */
+    public ReservationStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * Sets the status of the reservation.
+     *
+     * @param status the new status
+     */
+    public void setStatus(ReservationStatus status) {
+        this.status = status;
+    }
+
+    /**
+     * Returns the time the reservation expires.
+     *
+     * @return the expiry time, in milliseconds since the epoch
+     */
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    /**
+     * Sets the time the reservation expires.
+     *
+     * @param expiresAt the new expiry time, in milliseconds since the epoch
+     */
+    public void setExpiresAt(long expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+}
@@ -0,0 +1,134 @@
+package models;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Represents the running sales totals of a set of orders: the number of orders, the revenue and the
+ * quantity sold of each menu item.
+ */
+public class SalesTotals {
+    /**
+     * The number of orders.
+     */
+    private int orderCount;
+    /**
+     * The total price of the orders.
+     */
+    private double revenue;
+    /**
+     * The quantity sold of each menu item, keyed by item name.
+     */
+    private final LinkedHashMap<String, Integer> itemQuantities = new LinkedHashMap<>();
+
+    /**
+     * Constructs empty SalesTotals.
+     */
+    public SalesTotals() {
+    }
+
+    /**
+     * Returns the number of orders.
+     *
+     * @return the number of orders
+     */
+    public int getOrderCount() {
+        return orderCount;
+    }
+
+    /**
+     * Returns the total price of the orders.
+     *
+     * @return the revenue
+     */
+    public double getRevenue() {
+        return revenue;
+    }
+
+    /**
+     * Returns the quantity sold of each menu item.
+     *
+     * @return the quantities, keyed by item name
+     */
+    public Map<String, Integer> getItemQuantities() {
+        return itemQuantities;
+    }
+
+    /**
+     * Returns the menu items sold in the largest quantities.
+     *
+     * @param count the maximum number of items to return
+     * @return up to count item names and quantities, largest quantity first
+     */
+    public List<Map.Entry<String, Integer>> getTopItems(int count) {
+        List<Map.Entry<String, Integer>> items = new ArrayList<>(itemQuantities.entrySet());
+        items.sort((a, b) -> b.getValue() - a.getValue());
+        return items.subList(0, Math.min(count, items.size()));
+    }
+
+    /**
+     * Adds an order to the totals, or takes it off them.
+     *
+     * @param order the order
+     * @param sign 1 to add the order, -1 to take it off
+     */
+    public void record(Order order, int sign) {
+        add(sign, sign * order.getTotalPrice());
+        addItems(order, sign);
+    }
+
+    /**
+     * Adds the items of an order to the quantities sold, or takes them off, without counting the order.
+     *
+     * @param order the order
+     * @param sign 1 to add the items, -1 to take them off
+     */
+    public void addItems(Order order, int sign) {
+        if (sign == 0) {
+            return;
+        }
+        for (OrderItem item : order.getOrderItems()) {
+            addItem(item.getItemName(), sign * item.getQuantity());
+        }
+    }
+
+    /**
+     * Adds a number of orders and their revenue to the totals, without their items.
+     *
+     * @param orderCount the number of orders
+     * @param revenue the total price of the orders
+     */
+    public void add(int orderCount, double revenue) {
+        this.orderCount += orderCount;
+        this.revenue += revenue;
+    }
+
+    /**
+     * Adds a quantity sold of a menu item. An item whose quantity drops to zero is no longer listed.
+     *
+     * @param itemName the name of the item
+     * @param quantity the quantity sold, or a negative quantity to take off
+     */
+    public void addItem(String itemName, int quantity) {
+        int total = itemQuantities.getOrDefault(itemName, 0) + quantity;
+        if (total == 0) {
+            itemQuantities.remove(itemName);
+        } else {
+            itemQuantities.put(itemName, total);
+        }
+    }
+
+    /**
+     * Adds other totals to these totals.
+     *
+     * @param other the totals to add
+     */
+    public void merge(SalesTotals other) {
+        add(other.orderCount, other.revenue);
+        for (Map.Entry<String, Integer> item : other.itemQuantities.entrySet()) {
+            addItem(item.getKey(), item.getValue());
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package services;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import interfaces.IAccountService;
+import models.Account;
+import stores.PasswordStorage;
+
+/**
+ * <p>The AccountService class implements the IAccountService interface and looks accounts up by
+ * login ID in the {@link PasswordStorage}, which is keyed by login ID, so a lookup costs the same
+ * however many accounts there are.
+ *
+ * <p>Login IDs that have no account are remembered together with the version of the password storage
+ * they were looked up in, so repeated failed logins with the same ID do not reach the storage again.
+ * A remembered miss is only trusted while the storage version is unchanged, so an account added since
+ * is always found. The cache is shared by every instance, and is emptied when it grows past a limit.
+ */
+public class AccountService implements IAccountService {
+
+    /**
+     * The most login IDs the negative cache holds before it is emptied.
+     */
+    private static final int missLimit = 10000;
+    /**
+     * The version of the password storage each login ID without an account was looked up in, keyed by login ID.
+     */
+    private static final ConcurrentHashMap<String, Long> misses = new ConcurrentHashMap<>();
+
+    /**
+     * Finds an account by its login ID, through the keyed password storage and the negative cache.
+     *
+     * @param loginID the login ID of the account
+     * @return the account with the specified login ID, or null if no account is found
+     */
+    @Override
+    public Account findAccountByLoginID(String loginID) {
+        if (loginID == null) {
+            return null;
+        }
+        // Read the version before the lookup, so a miss is never recorded against a newer version
+        long version = PasswordStorage.getVersion();
+        Long missedVersion = misses.get(loginID);
+        if (missedVersion != null && missedVersion == version) {
+            return null;
+        }
+        Account account = PasswordStorage.get(loginID);
+        if (account == null) {
+            if (misses.size() >= missLimit) {
+                misses.clear();
+            }
+            misses.put(loginID, version);
+        } else if (missedVersion != null) {
+            misses.remove(loginID);
+        }
+        return account;
+    }
+
+    /**
+     * Checks whether an account exists.
+     *
+     * @param loginID the login ID of the account
+     * @return true if an account with the specified login ID exists, false otherwise
+     */
+    @Override
+    public boolean exists(String loginID) {
+        return findAccountByLoginID(loginID) != null;
+    }
+
+    /**
+     * Sets the password of an account and saves the account to the password storage.
+     *
+     * @param account the account
+     * @param newPassword the new password
+     * @throws IllegalArgumentException if the account is null
+     */
+    @Override
+    public void updatePassword(Account account, String newPassword) {
+        if (account == null) {
+            throw new IllegalArgumentException("Parameter must be a non-null Account.");
+        }
+        account.setPassword(newPassword);
+        PasswordStorage.update(account);
+    }
+}
@@ -1,14 +1,19 @@
 package services;
 
-import java.util.Arrays;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import enums.OrderType;
 import enums.Role;
+import interfaces.IAccountService;
 import interfaces.IAdminService;
 import models.Account;
 import models.Branch;
 import models.BranchMenuItem;
 import models.BranchUser;
-import models.Order;
 import models.PaymentMethod;
+import models.SalesTotals;
 import models.User;
 import stores.BranchMenuItemStorage;
 import stores.BranchStorage;
@@ -16,6 +21,7 @@ import stores.BranchUserStorage;
 import stores.OrderStorage;
 import stores.PasswordStorage;
 import stores.PaymentMethodStorage;
+import stores.SalesStorage;
 import stores.UserStorage;
 import utils.StaffUpdateChecker;
 import utils.exceptions.AccountNotFoundException;
@@ -34,6 +40,11 @@ import enums.Gender;
  */
 public class AdminService implements IAdminService{
 
+    /**
+     * The shared keyed access to the user accounts.
+     */
+    private static final IAccountService accountService = new AccountService();
+
     
     /**
      * Retrieves a list of all staff members in the system.
@@ -52,7 +63,7 @@ public class AdminService implements IAdminService{
      * @return an array of BranchUser objects representing staff members with the specified age
      */
     public BranchUser[] getStaffList(int Age){
-        return Arrays.stream(BranchUserStorage.getAll())
+        return BranchUserStorage.snapshot().stream()
                      .filter(user -> user.getAge() == Age)
                      .toArray(BranchUser[]::new);
     }
@@ -64,7 +75,7 @@ public class AdminService implements IAdminService{
      * @return an array of BranchUser objects representing staff members in the specified branch
      */
     public BranchUser[] getStaffList(Branch branch) {
-        return Arrays.stream(BranchUserStorage.getAll())
+        return BranchUserStorage.snapshot().stream()
                          .filter(user -> user.getBranchID() == branch.getID())
                          .toArray(BranchUser[]::new);
     }
@@ -77,7 +88,7 @@ public class AdminService implements IAdminService{
      */
     public BranchUser[] getStaffList(Role role) {
         // Filter by role
-        return Arrays.stream(BranchUserStorage.getAll())
+        return BranchUserStorage.snapshot().stream()
                      .filter(user -> user.getRole() == role)
                      .toArray(BranchUser[]::new);
     }
@@ -90,7 +101,7 @@ public class AdminService implements IAdminService{
      */
     public BranchUser[] getStaffList(Gender gender) {
         // Filter by gender
-        return Arrays.stream(BranchUserStorage.getAll())
+        return BranchUserStorage.snapshot().stream()
                      .filter(user -> user.getGender() == gender)
                      .toArray(BranchUser[]::new);
     }
@@ -109,6 +120,7 @@ public class AdminService implements IAdminService{
      * Adds a new staff member to the system.
      * 
      * The staff member is only added to the system if the staff quota for the branch is not exceeded and the branch has the required manager to staff ratio.
+     * The counts are read from the branch headcounts, and the check and the addition are done as one step.
      * 
      * An account is also created for the new staff member with a default password of "password".
      * 
@@ -119,76 +131,57 @@ public class AdminService implements IAdminService{
     @Override
     public boolean addStaff(BranchUser staff){
 
-        Account[] staffList = PasswordStorage.getAll();
-        for (Account account : staffList){
-            if (account.getLoginID() == staff.getLoginID()){
-                System.out.println("Staff already exists.");
-                return false;
-            }
+        if (accountService.exists(staff.getLoginID())){
+            System.out.println("Staff already exists.");
+            return false;
+        }
+        if (staff.getRole() != Role.BRANCHMANAGER && staff.getRole() != Role.STAFF){
+            throw new IllegalArgumentException("Staff role must be either BRANCHMANAGER or STAFF.");
         }
 
-        int staffCount = 0;
-        int managerCount = 0;
         Branch branch = BranchStorage.get(staff.getBranchID());
 
-        if (staff.getRole() == Role.BRANCHMANAGER){
-            for (BranchUser branchUser : BranchUserStorage.getAll()){
-                if (branchUser.getBranchID() == staff.getBranchID()){
-                    if (branchUser.getRole() == Role.BRANCHMANAGER){
-                        managerCount++;
-                    }
-                    else if (branchUser.getRole() == Role.STAFF){
-                        staffCount++;
-                    }
-                }
-            }
-            managerCount++;
-        } else if (staff.getRole() == Role.STAFF){
-            for (BranchUser branchUser : BranchUserStorage.getAll()){
-                if (branchUser.getBranchID() == staff.getBranchID()){
-                    if (branchUser.getRole() == Role.BRANCHMANAGER){
-                        managerCount++;
-                    }
-                    else if (branchUser.getRole() == Role.STAFF){
-                        staffCount++;
-                    }
-                }
+        return BranchUserStorage.withHeadcounts(() -> {
+            int staffCount = BranchUserStorage.getStaffCount(staff.getBranchID());
+            int managerCount = BranchUserStorage.getManagerCount(staff.getBranchID());
+            if (staff.getRole() == Role.BRANCHMANAGER){
+                managerCount++;
+            } else {
+                staffCount++;
             }
-            staffCount++;
-        } else {
-            throw new IllegalArgumentException("Staff role must be either BRANCHMANAGER or STAFF.");
-        }
 
-        if (staffCount > branch.getStaffQuota()){
-            System.out.println("Staff quota exceeded.");
-            return false;
-        }
+            if (staffCount > branch.getStaffQuota()){
+                System.out.println("Staff quota exceeded.");
+                return false;
+            }
 
-        try {
-            StaffUpdateChecker.check(staffCount, managerCount, branch);
-            createAccount(staff);
-            BranchUserStorage.add(staff);
-            UserStorage.add(staff);          
-            System.out.println("Employee added successfully.");
-            return true;
-        } catch (TooFewManagersException e) {
-            System.out.println("Addition blocked as there will be too many staff in the branch.");
-            System.out.println("Try adding new staff to other branches.");
-            return false;
-        } catch (TooManyManagersException e) {
-            System.out.println("Addition blocked as there will be too many managers in the branch.");
-            System.out.println("Try adding new manager to other branches.");
-            return false;
-        } catch (IllegalArgumentException e) {
-            System.out.println(e.getMessage());
-            return false;
-        }
+            try {
+                StaffUpdateChecker.check(staffCount, managerCount, branch);
+                createAccount(staff);
+                BranchUserStorage.add(staff);
+                UserStorage.add(staff);          
+                System.out.println("Employee added successfully.");
+                return true;
+            } catch (TooFewManagersException e) {
+                System.out.println("Addition blocked as there will be too many staff in the branch.");
+                System.out.println("Try adding new staff to other branches.");
+                return false;
+            } catch (TooManyManagersException e) {
+                System.out.println("Addition blocked as there will be too many managers in the branch.");
+                System.out.println("Try adding new manager to other branches.");
+                return false;
+            } catch (IllegalArgumentException e) {
+                System.out.println(e.getMessage());
+                return false;
+            }
+        });
     };
 
     /**
      * Removes a staff member from the system.
      * 
      * Similar to addition, the staff member is only removed if the branch has the required manager to staff ratio after the removal.
+     * The counts are read from the branch headcounts, and the check and the removal are done as one step.
      * 
      * The staff member's account is also deleted from the system.
      * 
@@ -197,54 +190,38 @@ public class AdminService implements IAdminService{
      */
     @Override
     public boolean removeStaff(BranchUser staff){
-        for (BranchUser branchUser : BranchUserStorage.getAll()){
-            if (branchUser.getLoginID() == staff.getLoginID()){
-                
-                int staffCount = 0;
-                int managerCount = 0;
-
-
-                for (BranchUser curBranchUser : BranchUserStorage.getAll()){
-                    if (curBranchUser.getBranchID() == staff.getBranchID()){
-                        if (curBranchUser.getRole() == Role.BRANCHMANAGER){
-                            managerCount++;
-                        }
-                        else if (curBranchUser.getRole() == Role.STAFF){
-                            staffCount++;
-                        }
-                    }
-                }
-
-
-
-                if (Role.BRANCHMANAGER == staff.getRole()){
-                    managerCount--;
-                }
-                else if (Role.STAFF == staff.getRole()){
-                    staffCount--;
-                }
+        return BranchUserStorage.withHeadcounts(() -> {
+            if (BranchUserStorage.get(staff.getLoginID()) == null){
+                System.out.println("Staff does not exist.");
+                return false;
+            }
 
+            int staffCount = BranchUserStorage.getStaffCount(staff.getBranchID());
+            int managerCount = BranchUserStorage.getManagerCount(staff.getBranchID());
+            if (Role.BRANCHMANAGER == staff.getRole()){
+                managerCount--;
+            }
+            else if (Role.STAFF == staff.getRole()){
+                staffCount--;
+            }
 
-                try {
-                    StaffUpdateChecker.check(staffCount, managerCount, BranchStorage.get(staff.getBranchID()));
-                    deleteAccount(staff);
-                    BranchUserStorage.remove(staff);
-                    UserStorage.remove(staff);
-                    return true;
-                } catch (TooFewManagersException e) {
-                    System.out.println("Removal blocked as there will be insufficient managers in the branch.");
-                    return false;
-                } catch (TooManyManagersException e) {
-                    System.out.println("Removal blocked as there will be insufficient staff in the branch.");
-                    return false;
-                } catch (IllegalArgumentException e) {
-                    System.out.println(e.getMessage());
-                    return false;
-                }
+            try {
+                StaffUpdateChecker.check(staffCount, managerCount, BranchStorage.get(staff.getBranchID()));
+                deleteAccount(staff);
+                BranchUserStorage.remove(staff);
+                UserStorage.remove(staff);
+                return true;
+            } catch (TooFewManagersException e) {
+                System.out.println("Removal blocked as there will be insufficient managers in the branch.");
+                return false;
+            } catch (TooManyManagersException e) {
+                System.out.println("Removal blocked as there will be insufficient staff in the branch.");
+                return false;
+            } catch (IllegalArgumentException e) {
+                System.out.println(e.getMessage());
+                return false;
             }
-        }
-        System.out.println("Staff does not exist.");
-        return false;
+        });
     };
 
 
@@ -274,6 +251,7 @@ public class AdminService implements IAdminService{
      * Promotes a staff member to a branch manager.
      * 
      * The promotion is only successful if the branch has the required manager to staff ratio after the promotion.
+     * The check and the promotion are done as one step against the branch headcounts, and the promoted staff member is saved.
      * 
      * @param staff the staff member to be promoted
      * @return true if the promotion is successful, false otherwise
@@ -286,35 +264,29 @@ public class AdminService implements IAdminService{
             return false;
         }
 
-        int staffCount = 0;
-        int managerCount = 0;
         Branch branch = BranchStorage.get(staff.getBranchID());
 
-        for (BranchUser branchUser : BranchUserStorage.getAll()){
-            if (branchUser.getBranchID() == staff.getBranchID()){
-                if (branchUser.getRole() == Role.BRANCHMANAGER){
-                    managerCount++;
-                }
-                else if (branchUser.getRole() == Role.STAFF){
-                    staffCount++;
-                }
-            }
-        }
+        return BranchUserStorage.withHeadcounts(() -> {
+            int staffCount = BranchUserStorage.getStaffCount(staff.getBranchID());
+            int managerCount = BranchUserStorage.getManagerCount(staff.getBranchID());
 
-        try {
-            StaffUpdateChecker.check(staffCount - 1, managerCount + 1, branch);
-            staff.setRole(Role.BRANCHMANAGER);
-            return true;
-        } catch (TooFewManagersException e) {
-            System.out.println("Promotion blocked as there will be insufficient staff in the branch.");
-            return false;
-        } catch (TooManyManagersException e) {
-            System.out.println("Promotion blocked as there will be too many managers in the branch.");
-            return false;
-        } catch (IllegalArgumentException e) {
-            System.out.println(e.getMessage());
-            return false;
-        }
+            try {
+                StaffUpdateChecker.check(staffCount - 1, managerCount + 1, branch);
+                staff.setRole(Role.BRANCHMANAGER);
+                BranchUserStorage.update(staff);
+                UserStorage.update(staff);
+                return true;
+            } catch (TooFewManagersException e) {
+                System.out.println("Promotion blocked as there will be insufficient staff in the branch.");
+                return false;
+            } catch (TooManyManagersException e) {
+                System.out.println("Promotion blocked as there will be too many managers in the branch.");
+                return false;
+            } catch (IllegalArgumentException e) {
+                System.out.println(e.getMessage());
+                return false;
+            }
+        });
     };
 
 
@@ -323,7 +295,8 @@ public class AdminService implements IAdminService{
      * 
      * The transfer is only successful if the staff members can be accommodated in the new branch without exceeding the staff quota and the required manager to staff ratio is maintained in both branches.
      *
-     * Can support transferring one or multiple staff members at once.
+     * Can support transferring one or multiple staff members at once. The checks and the transfer are done as one step
+     * against the branch headcounts, and the transferred staff members are saved.
      * 
      * @param staffList   an array of BranchUser objects representing the staff members to be transferred
      * @param oldBranch   the branch from which the staff members are being transferred
@@ -334,30 +307,14 @@ public class AdminService implements IAdminService{
     @Override
     public boolean transferStaff(BranchUser[] staffList, Branch oldBranch, Branch newBranch){
 
-        int oldStaffCount = 0;
-        int oldManagerCount = 0;
-        int newStaffCount = 0;
-        int newManagerCount = 0;
+        if (oldBranch.getID() == newBranch.getID()) {
+            System.out.println("Staff are already in that branch. Transfer failed.");
+            return false;
+        }
+
         int transferringManagers = 0;
         int transferringStaff = 0;
     
-        // First, count current staff and managers in both branches
-        for (BranchUser branchUser : BranchUserStorage.getAll()) {
-            if (branchUser.getBranchID() == oldBranch.getID()) {
-                if (branchUser.getRole() == Role.BRANCHMANAGER) {
-                    oldManagerCount++;
-                } else if (branchUser.getRole() == Role.STAFF) {
-                    oldStaffCount++;
-                }
-            } else if (branchUser.getBranchID() == newBranch.getID()) {
-                if (branchUser.getRole() == Role.BRANCHMANAGER) {
-                    newManagerCount++;
-                } else if (branchUser.getRole() == Role.STAFF) {
-                    newStaffCount++;
-                }
-            }
-        }
-    
         // Count the number of managers and staff being transferred
         for (BranchUser staff : staffList) {
             if (staff == null) {
@@ -371,42 +328,54 @@ public class AdminService implements IAdminService{
                 throw new IllegalArgumentException("Staff role must be either BRANCHMANAGER or STAFF.");
             }
         }
+        int managers = transferringManagers;
+        int staffMembers = transferringStaff;
+
+        return BranchUserStorage.withHeadcounts(() -> {
+            // Current staff and managers in both branches, from the branch headcounts
+            int oldStaffCount = BranchUserStorage.getStaffCount(oldBranch.getID());
+            int oldManagerCount = BranchUserStorage.getManagerCount(oldBranch.getID());
+            int newStaffCount = BranchUserStorage.getStaffCount(newBranch.getID());
+            int newManagerCount = BranchUserStorage.getManagerCount(newBranch.getID());
+
+            // Perform checks for the old branch after removing transferred staff
+            try {
+                StaffUpdateChecker.check(oldStaffCount - staffMembers, oldManagerCount - managers, oldBranch);
+            } catch (TooFewManagersException e){
+                System.out.println("Too Few Managers in old branch! Transfer failed.");
+                return false;
+            } catch (TooManyManagersException e){
+                System.out.println("Too Many Managers in old branch! Transfer failed.");
+                return false;
+            }
     
-        // Perform checks for the old branch after removing transferred staff
-        try {
-            StaffUpdateChecker.check(oldStaffCount - transferringStaff, oldManagerCount - transferringManagers, oldBranch);
-        } catch (TooFewManagersException e){
-            System.out.println("Too Few Managers in old branch! Transfer failed.");
-            return false;
-        } catch (TooManyManagersException e){
-            System.out.println("Too Many Managers in old branch! Transfer failed.");
-            return false;
-        }
-    
-        // Perform checks for the new branch after adding transferred staff
-        try {
-            StaffUpdateChecker.check(newStaffCount + transferringStaff, newManagerCount + transferringManagers, newBranch);
-        } catch (TooFewManagersException e){
-            System.out.println("Too Few Managers in new branch! Transfer failed.");
-            return false;
-        } catch (TooManyManagersException e){
-            System.out.println("Too Many Managers in new branch! Transfer failed.");
-            return false;
-        }
+            // Perform checks for the new branch after adding transferred staff
+            try {
+                StaffUpdateChecker.check(newStaffCount + staffMembers, newManagerCount + managers, newBranch);
+            } catch (TooFewManagersException e){
+                System.out.println("Too Few Managers in new branch! Transfer failed.");
+                return false;
+            } catch (TooManyManagersException e){
+                System.out.println("Too Many Managers in new branch! Transfer failed.");
+                return false;
+            }
         
-        if (newStaffCount > newBranch.getStaffQuota()) {
-            System.out.println("Staff quota exceeded in new branch. Transfer failed.");
-            return false;
-        }
+            if (newStaffCount > newBranch.getStaffQuota()) {
+                System.out.println("Staff quota exceeded in new branch. Transfer failed.");
+                return false;
+            }
 
-        // Set new branch ID for each staff being transferred
-        for (BranchUser staff : staffList) {
-            if (staff == null) {
-                break;
+            // Set new branch ID for each staff being transferred, and save them
+            for (BranchUser staff : staffList) {
+                if (staff == null) {
+                    break;
+                }
+                staff.setBranchID(newBranch.getID());
+                BranchUserStorage.update(staff);
+                UserStorage.update(staff);
             }
-            staff.setBranchID(newBranch.getID());
-        }
-        return true;
+            return true;
+        });
     }
 
     /**
@@ -419,13 +388,12 @@ public class AdminService implements IAdminService{
      */
     @Override
     public boolean addBranch(Branch branch){
-        for (Branch curBranch : BranchStorage.getAll()){
-            if (curBranch.getName().equals(branch.getName())){
-                System.out.println("Branch already exists. Enter a unique branch name.");
-                return false;
-            }
+        try {
+            BranchStorage.add(branch);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Branch already exists. Enter a unique branch name.");
+            return false;
         }
-        BranchStorage.add(branch);
         return true;
     };
 
@@ -448,15 +416,11 @@ public class AdminService implements IAdminService{
                 UserStorage.remove(branchuser);
             }
         }
-        for(Branch curBranch : BranchStorage.getAll()){
+        for(Branch curBranch : BranchStorage.snapshot()){
             if (curBranch.getID() == branch.getID()){
                 BranchStorage.remove(branch);
-                for (Order order : OrderStorage.getAll()){
-                    if (order.getBranchID() == branch.getID()){
-                        OrderStorage.remove(order);
-                    }
-                }
-                for (BranchMenuItem item : BranchMenuItemStorage.getAll()){
+                OrderStorage.removeBranch(branch.getID());
+                for (BranchMenuItem item : BranchMenuItemStorage.snapshot()){
                     if (item.getBranchID() == branch.getID()){
                         BranchMenuItemStorage.remove(item);
                     }
@@ -483,7 +447,7 @@ public class AdminService implements IAdminService{
             System.out.println("Payment method cannot be null.");
             return false;
         }
-        for (PaymentMethod curPaymentMethod : PaymentMethodStorage.getAll()){
+        for (PaymentMethod curPaymentMethod : PaymentMethodStorage.snapshot()){
             if (curPaymentMethod.getPaymentMethod().equals(paymentMethod.getPaymentMethod())){
                 System.out.println("Payment method already exists.");
                 return false;
@@ -502,7 +466,7 @@ public class AdminService implements IAdminService{
      */
     @Override
     public boolean removePaymentMethod(PaymentMethod paymentMethod){
-        for (PaymentMethod curPaymentMethod : PaymentMethodStorage.getAll()){
+        for (PaymentMethod curPaymentMethod : PaymentMethodStorage.snapshot()){
             if (curPaymentMethod.getPaymentMethod().equals(paymentMethod.getPaymentMethod())){
                 PaymentMethodStorage.remove(paymentMethod);
                 return true;
@@ -520,7 +484,7 @@ public class AdminService implements IAdminService{
      * @return the found PaymentMethod object, or null if not found
      */
     public PaymentMethod findPaymentMethod(String paymentMethod){
-        for (PaymentMethod curPaymentMethod : PaymentMethodStorage.getAll()){
+        for (PaymentMethod curPaymentMethod : PaymentMethodStorage.snapshot()){
             if (curPaymentMethod.getPaymentMethod().equals(paymentMethod)){
                 return curPaymentMethod;
             }
@@ -565,12 +529,7 @@ public class AdminService implements IAdminService{
      * @return the found Account object, or null if not found
      */
     public Account findAccountByLoginID(String loginID) {
-        for (Account account : PasswordStorage.getAll()) {
-            if (account.getLoginID().equals(loginID)) {
-                return account;
-            }
-        }
-        return null;
+        return accountService.findAccountByLoginID(loginID);
     }
 
     /**
@@ -596,8 +555,7 @@ public class AdminService implements IAdminService{
             throw new PasswordValidationException("The new password is invalid. It cannot be null, empty, 'password', or the same as the previous password.");
         }
     
-        account.setPassword(newPassword);
-        PasswordStorage.update(account);
+        accountService.updatePassword(account, newPassword);
     }
 
     /**
@@ -609,14 +567,11 @@ public class AdminService implements IAdminService{
      * @return true if the branch was successfully created, false otherwise
      */
     public boolean createBranch(String branchName, String branchLocation, int staffQuota) {
-        Branch[] branches = getBranchList();
-        int temp = 0;
-        for (Branch branch : branches) {
-            if (branch.getID() > temp){
-                temp = branch.getID();
-            }
+        if (BranchStorage.get(branchName) != null) {
+            System.out.println("Branch already exists. Enter a unique branch name.");
+            return false;
         }
-        Branch branch = new Branch(temp + 1, branchName, branchLocation, staffQuota);
+        Branch branch = new Branch(BranchStorage.nextBranchID(), branchName, branchLocation, staffQuota);
         return addBranch(branch);
     }
 
@@ -648,6 +603,47 @@ public class AdminService implements IAdminService{
         return true;
     }
 
+    /**
+     * Retrieves the sales of every branch in a period, per branch, from the running sales totals.
+     *
+     * @param from the first day of the period, or null for no limit
+     * @param to the last day of the period, or null for no limit
+     * @return the sales totals of each branch with sales, keyed by branch name in branch order
+     */
+    @Override
+    public Map<String, SalesTotals> getSalesByBranch(LocalDate from, LocalDate to) {
+        Map<String, SalesTotals> sales = new LinkedHashMap<>();
+        for (Map.Entry<Integer, SalesTotals> branchSales : SalesStorage.getByBranch(from, to).entrySet()) {
+            Branch branch = BranchStorage.get(branchSales.getKey());
+            sales.put(branch == null ? "Branch " + branchSales.getKey() : branch.getName(), branchSales.getValue());
+        }
+        return sales;
+    }
+
+    /**
+     * Retrieves the sales of every branch in a period, per order type, from the running sales totals.
+     *
+     * @param from the first day of the period, or null for no limit
+     * @param to the last day of the period, or null for no limit
+     * @return the sales totals of each order type with sales
+     */
+    @Override
+    public Map<OrderType, SalesTotals> getSalesByOrderType(LocalDate from, LocalDate to) {
+        return SalesStorage.getByOrderType(null, from, to);
+    }
+
+    /**
+     * Retrieves the sales of every branch in a period, per day, from the running sales totals.
+     *
+     * @param from the first day of the period, or null for no limit
+     * @param to the last day of the period, or null for no limit
+     * @return the sales totals of each day with sales, in date order
+     */
+    @Override
+    public Map<LocalDate, SalesTotals> getSalesByDay(LocalDate from, LocalDate to) {
+        return SalesStorage.getByDay(null, from, to);
+    }
+
     /**
      * Deletes an account from the system.
      * 
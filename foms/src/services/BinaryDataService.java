@@ -0,0 +1,303 @@
+package services;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import interfaces.IFileDataService;
+import models.Account;
+import models.Branch;
+import models.BranchMenuItem;
+import models.BranchUser;
+import models.Order;
+import models.PaymentMethod;
+import models.User;
+import utils.BinaryCodec;
+import utils.SnapshotFiles;
+
+/**
+ * <p>Reads and writes the data files in the versioned binary format of {@link BinaryCodec}.
+ *
+ * <p>Uses the same data files as {@link SerialDataService}. A file that was still written by Java
+ * serialization is recognised by its stream header and read through {@link SerialDataService},
+ * and is rewritten in the binary format on the next save.
+ *
+ * <p>Files are written and read as crash-safe snapshots through {@link SnapshotFiles}.
+ */
+public class BinaryDataService implements IFileDataService {
+
+    /**
+     * The first two bytes of a file written by an {@code ObjectOutputStream}.
+     */
+    private static final int serializationMagic = 0xACED;
+
+    /**
+     * The path to the order data file.
+     */
+    private final String orderDataPath = "foms/data/orders.ser";
+    /**
+     * The path to the user data file.
+     */
+    private final String userDataPath = "foms/data/users.ser";
+    /**
+     * The path to the data file for branch users.
+     */
+    private final String branchUserDataPath = "foms/data/branchUsers.ser";
+    /**
+     * The path to the menu data file.
+     */
+    private final String menuDataPath = "foms/data/menu.ser";
+    /**
+     * The file path for the payment method data.
+     */
+    private final String paymentMethodDataPath = "foms/data/paymentMethods.ser";
+    /**
+     * The path to the data file for branches.
+     */
+    private final String branchDataPath = "foms/data/branches.ser";
+    /**
+     * The file path for the password data.
+     */
+    private final String passwordDataPath = "foms/data/passwords.ser";
+
+    /**
+     * Writes a single record of a binary data file.
+     *
+     * @param <V> the type of record
+     */
+    private interface RecordWriter<V> {
+        /**
+         * Writes a record.
+         *
+         * @param out the output to write to
+         * @param value the record to write
+         * @throws IOException if the record cannot be written
+         */
+        void write(DataOutputStream out, V value) throws IOException;
+    }
+
+    /**
+     * Reads a single record of a binary data file.
+     *
+     * @param <V> the type of record
+     */
+    private interface RecordReader<V> {
+        /**
+         * Reads a record.
+         *
+         * @param in the input to read from
+         * @return the record read
+         * @throws IOException if the record cannot be read
+         */
+        V read(DataInputStream in) throws IOException;
+    }
+
+    /**
+     * Imports order data from the binary data file.
+     * @return A HashMap containing the imported orders, keyed by order ID.
+     */
+    public HashMap<Integer, Order> importOrderData() {
+        return importHelper(orderDataPath, BinaryCodec.KIND_ORDER, BinaryCodec::readOrder, Order::getOrderID,
+                () -> new SerialDataService().importOrderData());
+    }
+
+    /**
+     * Exports order data to the binary data file.
+     * @param hashMap The HashMap of orders to write.
+     * @return True if the export is successful, false otherwise.
+     */
+    public boolean exportOrderData(HashMap<Integer, Order> hashMap) {
+        return exportHelper(orderDataPath, BinaryCodec.KIND_ORDER, hashMap, BinaryCodec::writeOrder);
+    }
+
+    /**
+     * Imports order data from the given binary data file, such as the file of a single branch.
+     * @param path The path to the data file.
+     * @return A HashMap containing the imported orders, keyed by order ID, or null if the file cannot be read.
+     */
+    public HashMap<Integer, Order> importOrderData(String path) {
+        return importHelper(path, BinaryCodec.KIND_ORDER, BinaryCodec::readOrder, Order::getOrderID, () -> null);
+    }
+
+    /**
+     * Exports order data to the given binary data file, such as the file of a single branch.
+     * @param path The path to the data file.
+     * @param hashMap The HashMap of orders to write.
+     * @return True if the export is successful, false otherwise.
+     */
+    public boolean exportOrderData(String path, HashMap<Integer, Order> hashMap) {
+        return exportHelper(path, BinaryCodec.KIND_ORDER, hashMap, BinaryCodec::writeOrder);
+    }
+
+    /**
+     * Imports user data from the binary data file.
+     * @return A HashMap containing the imported users, keyed by user login ID.
+     */
+    public HashMap<String, User> importUserData() {
+        return importHelper(userDataPath, BinaryCodec.KIND_USER, BinaryCodec::readUser, User::getLoginID,
+                () -> new SerialDataService().importUserData());
+    }
+
+    /**
+     * Exports user data to the binary data file.
+     * @param hashMap The HashMap of users to write.
+     * @return True if the export is successful, false otherwise.
+     */
+    public boolean exportUserData(HashMap<String, User> hashMap) {
+        return exportHelper(userDataPath, BinaryCodec.KIND_USER, hashMap, BinaryCodec::writeUser);
+    }
+
+    /**
+     * Imports branch user data from the binary data file.
+     * @return A HashMap containing the imported branch users, keyed by user login ID.
+     */
+    public HashMap<String, BranchUser> importBranchUserData() {
+        return importHelper(branchUserDataPath, BinaryCodec.KIND_BRANCH_USER, BinaryCodec::readBranchUser,
+                BranchUser::getLoginID, () -> new SerialDataService().importBranchUserData());
+    }
+
+    /**
+     * Exports branch user data to the binary data file.
+     * @param hashMap The HashMap of branch users to write.
+     * @return True if the export is successful, false otherwise.
+     */
+    public boolean exportBranchUserData(HashMap<String, BranchUser> hashMap) {
+        return exportHelper(branchUserDataPath, BinaryCodec.KIND_BRANCH_USER, hashMap, BinaryCodec::writeBranchUser);
+    }
+
+    /**
+     * Imports menu data from the binary data file.
+     * @return A HashMap containing the imported menu items, keyed by item ID.
+     */
+    public HashMap<Integer, BranchMenuItem> importMenuData() {
+        return importHelper(menuDataPath, BinaryCodec.KIND_MENU, BinaryCodec::readBranchMenuItem,
+                BranchMenuItem::getItemID, () -> new SerialDataService().importMenuData());
+    }
+
+    /**
+     * Exports menu data to the binary data file.
+     * @param hashMap The HashMap of menu items to write.
+     * @return True if the export is successful, false otherwise.
+     */
+    public boolean exportMenuData(HashMap<Integer, BranchMenuItem> hashMap) {
+        return exportHelper(menuDataPath, BinaryCodec.KIND_MENU, hashMap, BinaryCodec::writeBranchMenuItem);
+    }
+
+    /**
+     * Imports payment method data from the binary data file.
+     * @return A HashMap containing the imported payment methods, keyed by payment method name.
+     */
+    public HashMap<String, PaymentMethod> importPaymentMethodData() {
+        return importHelper(paymentMethodDataPath, BinaryCodec.KIND_PAYMENT_METHOD, BinaryCodec::readPaymentMethod,
+                PaymentMethod::getPaymentMethod, () -> new SerialDataService().importPaymentMethodData());
+    }
+
+    /**
+     * Exports payment method data to the binary data file.
+     * @param hashMap The HashMap of payment methods to write.
+     * @return True if the export is successful, false otherwise.
+     */
+    public boolean exportPaymentMethodData(HashMap<String, PaymentMethod> hashMap) {
+        return exportHelper(paymentMethodDataPath, BinaryCodec.KIND_PAYMENT_METHOD, hashMap, BinaryCodec::writePaymentMethod);
+    }
+
+    /**
+     * Imports branch data from the binary data file.
+     * @return A HashMap containing the imported branches, keyed by branch ID.
+     */
+    public HashMap<Integer, Branch> importBranchData() {
+        return importHelper(branchDataPath, BinaryCodec.KIND_BRANCH, BinaryCodec::readBranch, Branch::getID,
+                () -> new SerialDataService().importBranchData());
+    }
+
+    /**
+     * Exports branch data to the binary data file.
+     * @param hashMap The HashMap of branches to write.
+     * @return True if the export is successful, false otherwise.
+     */
+    public boolean exportBranchData(HashMap<Integer, Branch> hashMap) {
+        return exportHelper(branchDataPath, BinaryCodec.KIND_BRANCH, hashMap, BinaryCodec::writeBranch);
+    }
+
+    /**
+     * Imports password data from the binary data file.
+     * @return A HashMap containing the imported accounts, keyed by login ID.
+     */
+    public HashMap<String, Account> importPasswordData() {
+        return importHelper(passwordDataPath, BinaryCodec.KIND_ACCOUNT, BinaryCodec::readAccount, Account::getLoginID,
+                () -> new SerialDataService().importPasswordData());
+    }
+
+    /**
+     * Exports password data to the binary data file.
+     * @param hashMap The HashMap of accounts to write.
+     * @return True if the export is successful, false otherwise.
+     */
+    public boolean exportPasswordData(HashMap<String, Account> hashMap) {
+        return exportHelper(passwordDataPath, BinaryCodec.KIND_ACCOUNT, hashMap, BinaryCodec::writeAccount);
+    }
+
+    /**
+     * Helper method to handle the import of binary data.
+     * Keys are not stored in the file and are derived from each record instead.
+     *
+     * @param <K> the type of key
+     * @param <V> the type of record
+     * @param importPathString The path to the file from which to import data.
+     * @param kind The kind of records expected in the file.
+     * @param reader Reads a single record.
+     * @param key Derives the key of a record.
+     * @param legacyImport Imports the file if it was written by Java serialization, or returns null for files without a legacy format.
+     * @return The imported HashMap, or null if the file cannot be read.
+     */
+    private <K, V> HashMap<K, V> importHelper(String importPathString, byte kind, RecordReader<V> reader,
+            Function<V, K> key, Supplier<HashMap<K, V>> legacyImport) {
+        try (DataInputStream dis = new DataInputStream(SnapshotFiles.open(importPathString))) {
+            dis.mark(2);
+            int head = dis.readUnsignedShort();
+            if (head == serializationMagic) {
+                return legacyImport.get();
+            }
+            dis.reset();
+            int count = BinaryCodec.readHeader(dis, kind);
+            HashMap<K, V> hashMap = new HashMap<>(Math.max(16, (int) (count / 0.75f) + 1));
+            for (int i = 0; i < count; i++) {
+                V value = reader.read(dis);
+                hashMap.put(key.apply(value), value);
+            }
+            return hashMap;
+        } catch (IOException e) {
+            System.out.println("Error reading data from " + importPathString + ": " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Helper method to handle the export of binary data.
+     *
+     * @param <V> the type of record
+     * @param exportPathString The path to the file to which to export data.
+     * @param kind The kind of records written to the file.
+     * @param hashMap The HashMap to write.
+     * @param writer Writes a single record.
+     * @return True if the export is successful, false otherwise.
+     */
+    private <V> boolean exportHelper(String exportPathString, byte kind, HashMap<?, V> hashMap, RecordWriter<V> writer) {
+        try {
+            SnapshotFiles.write(exportPathString, out -> {
+                DataOutputStream dos = new DataOutputStream(out);
+                BinaryCodec.writeHeader(dos, kind, hashMap.size());
+                for (V value : hashMap.values()) {
+                    writer.write(dos, value);
+                }
+            });
+            return true;
+        } catch (IOException e) {
+            System.out.println("Error saving data to " + exportPathString + ": " + e.getMessage());
+            return false;
+        }
+    }
+}
@@ -1,11 +1,15 @@
 package services;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 
 import enums.Gender;
+import enums.OrderStatus;
+import enums.OrderType;
 import enums.Role;
 import interfaces.IFileDataService;
 import models.Account;
@@ -14,9 +18,18 @@ import models.Branch;
 import models.BranchMenuItem;
 import models.BranchUser;
 import models.Order;
+import models.OrderItem;
 import models.PaymentMethod;
 import models.User;
+import stores.BranchMenuItemStorage;
 import stores.BranchStorage;
+import stores.BranchUserStorage;
+import stores.OrderArchive;
+import stores.OrderStorage;
+import stores.PaymentMethodStorage;
+import stores.UserStorage;
+import utils.CSVReader;
+import utils.CSVWriter;
 
 /**
  * <p>Provides services to import and export data from/to CSV files for various data models
@@ -26,15 +39,20 @@ import stores.BranchStorage;
  * Furthermore, this import is only performed once for system initialization.
  * The other irrelevant import methods are not implemented.
  * 
- * <p>CSV files are not used to store any data, hence none of the export methods are implemented.
- * 
+ * <p>CSV files are not used to store any data. The export methods write CSV files to {@code foms/data/export}
+ * for other tools, through a streaming {@link CSVWriter}; staff, menu items and branches are written in the
+ * format of the seed files, so an export can be imported again.
+ *
+ * <p>Files are read with a streaming {@link CSVReader}, which handles quoted fields. The staff list is
+ * read once for both the users and the branch users, and the branch of each row is looked up in the name
+ * index of {@link BranchStorage}.
  */
 public class CSVDataService implements IFileDataService {
 
     /**
      * The filename of the CSV file containing the staff list.
      */
-    private final String userFilename = "foms/data/staff_list.csv";
+    private static final String userFilename = "foms/data/staff_list.csv";
     /**
      * The filename of the menu list CSV file.
      */
@@ -44,6 +62,81 @@ public class CSVDataService implements IFileDataService {
      */
     private final String branchFilename = "foms/data/branch_list.csv";
 
+    /**
+     * The path to the exported orders.
+     */
+    private static final String orderExportPath = "foms/data/export/orders.csv";
+    /**
+     * The path to the exported order history, of stored and archived orders.
+     */
+    private static final String orderHistoryExportPath = "foms/data/export/order_history.csv";
+    /**
+     * The path to the exported users.
+     */
+    private static final String userExportPath = "foms/data/export/users.csv";
+    /**
+     * The path to the exported branch users.
+     */
+    private static final String branchUserExportPath = "foms/data/export/branch_users.csv";
+    /**
+     * The path to the exported menu items.
+     */
+    private static final String menuExportPath = "foms/data/export/menu_list.csv";
+    /**
+     * The path to the exported payment methods.
+     */
+    private static final String paymentMethodExportPath = "foms/data/export/payment_methods.csv";
+    /**
+     * The path to the exported branches.
+     */
+    private static final String branchExportPath = "foms/data/export/branch_list.csv";
+    /**
+     * The path to the exported accounts.
+     */
+    private static final String passwordExportPath = "foms/data/export/passwords.csv";
+
+    /**
+     * The columns of the exported orders.
+     */
+    private static final String[] orderHeader = { "Order ID", "Branch ID", "Order Type", "Status", "Order Time", "Ready Time",
+            "Total Price", "Item Name", "Category", "Quantity", "Price", "Special Request" };
+    /**
+     * The columns of the staff list.
+     */
+    private static final String[] staffHeader = { "Name", "Staff Login ID", "Role", "Gender", "Age", "Branch" };
+    /**
+     * The columns of the menu list.
+     */
+    private static final String[] menuHeader = { "Name", "Price", "Branch", "Category", "Availability", "Description" };
+    /**
+     * The columns of the exported payment methods.
+     */
+    private static final String[] paymentMethodHeader = { "Payment Method", "Type" };
+    /**
+     * The columns of the branch list.
+     */
+    private static final String[] branchHeader = { "Name", "Location", "Staff Quota" };
+    /**
+     * The columns of the exported accounts.
+     */
+    private static final String[] passwordHeader = { "Login ID", "Password" };
+
+    /**
+     * Writes the rows of a single record of a CSV file.
+     *
+     * @param <V> the type of record
+     */
+    private interface RecordWriter<V> {
+        /**
+         * Writes the rows of a record.
+         *
+         * @param csv the file to write to
+         * @param value the record to write
+         * @throws IOException if the record cannot be written
+         */
+        void write(CSVWriter csv, V value) throws IOException;
+    }
+
     /**
      * Imports order data from a CSV file.
      * @return a map of orders indexed by their ID.
@@ -54,120 +147,123 @@ public class CSVDataService implements IFileDataService {
     }
 
     /**
-     * Exports order data to a CSV file.
+     * Exports order data to a CSV file in {@code foms/data/export}, one row per order item.
      * @param hashMap the data to export.
      * @return true if export is successful.
-     * @throws UnsupportedOperationException since the method is not implemented.
      */
     public boolean exportOrderData(HashMap<Integer, Order> hashMap) {
-        throw new UnsupportedOperationException("Not implemented.");
+        return exportHelper(orderExportPath, orderHeader, hashMap.values(), CSVDataService::writeOrder);
     }
 
     /**
-     * Imports user data from a specified CSV file.
-     * @return a HashMap of User objects, keyed by their login IDs.
+     * Imports user data from a specified CSV file: the users of the staff list that are not branch users.
+     * @return a HashMap of User objects, keyed by their login IDs, or null if the staff list does not exist.
      */
     public HashMap<String, User> importUserData() {
-        File file = new File(userFilename);
-        if (!file.exists()) {
-            System.err.println("Error: The file " + userFilename + " does not exist.");
-            return null;
-        }
-
-        HashMap<String, User> users = new HashMap<>();
-        try (BufferedReader br = new BufferedReader(new FileReader(userFilename))) {
-            String line;
-            br.readLine(); // Skip the header row
-            while ((line = br.readLine()) != null) {
-                String[] userData = line.split(",");
-                String name = userData[0].trim();
-                String staffLoginID = userData[1].trim();
-                String role = userData[2].trim();
-                String gender = userData[3].trim();
-                int age = Integer.parseInt(userData[4].trim());
-                Gender enumGender = "M".equals(gender) ? Gender.MALE : Gender.FEMALE;
-
-                User user = null;
-                switch (role) {
-                    case "S":
-                        break;
-                    case "M":
-                        break;
-                    case "A":
-                        user = new Admin(name, staffLoginID, enumGender, age);
-                        break;
-                    default:
-                        throw new IllegalArgumentException("Unsupported role: " + role);
-                }
-                if (user != null) {
-                    users.put(staffLoginID, user);
-                }
-            }
-        } catch (Exception e) {
-            System.err.println("Error importing employees: " + e.getMessage());
-            e.printStackTrace();
-        }
-
-        return users;
+        StaffList staffList = importStaffList();
+        return staffList == null ? null : staffList.getUsers();
     }
 
     /**
-     * Exports user data to a CSV file.
+     * Exports user data to a CSV file in {@code foms/data/export}, in the format of the staff list.
      * @param hashMap the data to export.
      * @return true if export is successful.
-     * @throws UnsupportedOperationException since the method is not implemented.
      */
     public boolean exportUserData(HashMap<String, User> hashMap) {
-        throw new UnsupportedOperationException("Not implemented.");
+        HashMap<Integer, String> branchNames = branchNames();
+        return exportHelper(userExportPath, staffHeader, hashMap.values(), (csv, user) -> writeUser(csv, user, branchNames));
     }
 
     /**
-     * Imports BranchUser data from a CSV file.
-     * @return a HashMap of BranchUser objects, keyed by their login IDs.
+     * Imports BranchUser data from a CSV file: the staff and managers of the staff list.
+     * @return a HashMap of BranchUser objects, keyed by their login IDs, or null if the staff list does not exist.
      */
     public HashMap<String, BranchUser> importBranchUserData() {
+        StaffList staffList = importStaffList();
+        return staffList == null ? null : staffList.getBranchUsers();
+    }
+
+    /**
+     * The users and branch users of the staff list, read together in a single pass.
+     */
+    public static class StaffList {
+        /**
+         * The users that are not branch users, keyed by login ID.
+         */
+        private final HashMap<String, User> users;
+        /**
+         * The branch users, keyed by login ID.
+         */
+        private final HashMap<String, BranchUser> branchUsers;
+
+        /**
+         * Constructs a StaffList.
+         * @param users the users that are not branch users, keyed by login ID.
+         * @param branchUsers the branch users, keyed by login ID.
+         */
+        StaffList(HashMap<String, User> users, HashMap<String, BranchUser> branchUsers) {
+            this.users = users;
+            this.branchUsers = branchUsers;
+        }
+
+        /**
+         * Gets the users that are not branch users, such as admins.
+         * @return the users, keyed by login ID.
+         */
+        public HashMap<String, User> getUsers() {
+            return users;
+        }
+
+        /**
+         * Gets the branch users: the staff and managers.
+         * @return the branch users, keyed by login ID.
+         */
+        public HashMap<String, BranchUser> getBranchUsers() {
+            return branchUsers;
+        }
+    }
+
+    /**
+     * Reads the staff list into the users and branch users it holds, in a single pass. Staff and
+     * managers are branch users, of the branch named in their row; admins are the other users.
+     * @return the users and branch users, or null if the staff list does not exist.
+     */
+    public StaffList importStaffList() {
         File file = new File(userFilename);
         if (!file.exists()) {
             System.err.println("Error: The file " + userFilename + " does not exist.");
             return null;
         }
 
+        HashMap<String, User> users = new HashMap<>();
         HashMap<String, BranchUser> branchUsers = new HashMap<>();
-        try (BufferedReader br = new BufferedReader(new FileReader(userFilename))) {
-            String line;
-            br.readLine(); // Skip the header row
-            while ((line = br.readLine()) != null) {
-                String[] userData = line.split(",");
-                String name = userData[0].trim();
-                String staffLoginID = userData[1].trim();
-                String role = userData[2].trim();
-                String gender = userData[3].trim();
-                int age = Integer.parseInt(userData[4].trim());
-                Gender enumGender = "M".equals(gender) ? Gender.MALE : Gender.FEMALE;
+        try (CSVReader csv = new CSVReader(userFilename)) {
+            csv.next(); // Skip the header row
+            while (csv.next()) {
+                String name = csv.get(0);
+                String staffLoginID = csv.get(1);
+                String role = csv.get(2);
+                Gender enumGender = "M".equals(csv.get(3)) ? Gender.MALE : Gender.FEMALE;
+                int age = csv.getInt(4);
 
                 User user;
-                int branchID = -1; // default for admin
-                if (!"A".equals(role)) {
-                    String branchName = userData[5].trim();
-                    Branch branch = BranchStorage.get(branchName);
-                    branchID = branch != null ? branch.getID() : -1;
-                }
-
                 switch (role) {
                     case "S":
-                        user = new BranchUser(name, staffLoginID, Role.STAFF, enumGender, age, branchID);
+                        user = new BranchUser(name, staffLoginID, Role.STAFF, enumGender, age, branchIDOf(csv.get(5)));
                         break;
                     case "M":
-                        user = new BranchUser(name, staffLoginID, Role.BRANCHMANAGER, enumGender, age, branchID);
+                        user = new BranchUser(name, staffLoginID, Role.BRANCHMANAGER, enumGender, age, branchIDOf(csv.get(5)));
                         break;
                     case "A":
                         user = new Admin(name, staffLoginID, enumGender, age);
                         break;
                     default:
-                        throw new IllegalArgumentException("Unsupported role: " + role);
+                        throw new IllegalArgumentException("Unsupported role in row " + csv.getRecordNumber() + ": " + role);
                 }
                 if (user instanceof BranchUser) {
                     branchUsers.put(staffLoginID, (BranchUser) user);
+                } else {
+                    users.put(staffLoginID, user);
                 }
             }
         } catch (Exception e) {
@@ -175,41 +271,38 @@ public class CSVDataService implements IFileDataService {
             e.printStackTrace();
         }
 
-        return branchUsers;
+        return new StaffList(users, branchUsers);
     }
 
     /**
-     * Exports BranchUser data to a CSV file.
+     * Exports BranchUser data to a CSV file in {@code foms/data/export}, in the format of the staff list.
      * @param hashMap the data to export.
      * @return true if export is successful.
-     * @throws UnsupportedOperationException since the method is not implemented.
      */
     public boolean exportBranchUserData(HashMap<String, BranchUser> hashMap) {
-        throw new UnsupportedOperationException("Not implemented.");
+        HashMap<Integer, String> branchNames = branchNames();
+        return exportHelper(branchUserExportPath, staffHeader, hashMap.values(), (csv, user) -> writeUser(csv, user, branchNames));
     }
 
     /**
      * Imports menu data from a CSV file and returns a map of menu items indexed by item ID.
+     * Items are numbered in file order from 1, which {@link stores.BranchMenuItemStorage} seeds its item
+     * ID sequence from.
      * @return HashMap of menu items.
      */
     public HashMap<Integer, BranchMenuItem> importMenuData() {
         HashMap<Integer, BranchMenuItem> menuItems = new HashMap<>();
-        try (BufferedReader br = new BufferedReader(new FileReader(menuFilename))) {
-            String line;
-            br.readLine(); // Skip the header row
+        try (CSVReader csv = new CSVReader(menuFilename)) {
+            csv.next(); // Skip the header row
             int count = 0;
 
-            while ((line = br.readLine()) != null) {
-                String[] menuItemData = line.split(",");
-                String itemName = menuItemData[0].trim();
-                double price = Double.parseDouble(menuItemData[1].trim());
-                String branchName = menuItemData[2].trim();
-                String category = menuItemData[3].trim();
-                int availability = Integer.parseInt(menuItemData[4].trim());
-                String description = menuItemData[5].trim();
-
-                Branch branch = BranchStorage.get(branchName);
-                int branchID = branch != null ? branch.getID() : -1;
+            while (csv.next()) {
+                String itemName = csv.get(0);
+                double price = csv.getDouble(1);
+                int branchID = branchIDOf(csv.get(2));
+                String category = csv.get(3);
+                int availability = csv.getInt(4);
+                String description = csv.get(5);
 
                 count++;
                 BranchMenuItem item = new BranchMenuItem(itemName, count, category, price, availability, description, branchID);
@@ -224,13 +317,13 @@ public class CSVDataService implements IFileDataService {
     }
 
     /**
-     * Exports menu data to a CSV file.
+     * Exports menu data to a CSV file in {@code foms/data/export}, in the format of the menu list.
      * @param hashMap the data to export.
      * @return true if export is successful.
-     * @throws UnsupportedOperationException since the method is not implemented.
      */
     public boolean exportMenuData(HashMap<Integer, BranchMenuItem> hashMap) {
-        throw new UnsupportedOperationException("Not implemented.");
+        HashMap<Integer, String> branchNames = branchNames();
+        return exportHelper(menuExportPath, menuHeader, hashMap.values(), (csv, item) -> writeMenuItem(csv, item, branchNames));
     }
 
     /**
@@ -243,13 +336,12 @@ public class CSVDataService implements IFileDataService {
     }
 
     /**
-     * Exports payment method data to a CSV file.
+     * Exports payment method data to a CSV file in {@code foms/data/export}.
      * @param hashMap the data to export.
      * @return true if export is successful.
-     * @throws UnsupportedOperationException since the method is not implemented.
      */
     public boolean exportPaymentMethodData(HashMap<String, PaymentMethod> hashMap) {
-        throw new UnsupportedOperationException("Not implemented.");
+        return exportHelper(paymentMethodExportPath, paymentMethodHeader, hashMap.values(), CSVDataService::writePaymentMethod);
     }
 
     /**
@@ -258,15 +350,13 @@ public class CSVDataService implements IFileDataService {
      */
     public HashMap<Integer, Branch> importBranchData() {
         HashMap<Integer, Branch> branches = new HashMap<>();
-        try (BufferedReader br = new BufferedReader(new FileReader(branchFilename))) {
-            String line;
-            br.readLine(); // Skip the header row
+        try (CSVReader csv = new CSVReader(branchFilename)) {
+            csv.next(); // Skip the header row
             int count = 0;
-            while ((line = br.readLine()) != null) {
-                String[] branchData = line.split(",");
-                String name = branchData[0].trim();
-                String location = branchData[1].trim();
-                int staffQuota = Integer.parseInt(branchData[2].trim());
+            while (csv.next()) {
+                String name = csv.get(0);
+                String location = csv.get(1);
+                int staffQuota = csv.getInt(2);
                 count++;
                 Branch branch = new Branch(count, name, location, staffQuota);
                 branches.put(count, branch);
@@ -279,13 +369,12 @@ public class CSVDataService implements IFileDataService {
     }
 
     /**
-     * Exports branch data to a CSV file.
+     * Exports branch data to a CSV file in {@code foms/data/export}, in the format of the branch list.
      * @param hashMap the data to export.
      * @return true if export is successful.
-     * @throws UnsupportedOperationException since the method is not implemented.
      */
     public boolean exportBranchData(HashMap<Integer, Branch> hashMap) {
-        throw new UnsupportedOperationException("Not implemented.");
+        return exportHelper(branchExportPath, branchHeader, hashMap.values(), CSVDataService::writeBranch);
     }
 
     /**
@@ -298,12 +387,216 @@ public class CSVDataService implements IFileDataService {
     }
 
     /**
-     * Exports password data to a CSV file.
+     * Looks up the ID of a branch by name, through the name index of {@link BranchStorage}.
+     * @param branchName the name of the branch.
+     * @return the ID of the branch, or -1 if there is no branch with the name.
+     */
+    private static int branchIDOf(String branchName) {
+        Branch branch = BranchStorage.get(branchName);
+        return branch != null ? branch.getID() : -1;
+    }
+
+    /**
+     * Exports password data to a CSV file in {@code foms/data/export}.
      * @param hashMap the data to export.
      * @return true if export is successful.
-     * @throws UnsupportedOperationException since the method is not implemented.
      */
     public boolean exportPasswordData(HashMap<String, Account> hashMap) {
-        throw new UnsupportedOperationException("Not implemented.");
+        return exportHelper(passwordExportPath, passwordHeader, hashMap.values(), CSVDataService::writeAccount);
+    }
+
+    /**
+     * Exports every stored and archived order to a CSV file, one row per order item. The orders are
+     * written as they are read, and archived orders are read in place from the archive, so the export
+     * runs in bounded memory however many orders there are.
+     * @return true if export is successful.
+     */
+    public boolean exportOrderHistory() {
+        try (CSVWriter csv = new CSVWriter(orderHistoryExportPath, orderHeader)) {
+            for (Order order : OrderStorage.getAll()) {
+                writeOrder(csv, order);
+            }
+            IOException[] failure = new IOException[1];
+            OrderArchive.scanRecords(null, null, null, record -> {
+                if (failure[0] == null) {
+                    try {
+                        writeOrder(csv, record.getOrderID(), record.getBranchID(), record.getOrderType(), record.getOrderStatus(),
+                                record.getOrderTime(), record.getReadyTime(), record.getTotalPrice(), record.getOrderItems());
+                    } catch (IOException e) {
+                        failure[0] = e;
+                    }
+                }
+            });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+            csv.commit();
+            return true;
+        } catch (IOException e) {
+            System.out.println("Error saving data to " + orderHistoryExportPath + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Exports the stored users, branch users, menu items, payment methods and branches, and the order
+     * history, to CSV files in {@code foms/data/export}. Passwords are left out, and are only exported
+     * by {@link #exportPasswordData(HashMap)}.
+     * @return true if every export is successful.
+     */
+    public boolean exportAll() {
+        HashMap<Integer, String> branchNames = branchNames();
+        boolean exported = exportHelper(userExportPath, staffHeader, UserStorage.snapshot(), (csv, user) -> writeUser(csv, user, branchNames));
+        exported &= exportHelper(branchUserExportPath, staffHeader, BranchUserStorage.snapshot(), (csv, user) -> writeUser(csv, user, branchNames));
+        exported &= exportHelper(menuExportPath, menuHeader, BranchMenuItemStorage.snapshot(), (csv, item) -> writeMenuItem(csv, item, branchNames));
+        exported &= exportHelper(paymentMethodExportPath, paymentMethodHeader, PaymentMethodStorage.snapshot(), CSVDataService::writePaymentMethod);
+        exported &= exportHelper(branchExportPath, branchHeader, BranchStorage.snapshot(), CSVDataService::writeBranch);
+        exported &= exportOrderHistory();
+        return exported;
+    }
+
+    /**
+     * Helper method to handle the export of CSV data. The file only replaces an earlier export once it
+     * has been written completely.
+     *
+     * @param <V> the type of record
+     * @param exportPathString The path to the file to which to export data.
+     * @param header The names of the columns.
+     * @param values The records to write.
+     * @param writer Writes the rows of a single record.
+     * @return True if the export is successful, false otherwise.
+     */
+    private static <V> boolean exportHelper(String exportPathString, String[] header, Collection<V> values, RecordWriter<V> writer) {
+        try (CSVWriter csv = new CSVWriter(exportPathString, header)) {
+            for (V value : values) {
+                writer.write(csv, value);
+            }
+            csv.commit();
+            return true;
+        } catch (IOException e) {
+            System.out.println("Error saving data to " + exportPathString + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Writes an order, one row per order item, or a single row without item fields if it has no items.
+     *
+     * @param csv the file to write to
+     * @param order the order
+     * @throws IOException if the file cannot be written
+     */
+    private static void writeOrder(CSVWriter csv, Order order) throws IOException {
+        writeOrder(csv, order.getOrderID(), order.getBranchID(), order.getOrderType(), order.getOrderStatus(),
+                order.getOrderTime(), order.getReadyTime(), order.getTotalPrice(), order.getOrderItems());
+    }
+
+    /**
+     * Writes the fields of an order, one row per order item, or a single row without item fields if it has no items.
+     *
+     * @param csv the file to write to
+     * @param orderID the ID of the order
+     * @param branchID the ID of the branch of the order
+     * @param orderType the type of the order
+     * @param status the status of the order
+     * @param orderTime the time the order was placed
+     * @param readyTime the time the order was ready, or null
+     * @param totalPrice the total price of the order
+     * @param items the items of the order
+     * @throws IOException if the file cannot be written
+     */
+    private static void writeOrder(CSVWriter csv, int orderID, int branchID, OrderType orderType, OrderStatus status,
+            LocalDateTime orderTime, LocalDateTime readyTime, double totalPrice, List<OrderItem> items) throws IOException {
+        int rows = Math.max(1, items.size());
+        for (int i = 0; i < rows; i++) {
+            csv.field(orderID).field(branchID).field(orderType.name()).field(status.name())
+                    .field(orderTime).field(readyTime).field(totalPrice);
+            if (i < items.size()) {
+                OrderItem item = items.get(i);
+                csv.field(item.getItemName()).field(item.getCategory()).field(item.getQuantity())
+                        .field(item.getPrice()).field(item.getSpecialRequest());
+            } else {
+                csv.field((String) null).field((String) null).field((String) null).field((String) null).field((String) null);
+            }
+            csv.endRecord();
+        }
+    }
+
+    /**
+     * Writes a user in the format of the staff list.
+     *
+     * @param csv the file to write to
+     * @param user the user
+     * @param branchNames the names of the branches, keyed by ID
+     * @throws IOException if the file cannot be written
+     */
+    private static void writeUser(CSVWriter csv, User user, HashMap<Integer, String> branchNames) throws IOException {
+        String role = user.getRole() == Role.STAFF ? "S" : user.getRole() == Role.BRANCHMANAGER ? "M" : "A";
+        csv.field(user.getName()).field(user.getLoginID()).field(role)
+                .field(user.getGender() == Gender.MALE ? "M" : "F").field(user.getAge())
+                .field(user instanceof BranchUser ? branchNames.get(((BranchUser) user).getBranchID()) : null);
+        csv.endRecord();
+    }
+
+    /**
+     * Writes a menu item in the format of the menu list.
+     *
+     * @param csv the file to write to
+     * @param item the menu item
+     * @param branchNames the names of the branches, keyed by ID
+     * @throws IOException if the file cannot be written
+     */
+    private static void writeMenuItem(CSVWriter csv, BranchMenuItem item, HashMap<Integer, String> branchNames) throws IOException {
+        csv.field(item.getName()).field(item.getPrice()).field(branchNames.get(item.getBranchID()))
+                .field(item.getCategory()).field(item.getAvailability()).field(item.getDescription());
+        csv.endRecord();
+    }
+
+    /**
+     * Writes a payment method.
+     *
+     * @param csv the file to write to
+     * @param paymentMethod the payment method
+     * @throws IOException if the file cannot be written
+     */
+    private static void writePaymentMethod(CSVWriter csv, PaymentMethod paymentMethod) throws IOException {
+        csv.field(paymentMethod.getPaymentMethod()).field(paymentMethod.getType());
+        csv.endRecord();
+    }
+
+    /**
+     * Writes a branch in the format of the branch list.
+     *
+     * @param csv the file to write to
+     * @param branch the branch
+     * @throws IOException if the file cannot be written
+     */
+    private static void writeBranch(CSVWriter csv, Branch branch) throws IOException {
+        csv.field(branch.getName()).field(branch.getLocation()).field(branch.getStaffQuota());
+        csv.endRecord();
+    }
+
+    /**
+     * Writes an account.
+     *
+     * @param csv the file to write to
+     * @param account the account
+     * @throws IOException if the file cannot be written
+     */
+    private static void writeAccount(CSVWriter csv, Account account) throws IOException {
+        csv.field(account.getLoginID()).field(account.getPassword());
+        csv.endRecord();
+    }
+
+    /**
+     * Builds an index of the names of the stored branches by ID.
+     * @return the branch names, keyed by branch ID.
+     */
+    private static HashMap<Integer, String> branchNames() {
+        HashMap<Integer, String> branchNames = new HashMap<>();
+        for (Branch branch : BranchStorage.snapshot()) {
+            branchNames.put(branch.getID(), branch.getName());
+        }
+        return branchNames;
     }
 }
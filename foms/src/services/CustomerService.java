@@ -3,14 +3,19 @@ package services;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 import enums.OrderStatus;
 import interfaces.ICustomerService;
+import interfaces.IPaymentService;
 import models.BranchMenuItem;
+import models.Cart;
 import models.Order;
 import models.PaymentMethod;
 import stores.BranchMenuItemStorage;
 import stores.BranchStorage;
+import stores.InventoryStorage;
 import stores.OrderStorage;
 import stores.PaymentMethodStorage;
 
@@ -19,17 +24,23 @@ import stores.PaymentMethodStorage;
  * methods to interact with customer-related functionality in the system.
  */
 public class CustomerService implements ICustomerService{
+
+    /**
+     * The payment service that checkouts are paid through, shared by every terminal so that the
+     * number of charges in progress at the gateway is bounded across all of them.
+     */
+    private static final IPaymentService paymentService = new PaymentService(new LocalPaymentGateway());
     
     /**
-     * Retrieves the order with the specified OrderID.
+     * Retrieves the order of a branch with the specified OrderID.
      *
+     * @param branchID The ID of the branch.
      * @param OrderID The ID of the order to retrieve.
-     * @return The Order object with the specified OrderID, or null if not found.
+     * @return The Order object with the specified OrderID, or null if the branch has no such order.
      */
     @Override
-    public Order getOrder(int OrderID) {
-        Order order = OrderStorage.get(OrderID);
-        return order;
+    public Order getOrder(int branchID, int OrderID) {
+        return OrderStorage.get(branchID, OrderID);
     }
 
     /**
@@ -46,54 +57,35 @@ public class CustomerService implements ICustomerService{
      * Retrieves a list of branch menu items for the specified BranchID.
      *
      * @param BranchID The ID of the branch to retrieve menu items for.
-     * @return A list of BranchMenuItem objects for the specified BranchID, or null if not found.
+     * @return An unmodifiable list of BranchMenuItem objects for the specified BranchID, in item ID order.
      */
     @Override
     public List<BranchMenuItem> getBranchMenuItemList(int BranchID) {
-        BranchMenuItem[] items = BranchMenuItemStorage.getAll();
-        List<BranchMenuItem> branchItems = new ArrayList<>(); 
-        if (items != null) {
-            for (BranchMenuItem item : items) {
-                if(item.getBranchID() == BranchID){
-                    branchItems.add(item);
-                }
-            }
-            return branchItems;
-        } else {
-            return null;
-        }
+        return BranchMenuItemStorage.getByBranch(BranchID);
     }
 
     /**
-     * Collects the order with the specified OrderID.
+     * Collects the order of a branch with the specified OrderID.
      *
+     * @param branchID The ID of the branch.
      * @param OrderID The ID of the order to collect.
      * @return true if the order was successfully collected, false otherwise.
      */
     @Override
-    public Boolean collectOrder(int OrderID) {
-        Order order = OrderStorage.get(OrderID);
-        if (order != null) {
-            OrderStatus status = order.getOrderStatus();
-            if (status == OrderStatus.READY) {
-                order.completeOrder();
-                return true;
-            } else {
-                return false;
-            }
-        } else {
-            return false;
-        }
+    public Boolean collectOrder(int branchID, int OrderID) {
+        // Checked and changed as one step, so an order expiring at the same moment is not also collected
+        return OrderStorage.compareAndSetStatus(branchID, OrderID, OrderStatus.READY, OrderStatus.COMPLETED);
     }
 
     /**
      * Retrieves the next available OrderID.
+     * Each call allocates a new OrderID from the order ID sequence, so it is never handed out twice.
      *
      * @return The next available OrderID.
      */
     @Override
     public int getNextOrderID() {
-        return OrderStorage.getAll().length + 1;
+        return OrderStorage.nextOrderID();
     }
 
     /**
@@ -125,13 +117,106 @@ public class CustomerService implements ICustomerService{
      * @return The BranchMenuItem object with the specified branchID and itemName, or null if not found.
      */
     public BranchMenuItem getBranchMenuItem(int branchID, String itemName){
-        List<BranchMenuItem> items = getBranchMenuItemList(branchID);
-        for (BranchMenuItem item : items) {
-            if(item.getName().equals(itemName)){
-                return item;
-            }
+        return BranchMenuItemStorage.get(branchID, itemName);
+    }
+
+    /**
+     * Reserves stock of a menu item for a cart, opening a reservation for the cart if it has none.
+     *
+     * @param cart The cart to reserve the stock for.
+     * @param branchID The ID of the branch the cart orders from.
+     * @param item The menu item to reserve.
+     * @param quantity The quantity to reserve.
+     * @return True if the stock was reserved, false if not enough of it is free.
+     */
+    @Override
+    public boolean reserveItem(Cart cart, int branchID, BranchMenuItem item, int quantity) {
+        if (cart.getReservation() == null) {
+            cart.setReservation(InventoryStorage.open(branchID));
         }
-        return null;
+        return InventoryStorage.reserve(cart.getReservation(), item.getItemID(), quantity);
+    }
+
+    /**
+     * Releases stock of a menu item reserved for a cart.
+     *
+     * @param cart The cart holding the stock.
+     * @param item The menu item to release, which may be null if it has been removed from the menu.
+     * @param quantity The quantity to release.
+     */
+    @Override
+    public void releaseItem(Cart cart, BranchMenuItem item, int quantity) {
+        if (item != null) {
+            InventoryStorage.release(cart.getReservation(), item.getItemID(), quantity);
+        }
+    }
+
+    /**
+     * Releases all stock reserved for a cart.
+     *
+     * @param cart The cart holding the stock.
+     */
+    @Override
+    public void releaseCart(Cart cart) {
+        InventoryStorage.releaseAll(cart.getReservation());
+        cart.setReservation(null);
+    }
+
+    /**
+     * Keeps the stock reserved for a cart while it is being paid for, and starts a new checkout of the cart
+     * with its own idempotency key.
+     *
+     * @param cart The cart being checked out.
+     * @return True if the stock is held, false if the reservation expired and its stock has since been taken.
+     */
+    @Override
+    public boolean holdCart(Cart cart) {
+        if (!InventoryStorage.hold(cart.getReservation())) {
+            return false;
+        }
+        cart.setPaymentKey("cart-" + UUID.randomUUID());
+        return true;
+    }
+
+    /**
+     * Pays for a cart. The payment is identified by the checkout started by {@link #holdCart(Cart)}, so
+     * retrying the payment does not charge it twice, while every checkout is charged anew.
+     *
+     * @param cart The cart being checked out.
+     * @param method The payment method to charge.
+     * @return A future completed with the ID of the transaction, or completed exceptionally if the payment failed.
+     */
+    @Override
+    public CompletableFuture<String> pay(Cart cart, PaymentMethod method) {
+        return paymentService.pay(cart.getPaymentKey(), method, cart.getTotalPrice());
+    }
+
+    /**
+     * Refunds the payment for a cart, so that the cart may be paid for again.
+     *
+     * @param cart The cart that was paid for.
+     * @param transactionID The ID of the transaction of the payment.
+     * @return A future completed once the payment is refunded, or completed exceptionally if the refund failed.
+     */
+    @Override
+    public CompletableFuture<Void> refund(Cart cart, String transactionID) {
+        return paymentService.refund(cart.getPaymentKey(), transactionID);
+    }
+
+    /**
+     * Commits the stock reserved for a cart.
+     *
+     * @param cart The cart being checked out.
+     * @return True if the stock was committed, false otherwise.
+     */
+    @Override
+    public boolean commitCart(Cart cart) {
+        if (InventoryStorage.commit(cart.getReservation())) {
+            cart.setReservation(null);
+            cart.setPaymentKey(null);
+            return true;
+        }
+        return false;
     }
 
     /**
@@ -142,7 +227,7 @@ public class CustomerService implements ICustomerService{
      */
     public List<PaymentMethod> getPaymentMethods(String type) {
         List<PaymentMethod> paymentMethods = new ArrayList<>();
-        PaymentMethod[] methods = PaymentMethodStorage.getAll();
+        List<PaymentMethod> methods = PaymentMethodStorage.snapshot();
         for (PaymentMethod method : methods) {
             if(method.getType().equals(type)){
                 paymentMethods.add(method);
@@ -152,24 +237,25 @@ public class CustomerService implements ICustomerService{
     }
 
     /**
-     * Retrieves the ready time of the order with the specified OrderID.
+     * Retrieves the ready time of the order of a branch with the specified OrderID.
      *
+     * @param branchID The ID of the branch.
      * @param OrderID The ID of the order.
-     * @return The ready time of the order with the specified OrderID.
+     * @return The ready time of the order with the specified OrderID, or null if the branch has no such order.
      */
-    public LocalDateTime getReadyTime(int OrderID) {
-        Order order = OrderStorage.get(OrderID);
-        return order.getReadyTime();
+    public LocalDateTime getReadyTime(int branchID, int OrderID) {
+        Order order = OrderStorage.get(branchID, OrderID);
+        return order == null ? null : order.getReadyTime();
     }
 
     /**
-     * Sets the status of the order with the specified OrderID to CANCELLED.
+     * Sets the status of the order with the specified OrderID to CANCELLED if it is still being prepared.
      *
+     * @param branchID The ID of the branch.
      * @param OrderID The ID of the order.
+     * @return True if the order was cancelled, false if the branch has no such order or it is no longer being prepared.
      */
-    public void setOrderStatus(int OrderID) {
-        Order order = OrderStorage.get(OrderID);
-        order.setOrderStatus(OrderStatus.CANCELLED);
-        OrderStorage.update(order);
+    public Boolean setOrderStatus(int branchID, int OrderID) {
+        return OrderStorage.compareAndSetStatus(branchID, OrderID, OrderStatus.PREPARING, OrderStatus.CANCELLED);
     }
 }
@@ -0,0 +1,130 @@
+package services;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import interfaces.IPaymentGateway;
+import models.PaymentMethod;
+import utils.exceptions.PaymentFailedException;
+
+/**
+ * <p>A stand-in for a real payment gateway, which approves charges locally after a simulated latency.
+ *
+ * <p>A configurable fraction of charges fails as if the gateway were unavailable, so that retries
+ * and failures can be exercised. The latency and failure rate default to the system properties
+ * {@code foms.payment.latencyMillis} (50) and {@code foms.payment.failureRate} (0). Charges wait on a
+ * scheduler rather than on a thread, so any number of charges can be in progress at once.
+ */
+public class LocalPaymentGateway implements IPaymentGateway {
+
+    /**
+     * Completes the charges once their latency has passed. Shared by every gateway.
+     */
+    private static final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "foms-payment-gateway");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * How long each charge takes, in milliseconds.
+     */
+    private final long latencyMillis;
+    /**
+     * The fraction of charges that fail, between 0 and 1.
+     */
+    private final double failureRate;
+    /**
+     * The transaction of each successful charge, keyed by idempotency key.
+     */
+    private final ConcurrentHashMap<String, String> transactions = new ConcurrentHashMap<>();
+    /**
+     * The transactions that have been refunded.
+     */
+    private final Set<String> refunded = ConcurrentHashMap.newKeySet();
+    /**
+     * The number of the next transaction.
+     */
+    private final AtomicLong nextTransaction = new AtomicLong(1);
+
+    /**
+     * Constructs a LocalPaymentGateway with the latency and failure rate of the system properties.
+     */
+    public LocalPaymentGateway() {
+        this(Long.getLong("foms.payment.latencyMillis", 50), Double.parseDouble(System.getProperty("foms.payment.failureRate", "0")));
+    }
+
+    /**
+     * Constructs a LocalPaymentGateway.
+     *
+     * @param latencyMillis how long each charge takes, in milliseconds
+     * @param failureRate the fraction of charges that fail, between 0 and 1
+     * @throws IllegalArgumentException if the latency is negative or the failure rate is not between 0 and 1
+     */
+    public LocalPaymentGateway(long latencyMillis, double failureRate) {
+        if (latencyMillis < 0 || failureRate < 0 || failureRate > 1) {
+            throw new IllegalArgumentException("Latency must not be negative and failure rate must be between 0 and 1.");
+        }
+        this.latencyMillis = latencyMillis;
+        this.failureRate = failureRate;
+    }
+
+    /**
+     * Charges an amount to a payment method after the simulated latency.
+     *
+     * @param idempotencyKey the key identifying the payment across retries
+     * @param method the payment method to charge
+     * @param amount the amount to charge
+     * @return a future completed with the ID of the transaction, or completed exceptionally with a
+     *         {@link PaymentFailedException} if the charge failed
+     */
+    @Override
+    public CompletableFuture<String> charge(String idempotencyKey, PaymentMethod method, double amount) {
+        CompletableFuture<String> result = new CompletableFuture<>();
+        scheduler.schedule(() -> {
+            String transaction = transactions.get(idempotencyKey);
+            if (transaction == null && ThreadLocalRandom.current().nextDouble() < failureRate) {
+                result.completeExceptionally(new PaymentFailedException(method.getPaymentMethod() + " payment gateway is unavailable."));
+                return;
+            }
+            result.complete(transactions.computeIfAbsent(idempotencyKey,
+                    key -> String.format("TXN%08d", nextTransaction.getAndIncrement())));
+        }, latencyMillis, TimeUnit.MILLISECONDS);
+        return result;
+    }
+
+    /**
+     * Refunds a charge after the simulated latency.
+     *
+     * @param transactionID the ID of the transaction of the charge
+     * @return a future completed once the charge is refunded, or completed exceptionally with a
+     *         {@link PaymentFailedException} if the refund failed or the transaction is unknown
+     */
+    @Override
+    public CompletableFuture<Void> refund(String transactionID) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        scheduler.schedule(() -> {
+            if (refunded.contains(transactionID)) {
+                result.complete(null);
+                return;
+            }
+            if (ThreadLocalRandom.current().nextDouble() < failureRate) {
+                result.completeExceptionally(new PaymentFailedException("Payment gateway is unavailable."));
+                return;
+            }
+            if (!transactions.values().remove(transactionID)) {
+                result.completeExceptionally(new PaymentFailedException("Unknown transaction " + transactionID + "."));
+                return;
+            }
+            refunded.add(transactionID);
+            result.complete(null);
+        }, latencyMillis, TimeUnit.MILLISECONDS);
+        return result;
+    }
+}
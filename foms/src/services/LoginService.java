@@ -2,10 +2,10 @@ package services;
 
 import java.util.NoSuchElementException;
 
+import interfaces.IAccountService;
 import interfaces.IAuthorisationService;
 import models.Account;
 import models.User;
-import stores.PasswordStorage;
 import stores.UserStorage;
 import utils.exceptions.AccountNotFoundException;
 import utils.exceptions.PasswordMismatchException;
@@ -17,6 +17,11 @@ import utils.exceptions.PasswordValidationException;
  * It implements the IAuthorisationService interface.
  */
 public class LoginService implements IAuthorisationService {
+
+    /**
+     * The shared keyed access to the user accounts.
+     */
+    private static final IAccountService accountService = new AccountService();
     
     /**
      * Method to login the user.
@@ -28,7 +33,7 @@ public class LoginService implements IAuthorisationService {
     @Override
     public boolean login(String staffLoginID, String password) {
         try {
-            Account user = PasswordStorage.get(staffLoginID);
+            Account user = accountService.findAccountByLoginID(staffLoginID);
             return authenticate(user, password);
         } catch (NoSuchElementException e) {
             return false;
@@ -76,8 +81,7 @@ public class LoginService implements IAuthorisationService {
             throw new PasswordValidationException("The new password is invalid. It cannot be null, empty, 'password', or the same as the previous password.");
         }
     
-        account.setPassword(newPassword);
-        PasswordStorage.update(account);
+        accountService.updatePassword(account, newPassword);
         return true;
     }
 
@@ -99,7 +103,7 @@ public class LoginService implements IAuthorisationService {
      * @return the Account object associated with the login ID, or null if no account is found
      */
     public Account getAccount(String loginID) {
-        return PasswordStorage.get(loginID);
+        return accountService.findAccountByLoginID(loginID);
     }
 
     /**
@@ -109,11 +113,6 @@ public class LoginService implements IAuthorisationService {
      * @return The account with the specified login ID, or null if not found.
      */
     public Account findAccountByLoginID(String loginID) {
-        for (Account account : PasswordStorage.getAll()) {
-            if (account.getLoginID().equals(loginID)) {
-                return account;
-            }
-        }
-        return null;
+        return accountService.findAccountByLoginID(loginID);
     }
 }
@@ -1,20 +1,26 @@
 package services;
 
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import enums.OrderStatus;
+import enums.OrderType;
+import interfaces.IAccountService;
 import interfaces.IManagerService;
 import models.Order;
 import models.User;
 import models.Account;
 import models.BranchMenuItem;
 import models.BranchUser;
+import models.SalesTotals;
 import stores.BranchMenuItemStorage;
 import stores.BranchStorage;
 import stores.BranchUserStorage;
+import stores.KitchenQueue;
 import stores.OrderStorage;
-import stores.PasswordStorage;
+import stores.SalesStorage;
 import utils.exceptions.AccountNotFoundException;
 import utils.exceptions.PasswordMismatchException;
 import utils.exceptions.PasswordValidationException;
@@ -30,57 +36,80 @@ import utils.exceptions.PasswordValidationException;
  */
 public class ManagerService implements IManagerService{
 
+    /**
+     * The shared keyed access to the user accounts.
+     */
+    private static final IAccountService accountService = new AccountService();
+
     /**
      * Retrieves a list of orders for a specific branch.
      *
      * @param branchID the ID of the branch
-     * @return a list of orders belonging to the specified branch, or null if no orders are found
+     * @return a list of orders belonging to the specified branch, in the order they were placed
      */
     @Override
     public List<Order> getOrders(int branchID) {
-        Order[] orders = OrderStorage.getAll();
-        List<Order> branchOrders = new ArrayList<>();
-        if (orders != null) {
-            for (Order order : orders) {
-                if (order.getBranchID() == branchID) {
-                    branchOrders.add(order);
-                }
-            }
-            return branchOrders;
-        }
-        return null;
+        return OrderStorage.getByBranch(branchID);
     }
 
     /**
-        * Retrieves the order with the specified order ID.
-        *
-        * @param orderID the ID of the order to retrieve
-        * @return the order with the specified ID, or null if no order is found
-        */
+     * Retrieves the orders of a specific branch that have the given status.
+     *
+     * @param branchID the ID of the branch
+     * @param status the status of the orders to retrieve
+     * @return a list of the matching orders, in the order they were placed
+     */
     @Override
-    public Order getOrder(int orderID) {
-        Order order = OrderStorage.get(orderID);
-        return order;
+    public List<Order> getOrders(int branchID, OrderStatus status) {
+        return OrderStorage.getByBranchAndStatus(branchID, status);
     }
 
     /**
-     * Updates the status of an order.
-     * 
-     * @param orderID the ID of the order to update
-     * @return true if the order status was successfully updated to "READY", false otherwise
+     * Retrieves the next orders the kitchen of a branch has to prepare, from the branch's kitchen queue.
+     *
+     * @param branchID the ID of the branch
+     * @param count the maximum number of orders to retrieve
+     * @return up to count orders being prepared, oldest first
      */
     @Override
-    public Boolean updateOrderStatus(int orderID) {
-        Order order = getOrder(orderID);
-        if (order != null) {
-            if(order.getOrderStatus() == OrderStatus.PREPARING){
-                order.setOrderStatus(OrderStatus.READY);
-                return true;
-            } else {
-                return false;
-            }
-        }
-        return false;
+    public List<Order> getPendingOrders(int branchID, int count) {
+        return KitchenQueue.peek(branchID, count);
+    }
+
+    /**
+     * Retrieves the number of orders in the kitchen queue of a branch.
+     *
+     * @param branchID the ID of the branch
+     * @return the number of orders being prepared
+     */
+    @Override
+    public int getPendingOrderCount(int branchID) {
+        return KitchenQueue.size(branchID);
+    }
+
+    /**
+     * Retrieves the order of a branch with the specified order ID.
+     *
+     * @param branchID the ID of the branch
+     * @param orderID the ID of the order to retrieve
+     * @return the order with the specified ID, or null if the branch has no such order
+     */
+    @Override
+    public Order getOrder(int branchID, int orderID) {
+        return OrderStorage.get(branchID, orderID);
+    }
+
+    /**
+     * Updates the status of an order of a branch to "READY" if it is currently in the "PREPARING" state.
+     * The check and the change are one step, so an order that has since moved on is left as it is.
+     *
+     * @param branchID the ID of the branch
+     * @param orderID the ID of the order
+     * @return true if the order status is successfully updated, false if the branch has no such order or it is no longer being prepared
+     */
+    @Override
+    public Boolean updateOrderStatus(int branchID, int orderID) {
+        return OrderStorage.compareAndSetStatus(branchID, orderID, OrderStatus.PREPARING, OrderStatus.READY);
     }
 
     /**
@@ -91,12 +120,7 @@ public class ManagerService implements IManagerService{
         */
     @Override
     public Account findAccountByLoginID(String loginID) {
-        for (Account account : PasswordStorage.getAll()) {
-            if (account.getLoginID().equals(loginID)) {
-                return account;
-            }
-        }
-        return null;
+        return accountService.findAccountByLoginID(loginID);
     }
 
     /**
@@ -123,8 +147,7 @@ public class ManagerService implements IManagerService{
             throw new PasswordValidationException("The new password is invalid. It cannot be null, empty, or 'password'.");
         }
     
-        account.setPassword(newPassword);
-        PasswordStorage.update(account);
+        accountService.updatePassword(account, newPassword);
     }
 
     /**
@@ -136,7 +159,7 @@ public class ManagerService implements IManagerService{
     @Override
     public List<BranchUser> getStaffList(int branchID) {
         List<BranchUser> staffList = new ArrayList<>();
-        BranchUser[] users = BranchUserStorage.getAll();
+        List<BranchUser> users = BranchUserStorage.snapshot();
         for (BranchUser user : users) {
             if (user.getBranchID() == branchID) {
                 staffList.add(user);
@@ -149,22 +172,11 @@ public class ManagerService implements IManagerService{
      * Retrieves a list of branch menu items based on the given branch ID.
      *
      * @param BranchID the ID of the branch
-     * @return a list of branch menu items
+     * @return an unmodifiable list of branch menu items, in item ID order
      */
     @Override
     public List<BranchMenuItem> getBranchMenuItemList(int BranchID) {
-        BranchMenuItem[] items = BranchMenuItemStorage.getAll();
-        List<BranchMenuItem> branchItems = new ArrayList<>(); 
-        if (items != null) {
-            for (BranchMenuItem item : items) {
-                if(item.getBranchID() == BranchID){
-                    branchItems.add(item);
-                }
-            }
-            return branchItems;
-        } else {
-            return null;
-        }
+        return BranchMenuItemStorage.getByBranch(BranchID);
     }
 
     /**
@@ -188,6 +200,17 @@ public class ManagerService implements IManagerService{
         BranchMenuItemStorage.update(item);
     }
 
+    /**
+        * Sets the availability of a branch menu item, without overwriting a sale of the item at the same moment.
+        *
+        * @param item the branch menu item to be restocked
+        * @param availability the new availability
+        */
+    @Override
+    public void setBranchMenuItemAvailability(BranchMenuItem item, int availability) {
+        BranchMenuItemStorage.setAvailability(item.getItemID(), availability);
+    }
+
     /**
      * Removes a branch menu item from the storage.
      *
@@ -210,62 +233,83 @@ public class ManagerService implements IManagerService{
     }
 
     /**
-     * Displays the menu categories.
+     * Displays the menu categories of a branch.
      *
-     * @return the number of menu categories displayed
+     * @param branchID the ID of the branch
+     * @return the number of menu categories displayed, plus one
      */
     @Override
-    public int displayMenuCategories() {
-        return BranchMenuItemStorage.displayMenuCategories();
+    public int displayMenuCategories(int branchID) {
+        return BranchMenuItemStorage.displayMenuCategories(branchID);
     }
 
     /**
-        * Adds a new category to the branch menu item storage.
+        * Adds a new category to the menu of a branch in the branch menu item storage.
         *
+        * @param branchID the ID of the branch
         * @param category the category to be added
         */
     @Override
-    public void addCategory(String category) {
-        BranchMenuItemStorage.addUniqueCategory(category);
+    public void addCategory(int branchID, String category) {
+        BranchMenuItemStorage.addUniqueCategory(branchID, category);
     }
 
     /**
-     * Retrieves a list of categories from the BranchMenuItemStorage.
+     * Retrieves the menu categories of a branch from the BranchMenuItemStorage.
      *
-     * @return a list of categories
+     * @param branchID the ID of the branch
+     * @return an unmodifiable list of categories, in the order they were first added
      */
     @Override
-    public List<String> getCategories() {
-        return BranchMenuItemStorage.getCategories();
+    public List<String> getCategories(int branchID) {
+        return BranchMenuItemStorage.getCategories(branchID);
     }
 
     /**
-     * Returns the next available item ID.
+     * Allocates the ID of a new menu item from the item ID sequence of {@link BranchMenuItemStorage}.
      * 
      * @return The next available item ID.
      */
     @Override
     public int getNextItemID() {
-        BranchMenuItem[] items = BranchMenuItemStorage.getAll();
-        int id = 0;
-        for(BranchMenuItem item : items){
-            if(item.getItemID() > id){
-                id = item.getItemID();
-            }
-        }
-        return id + 1;
+        return BranchMenuItemStorage.nextItemID();
     }
 
     /**
-     * Cancels an order with the specified order ID.
+     * Cancels an order of a branch by setting its status to "CANCELLED" if it is still in the "PREPARING" state.
      *
+     * @param branchID the ID of the branch
      * @param orderID the ID of the order to be cancelled
+     * @return true if the order was cancelled, false if the branch has no such order or it is no longer being prepared
      */
     @Override
-    public void cancelOrder(int orderID) {
-        Order order = getOrder(orderID);
-        if (order != null) {
-            order.setOrderStatus(OrderStatus.CANCELLED);
-        }
+    public Boolean cancelOrder(int branchID, int orderID) {
+        return OrderStorage.compareAndSetStatus(branchID, orderID, OrderStatus.PREPARING, OrderStatus.CANCELLED);
+    }
+
+    /**
+     * Retrieves the sales of a branch in a period, per order type, from the running sales totals.
+     *
+     * @param branchID the ID of the branch
+     * @param from the first day of the period, or null for no limit
+     * @param to the last day of the period, or null for no limit
+     * @return the sales totals of each order type with sales
+     */
+    @Override
+    public Map<OrderType, SalesTotals> getSalesByOrderType(int branchID, LocalDate from, LocalDate to) {
+        return SalesStorage.getByOrderType(branchID, from, to);
+    }
+
+    /**
+     * Retrieves the sales of a branch in a period, per day, from the running sales totals.
+     *
+     * @param branchID the ID of the branch
+     * @param from the first day of the period, or null for no limit
+     * @param to the last day of the period, or null for no limit
+     * @return the sales totals of each day with sales, in date order
+     */
+    @Override
+    public Map<LocalDate, SalesTotals> getSalesByDay(int branchID, LocalDate from, LocalDate to) {
+        return SalesStorage.getByDay(branchID, from, to);
     }
 }
@@ -0,0 +1,312 @@
+package services;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.zip.CRC32;
+
+import models.Order;
+import utils.BinaryCodec;
+
+/**
+ * <p>Maintains an append-only journal of order mutations next to the order snapshot file.
+ *
+ * <p>Every add, update and removal of an order is appended to the journal as a single record,
+ * so the cost of a mutation does not depend on how many orders are stored. The journal is
+ * folded into the snapshot at checkpoints, after which it is truncated.
+ *
+ * <p>Appended records are buffered in memory and written together by {@link #commit()}, with a single
+ * write and sync for the whole group.
+ *
+ * <p>Each record is laid out as {@code [length][operation][orderID][payload][crc32]}, where the
+ * payload is the order in the {@link BinaryCodec} format (empty for removals). A record that was
+ * only partially written when the process stopped fails its length or checksum check and is
+ * discarded on replay, so at most the last record is lost.
+ *
+ * <p>The journal also counts every add, update and removal ever appended to it as its version, which
+ * carries on across checkpoints: after the journal is emptied, it starts with a {@link #MARK} record
+ * holding the version reached, from which replay counts on. State derived from the orders can store
+ * the version it reflects, and tell from it whether the orders changed without it.
+ */
+public class OrderJournalService {
+
+    /**
+     * Operation code for an order that was added or updated.
+     */
+    public static final byte PUT = 1;
+    /**
+     * Operation code for an order that was removed.
+     */
+    public static final byte REMOVE = 2;
+    /**
+     * Operation code for the version of the journal when it was emptied, held in the payload.
+     */
+    public static final byte MARK = 3;
+
+    /**
+     * The path to the journal file.
+     */
+    private final String journalPath;
+    /**
+     * The stream that committed records are written to, opened lazily.
+     */
+    private FileOutputStream out;
+    /**
+     * The records appended since the last commit.
+     */
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    /**
+     * The number of records currently held in the journal.
+     */
+    private int recordCount;
+    /**
+     * The number of adds, updates and removals appended to the journal, including those folded into snapshots.
+     */
+    private long version;
+
+    /**
+     * Constructs an OrderJournalService for the journal file at the given path.
+     *
+     * @param journalPath the path to the journal file
+     */
+    public OrderJournalService(String journalPath) {
+        this.journalPath = journalPath;
+    }
+
+    /**
+     * Appends a single mutation record to the journal. The record is buffered until the next {@link #commit()}.
+     *
+     * @param operation either {@link #PUT} or {@link #REMOVE}
+     * @param order the order that was mutated
+     * @return true if the record was buffered, false otherwise
+     */
+    public synchronized boolean append(byte operation, Order order) {
+        try {
+            appendRecord(operation, order.getOrderID(), operation == PUT ? encode(order) : new byte[0]);
+            recordCount++;
+            version++;
+            return true;
+        } catch (IOException e) {
+            System.out.println("Error appending to order journal: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Writes the records appended since the last commit to the journal file and syncs it to disk.
+     * The records are written in a single write, so a crash can only tear the last of them.
+     *
+     * @return true if the records were written, false otherwise
+     */
+    public synchronized boolean commit() {
+        if (pending.size() == 0) {
+            return true;
+        }
+        try {
+            if (out == null) {
+                out = new FileOutputStream(journalPath, true);
+            }
+            pending.writeTo(out);
+            out.getFD().sync();
+            pending.reset();
+            return true;
+        } catch (IOException e) {
+            System.out.println("Error writing order journal: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Replays every intact journal record onto the given orders, in the order they were written, and
+     * sets the version of the journal from them. A torn record at the end of the journal is truncated
+     * so that later appends start cleanly.
+     *
+     * @param orders the orders loaded from the last snapshot, updated in place
+     */
+    public synchronized void replay(HashMap<Integer, Order> orders) {
+        commit();
+        close();
+        recordCount = 0;
+        version = 0;
+        File file = new File(journalPath);
+        if (!file.exists()) {
+            return;
+        }
+        long validLength = 0;
+        try (DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                int length;
+                try {
+                    length = dis.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (length < 5 || length > file.length()) {
+                    break;
+                }
+                byte[] body = new byte[length];
+                dis.readFully(body);
+                int storedCrc = dis.readInt();
+                CRC32 crc = new CRC32();
+                crc.update(body);
+                if ((int) crc.getValue() != storedCrc) {
+                    break;
+                }
+                DataInputStream record = new DataInputStream(new ByteArrayInputStream(body));
+                byte operation = record.readByte();
+                int orderID = record.readInt();
+                validLength += length + 8;
+                if (operation == MARK) {
+                    version = record.readLong();
+                    continue;
+                }
+                if (operation == PUT) {
+                    orders.put(orderID, decode(body, 5, length - 5));
+                } else if (operation == REMOVE) {
+                    orders.remove(orderID);
+                }
+                recordCount++;
+                version++;
+            }
+        } catch (EOFException e) {
+            // Torn record at the tail, everything before it has been applied
+        } catch (IOException | ClassNotFoundException e) {
+            System.out.println("Error reading order journal: " + e.getMessage());
+        }
+        if (validLength < file.length()) {
+            truncate(validLength);
+        }
+    }
+
+    /**
+     * Empties the journal, including records not committed yet, and starts it with a {@link #MARK}
+     * record of its version. To be called once its records have been folded into a snapshot.
+     */
+    public synchronized void reset() {
+        pending.reset();
+        close();
+        truncate(0);
+        recordCount = 0;
+        try {
+            appendRecord(MARK, 0, ByteBuffer.allocate(Long.BYTES).putLong(version).array());
+        } catch (IOException e) {
+            System.out.println("Error appending to order journal: " + e.getMessage());
+        }
+        commit();
+    }
+
+    /**
+     * Returns the number of records in the journal since the last checkpoint.
+     *
+     * @return the number of journal records
+     */
+    public synchronized int getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Returns the version of the journal: the number of adds, updates and removals ever appended to it.
+     *
+     * @return the version
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * Closes the journal stream if it is open.
+     */
+    public synchronized void close() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                System.out.println("Error closing order journal: " + e.getMessage());
+            }
+            out = null;
+        }
+    }
+
+    /**
+     * Appends a record to the records pending commit.
+     *
+     * @param operation the operation code
+     * @param orderID the ID of the order, or 0 for a {@link #MARK}
+     * @param payload the payload of the record
+     * @throws IOException if the record cannot be written
+     */
+    private void appendRecord(byte operation, int orderID, byte[] payload) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(payload.length + 17);
+        DataOutputStream dos = new DataOutputStream(buffer);
+        CRC32 crc = new CRC32();
+        dos.writeInt(payload.length + 5);
+        dos.writeByte(operation);
+        dos.writeInt(orderID);
+        dos.write(payload);
+        byte[] body = buffer.toByteArray();
+        crc.update(body, 4, body.length - 4);
+        dos.writeInt((int) crc.getValue());
+        buffer.writeTo(pending);
+    }
+
+    /**
+     * Truncates the journal file to the given length.
+     *
+     * @param length the length to truncate to
+     */
+    private void truncate(long length) {
+        File file = new File(journalPath);
+        if (!file.exists()) {
+            return;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(length);
+        } catch (IOException e) {
+            System.out.println("Error truncating order journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Encodes an order as a journal payload.
+     *
+     * @param order the order to encode
+     * @return the encoded order
+     * @throws IOException if the order cannot be encoded
+     */
+    private byte[] encode(Order order) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(128);
+        BinaryCodec.writeOrder(new DataOutputStream(buffer), order);
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Decodes an order from a journal payload.
+     * Payloads written by Java serialization, before the binary format was introduced, are still accepted.
+     *
+     * @param data the record body
+     * @param offset the offset of the payload within the record body
+     * @param length the length of the payload
+     * @return the decoded order
+     * @throws IOException if the payload cannot be read
+     * @throws ClassNotFoundException if the order class cannot be found
+     */
+    private Order decode(byte[] data, int offset, int length) throws IOException, ClassNotFoundException {
+        if (length < 2 || (data[offset] & 0xFF) != 0xAC || (data[offset + 1] & 0xFF) != 0xED) {
+            return BinaryCodec.readOrder(new DataInputStream(new ByteArrayInputStream(data, offset, length)));
+        }
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(data, offset, length))) {
+            return (Order) ois.readObject();
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package services;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import interfaces.IPaymentGateway;
+import interfaces.IPaymentService;
+import models.PaymentMethod;
+import utils.exceptions.PaymentFailedException;
+
+/**
+ * <p>Takes payments through a payment gateway without blocking the checkout.
+ *
+ * <p>Every charge is given a timeout, and a charge that fails or times out is retried after a growing
+ * delay, up to a maximum number of attempts. Retries reuse the payment's idempotency key, so a charge
+ * that timed out but went through at the gateway is not charged twice. Only a bounded number of
+ * charges is sent to the gateway at once; further charges wait in a queue without holding a thread.
+ *
+ * <p>Payments are tracked by idempotency key while they are in progress and for a while after they
+ * succeed, so that a payment submitted twice completes with the same transaction. A key in use may
+ * not be paid again with a different amount. Refunds are retried
+ * in the same way, and free the key of the payment once they succeed.
+ */
+public class PaymentService implements IPaymentService {
+
+    /**
+     * How long, in milliseconds, a successful payment is remembered for its idempotency key.
+     */
+    private static final long retentionMillis = 10 * 60_000;
+
+    /**
+     * The gateway that charges are sent to.
+     */
+    private final IPaymentGateway gateway;
+    /**
+     * How long, in milliseconds, a single charge may take before it is treated as failed.
+     */
+    private final long timeoutMillis;
+    /**
+     * The maximum number of times a payment is charged.
+     */
+    private final int maxAttempts;
+    /**
+     * The delay, in milliseconds, before the first retry. Doubled for each further retry.
+     */
+    private final long retryDelayMillis;
+    /**
+     * The permits for charges in progress at the gateway.
+     */
+    private final Semaphore permits;
+    /**
+     * The charges waiting for a permit, in the order they were submitted.
+     */
+    private final ConcurrentLinkedQueue<Runnable> waiting = new ConcurrentLinkedQueue<>();
+    /**
+     * The payments in progress or recently succeeded, keyed by idempotency key.
+     */
+    private final ConcurrentHashMap<String, Payment> payments = new ConcurrentHashMap<>();
+
+    /**
+     * A payment in progress or recently succeeded.
+     */
+    private static class Payment {
+        /**
+         * The amount charged.
+         */
+        final double amount;
+        /**
+         * Completed with the ID of the transaction once the payment succeeds or every attempt failed.
+         */
+        final CompletableFuture<String> result = new CompletableFuture<>();
+
+        /**
+         * Constructs a Payment.
+         *
+         * @param amount the amount charged
+         */
+        Payment(double amount) {
+            this.amount = amount;
+        }
+    }
+
+    /**
+     * Constructs a PaymentService with up to 32 charges at once, a 3 second timeout per charge and up to 3 attempts.
+     *
+     * @param gateway the gateway to charge payments through
+     */
+    public PaymentService(IPaymentGateway gateway) {
+        this(gateway, 32, 3000, 3, 100);
+    }
+
+    /**
+     * Constructs a PaymentService.
+     *
+     * @param gateway the gateway to charge payments through
+     * @param maxConcurrentCharges the maximum number of charges in progress at the gateway at once
+     * @param timeoutMillis how long a single charge may take, in milliseconds
+     * @param maxAttempts the maximum number of times a payment is charged
+     * @param retryDelayMillis the delay before the first retry, in milliseconds
+     * @throws IllegalArgumentException if any limit is not positive
+     */
+    public PaymentService(IPaymentGateway gateway, int maxConcurrentCharges, long timeoutMillis, int maxAttempts, long retryDelayMillis) {
+        if (gateway == null || maxConcurrentCharges < 1 || timeoutMillis < 1 || maxAttempts < 1 || retryDelayMillis < 0) {
+            throw new IllegalArgumentException("Payment gateway must be non-null and limits must be positive.");
+        }
+        this.gateway = gateway;
+        this.timeoutMillis = timeoutMillis;
+        this.maxAttempts = maxAttempts;
+        this.retryDelayMillis = retryDelayMillis;
+        this.permits = new Semaphore(maxConcurrentCharges);
+    }
+
+    /**
+     * Takes a payment without blocking the caller.
+     *
+     * @param idempotencyKey the key identifying the payment
+     * @param method the payment method to charge
+     * @param amount the amount to charge
+     * @return a future completed with the ID of the transaction, or completed exceptionally with a
+     *         {@link PaymentFailedException} if every attempt failed
+     * @throws IllegalArgumentException if the key or payment method is null, the amount is not positive,
+     *         or the key is in use by a payment of a different amount
+     */
+    @Override
+    public CompletableFuture<String> pay(String idempotencyKey, PaymentMethod method, double amount) {
+        if (idempotencyKey == null || method == null || amount <= 0) {
+            throw new IllegalArgumentException("Payment must have a key, a non-null payment method and a positive amount.");
+        }
+        Payment payment = new Payment(amount);
+        Payment existing = payments.putIfAbsent(idempotencyKey, payment);
+        if (existing != null) {
+            if (Double.compare(existing.amount, amount) != 0) {
+                throw new IllegalArgumentException("Payment " + idempotencyKey + " is already for a different amount.");
+            }
+            return existing.result;
+        }
+        payment.result.whenComplete((transaction, e) -> {
+            if (e != null) {
+                // A failed payment may be tried again with the same key
+                payments.remove(idempotencyKey, payment);
+            } else {
+                CompletableFuture.delayedExecutor(retentionMillis, TimeUnit.MILLISECONDS)
+                        .execute(() -> payments.remove(idempotencyKey, payment));
+            }
+        });
+        attempt("Payment", () -> gateway.charge(idempotencyKey, method, amount), 1, payment.result);
+        return payment.result;
+    }
+
+    /**
+     * Refunds a payment without blocking the caller, and forgets the payment of its key once refunded.
+     *
+     * @param idempotencyKey the key identifying the payment
+     * @param transactionID the ID of the transaction of the payment
+     * @return a future completed once the payment is refunded, or completed exceptionally with a
+     *         {@link PaymentFailedException} if every attempt failed
+     * @throws IllegalArgumentException if the key or transaction ID is null
+     */
+    @Override
+    public CompletableFuture<Void> refund(String idempotencyKey, String transactionID) {
+        if (idempotencyKey == null || transactionID == null) {
+            throw new IllegalArgumentException("Refund must have a key and a transaction ID.");
+        }
+        CompletableFuture<Void> refund = new CompletableFuture<>();
+        attempt("Refund", () -> gateway.refund(transactionID), 1, refund);
+        return refund.thenRun(() -> payments.computeIfPresent(idempotencyKey,
+                (key, payment) -> transactionID.equals(payment.result.getNow(null)) ? null : payment));
+    }
+
+    /**
+     * Makes a call to the gateway once, and schedules a retry if the call fails and attempts are left.
+     *
+     * @param <T> the type of the outcome of the call
+     * @param action what the call does, for the failure message
+     * @param call starts the call
+     * @param attempt the number of this attempt, starting from 1
+     * @param result the future completed once the call succeeds or every attempt failed
+     */
+    private <T> void attempt(String action, Supplier<CompletableFuture<T>> call, int attempt, CompletableFuture<T> result) {
+        submit(() -> call.get().orTimeout(timeoutMillis, TimeUnit.MILLISECONDS))
+                .whenComplete((outcome, e) -> {
+                    if (e == null) {
+                        result.complete(outcome);
+                    } else if (attempt < maxAttempts) {
+                        long delay = retryDelayMillis << (attempt - 1);
+                        CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS)
+                                .execute(() -> attempt(action, call, attempt + 1, result));
+                    } else {
+                        result.completeExceptionally(new PaymentFailedException(
+                                action + " failed after " + attempt + " attempts: " + describe(e)));
+                    }
+                });
+    }
+
+    /**
+     * Sends a call to the gateway once a permit is free. The permit is returned when the call completes.
+     *
+     * @param <T> the type of the outcome of the call
+     * @param call starts the call
+     * @return a future completed with the outcome of the call
+     */
+    private <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        waiting.add(() -> {
+            CompletableFuture<T> started;
+            try {
+                started = call.get();
+            } catch (RuntimeException e) {
+                started = CompletableFuture.failedFuture(e);
+            }
+            started.whenComplete((outcome, e) -> {
+                permits.release();
+                dispatch();
+                if (e != null) {
+                    result.completeExceptionally(e);
+                } else {
+                    result.complete(outcome);
+                }
+            });
+        });
+        dispatch();
+        return result;
+    }
+
+    /**
+     * Starts waiting charges while permits are free.
+     */
+    private void dispatch() {
+        while (!waiting.isEmpty() && permits.tryAcquire()) {
+            Runnable next = waiting.poll();
+            if (next == null) {
+                permits.release();
+            } else {
+                next.run();
+            }
+        }
+    }
+
+    /**
+     * Describes why a call to the gateway failed.
+     *
+     * @param e the failure of the call
+     * @return a description of the failure
+     */
+    private static String describe(Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        if (cause instanceof TimeoutException) {
+            return "the payment gateway did not respond in time.";
+        }
+        return cause.getMessage();
+    }
+}
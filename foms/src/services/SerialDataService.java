@@ -1,7 +1,5 @@
 package services;
 
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
@@ -15,6 +13,7 @@ import models.BranchUser;
 import models.Order;
 import models.PaymentMethod;
 import models.User;
+import utils.SnapshotFiles;
 
 /**
  * Handles serialization and deserialization of different data types to and from disk.
@@ -180,11 +179,12 @@ public class SerialDataService implements IFileDataService{
 
     /**
      * Helper method to handle the import of serialized data.
+     * The file is checked against its checksum, falling back to the previous snapshot if it is damaged.
      * @param importPathString The path to the file from which to import data.
      * @return The imported HashMap.
      */
     private HashMap<?,?> importHelper(String importPathString){
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(importPathString))) {
+        try (ObjectInputStream ois = new ObjectInputStream(SnapshotFiles.open(importPathString))) {
             return (HashMap<?,?>) ois.readObject();
         } catch (IOException e) {
             System.out.println("Error reading user data: " + e.getMessage());
@@ -196,13 +196,18 @@ public class SerialDataService implements IFileDataService{
 
     /**
      * Helper method to handle the export of serialized data.
+     * The data is written as a crash-safe snapshot, so the file is replaced only once it has been written completely.
      * @param exportPathString The path to the file to which to export data.
      * @param hashMap The HashMap to serialize.
      * @return True if the export is successful, false otherwise.
      */
     private boolean exportHelper(String exportPathString, HashMap<?, ?> hashMap){
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(exportPathString))) {
-            oos.writeObject(hashMap);
+        try {
+            SnapshotFiles.write(exportPathString, out -> {
+                ObjectOutputStream oos = new ObjectOutputStream(out);
+                oos.writeObject(hashMap);
+                oos.flush();
+            });
             return true;
         } catch (IOException e) {
             System.out.println("Error saving user data: " + e.getMessage());
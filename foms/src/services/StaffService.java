@@ -1,15 +1,15 @@
 package services;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import enums.OrderStatus;
+import interfaces.IAccountService;
 import interfaces.IStaffService;
 import models.Order;
 import models.User;
 import models.Account;
+import stores.KitchenQueue;
 import stores.OrderStorage;
-import stores.PasswordStorage;
 import utils.exceptions.AccountNotFoundException;
 import utils.exceptions.PasswordMismatchException;
 import utils.exceptions.PasswordValidationException;
@@ -20,57 +20,80 @@ import utils.exceptions.PasswordValidationException;
  */
 public class StaffService implements IStaffService {
 
+    /**
+     * The shared keyed access to the user accounts.
+     */
+    private static final IAccountService accountService = new AccountService();
+
     /**
      * Retrieves a list of orders associated with a specific branch.
      *
      * @param branchID the ID of the branch
-     * @return a list of orders associated with the branch, or null if no orders are found
+     * @return a list of orders associated with the branch, in the order they were placed
      */
     @Override
     public List<Order> getOrders(int branchID) {
-        Order[] orders = OrderStorage.getAll();
-        List<Order> branchOrders = new ArrayList<>();
-        if (orders != null) {
-            for (Order order : orders) {
-                if (order.getBranchID() == branchID) {
-                    branchOrders.add(order);
-                }
-            }
-            return branchOrders;
-        }
-        return null;
+        return OrderStorage.getByBranch(branchID);
+    }
+
+    /**
+     * Retrieves the orders of a specific branch that have the given status.
+     *
+     * @param branchID the ID of the branch
+     * @param status the status of the orders to retrieve
+     * @return a list of the matching orders, in the order they were placed
+     */
+    @Override
+    public List<Order> getOrders(int branchID, OrderStatus status) {
+        return OrderStorage.getByBranchAndStatus(branchID, status);
     }
 
     /**
-     * Retrieves an order by its ID.
+     * Retrieves the next orders the kitchen of a branch has to prepare, from the branch's kitchen queue.
      *
+     * @param branchID the ID of the branch
+     * @param count the maximum number of orders to retrieve
+     * @return up to count orders being prepared, oldest first
+     */
+    @Override
+    public List<Order> getPendingOrders(int branchID, int count) {
+        return KitchenQueue.peek(branchID, count);
+    }
+
+    /**
+     * Retrieves the number of orders in the kitchen queue of a branch.
+     *
+     * @param branchID the ID of the branch
+     * @return the number of orders being prepared
+     */
+    @Override
+    public int getPendingOrderCount(int branchID) {
+        return KitchenQueue.size(branchID);
+    }
+
+    /**
+     * Retrieves an order of a branch by its ID.
+     *
+     * @param branchID the ID of the branch
      * @param orderID the ID of the order
-     * @return the order with the specified ID, or null if no order is found
+     * @return the order with the specified ID, or null if the branch has no such order
      */
     @Override
-    public Order getOrder(int orderID) {
-        Order order = OrderStorage.get(orderID);
-        return order;
+    public Order getOrder(int branchID, int orderID) {
+        return OrderStorage.get(branchID, orderID);
     }
 
     /**
-     * Updates the status of an order to "READY" if it is currently in the "PREPARING" state.
+     * Updates the status of an order of a branch to "READY" if it is currently in the "PREPARING" state.
+     * The check and the change are one step, so an order that has since moved on is left as it is.
      *
+     * @param branchID the ID of the branch
      * @param orderID the ID of the order
-     * @return true if the order status is successfully updated, false otherwise
+     * @return true if the order status is successfully updated, false if the branch has no such order or it is no longer being prepared
      */
     @Override
-    public Boolean updateOrderStatus(int orderID) {
-        Order order = getOrder(orderID);
-        if (order != null) {
-            if (order.getOrderStatus() == OrderStatus.PREPARING) {
-                order.setOrderStatus(OrderStatus.READY);
-                return true;
-            } else {
-                return false;
-            }
-        }
-        return false;
+    public Boolean updateOrderStatus(int branchID, int orderID) {
+        return OrderStorage.compareAndSetStatus(branchID, orderID, OrderStatus.PREPARING, OrderStatus.READY);
     }
 
     /**
@@ -81,12 +104,7 @@ public class StaffService implements IStaffService {
      */
     @Override
     public Account findAccountByLoginID(String loginID) {
-        for (Account account : PasswordStorage.getAll()) {
-            if (account.getLoginID().equals(loginID)) {
-                return account;
-            }
-        }
-        return null;
+        return accountService.findAccountByLoginID(loginID);
     }
 
     /**
@@ -113,20 +131,18 @@ public class StaffService implements IStaffService {
             throw new PasswordValidationException("The new password is invalid. It cannot be null, empty, or 'password'.");
         }
 
-        account.setPassword(newPassword);
-        PasswordStorage.update(account);
+        accountService.updatePassword(account, newPassword);
     }
 
     /**
-     * Cancels an order by setting its status to "CANCELLED".
+     * Cancels an order of a branch by setting its status to "CANCELLED" if it is still in the "PREPARING" state.
      *
+     * @param branchID the ID of the branch
      * @param orderID the ID of the order to be cancelled
+     * @return true if the order was cancelled, false if the branch has no such order or it is no longer being prepared
      */
     @Override
-    public void cancelOrder(int orderID) {
-        Order order = getOrder(orderID);
-        if (order != null) {
-            order.setOrderStatus(OrderStatus.CANCELLED);
-        }
+    public Boolean cancelOrder(int branchID, int orderID) {
+        return OrderStorage.compareAndSetStatus(branchID, orderID, OrderStatus.PREPARING, OrderStatus.CANCELLED);
     }
 }
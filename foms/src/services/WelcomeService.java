@@ -7,39 +7,22 @@ import stores.*;
 /**
  * Implements the IWelcomeService interface to provide functionalities related to
  * refreshing application data and retrieving branch information. This service handles
- * operations such as saving and loading data for various storage components used within
+ * operations such as persisting the data of the various storage components used within
  * the application, which includes user, branch, and order data.
  */
 public class WelcomeService implements IWelcomeService {
 
     /**
-     * <p>Refreshes the application data by performing a save followed by a load operation
-     * for each storage type. This ensures that all storage objects are up-to-date with the
-     * latest changes and are synchronized with their respective storage mechanisms (e.g., database,
-     * file system). The operations are performed in a specific order to maintain data integrity and
-     * consistency across different storage objects.
+     * <p>Refreshes the application data by flushing the pending changes of every storage type,
+     * so that all changes made so far are persisted to their respective storage mechanisms (e.g.,
+     * database, file system).
      *
-     * <p>Operations are performed as follows:
-     * <p>1. Save operations for all storages to persist current state.
-     * <p>2. Load operations for all storages to refresh in-memory data.
+     * <p>The storages are loaded once, by the {@link StoreBootstrap} at startup or on first access,
+     * and are kept up to date in memory from then on, so they are not reloaded here.
      */
     @Override
     public void refresh() {
-        BranchUserStorage.save();
-        BranchStorage.save();
-        UserStorage.save();
-        OrderStorage.save();
-        PasswordStorage.save();
-        PaymentMethodStorage.save();
-        BranchMenuItemStorage.save();
-        
-        BranchUserStorage.load();
-        BranchStorage.load();
-        UserStorage.load();
-        OrderStorage.load();
-        PasswordStorage.load();
-        PaymentMethodStorage.load();
-        BranchMenuItemStorage.load();
+        PersistenceEngine.flush();
     }
 
     /**
@@ -0,0 +1,545 @@
+package stores;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import enums.OrderStatus;
+import enums.OrderType;
+import models.Order;
+import models.OrderItem;
+import utils.SnapshotFiles;
+
+/**
+ * <p>An immutable file of archived orders, stored column by column.
+ *
+ * <p>The segment starts with a fixed header, followed by one column per order field: order time,
+ * ready time, total price, order ID, branch ID, status and order type. Every column is fixed-width,
+ * so the value of any row is read directly at an offset computed from the row number and the row
+ * count. The order items of each row are written to an item column that refers to a dictionary of
+ * the item names, categories and special requests of the segment. The item column is compressed
+ * with Deflate in blocks of {@link #blockRows} rows, listed in a block table, so reading the items of
+ * a row only decompresses its block. Rows are sorted by order time, and the header records the
+ * earliest and latest order time, so a scan can skip segments outside its period. Times are stored
+ * to the second.
+ *
+ * <p>Segments are written once as crash-safe snapshots through {@link SnapshotFiles}, and never
+ * changed. They are read through {@link SnapshotFiles#map(String)}: the columns are read in place
+ * from the mapped file, and only the dictionary is kept on the heap. Used by {@link OrderArchive}.
+ */
+class ArchiveSegment {
+
+    /**
+     * The first four bytes of every segment ("FOMA").
+     */
+    private static final int magic = 0x464F4D41;
+    /**
+     * The version of the segment format.
+     */
+    private static final int formatVersion = 2;
+    /**
+     * The number of rows of each compressed block of the item column.
+     */
+    private static final int blockRows = 4096;
+    /**
+     * The size of an entry of the block table: offset, compressed length and length of a block.
+     */
+    private static final int blockEntryLength = 3 * Integer.BYTES;
+    /**
+     * The size of an order item in the item column: name, category, special request, quantity and price.
+     */
+    private static final int itemLength = 4 * Integer.BYTES + Double.BYTES;
+    /**
+     * The size of the header, padded so that the 8-byte columns that follow it are aligned.
+     */
+    private static final int headerLength = 40;
+    /**
+     * The value of the ready time column for an order that was never ready.
+     */
+    private static final long noReadyTime = Long.MIN_VALUE;
+    /**
+     * The statuses, indexed by the value of the status column.
+     */
+    private static final OrderStatus[] statuses = OrderStatus.values();
+    /**
+     * The order types, indexed by the value of the order type column.
+     */
+    private static final OrderType[] orderTypes = OrderType.values();
+
+    /**
+     * The path to the segment file.
+     */
+    private final String path;
+    /**
+     * The contents of the segment, mapped from the segment file.
+     */
+    private final ByteBuffer data;
+    /**
+     * The number of rows of each block of the item column.
+     */
+    private final int rowsPerBlock;
+    /**
+     * The number of rows.
+     */
+    private final int rowCount;
+    /**
+     * The earliest order time of the segment, in seconds of the local time line.
+     */
+    private final long minOrderTime;
+    /**
+     * The latest order time of the segment, in seconds of the local time line.
+     */
+    private final long maxOrderTime;
+    /**
+     * The offset of each column: order time, ready time, total price, order ID, branch ID, item offset, status and order type.
+     */
+    private final int orderTimeColumn, readyTimeColumn, totalColumn, orderIDColumn, branchColumn, itemOffsetColumn, statusColumn, typeColumn;
+    /**
+     * The offset of the dictionary.
+     */
+    private final int dictionaryOffset;
+    /**
+     * The offset, compressed length and length of each block of the item column.
+     */
+    private final int[] blockOffsets, blockCompressedLengths, blockLengths;
+    /**
+     * The strings of the dictionary, read when first needed.
+     */
+    private String[] dictionary;
+
+    /**
+     * Opens a segment file and reads its header.
+     *
+     * @param path The path to the segment file.
+     * @throws IOException if the segment cannot be read, fails its checksum or has an unknown format.
+     */
+    ArchiveSegment(String path) throws IOException {
+        this.path = path;
+        this.data = SnapshotFiles.map(path);
+        int version = data.remaining() < headerLength || data.getInt(0) != magic ? -1 : data.getInt(4);
+        if (version != formatVersion) {
+            throw new IOException(path + " is not an archive segment of a known format.");
+        }
+        this.rowCount = data.getInt(8);
+        this.minOrderTime = data.getLong(16);
+        this.maxOrderTime = data.getLong(24);
+        this.orderTimeColumn = headerLength;
+        this.readyTimeColumn = orderTimeColumn + rowCount * Long.BYTES;
+        this.totalColumn = readyTimeColumn + rowCount * Long.BYTES;
+        this.orderIDColumn = totalColumn + rowCount * Double.BYTES;
+        this.branchColumn = orderIDColumn + rowCount * Integer.BYTES;
+        this.itemOffsetColumn = branchColumn + rowCount * Integer.BYTES;
+        this.statusColumn = itemOffsetColumn + (rowCount + 1) * Integer.BYTES;
+        this.typeColumn = statusColumn + rowCount;
+        this.dictionaryOffset = typeColumn + rowCount;
+        this.rowsPerBlock = data.getInt(12);
+        int blockCount = data.getInt(32);
+        int blockTableOffset = data.getInt(36);
+        if (rowsPerBlock <= 0 || blockCount < 0 || blockTableOffset < dictionaryOffset
+                || (long) blockTableOffset + (long) blockCount * blockEntryLength > data.limit()) {
+            throw new IOException(path + " is truncated.");
+        }
+        this.blockOffsets = new int[blockCount];
+        this.blockCompressedLengths = new int[blockCount];
+        this.blockLengths = new int[blockCount];
+        for (int block = 0; block < blockCount; block++) {
+            int entry = blockTableOffset + block * blockEntryLength;
+            blockOffsets[block] = data.getInt(entry);
+            blockCompressedLengths[block] = data.getInt(entry + Integer.BYTES);
+            blockLengths[block] = data.getInt(entry + 2 * Integer.BYTES);
+        }
+        for (int block = 0; block < blockOffsets.length; block++) {
+            if (blockOffsets[block] < dictionaryOffset || (long) blockOffsets[block] + blockCompressedLengths[block] > data.limit()) {
+                throw new IOException(path + " is truncated.");
+            }
+        }
+    }
+
+    /**
+     * Writes a new segment holding the given orders.
+     *
+     * @param path The path to the segment file.
+     * @param orders The orders to write. Sorted by order time in place.
+     * @throws IOException if the segment cannot be written.
+     */
+    static void write(String path, List<Order> orders) throws IOException {
+        orders.sort((a, b) -> a.getOrderTime().compareTo(b.getOrderTime()));
+        int rowCount = orders.size();
+        HashMap<String, Integer> dictionaryIndex = new HashMap<>();
+        List<String> dictionary = new ArrayList<>();
+        int blockCount = (rowCount + blockRows - 1) / blockRows;
+        List<byte[]> compressedBlocks = new ArrayList<>(blockCount);
+        int[] blockLengths = new int[blockCount];
+        int compressedLength = 0;
+        ByteBuffer items = ByteBuffer.allocate(64);
+        // Offsets are relative to the start of the block of the row
+        int[] itemOffsets = new int[rowCount + 1];
+        for (int row = 0; row < rowCount; row++) {
+            List<OrderItem> orderItems = orders.get(row).getOrderItems();
+            items = ensureCapacity(items, Integer.BYTES + orderItems.size() * itemLength);
+            itemOffsets[row] = items.position();
+            items.putInt(orderItems.size());
+            for (OrderItem item : orderItems) {
+                items.putInt(intern(item.getItemName(), dictionaryIndex, dictionary));
+                items.putInt(intern(item.getCategory(), dictionaryIndex, dictionary));
+                items.putInt(intern(item.getSpecialRequest(), dictionaryIndex, dictionary));
+                items.putInt(item.getQuantity());
+                items.putDouble(item.getPrice());
+            }
+            itemOffsets[row + 1] = items.position();
+            if ((row + 1) % blockRows == 0 || row + 1 == rowCount) {
+                byte[] compressed = deflate(items.array(), items.position());
+                blockLengths[compressedBlocks.size()] = items.position();
+                compressedBlocks.add(compressed);
+                compressedLength += compressed.length;
+                items.clear();
+            }
+        }
+        List<byte[]> encodedDictionary = new ArrayList<>();
+        int dictionaryLength = Integer.BYTES;
+        for (String entry : dictionary) {
+            byte[] encoded = entry.getBytes(StandardCharsets.UTF_8);
+            encodedDictionary.add(encoded);
+            dictionaryLength += Integer.BYTES + encoded.length;
+        }
+
+        int columnsLength = rowCount * (2 * Long.BYTES + Double.BYTES + 2 * Integer.BYTES + 2) + (rowCount + 1) * Integer.BYTES;
+        int blockTableOffset = headerLength + columnsLength + dictionaryLength;
+        ByteBuffer segment = ByteBuffer.allocate(blockTableOffset + blockCount * blockEntryLength + compressedLength);
+        segment.putInt(magic).putInt(formatVersion).putInt(rowCount).putInt(blockRows);
+        segment.putLong(rowCount == 0 ? 0 : secondsOf(orders.get(0).getOrderTime()));
+        segment.putLong(rowCount == 0 ? 0 : secondsOf(orders.get(rowCount - 1).getOrderTime()));
+        segment.putInt(blockCount);
+        segment.putInt(blockTableOffset);
+        for (Order order : orders) {
+            segment.putLong(secondsOf(order.getOrderTime()));
+        }
+        for (Order order : orders) {
+            segment.putLong(order.getReadyTime() == null ? noReadyTime : secondsOf(order.getReadyTime()));
+        }
+        for (Order order : orders) {
+            segment.putDouble(order.getTotalPrice());
+        }
+        for (Order order : orders) {
+            segment.putInt(order.getOrderID());
+        }
+        for (Order order : orders) {
+            segment.putInt(order.getBranchID());
+        }
+        for (int offset : itemOffsets) {
+            segment.putInt(offset);
+        }
+        for (Order order : orders) {
+            segment.put((byte) order.getOrderStatus().ordinal());
+        }
+        for (Order order : orders) {
+            segment.put((byte) order.getOrderType().ordinal());
+        }
+        segment.putInt(encodedDictionary.size());
+        for (byte[] encoded : encodedDictionary) {
+            segment.putInt(encoded.length).put(encoded);
+        }
+        int blockOffset = blockTableOffset + blockCount * blockEntryLength;
+        for (int block = 0; block < blockCount; block++) {
+            segment.putInt(blockOffset).putInt(compressedBlocks.get(block).length).putInt(blockLengths[block]);
+            blockOffset += compressedBlocks.get(block).length;
+        }
+        for (byte[] compressed : compressedBlocks) {
+            segment.put(compressed);
+        }
+        SnapshotFiles.write(path, out -> out.write(segment.array(), 0, segment.position()));
+    }
+
+    /**
+     * Gets the path to the segment file.
+     *
+     * @return The path.
+     */
+    String getPath() {
+        return path;
+    }
+
+    /**
+     * Gets the number of rows of the segment.
+     *
+     * @return The number of archived orders.
+     */
+    int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Checks whether the segment may hold orders placed in a period, from its earliest and latest order time.
+     *
+     * @param from The start of the period, or null for no limit.
+     * @param to The end of the period, or null for no limit.
+     * @return False if no order of the segment was placed in the period.
+     */
+    boolean overlaps(LocalDateTime from, LocalDateTime to) {
+        return rowCount > 0
+                && (from == null || maxOrderTime >= secondsOf(from))
+                && (to == null || minOrderTime <= secondsOf(to));
+    }
+
+    /**
+     * Gets the order time of a row.
+     *
+     * @param row The row.
+     * @return The time the order was placed.
+     */
+    LocalDateTime getOrderTime(int row) {
+        return timeOf(getOrderSeconds(row));
+    }
+
+    /**
+     * Gets the order time of a row as stored, without converting it to a date-time.
+     *
+     * @param row The row.
+     * @return The time the order was placed, in seconds of the local time line.
+     */
+    long getOrderSeconds(int row) {
+        return data.getLong(orderTimeColumn + row * Long.BYTES);
+    }
+
+    /**
+     * Gets the ready time of a row.
+     *
+     * @param row The row.
+     * @return The time the order was ready, or null if it never was.
+     */
+    LocalDateTime getReadyTime(int row) {
+        long seconds = data.getLong(readyTimeColumn + row * Long.BYTES);
+        return seconds == noReadyTime ? null : timeOf(seconds);
+    }
+
+    /**
+     * Gets the total price of a row.
+     *
+     * @param row The row.
+     * @return The total price of the order.
+     */
+    double getTotalPrice(int row) {
+        return data.getDouble(totalColumn + row * Double.BYTES);
+    }
+
+    /**
+     * Gets the order ID of a row.
+     *
+     * @param row The row.
+     * @return The ID of the order.
+     */
+    int getOrderID(int row) {
+        return data.getInt(orderIDColumn + row * Integer.BYTES);
+    }
+
+    /**
+     * Gets the branch ID of a row.
+     *
+     * @param row The row.
+     * @return The ID of the branch of the order.
+     */
+    int getBranchID(int row) {
+        return data.getInt(branchColumn + row * Integer.BYTES);
+    }
+
+    /**
+     * Gets the status of a row.
+     *
+     * @param row The row.
+     * @return The status of the order.
+     */
+    OrderStatus getOrderStatus(int row) {
+        return statuses[data.get(statusColumn + row)];
+    }
+
+    /**
+     * Gets the order type of a row.
+     *
+     * @param row The row.
+     * @return The type of the order.
+     */
+    OrderType getOrderType(int row) {
+        return orderTypes[data.get(typeColumn + row)];
+    }
+
+    /**
+     * Gets the block of the item column holding the items of a row.
+     *
+     * @param row The row.
+     * @return The index of the block.
+     */
+    int getBlock(int row) {
+        return row / rowsPerBlock;
+    }
+
+    /**
+     * Gets the order items of a row from its block of the item column, already decompressed.
+     *
+     * @param row The row.
+     * @param block The decompressed block of the row, from {@link #inflateBlock(int, byte[])}.
+     * @return The items of the order.
+     * @throws IOException if the dictionary of the segment is damaged.
+     */
+    List<OrderItem> getOrderItems(int row, byte[] block) throws IOException {
+        String[] strings = getDictionary();
+        ByteBuffer items = ByteBuffer.wrap(block);
+        int offset = data.getInt(itemOffsetColumn + row * Integer.BYTES);
+        int count = items.getInt(offset);
+        List<OrderItem> orderItems = new ArrayList<>(count);
+        int position = offset + Integer.BYTES;
+        for (int i = 0; i < count; i++) {
+            orderItems.add(new OrderItem(strings[items.getInt(position)], strings[items.getInt(position + 4)],
+                    items.getInt(position + 12), items.getDouble(position + 16), strings[items.getInt(position + 8)]));
+            position += itemLength;
+        }
+        return orderItems;
+    }
+
+    /**
+     * Gets the dictionary of the segment, reading it if it has not been read yet.
+     *
+     * @return The strings of the dictionary, by index.
+     * @throws IOException if the dictionary is damaged.
+     */
+    private synchronized String[] getDictionary() throws IOException {
+        if (dictionary == null) {
+            ByteBuffer in = data.duplicate();
+            try {
+                in.position(dictionaryOffset);
+                String[] strings = new String[in.getInt()];
+                for (int i = 0; i < strings.length; i++) {
+                    byte[] encoded = new byte[in.getInt()];
+                    in.get(encoded);
+                    strings[i] = new String(encoded, StandardCharsets.UTF_8);
+                }
+                dictionary = strings;
+            } catch (RuntimeException e) {
+                throw new IOException(path + " has a damaged dictionary.", e);
+            }
+        }
+        return dictionary;
+    }
+
+    /**
+     * Decompresses a block of the item column.
+     *
+     * @param block The index of the block.
+     * @param buffer A buffer to decompress into, reused if it is large enough, or null.
+     * @return The buffer, or a new buffer if it was null or too small, holding the block from offset 0.
+     * @throws IOException if the block is damaged.
+     */
+    byte[] inflateBlock(int block, byte[] buffer) throws IOException {
+        int blockLength = blockLengths[block];
+        byte[] inflated = buffer != null && buffer.length >= blockLength ? buffer : new byte[blockLength];
+        ByteBuffer compressed = data.duplicate();
+        compressed.position(blockOffsets[block]).limit(blockOffsets[block] + blockCompressedLengths[block]);
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            int length = 0;
+            while (length < blockLength && !inflater.finished()) {
+                int read = inflater.inflate(inflated, length, blockLength - length);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += read;
+            }
+            if (length != blockLength) {
+                throw new IOException(path + " has a damaged item column.");
+            }
+            return inflated;
+        } catch (DataFormatException e) {
+            throw new IOException(path + " has a damaged item column: " + e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Compresses the item column.
+     *
+     * @param bytes The item column.
+     * @param length The length of the item column.
+     * @return The compressed item column.
+     */
+    private static byte[] deflate(byte[] bytes, int length) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(bytes, 0, length);
+            deflater.finish();
+            ByteBuffer compressed = ByteBuffer.allocate(Math.max(64, length / 4));
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                int count = deflater.deflate(chunk);
+                compressed = ensureCapacity(compressed, count);
+                compressed.put(chunk, 0, count);
+            }
+            byte[] result = new byte[compressed.position()];
+            System.arraycopy(compressed.array(), 0, result, 0, result.length);
+            return result;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Returns the index of a string in the dictionary, adding it if it is not there yet.
+     *
+     * @param value The string, or null, which is stored as an empty string.
+     * @param index The index of each string of the dictionary.
+     * @param dictionary The strings of the dictionary, by index.
+     * @return The index of the string.
+     */
+    private static int intern(String value, HashMap<String, Integer> index, List<String> dictionary) {
+        String key = value == null ? "" : value;
+        return index.computeIfAbsent(key, k -> {
+            dictionary.add(k);
+            return dictionary.size() - 1;
+        });
+    }
+
+    /**
+     * Returns a buffer with room for the given number of further bytes, growing it if needed.
+     *
+     * @param buffer The buffer.
+     * @param needed The number of bytes about to be written.
+     * @return The buffer, or a larger copy of it.
+     */
+    private static ByteBuffer ensureCapacity(ByteBuffer buffer, int needed) {
+        if (buffer.remaining() >= needed) {
+            return buffer;
+        }
+        ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + needed));
+        buffer.flip();
+        grown.put(buffer);
+        return grown;
+    }
+
+    /**
+     * Converts a local date-time to seconds of the local time line.
+     *
+     * @param time The date-time.
+     * @return The seconds since 1970-01-01T00:00 of the local time line.
+     */
+    static long secondsOf(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    /**
+     * Converts seconds of the local time line back to a local date-time.
+     *
+     * @param seconds The seconds since 1970-01-01T00:00 of the local time line.
+     * @return The date-time.
+     */
+    private static LocalDateTime timeOf(long seconds) {
+        return LocalDateTime.ofEpochSecond(seconds, 0, ZoneOffset.UTC);
+    }
+}
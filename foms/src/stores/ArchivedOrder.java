@@ -0,0 +1,156 @@
+package stores;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import enums.OrderStatus;
+import enums.OrderType;
+import models.Order;
+import models.OrderItem;
+
+/**
+ * <p>A read-only view of one archived order, read in place from its {@link ArchiveSegment}.
+ *
+ * <p>The same view is moved from row to row by {@link OrderArchive#scanRecords}, so a scan over any
+ * number of archived orders does not create an object per order. A view is only valid during the
+ * call that receives it; use {@link #toOrder()} to keep an order. The items of an order are read by
+ * decompressing its block of the segment into a buffer owned by the view, which is reused by the
+ * following rows of the block.
+ */
+public class ArchivedOrder {
+
+    /**
+     * The segment of the current row.
+     */
+    private ArchiveSegment segment;
+    /**
+     * The current row.
+     */
+    private int row;
+    /**
+     * The decompressed block of the item column last read.
+     */
+    private byte[] block;
+    /**
+     * The segment of the block last read, or null if no block was read.
+     */
+    private ArchiveSegment blockSegment;
+    /**
+     * The index of the block last read.
+     */
+    private int blockIndex;
+
+    /**
+     * Constructs a view that is not yet on a row.
+     */
+    ArchivedOrder() {
+    }
+
+    /**
+     * Moves the view to a row of a segment.
+     *
+     * @param segment The segment.
+     * @param row The row.
+     */
+    void moveTo(ArchiveSegment segment, int row) {
+        this.segment = segment;
+        this.row = row;
+    }
+
+    /**
+     * Gets the ID of the order.
+     *
+     * @return The order ID.
+     */
+    public int getOrderID() {
+        return segment.getOrderID(row);
+    }
+
+    /**
+     * Gets the ID of the branch of the order.
+     *
+     * @return The branch ID.
+     */
+    public int getBranchID() {
+        return segment.getBranchID(row);
+    }
+
+    /**
+     * Gets the status of the order.
+     *
+     * @return The order status.
+     */
+    public OrderStatus getOrderStatus() {
+        return segment.getOrderStatus(row);
+    }
+
+    /**
+     * Gets the type of the order.
+     *
+     * @return The order type.
+     */
+    public OrderType getOrderType() {
+        return segment.getOrderType(row);
+    }
+
+    /**
+     * Gets the time the order was placed.
+     *
+     * @return The order time, to the second.
+     */
+    public LocalDateTime getOrderTime() {
+        return segment.getOrderTime(row);
+    }
+
+    /**
+     * Gets the time the order was ready.
+     *
+     * @return The ready time, to the second, or null if the order never was ready.
+     */
+    public LocalDateTime getReadyTime() {
+        return segment.getReadyTime(row);
+    }
+
+    /**
+     * Gets the total price of the order.
+     *
+     * @return The total price.
+     */
+    public double getTotalPrice() {
+        return segment.getTotalPrice(row);
+    }
+
+    /**
+     * Gets the items of the order, decompressing their block unless it is the block last read.
+     *
+     * @return The order items.
+     * @throws UncheckedIOException if the block cannot be decompressed.
+     */
+    public List<OrderItem> getOrderItems() {
+        try {
+            int index = segment.getBlock(row);
+            if (blockSegment != segment || blockIndex != index) {
+                blockSegment = null;
+                block = segment.inflateBlock(index, block);
+                blockSegment = segment;
+                blockIndex = index;
+            }
+            return segment.getOrderItems(row, block);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Copies the order out of the archive.
+     *
+     * @return A new order holding the fields and items of the archived order.
+     * @throws UncheckedIOException if the items cannot be decompressed.
+     */
+    public Order toOrder() {
+        return new Order(getOrderID(), getBranchID(), getOrderItems(), getOrderType(),
+                getTotalPrice(), getOrderStatus(), getOrderTime(), getReadyTime());
+    }
+}
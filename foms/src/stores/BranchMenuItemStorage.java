@@ -1,55 +1,225 @@
 package stores;
 
-import java.io.File;
-import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import models.BranchMenuItem;
 import services.CSVDataService;
-import services.SerialDataService;
+import services.BinaryDataService;
+import utils.SnapshotFiles;
 
 /**
  * Manages the storage of {@code BranchMenuItem} objects, using serialization to persist data.
- * Provides functionality to add, remove, update, and retrieve menu items. It also manages unique
- * categories of menu items. All methods and fields are static.
+ * Provides functionality to add, remove, update, and retrieve menu items. It also manages the
+ * categories of the menu of each branch, and allocates the IDs of new menu items from an {@link IdSequence}, which
+ * is seeded from the stored items when they are loaded. All methods and fields are static.
+ *
+ * <p>The items are also indexed by branch: the menu of a branch is kept in item ID order and by item
+ * name, so listing a menu costs the items of the branch rather than of the whole chain, and finding an
+ * item by name takes constant time. The index follows every add, remove and update, including an item
+ * renamed or moved to another branch through its setters and then updated.
+ *
+ * <p>Each branch menu also counts its items per category, so the categories of a branch are served
+ * without a rescan and a category disappears from a branch once its last item there is removed or
+ * recategorised. A category added without items stays listed until the storage is reloaded.
  */
 public class BranchMenuItemStorage {
     /**
-     * A HashMap that stores branch menu items.
+     * The branch menu items, keyed by item ID.
      */
-    private static HashMap<Integer, BranchMenuItem> branchMenuItems = new HashMap<>();
-    /**
-     * The list of categories for branch menu items.
-     */
-    private static List<String> categories = new ArrayList<>();
+    private static final ConcurrentStore<Integer, BranchMenuItem> branchMenuItems = new ConcurrentStore<>(BranchMenuItem::getItemID);
     /**
      * The path to the serialized data file for storing branch menu item information.
      */
     private static final String menuFilename = "foms/data/menu.ser";
+    /**
+     * The path to the file holding the high-water mark of the menu item ID sequence.
+     */
+    private static final String menuSequencePath = "foms/data/menu.seq";
+    /**
+     * The sequence that menu item IDs are allocated from.
+     */
+    private static final IdSequence itemIDs = new IdSequence(menuSequencePath, 100);
+    /**
+     * The menu of each branch with items, keyed by branch ID.
+     */
+    private static final ConcurrentHashMap<Integer, BranchMenu> branchMenus = new ConcurrentHashMap<>();
+    /**
+     * The branch each item is indexed under, keyed by item ID, so that a moved item can be found in its old branch.
+     */
+    private static final HashMap<Integer, Integer> indexedBranches = new HashMap<>();
+    /**
+     * Guards changes to the branch index. Lookups by name do not lock.
+     */
+    private static final Object indexLock = new Object();
+
+    /**
+     * The menu items of one branch.
+     */
+    private static class BranchMenu {
+        /**
+         * The items, keyed by item ID. Guarded by {@link BranchMenuItemStorage#indexLock}.
+         */
+        final TreeMap<Integer, BranchMenuItem> byID = new TreeMap<>();
+        /**
+         * The name each item is indexed under, keyed by item ID. Guarded by {@link BranchMenuItemStorage#indexLock}.
+         */
+        final HashMap<Integer, String> names = new HashMap<>();
+        /**
+         * The category each item is counted under, keyed by item ID. Guarded by {@link BranchMenuItemStorage#indexLock}.
+         */
+        final HashMap<Integer, String> categoriesOf = new HashMap<>();
+        /**
+         * The number of items in each category, in the order the categories were first added. A category
+         * added without items has a count of 0. Guarded by {@link BranchMenuItemStorage#indexLock}.
+         */
+        final LinkedHashMap<String, Integer> categoryCounts = new LinkedHashMap<>();
+        /**
+         * The items, keyed by name. Of items sharing a name, the one with the lowest ID is indexed.
+         */
+        final ConcurrentHashMap<String, BranchMenuItem> byName = new ConcurrentHashMap<>();
+        /**
+         * The items in item ID order, or null if they have changed since the list was last built.
+         */
+        volatile List<BranchMenuItem> view;
+        /**
+         * The categories in the order they were first added, or null if they have changed since the list was last built.
+         */
+        volatile List<String> categoryView;
+
+        /**
+         * Indexes an item, overwriting its previous entry in place. The name entry is only moved when the
+         * item was renamed, so a lookup by name never misses an item that is merely being updated.
+         *
+         * @param item the item
+         */
+        void put(BranchMenuItem item) {
+            int itemID = item.getItemID();
+            BranchMenuItem previous = byID.put(itemID, item);
+            String previousName = names.put(itemID, item.getName());
+            String previousCategory = categoriesOf.put(itemID, item.getCategory());
+            if (previous == null || !Objects.equals(previousCategory, item.getCategory())) {
+                // Count the new category before uncounting the old one, so that the category list keeps its order
+                count(item.getCategory(), 1);
+                if (previous != null) {
+                    count(previousCategory, -1);
+                }
+            }
+            if (previous != null && !Objects.equals(previousName, item.getName())) {
+                unname(previousName, itemID);
+            }
+            BranchMenuItem named = byName.get(item.getName());
+            if (named != item && (named == null || named.getItemID() >= itemID)) {
+                byName.put(item.getName(), item);
+            }
+            if (previous != item) {
+                view = null;
+            }
+        }
+
+        /**
+         * Removes the entry of an item, indexing the next item of the same name if there is one.
+         *
+         * @param itemID the ID of the item
+         */
+        void remove(int itemID) {
+            if (byID.remove(itemID) == null) {
+                return;
+            }
+            String name = names.remove(itemID);
+            count(categoriesOf.remove(itemID), -1);
+            unname(name, itemID);
+            view = null;
+        }
+
+        /**
+         * Points the entry of a name that an item no longer has at the next item of that name, or removes
+         * it if there is none. The entry is replaced rather than removed first, so a lookup never sees a gap.
+         *
+         * @param name the name
+         * @param itemID the ID of the item that no longer has the name
+         */
+        void unname(String name, int itemID) {
+            BranchMenuItem named = byName.get(name);
+            if (named == null || named.getItemID() != itemID) {
+                return;
+            }
+            for (BranchMenuItem item : byID.values()) {
+                if (name.equals(names.get(item.getItemID()))) {
+                    byName.put(name, item);
+                    return;
+                }
+            }
+            byName.remove(name);
+        }
 
-    // Static initializer to load the data when the class is first loaded
-    static {
-        load();
+        /**
+         * Changes the number of items in a category, removing the category once it has no items left.
+         *
+         * @param category the category, or null for none
+         * @param change the number of items added, or removed if negative
+         */
+        void count(String category, int change) {
+            if (category == null) {
+                return;
+            }
+            int count = categoryCounts.getOrDefault(category, 0) + change;
+            if (count > 0 || (count == 0 && change == 0)) {
+                categoryCounts.put(category, count);
+            } else {
+                categoryCounts.remove(category);
+            }
+            categoryView = null;
+        }
     }
 
+    /**
+     * Whether the storage has been loaded. The storage is loaded on first access, or earlier by the {@link StoreBootstrap}.
+     */
+    private static volatile boolean loaded;
+
     /**
      * Adds a {@code BranchMenuItem} to the storage.
      * @param branchMenuItem the {@code BranchMenuItem} to add
      * @throws IllegalArgumentException if the branchMenuItem is null or if a menu item with the same ID already exists.
      */
     public static void add(BranchMenuItem branchMenuItem) {
+        ensureLoaded();
         if (branchMenuItem != null) {
-            if (!branchMenuItems.containsKey(branchMenuItem.getItemID())) {
-                branchMenuItems.put(branchMenuItem.getItemID(), branchMenuItem);
-                addUniqueCategory(branchMenuItem.getCategory());
+            if (branchMenuItems.add(branchMenuItem)) {
+                itemIDs.ensureAbove(branchMenuItem.getItemID());
+                index(branchMenuItem);
             } else {
                 throw new IllegalArgumentException("Menu with ID " + branchMenuItem.getItemID() + " already exists.");
             }
         } else {
             throw new IllegalArgumentException("Parameter must be a non-null BranchMenuItem.");
         }
-        save();
+        PersistenceEngine.markDirty(menuFilename, BranchMenuItemStorage::save);
+    }
+
+    /**
+     * Allocates the ID of a new menu item. IDs are never handed out twice, even after a restart.
+     * @return an ID that no menu item has had
+     */
+    public static int nextItemID() {
+        ensureLoaded();
+        return itemIDs.next();
+    }
+
+    /**
+     * Allocates the IDs of a number of new menu items at once, such as for adding a whole menu.
+     * @param count the number of IDs to allocate
+     * @return the first ID of the range, which runs up to (first + count - 1)
+     * @throws IllegalArgumentException if the count is not positive
+     */
+    public static int reserveItemIDs(int count) {
+        ensureLoaded();
+        return itemIDs.reserve(count);
     }
 
     /**
@@ -57,11 +227,13 @@ public class BranchMenuItemStorage {
      * @param branchMenuItem the {@code BranchMenuItem} to remove
      */
     public static void remove(BranchMenuItem branchMenuItem) {
+        ensureLoaded();
         if (branchMenuItem != null) {
             branchMenuItems.remove(branchMenuItem.getItemID());
-            refreshCategories();
+            unindex(branchMenuItem.getItemID());
+            InventoryStorage.forget(branchMenuItem.getItemID());
         }
-        save();
+        PersistenceEngine.markDirty(menuFilename, BranchMenuItemStorage::save);
     }
 
     /**
@@ -69,12 +241,61 @@ public class BranchMenuItemStorage {
      * @param branchMenuItem the {@code BranchMenuItem} to update
      */
     public static void update(BranchMenuItem branchMenuItem) {
-        if (branchMenuItem != null && branchMenuItems.containsKey(branchMenuItem.getItemID())) {
-            branchMenuItems.put(branchMenuItem.getItemID(), branchMenuItem);
-        } else {
+        ensureLoaded();
+        if (branchMenuItem == null || !branchMenuItems.replace(branchMenuItem)) {
             throw new IllegalArgumentException("Cannot update non-existing or null BranchMenuItem.");
         }
-        save();
+        index(branchMenuItem);
+        InventoryStorage.restock(branchMenuItem);
+        PersistenceEngine.markDirty(menuFilename, BranchMenuItemStorage::save);
+    }
+
+    /**
+     * Sets the availability of a stored {@code BranchMenuItem}, such as when a manager restocks it, and takes
+     * it as the new stock of the item. The availability is written under the write lock of the item, so it
+     * is not lost to a sale of the item at the same moment.
+     * @param itemID the ID of the menu item
+     * @param availability the new availability
+     * @throws IllegalArgumentException if no menu item has the ID
+     */
+    public static void setAvailability(int itemID, int availability) {
+        ensureLoaded();
+        BranchMenuItem item = branchMenuItems.withLock(itemID, () -> {
+            BranchMenuItem stored = branchMenuItems.get(itemID);
+            if (stored != null) {
+                stored.setAvailability(availability);
+            }
+            return stored;
+        });
+        if (item == null) {
+            throw new IllegalArgumentException("Cannot update non-existing BranchMenuItem.");
+        }
+        InventoryStorage.restock(item);
+        PersistenceEngine.markDirty(menuFilename, BranchMenuItemStorage::save);
+    }
+
+    /**
+     * Adds a quantity to the availability of a stored {@code BranchMenuItem} under the write lock of the
+     * item, so that two changes to the availability never overwrite each other. The stock of the item is
+     * left to the caller, which is {@link InventoryStorage}.
+     * @param itemID the ID of the menu item
+     * @param delta the quantity to add, or to deduct if negative
+     * @return true if the availability was changed, false if no menu item has the ID
+     */
+    static boolean adjustAvailability(int itemID, int delta) {
+        ensureLoaded();
+        boolean adjusted = branchMenuItems.withLock(itemID, () -> {
+            BranchMenuItem stored = branchMenuItems.get(itemID);
+            if (stored == null) {
+                return false;
+            }
+            stored.setAvailability(stored.getAvailability() + delta);
+            return true;
+        });
+        if (adjusted) {
+            PersistenceEngine.markDirty(menuFilename, BranchMenuItemStorage::save);
+        }
+        return adjusted;
     }
 
     /**
@@ -83,79 +304,190 @@ public class BranchMenuItemStorage {
      * @return the {@code BranchMenuItem} if found, or null if not
      */
     public static BranchMenuItem get(int itemID) {
+        ensureLoaded();
         return branchMenuItems.get(itemID);
     }
 
+    /**
+     * Retrieves a {@code BranchMenuItem} of a branch by its name, through the branch index.
+     * @param branchID the ID of the branch
+     * @param itemName the name of the menu item
+     * @return the {@code BranchMenuItem} if found, or null if not; of items sharing the name, the one with the lowest ID
+     */
+    public static BranchMenuItem get(int branchID, String itemName) {
+        ensureLoaded();
+        BranchMenu menu = branchMenus.get(branchID);
+        return menu == null || itemName == null ? null : menu.byName.get(itemName);
+    }
+
+    /**
+     * Returns the menu of a branch, through the branch index. The list is built once per change of the
+     * menu, and can be iterated without copying.
+     * @param branchID the ID of the branch
+     * @return an unmodifiable list of the items of the branch, in item ID order
+     */
+    public static List<BranchMenuItem> getByBranch(int branchID) {
+        ensureLoaded();
+        BranchMenu menu = branchMenus.get(branchID);
+        if (menu == null) {
+            return List.of();
+        }
+        List<BranchMenuItem> view = menu.view;
+        if (view == null) {
+            synchronized (indexLock) {
+                view = menu.view;
+                if (view == null) {
+                    view = List.copyOf(menu.byID.values());
+                    menu.view = view;
+                }
+            }
+        }
+        return view;
+    }
+
     /**
      * Returns all {@code BranchMenuItem} objects stored in the storage.
      * @return an array of all stored {@code BranchMenuItem} objects
      */
     public static BranchMenuItem[] getAll() {
-        return branchMenuItems.values().toArray(new BranchMenuItem[0]);
+        ensureLoaded();
+        return branchMenuItems.snapshot().toArray(new BranchMenuItem[0]);
+    }
+
+    /**
+     * Returns a consistent snapshot of all {@code BranchMenuItem} objects, which can be iterated without copying.
+     * @return an unmodifiable list of all stored {@code BranchMenuItem} objects
+     */
+    public static List<BranchMenuItem> snapshot() {
+        ensureLoaded();
+        return branchMenuItems.snapshot();
     }
 
     /**
      * Serializes and saves all {@code BranchMenuItem} objects to a file.
+     *
+     * @throws IllegalStateException if the file cannot be written
      */
-    public static void save() {
-        SerialDataService serialDataService = new SerialDataService();
-        serialDataService.exportMenuData(branchMenuItems);
+    public static synchronized void save() {
+        BinaryDataService dataService = new BinaryDataService();
+        if (!dataService.exportMenuData(branchMenuItems.toHashMap())) {
+            throw new IllegalStateException("Unable to save " + menuFilename + ".");
+        }
     }
 
     /**
      * Loads {@code BranchMenuItem} objects from a file, or initializes new storage if the file does not exist.
      */
-    public static void load() {
-        File file = new File(menuFilename);
-        if (file.exists()) {
-            SerialDataService serialDataService = new SerialDataService();
-            branchMenuItems = serialDataService.importMenuData();
+    public static synchronized void load() {
+        if (SnapshotFiles.exists(menuFilename)) {
+            BinaryDataService dataService = new BinaryDataService();
+            branchMenuItems.replaceAll(dataService.importMenuData());
         } else {
-            branchMenuItems = new HashMap<>();
             CSVDataService csvDataService = new CSVDataService();
-            branchMenuItems = csvDataService.importMenuData();
-            save();
+            branchMenuItems.replaceAll(csvDataService.importMenuData());
+            PersistenceEngine.markDirty(menuFilename, BranchMenuItemStorage::save);
+        }
+        for (BranchMenuItem item : branchMenuItems.snapshot()) {
+            itemIDs.ensureAbove(item.getItemID());
+        }
+        reindex();
+        InventoryStorage.reset();
+        loaded = true;
+    }
+
+    /**
+     * Loads the storage if it has not been loaded yet, after the storages it depends on.
+     */
+    static void ensureLoaded() {
+        if (!loaded) {
+            synchronized (BranchMenuItemStorage.class) {
+                if (!loaded) {
+                    StoreBootstrap.loadDependencies(StoreBootstrap.Store.MENU);
+                    long start = System.nanoTime();
+                    load();
+                    StoreBootstrap.recordLoadTime(StoreBootstrap.Store.MENU, System.nanoTime() - start);
+                }
+            }
         }
-        refreshCategories();
     }
 
     /**
      * Clears all entries from the storage.
      */
     public static void clear() {
+        ensureLoaded();
         branchMenuItems.clear();
-        categories.clear();
+        reindex();
     }
 
     /**
-     * Adds a unique category to the list of categories if it is not already present.
-     * @param category the category to add
+     * Indexes an item under its branch and name, removing it from under its previous branch.
+     * @param item the item
      */
-    public static void addUniqueCategory(String category) {
-        if (!categories.contains(category)) {
-            categories.add(category);
+    private static void index(BranchMenuItem item) {
+        synchronized (indexLock) {
+            Integer previousBranch = indexedBranches.put(item.getItemID(), item.getBranchID());
+            if (previousBranch != null && previousBranch != item.getBranchID()) {
+                BranchMenu previous = branchMenus.get(previousBranch);
+                if (previous != null) {
+                    previous.remove(item.getItemID());
+                }
+            }
+            branchMenus.computeIfAbsent(item.getBranchID(), branchID -> new BranchMenu()).put(item);
         }
     }
 
     /**
-     * Refreshes the list of unique categories based on existing menu items.
+     * Removes an item from the branch index.
+     * @param itemID the ID of the item
      */
-    private static void refreshCategories() {
-        categories.clear();
-        for (BranchMenuItem item : branchMenuItems.values()) {
-            if (!categories.contains(item.getCategory())) {
-                categories.add(item.getCategory());
+    private static void unindex(int itemID) {
+        synchronized (indexLock) {
+            Integer branchID = indexedBranches.remove(itemID);
+            BranchMenu menu = branchID == null ? null : branchMenus.get(branchID);
+            if (menu != null) {
+                menu.remove(itemID);
             }
         }
     }
 
     /**
-     * Displays the categories of menu items and returns the number of categories displayed.
-     * @return the number of categories displayed
+     * Rebuilds the branch index from the stored items.
+     */
+    private static void reindex() {
+        synchronized (indexLock) {
+            branchMenus.clear();
+            indexedBranches.clear();
+            for (BranchMenuItem item : branchMenuItems.snapshot()) {
+                index(item);
+            }
+        }
+    }
+
+    /**
+     * Adds a category to the menu of a branch if it is not already there.
+     * @param branchID the ID of the branch
+     * @param category the category to add
+     * @throws IllegalArgumentException if the category is null
+     */
+    public static void addUniqueCategory(int branchID, String category) {
+        ensureLoaded();
+        if (category == null) {
+            throw new IllegalArgumentException("Category must not be null.");
+        }
+        synchronized (indexLock) {
+            branchMenus.computeIfAbsent(branchID, id -> new BranchMenu()).count(category, 0);
+        }
+    }
+
+    /**
+     * Displays the categories of the menu of a branch and returns the number of the option after the last category.
+     * @param branchID the ID of the branch
+     * @return the number of categories displayed, plus one
      */
-    public static int displayMenuCategories() {
+    public static int displayMenuCategories(int branchID) {
         int counter = 1;
-        for (String category : categories) {
+        for (String category : getCategories(branchID)) {
             System.out.println(counter + ". " + category);
             counter++;
         }
@@ -163,10 +495,40 @@ public class BranchMenuItemStorage {
     }
 
     /**
-     * Returns the list of unique categories.
-     * @return the list of unique categories
+     * Returns the categories of the menu of a branch, from the per-category item counts.
+     * @param branchID the ID of the branch
+     * @return an unmodifiable list of the categories, in the order they were first added
      */
-    public static List<String> getCategories() {
-        return categories;
+    public static List<String> getCategories(int branchID) {
+        ensureLoaded();
+        BranchMenu menu = branchMenus.get(branchID);
+        if (menu == null) {
+            return List.of();
+        }
+        List<String> view = menu.categoryView;
+        if (view == null) {
+            synchronized (indexLock) {
+                view = menu.categoryView;
+                if (view == null) {
+                    view = List.copyOf(menu.categoryCounts.keySet());
+                    menu.categoryView = view;
+                }
+            }
+        }
+        return view;
+    }
+
+    /**
+     * Returns the number of items in a category of the menu of a branch.
+     * @param branchID the ID of the branch
+     * @param category the category
+     * @return the number of items, or 0 if the branch has no such category
+     */
+    public static int getCategoryCount(int branchID, String category) {
+        ensureLoaded();
+        synchronized (indexLock) {
+            BranchMenu menu = branchMenus.get(branchID);
+            return menu == null ? 0 : menu.categoryCounts.getOrDefault(category, 0);
+        }
     }
 }
@@ -1,48 +1,87 @@
 package stores;
 
-import java.io.File;
-import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
 
 import models.Branch;
 import services.CSVDataService;
-import services.SerialDataService;
+import services.BinaryDataService;
+import utils.SnapshotFiles;
 
 /**
  * The BranchStorage class is responsible for storing and managing Branch objects.
  * It implements the Storage interface. All methods and fields are static.
+ *
+ * <p>Branches are also indexed by name, so looking a branch up by name takes constant time. Names are
+ * unique; they are compared ignoring case if the system property {@code foms.branch.caseInsensitiveNames}
+ * is true. The index follows every add, remove, update and rename, including a branch renamed with
+ * {@link Branch#setName(String)} and then updated. Branch IDs are allocated from an {@link IdSequence},
+ * so the ID of a closed branch is not given to a new one.
  */
 public class BranchStorage {
     /**
-     * A map that stores branches with their corresponding IDs.
+     * The branches, keyed by their IDs.
      */
-    private static HashMap<Integer, Branch> branches = new HashMap<>();
+    private static final ConcurrentStore<Integer, Branch> branches = new ConcurrentStore<>(Branch::getID);
     /**
      * The path to the serialized data file for storing branch information.
      */
     private static final String branchDataPath = "foms/data/branches.ser";
+    /**
+     * The path to the file holding the high-water mark of the branch ID sequence.
+     */
+    private static final String branchSequencePath = "foms/data/branches.seq";
+    /**
+     * Whether branch names are compared ignoring case.
+     */
+    private static final boolean caseInsensitiveNames = Boolean.getBoolean("foms.branch.caseInsensitiveNames");
+    /**
+     * The branches, keyed by their names as compared (see {@link #nameKey(String)}).
+     */
+    private static final ConcurrentHashMap<String, Branch> branchesByName = new ConcurrentHashMap<>();
+    /**
+     * The key each branch is indexed under in {@link #branchesByName}, keyed by branch ID, so that a
+     * renamed branch can be found under its old name.
+     */
+    private static final ConcurrentHashMap<Integer, String> indexedNames = new ConcurrentHashMap<>();
+    /**
+     * Guards changes to the branches, so that the name index changes together with them. Lookups do not lock.
+     */
+    private static final Object writeLock = new Object();
+    /**
+     * The sequence that branch IDs are allocated from.
+     */
+    private static final IdSequence branchIDs = new IdSequence(branchSequencePath, 1);
 
-    // Static initializer to load the data when the class is first loaded
-    static {
-        load();
-    }
+    /**
+     * Whether the storage has been loaded. The storage is loaded on first access, or earlier by the {@link StoreBootstrap}.
+     */
+    private static volatile boolean loaded;
 
     /**
      * Adds a Branch object to the storage.
      * 
      * @param branch The Branch object to be added.
-     * @throws IllegalArgumentException if the branch is null or if a branch with the same ID already exists.
+     * @throws IllegalArgumentException if the branch is null or if a branch with the same ID or name already exists.
      */
     public static void add(Branch branch) {
-        if (branch != null) {
-            if (!branches.containsKey(branch.getID())) {
-                branches.put(branch.getID(), branch);
-            } else {
+        ensureLoaded();
+        if (branch == null) {
+            throw new IllegalArgumentException("Parameter must be a non-null Branch.");
+        }
+        synchronized (writeLock) {
+            String key = nameKey(branch.getName());
+            if (branchesByName.containsKey(key)) {
+                throw new IllegalArgumentException("Branch named " + branch.getName() + " already exists.");
+            }
+            if (!branches.add(branch)) {
                 throw new IllegalArgumentException("Branch with ID " + branch.getID() + " already exists.");
             }
-        } else {
-            throw new IllegalArgumentException("Parameter must be a non-null Branch.");
+            index(branch, key);
+            branchIDs.ensureAbove(branch.getID());
         }
-        save();
+        PersistenceEngine.markDirty(branchDataPath, BranchStorage::save);
     }
 
     /**
@@ -51,26 +90,69 @@ public class BranchStorage {
      * @param branch The Branch object to be removed.
      */
     public static void remove(Branch branch) {
-        if (branch != null) {
-            branches.remove(branch.getID());
-        } else {
+        ensureLoaded();
+        if (branch == null) {
             throw new IllegalArgumentException("Parameter must be a non-null Branch.");
         }
-        save();
+        synchronized (writeLock) {
+            if (branches.remove(branch.getID()) != null) {
+                String key = indexedNames.remove(branch.getID());
+                if (key != null) {
+                    branchesByName.remove(key);
+                }
+            }
+        }
+        PersistenceEngine.markDirty(branchDataPath, BranchStorage::save);
     }
 
     /**
-     * Updates a Branch object in the storage.
+     * Updates a Branch object in the storage. If its name has changed, it is indexed under its new name.
      * 
      * @param branch The Branch object to be updated.
+     * @throws IllegalArgumentException if the branch is null or not stored, or if another branch has its name.
      */
     public static void update(Branch branch) {
-        if (branch != null && branches.containsKey(branch.getID())) {
-            branches.put(branch.getID(), branch);
-        } else {
+        ensureLoaded();
+        if (branch == null) {
             throw new IllegalArgumentException("Cannot update non-existing or null Branch.");
         }
-        save();
+        synchronized (writeLock) {
+            String key = nameKey(branch.getName());
+            Branch named = branchesByName.get(key);
+            if (named != null && named.getID() != branch.getID()) {
+                throw new IllegalArgumentException("Branch named " + branch.getName() + " already exists.");
+            }
+            if (!branches.replace(branch)) {
+                throw new IllegalArgumentException("Cannot update non-existing or null Branch.");
+            }
+            index(branch, key);
+        }
+        PersistenceEngine.markDirty(branchDataPath, BranchStorage::save);
+    }
+
+    /**
+     * Renames a branch.
+     * 
+     * @param branch The Branch object to be renamed.
+     * @param newName The new name of the branch.
+     * @throws IllegalArgumentException if the branch is null or not stored, if the name is empty, or if another branch has the name.
+     */
+    public static void rename(Branch branch, String newName) {
+        ensureLoaded();
+        if (newName == null || newName.isEmpty()) {
+            throw new IllegalArgumentException("Branch name cannot be empty.");
+        }
+        if (branch == null || branches.get(branch.getID()) == null) {
+            throw new IllegalArgumentException("Cannot rename non-existing or null Branch.");
+        }
+        synchronized (writeLock) {
+            Branch named = branchesByName.get(nameKey(newName));
+            if (named != null && named.getID() != branch.getID()) {
+                throw new IllegalArgumentException("Branch named " + newName + " already exists.");
+            }
+            branch.setName(newName);
+            update(branch);
+        }
     }
 
     /**
@@ -80,22 +162,29 @@ public class BranchStorage {
      * @return The Branch object with the specified ID, or null if not found.
      */
     public static Branch get(int branchID) {
+        ensureLoaded();
         return branches.get(branchID);
     }
 
     /**
-     * Retrieves a Branch object from the storage based on the branch name.
+     * Retrieves a Branch object from the storage based on the branch name, through the name index.
      * 
      * @param branchName The name of the branch to retrieve.
      * @return The Branch object with the specified name, or null if not found.
      */
     public static Branch get(String branchName) {
-        for (Branch branch : branches.values()) {
-            if (branch.getName().equals(branchName)) {
-                return branch;
-            }
-        }
-        return null;
+        ensureLoaded();
+        return branchName == null ? null : branchesByName.get(nameKey(branchName));
+    }
+
+    /**
+     * Allocates the ID of a new branch.
+     * 
+     * @return An ID that no branch has had.
+     */
+    public static int nextBranchID() {
+        ensureLoaded();
+        return branchIDs.next();
     }
 
     /**
@@ -104,30 +193,61 @@ public class BranchStorage {
      * @return An array of all Branch objects in the storage.
      */
     public static Branch[] getAll() {
-        return branches.values().toArray(new Branch[0]);
+        ensureLoaded();
+        return branches.snapshot().toArray(new Branch[0]);
+    }
+
+    /**
+     * Retrieves a consistent snapshot of all Branch objects, which can be iterated without copying.
+     * 
+     * @return An unmodifiable list of all Branch objects in the storage.
+     */
+    public static List<Branch> snapshot() {
+        ensureLoaded();
+        return branches.snapshot();
     }
 
     /**
      * Saves the current state of the storage to a file.
+     *
+     * @throws IllegalStateException if the file cannot be written
      */
-    public static void save() {
-        SerialDataService serialDataService = new SerialDataService();
-        serialDataService.exportBranchData(branches);
+    public static synchronized void save() {
+        BinaryDataService dataService = new BinaryDataService();
+        if (!dataService.exportBranchData(branches.toHashMap())) {
+            throw new IllegalStateException("Unable to save " + branchDataPath + ".");
+        }
     }
 
     /**
      * Loads the stored data from a file, or initializes a new storage if the file does not exist.
      */
-    public static void load() {
-        File file = new File(branchDataPath);
-        if (file.exists()) {
-            SerialDataService serialDataService = new SerialDataService();
-            branches = serialDataService.importBranchData();
+    public static synchronized void load() {
+        if (SnapshotFiles.exists(branchDataPath)) {
+            BinaryDataService dataService = new BinaryDataService();
+            branches.replaceAll(dataService.importBranchData());
         } else {
-            branches = new HashMap<>();
             CSVDataService csvDataService = new CSVDataService();
-            branches = csvDataService.importBranchData();
-            save();
+            branches.replaceAll(csvDataService.importBranchData());
+            PersistenceEngine.markDirty(branchDataPath, BranchStorage::save);
+        }
+        reindex();
+        loaded = true;
+    }
+
+    /**
+     * Loads the storage if it has not been loaded yet, after the storages it depends on.
+     */
+    static void ensureLoaded() {
+        if (!loaded) {
+            synchronized (BranchStorage.class) {
+                if (!loaded) {
+                    StoreBootstrap.loadDependencies(StoreBootstrap.Store.BRANCH);
+                    long start = System.nanoTime();
+                    load();
+                    StoreBootstrap.recordLoadTime(StoreBootstrap.Store.BRANCH, System.nanoTime() - start);
+                }
+            }
         }
     }
 
@@ -135,6 +255,56 @@ public class BranchStorage {
      * Clears all Branch objects from the storage.
      */
     public static void clear() {
-        branches.clear();
+        ensureLoaded();
+        synchronized (writeLock) {
+            branches.clear();
+            reindex();
+        }
+    }
+
+    /**
+     * Rebuilds the name index from the stored branches. Of branches sharing a name, the one with the lowest ID is indexed.
+     */
+    private static void reindex() {
+        branchesByName.clear();
+        indexedNames.clear();
+        for (Branch branch : branches.snapshot()) {
+            String key = nameKey(branch.getName());
+            Branch named = branchesByName.get(key);
+            if (named == null || branch.getID() < named.getID()) {
+                if (named != null) {
+                    indexedNames.remove(named.getID());
+                }
+                index(branch, key);
+            }
+            branchIDs.ensureAbove(branch.getID());
+        }
+    }
+
+    /**
+     * Indexes a branch under a name, removing it from under its previous name.
+     * 
+     * @param branch The branch.
+     * @param key The name as compared, from {@link #nameKey(String)}.
+     */
+    private static void index(Branch branch, String key) {
+        String previousKey = indexedNames.put(branch.getID(), key);
+        if (previousKey != null && !previousKey.equals(key)) {
+            Branch previous = branchesByName.get(previousKey);
+            if (previous != null && previous.getID() == branch.getID()) {
+                branchesByName.remove(previousKey);
+            }
+        }
+        branchesByName.put(key, branch);
+    }
+
+    /**
+     * Returns the key of a branch name in the name index.
+     * 
+     * @param branchName The name of the branch.
+     * @return The name, in lower case if names are compared ignoring case.
+     */
+    private static String nameKey(String branchName) {
+        return caseInsensitiveNames ? branchName.toLowerCase(Locale.ROOT) : branchName;
     }
 }
@@ -1,33 +1,94 @@
 package stores;
 
-import java.io.File;
 import java.util.HashMap;
+import java.util.List;
+import java.util.function.Supplier;
 
+import enums.Role;
 import models.BranchUser;
 import services.CSVDataService;
-import services.SerialDataService;
+import services.BinaryDataService;
+import utils.SnapshotFiles;
 
 /**
  * Manages the storage of {@code BranchUser} objects using serialization with static access.
  * Provides static methods to add, remove, update, and retrieve users as well as save and load
  * the users from a file.
+ *
+ * <p>The storage also keeps a headcount of each branch, the number of staff and of managers, which
+ * follows every add, remove and update, including a user promoted or moved to another branch through
+ * their setters and then updated. Staffing rules are checked against these counts in constant time;
+ * {@link #withHeadcounts(Supplier)} lets a check and the changes it allows run as one step.
  */
 public class BranchUserStorage {
 
     /**
-     * A HashMap that stores branch users.
+     * The branch users, keyed by login ID.
      */
-    private static HashMap<String, BranchUser> branchUsers = new HashMap<>();
+    private static final ConcurrentStore<String, BranchUser> branchUsers = new ConcurrentStore<>(BranchUser::getLoginID);
     /**
      * The filename of the serialized branch user data.
      */
     private static final String userFilename = "foms/data/branchUsers.ser";
+    /**
+     * The headcount of each branch with users, keyed by branch ID. Guarded by {@link #headcountLock}.
+     */
+    private static final HashMap<Integer, Headcount> headcounts = new HashMap<>();
+    /**
+     * The branch and role each user is counted under, keyed by login ID, so that a promoted or moved
+     * user can be uncounted from where they were. Guarded by {@link #headcountLock}.
+     */
+    private static final HashMap<String, Placement> placements = new HashMap<>();
+    /**
+     * Guards the headcounts, and is held while a user is stored and counted so that the two agree. Held
+     * across a check and the changes it allows by {@link #withHeadcounts(Supplier)}.
+     */
+    private static final Object headcountLock = new Object();
 
-    // Static initializer to load the data when the class is first loaded
-    static {
-        load();
+    /**
+     * The number of staff and of managers of one branch.
+     */
+    private static class Headcount {
+        /**
+         * The number of users with the STAFF role.
+         */
+        int staff;
+        /**
+         * The number of users with the BRANCHMANAGER role.
+         */
+        int managers;
     }
 
+    /**
+     * The branch and role a user is counted under.
+     */
+    private static class Placement {
+        /**
+         * The ID of the branch.
+         */
+        final int branchID;
+        /**
+         * The role.
+         */
+        final Role role;
+
+        /**
+         * Constructs a placement.
+         *
+         * @param branchID the ID of the branch
+         * @param role the role
+         */
+        Placement(int branchID, Role role) {
+            this.branchID = branchID;
+            this.role = role;
+        }
+    }
+
+    /**
+     * Whether the storage has been loaded. The storage is loaded on first access, or earlier by the {@link StoreBootstrap}.
+     */
+    private static volatile boolean loaded;
+
     /**
      * Adds a {@code BranchUser} to the storage.
      *
@@ -35,17 +96,18 @@ public class BranchUserStorage {
      * @throws IllegalArgumentException if branchUser is null or if a user with the same login ID already exists
      */
     public static void add(BranchUser branchUser) {
+        ensureLoaded();
         if (branchUser != null) {
-            String loginID = branchUser.getLoginID();
-            if (!branchUsers.containsKey(loginID)) {
-                branchUsers.put(loginID, branchUser);
-            } else {
-                throw new IllegalArgumentException("BranchUser with login ID " + loginID + " already exists.");
+            synchronized (headcountLock) {
+                if (!branchUsers.add(branchUser)) {
+                    throw new IllegalArgumentException("BranchUser with login ID " + branchUser.getLoginID() + " already exists.");
+                }
+                count(branchUser);
             }
         } else {
             throw new IllegalArgumentException("Parameter must be a non-null BranchUser.");
         }
-        save();
+        PersistenceEngine.markDirty(userFilename, BranchUserStorage::save);
     }
 
     /**
@@ -54,12 +116,17 @@ public class BranchUserStorage {
      * @param branchUser the {@code BranchUser} to remove
      */
     public static void remove(BranchUser branchUser) {
+        ensureLoaded();
         if (branchUser != null) {
-            branchUsers.remove(branchUser.getLoginID());
+            synchronized (headcountLock) {
+                if (branchUsers.remove(branchUser.getLoginID()) != null) {
+                    uncount(branchUser.getLoginID());
+                }
+            }
         } else {
             throw new IllegalArgumentException("Parameter must be a non-null BranchUser.");
         }
-        save();
+        PersistenceEngine.markDirty(userFilename, BranchUserStorage::save);
     }
 
     /**
@@ -68,12 +135,16 @@ public class BranchUserStorage {
      * @param branchUser the {@code BranchUser} to update
      */
     public static void update(BranchUser branchUser) {
+        ensureLoaded();
         if (branchUser != null) {
-            branchUsers.put(branchUser.getLoginID(), branchUser);
+            synchronized (headcountLock) {
+                branchUsers.put(branchUser);
+                count(branchUser);
+            }
         } else {
             throw new IllegalArgumentException("Parameter must be a non-null BranchUser.");
         }
-        save();
+        PersistenceEngine.markDirty(userFilename, BranchUserStorage::save);
     }
 
     /**
@@ -83,39 +154,115 @@ public class BranchUserStorage {
      * @return the {@code BranchUser} if found, or null if not
      */
     public static BranchUser get(String loginID) {
+        ensureLoaded();
         return branchUsers.get(loginID);
     }
 
+    /**
+     * Returns the number of staff of a branch, from the headcounts.
+     *
+     * @param branchID the ID of the branch
+     * @return the number of users of the branch with the STAFF role
+     */
+    public static int getStaffCount(int branchID) {
+        ensureLoaded();
+        synchronized (headcountLock) {
+            Headcount headcount = headcounts.get(branchID);
+            return headcount == null ? 0 : headcount.staff;
+        }
+    }
+
+    /**
+     * Returns the number of managers of a branch, from the headcounts.
+     *
+     * @param branchID the ID of the branch
+     * @return the number of users of the branch with the BRANCHMANAGER role
+     */
+    public static int getManagerCount(int branchID) {
+        ensureLoaded();
+        synchronized (headcountLock) {
+            Headcount headcount = headcounts.get(branchID);
+            return headcount == null ? 0 : headcount.managers;
+        }
+    }
+
+    /**
+     * Runs an action while holding the headcounts, so that the counts the action reads do not change
+     * before the users it adds, removes or updates are counted. Other changes to the storage wait for
+     * their headcount until the action returns.
+     *
+     * @param <R> the type of result
+     * @param action the action to run
+     * @return the result of the action
+     */
+    public static <R> R withHeadcounts(Supplier<R> action) {
+        ensureLoaded();
+        synchronized (headcountLock) {
+            return action.get();
+        }
+    }
+
     /**
      * Returns all {@code BranchUser} objects stored in the storage.
      *
      * @return an array of all stored {@code BranchUser} objects
      */
     public static BranchUser[] getAll() {
-        return branchUsers.values().toArray(new BranchUser[0]);
+        ensureLoaded();
+        return branchUsers.snapshot().toArray(new BranchUser[0]);
+    }
+
+    /**
+     * Returns a consistent snapshot of all {@code BranchUser} objects, which can be iterated without copying.
+     *
+     * @return an unmodifiable list of all stored {@code BranchUser} objects
+     */
+    public static List<BranchUser> snapshot() {
+        ensureLoaded();
+        return branchUsers.snapshot();
     }
 
     /**
      * Saves all {@code BranchUser} objects to a file.
+     *
+     * @throws IllegalStateException if the file cannot be written
      */
-    public static void save() {
-        SerialDataService serialDataService = new SerialDataService();
-        serialDataService.exportBranchUserData(branchUsers);
+    public static synchronized void save() {
+        BinaryDataService dataService = new BinaryDataService();
+        if (!dataService.exportBranchUserData(branchUsers.toHashMap())) {
+            throw new IllegalStateException("Unable to save " + userFilename + ".");
+        }
     }
 
     /**
      * Loads {@code BranchUser} objects from a file, or initializes new storage if the file does not exist.
      */
-    public static void load() {
-        File file = new File(userFilename);
-        if (file.exists()) {
-            SerialDataService serialDataService = new SerialDataService();
-            branchUsers = serialDataService.importBranchUserData();
+    public static synchronized void load() {
+        if (SnapshotFiles.exists(userFilename)) {
+            BinaryDataService dataService = new BinaryDataService();
+            branchUsers.replaceAll(dataService.importBranchUserData());
         } else {
-            branchUsers = new HashMap<>();
             CSVDataService csvDataService = new CSVDataService();
-            branchUsers = csvDataService.importBranchUserData();
-            save();
+            branchUsers.replaceAll(csvDataService.importBranchUserData());
+            PersistenceEngine.markDirty(userFilename, BranchUserStorage::save);
+        }
+        recount();
+        loaded = true;
+    }
+
+    /**
+     * Loads the storage if it has not been loaded yet, after the storages it depends on.
+     */
+    static void ensureLoaded() {
+        if (!loaded) {
+            synchronized (BranchUserStorage.class) {
+                if (!loaded) {
+                    StoreBootstrap.loadDependencies(StoreBootstrap.Store.BRANCH_USER);
+                    long start = System.nanoTime();
+                    load();
+                    StoreBootstrap.recordLoadTime(StoreBootstrap.Store.BRANCH_USER, System.nanoTime() - start);
+                }
+            }
         }
     }
 
@@ -123,6 +270,67 @@ public class BranchUserStorage {
      * Clears all entries from the storage.
      */
     public static void clear() {
+        ensureLoaded();
         branchUsers.clear();
+        recount();
+    }
+
+    /**
+     * Counts a user under their branch and role, uncounting them from where they were counted before.
+     *
+     * @param branchUser the user
+     */
+    private static void count(BranchUser branchUser) {
+        synchronized (headcountLock) {
+            uncount(branchUser.getLoginID());
+            Placement placement = new Placement(branchUser.getBranchID(), branchUser.getRole());
+            placements.put(branchUser.getLoginID(), placement);
+            change(placement, 1);
+        }
+    }
+
+    /**
+     * Uncounts a user from where they were counted.
+     *
+     * @param loginID the login ID of the user
+     */
+    private static void uncount(String loginID) {
+        synchronized (headcountLock) {
+            Placement placement = placements.remove(loginID);
+            if (placement != null) {
+                change(placement, -1);
+            }
+        }
+    }
+
+    /**
+     * Changes the headcount of a branch and role.
+     *
+     * @param placement the branch and role
+     * @param change the number of users added, or removed if negative
+     */
+    private static void change(Placement placement, int change) {
+        Headcount headcount = headcounts.computeIfAbsent(placement.branchID, branchID -> new Headcount());
+        if (placement.role == Role.STAFF) {
+            headcount.staff += change;
+        } else if (placement.role == Role.BRANCHMANAGER) {
+            headcount.managers += change;
+        }
+        if (headcount.staff == 0 && headcount.managers == 0) {
+            headcounts.remove(placement.branchID);
+        }
+    }
+
+    /**
+     * Rebuilds the headcounts from the stored users.
+     */
+    private static void recount() {
+        synchronized (headcountLock) {
+            headcounts.clear();
+            placements.clear();
+            for (BranchUser branchUser : branchUsers.snapshot()) {
+                count(branchUser);
+            }
+        }
     }
 }
@@ -0,0 +1,272 @@
+package stores;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * <p>A thread-safe map of records, used as the core of each store.
+ *
+ * <p>Reads do not lock. Writes lock one of a fixed set of stripes chosen by the key of the record, so
+ * writes to different keys rarely wait for each other. Writes also share a read lock that
+ * {@link #snapshot()} takes exclusively, so a snapshot is a consistent view of the records at a single
+ * point in time. The snapshot is cached until the next write, so repeated iteration does not copy the records.
+ *
+ * @param <K> the type of key
+ * @param <V> the type of record
+ */
+public class ConcurrentStore<K, V> {
+
+    /**
+     * The number of write lock stripes. Must be a power of two.
+     */
+    private static final int stripeCount = 32;
+
+    /**
+     * The records, keyed by the key derived from each record.
+     */
+    private final ConcurrentHashMap<K, V> entries = new ConcurrentHashMap<>();
+    /**
+     * Derives the key of a record.
+     */
+    private final Function<V, K> keyOf;
+    /**
+     * The write locks, each guarding the keys that hash to it.
+     */
+    private final ReentrantLock[] stripes = new ReentrantLock[stripeCount];
+    /**
+     * Shared by writes and held exclusively while a snapshot is taken.
+     */
+    private final ReentrantReadWriteLock snapshotLock = new ReentrantReadWriteLock();
+    /**
+     * The cached snapshot of the records, or null if a write has happened since it was taken.
+     */
+    private volatile List<V> snapshot;
+
+    /**
+     * Constructs an empty ConcurrentStore.
+     *
+     * @param keyOf derives the key of a record
+     */
+    public ConcurrentStore(Function<V, K> keyOf) {
+        this.keyOf = keyOf;
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Retrieves a record by its key, without locking.
+     *
+     * @param key the key of the record
+     * @return the record, or null if there is none
+     */
+    public V get(K key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Checks whether a record with the given key exists, without locking.
+     *
+     * @param key the key of the record
+     * @return true if the record exists, false otherwise
+     */
+    public boolean containsKey(K key) {
+        return entries.containsKey(key);
+    }
+
+    /**
+     * Returns the number of records.
+     *
+     * @return the number of records
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Adds a record unless a record with the same key exists.
+     *
+     * @param value the record to add
+     * @return true if the record was added, false if its key was already taken
+     */
+    public boolean add(V value) {
+        K key = keyOf.apply(value);
+        return write(key, () -> entries.putIfAbsent(key, value) == null);
+    }
+
+    /**
+     * Adds or replaces a record.
+     *
+     * @param value the record to store
+     * @return the record previously stored under the same key, or null if there was none
+     */
+    public V put(V value) {
+        K key = keyOf.apply(value);
+        return write(key, () -> entries.put(key, value));
+    }
+
+    /**
+     * Replaces a record only if a record with the same key exists.
+     *
+     * @param value the record to store
+     * @return true if the record was replaced, false if there was no record to replace
+     */
+    public boolean replace(V value) {
+        K key = keyOf.apply(value);
+        return write(key, () -> entries.replace(key, value) != null);
+    }
+
+    /**
+     * Removes the record with the given key.
+     *
+     * @param key the key of the record
+     * @return the removed record, or null if there was none
+     */
+    public V remove(K key) {
+        return write(key, () -> entries.remove(key));
+    }
+
+    /**
+     * Retrieves the record with the given key, creating and adding it first if there is none.
+     * Other writes to the same stripe wait while the record is created.
+     *
+     * @param key the key of the record
+     * @param create creates the record for the key
+     * @return the existing or created record
+     */
+    public V computeIfAbsent(K key, Function<K, V> create) {
+        V value = entries.get(key);
+        if (value != null) {
+            return value;
+        }
+        return write(key, () -> {
+            V existing = entries.get(key);
+            if (existing != null) {
+                return existing;
+            }
+            V created = create.apply(key);
+            entries.put(key, created);
+            return created;
+        });
+    }
+
+    /**
+     * Runs an action while holding the write lock of a key, so that a read-modify-write of the record
+     * is not interleaved with other writes to it. The action must not take a snapshot of this store.
+     *
+     * @param <R> the type of result
+     * @param key the key of the record
+     * @param action the action to run
+     * @return the result of the action
+     */
+    public <R> R withLock(K key, Supplier<R> action) {
+        return write(key, action);
+    }
+
+    /**
+     * Returns a consistent, unmodifiable snapshot of every record.
+     * The snapshot is reused until the next write.
+     *
+     * @return the records at a single point in time
+     */
+    public List<V> snapshot() {
+        List<V> current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        snapshotLock.writeLock().lock();
+        try {
+            current = snapshot;
+            if (current == null) {
+                current = Collections.unmodifiableList(new ArrayList<>(entries.values()));
+                snapshot = current;
+            }
+            return current;
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns a consistent copy of the records as a HashMap, such as for writing them to a data file.
+     *
+     * @return a new HashMap of the records, keyed by the key of each record
+     */
+    public HashMap<K, V> toHashMap() {
+        List<V> values = snapshot();
+        HashMap<K, V> copy = new HashMap<>(Math.max(16, (int) (values.size() / 0.75f) + 1));
+        for (V value : values) {
+            copy.put(keyOf.apply(value), value);
+        }
+        return copy;
+    }
+
+    /**
+     * Replaces every record with the given records, such as after reading them from a data file.
+     *
+     * @param values the new records keyed by their key, or null to remove every record
+     */
+    public void replaceAll(Map<K, V> values) {
+        snapshotLock.writeLock().lock();
+        try {
+            entries.clear();
+            if (values != null) {
+                entries.putAll(values);
+            }
+            snapshot = null;
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes every record.
+     */
+    public void clear() {
+        replaceAll(null);
+    }
+
+    /**
+     * Runs a write while holding the shared snapshot lock and the stripe of the key.
+     *
+     * @param <R> the type of result
+     * @param key the key being written
+     * @param action the write
+     * @return the result of the write
+     */
+    private <R> R write(K key, Supplier<R> action) {
+        snapshotLock.readLock().lock();
+        try {
+            ReentrantLock stripe = stripes[stripeIndex(key)];
+            stripe.lock();
+            try {
+                R result = action.get();
+                snapshot = null;
+                return result;
+            } finally {
+                stripe.unlock();
+            }
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the index of the stripe guarding a key.
+     *
+     * @param key the key
+     * @return the stripe index
+     */
+    private int stripeIndex(K key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & (stripeCount - 1);
+    }
+}
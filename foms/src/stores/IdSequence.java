@@ -0,0 +1,138 @@
+package stores;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * <p>A persisted, monotonic sequence of integer IDs.
+ *
+ * <p>IDs are handed out from a block held in memory, so allocating an ID does not touch the disk.
+ * When the block runs out, the next block is claimed by advancing the high-water mark stored in the
+ * sequence file under a file lock. The high-water mark is written before any ID of the block is used,
+ * so IDs are never reused after a restart, and processes sharing the file claim disjoint blocks.
+ * IDs left unused in a block when the process stops are skipped.
+ */
+public class IdSequence {
+
+    /**
+     * The path to the file holding the high-water mark.
+     */
+    private final String sequencePath;
+    /**
+     * The number of IDs claimed from the file at a time.
+     */
+    private final int blockSize;
+    /**
+     * The next ID to hand out from the current block.
+     */
+    private int next = 1;
+    /**
+     * The end (exclusive) of the current block.
+     */
+    private int blockEnd = 1;
+
+    /**
+     * Constructs an IdSequence backed by the given file.
+     *
+     * @param sequencePath the path to the file holding the high-water mark
+     * @param blockSize the number of IDs claimed from the file at a time
+     */
+    public IdSequence(String sequencePath, int blockSize) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Block size must be positive.");
+        }
+        this.sequencePath = sequencePath;
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Returns the next ID of the sequence.
+     *
+     * @return the next ID
+     */
+    public int next() {
+        return reserve(1);
+    }
+
+    /**
+     * Reserves a contiguous range of IDs.
+     *
+     * @param count the number of IDs to reserve
+     * @return the first ID of the range, which runs up to (first + count - 1)
+     * @throws IllegalArgumentException if the count is not positive
+     */
+    public synchronized int reserve(int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("Count must be positive.");
+        }
+        if (next + count > blockEnd) {
+            claim(count);
+        }
+        int first = next;
+        next += count;
+        return first;
+    }
+
+    /**
+     * Ensures that IDs handed out from now on are greater than the given ID, for when existing
+     * data already uses IDs the sequence file does not account for.
+     *
+     * @param usedID an ID that is already in use
+     */
+    public synchronized void ensureAbove(int usedID) {
+        if (next <= usedID) {
+            next = usedID + 1;
+            if (blockEnd < next) {
+                blockEnd = next;
+            }
+        }
+    }
+
+    /**
+     * Claims a new block from the sequence file that holds at least the given number of IDs.
+     *
+     * @param count the number of IDs the block must hold
+     * @throws IllegalStateException if the sequence file cannot be read or written
+     */
+    private void claim(int count) {
+        try (FileChannel channel = FileChannel.open(Paths.get(sequencePath),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            FileLock lock = channel.lock();
+            try {
+                claim(channel, count);
+            } finally {
+                lock.release();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to claim IDs from " + sequencePath + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Claims a new block from the locked sequence file.
+     *
+     * @param channel the sequence file, locked by the caller
+     * @param count the number of IDs the block must hold
+     * @throws IOException if the sequence file cannot be read or written
+     */
+    private void claim(FileChannel channel, int count) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES);
+        int highWaterMark = 1;
+        if (channel.read(buffer, 0) == Integer.BYTES) {
+            buffer.flip();
+            highWaterMark = buffer.getInt();
+        }
+        int start = Math.max(highWaterMark, next);
+        int end = start + Math.max(count, blockSize);
+        buffer.clear();
+        buffer.putInt(end).flip();
+        channel.write(buffer, 0);
+        channel.force(false);
+        next = start;
+        blockEnd = end;
+    }
+}
@@ -0,0 +1,462 @@
+package stores;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import enums.ReservationStatus;
+import models.BranchMenuItem;
+import models.Reservation;
+
+/**
+ * <p>Tracks the stock of each menu item that is free to be added to a cart, and the reservations carts hold.
+ *
+ * <p>A cart reserves stock when an item is added to it, which takes the quantity off the item's free
+ * stock with a compare-and-set on a per-item counter, so two carts can never both take the last unit.
+ * Checking out commits the reservation, which deducts the quantity from the availability stored in
+ * {@link BranchMenuItemStorage}; cancelling releases it back to the free stock. A reservation that is
+ * not used for {@link #getReservationTimeout()} milliseconds expires and is released by a background
+ * sweep, so abandoned carts do not hold stock forever. An expired reservation is taken again on its
+ * next use, if the stock is still free.
+ *
+ * <p>Reservations are held in memory only. The stored availability of an item is only changed by
+ * commits, so stock held by carts when the application exits is not lost. Commits and returned stock
+ * change the availability by a quantity under the write lock of the stored item, so a manager setting
+ * the availability at the same moment is not overwritten. All methods and fields are static.
+ */
+public class InventoryStorage {
+
+    /**
+     * How often, in milliseconds, expired reservations are swept.
+     */
+    private static final long sweepIntervalMillis = 30_000;
+    /**
+     * How long, in milliseconds, a reservation is kept after its last use.
+     */
+    private static volatile long reservationTimeoutMillis = 10 * 60_000;
+    /**
+     * The stock of each menu item that has been reserved from, keyed by item ID.
+     */
+    private static final ConcurrentHashMap<Integer, ItemStock> stocks = new ConcurrentHashMap<>();
+    /**
+     * The open reservations, keyed by reservation ID.
+     */
+    private static final ConcurrentHashMap<Integer, Reservation> reservations = new ConcurrentHashMap<>();
+    /**
+     * The ID of the next reservation.
+     */
+    private static final AtomicInteger nextReservationID = new AtomicInteger(1);
+
+    static {
+        ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "foms-reservation-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(InventoryStorage::expireReservations, sweepIntervalMillis, sweepIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * The stock of a single menu item.
+     */
+    private static class ItemStock {
+        /**
+         * The stock that is not reserved by any cart. Changed without locking by reservations.
+         */
+        private final AtomicInteger free;
+        /**
+         * The stock as stored in the menu item. Guarded by the monitor of this object, as is writing it back to the menu item.
+         */
+        private int stock;
+
+        /**
+         * Constructs the stock of a menu item that has nothing reserved.
+         *
+         * @param stock the availability of the menu item
+         */
+        ItemStock(int stock) {
+            this.stock = stock;
+            this.free = new AtomicInteger(stock);
+        }
+
+        /**
+         * Takes a quantity off the free stock if enough of it is free.
+         *
+         * @param quantity the quantity to take
+         * @return true if the quantity was taken, false if not enough stock is free
+         */
+        boolean take(int quantity) {
+            while (true) {
+                int current = free.get();
+                if (current < quantity) {
+                    return false;
+                }
+                if (free.compareAndSet(current, current - quantity)) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Returns a quantity to the free stock.
+         *
+         * @param quantity the quantity to return
+         */
+        void give(int quantity) {
+            free.addAndGet(quantity);
+        }
+    }
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private InventoryStorage() {
+    }
+
+    /**
+     * Opens a reservation that holds no stock yet.
+     *
+     * @param branchID the ID of the branch whose stock will be reserved
+     * @return the new reservation
+     */
+    public static Reservation open(int branchID) {
+        Reservation reservation = new Reservation(nextReservationID.getAndIncrement(), branchID, System.currentTimeMillis() + reservationTimeoutMillis);
+        reservations.put(reservation.getReservationID(), reservation);
+        return reservation;
+    }
+
+    /**
+     * Reserves a quantity of a menu item. An expired reservation is taken again first.
+     *
+     * @param reservation the reservation to add the quantity to
+     * @param itemID the ID of the menu item
+     * @param quantity the quantity to reserve
+     * @return true if the quantity was reserved, false if not enough stock is free or the reservation has been committed
+     * @throws IllegalArgumentException if the reservation is null or the quantity is not positive
+     */
+    public static boolean reserve(Reservation reservation, int itemID, int quantity) {
+        if (reservation == null || quantity < 1) {
+            throw new IllegalArgumentException("Parameters must be a non-null Reservation and a positive quantity.");
+        }
+        synchronized (reservation) {
+            if (!renew(reservation)) {
+                return false;
+            }
+            ItemStock stock = stock(itemID);
+            if (stock == null || !stock.take(quantity)) {
+                return false;
+            }
+            reservation.addQuantity(itemID, quantity);
+            return true;
+        }
+    }
+
+    /**
+     * Releases part of the quantity of a menu item held by a reservation.
+     *
+     * @param reservation the reservation holding the quantity
+     * @param itemID the ID of the menu item
+     * @param quantity the quantity to release, at most the quantity held
+     */
+    public static void release(Reservation reservation, int itemID, int quantity) {
+        if (reservation == null) {
+            return;
+        }
+        synchronized (reservation) {
+            int released = Math.min(quantity, reservation.getQuantity(itemID));
+            if (released <= 0 || reservation.getStatus() == ReservationStatus.COMMITTED) {
+                return;
+            }
+            reservation.addQuantity(itemID, -released);
+            if (reservation.getStatus() == ReservationStatus.OPEN) {
+                give(itemID, released);
+                reservation.setExpiresAt(System.currentTimeMillis() + reservationTimeoutMillis);
+            }
+        }
+    }
+
+    /**
+     * Releases every quantity held by a reservation and closes it.
+     *
+     * @param reservation the reservation to release
+     */
+    public static void releaseAll(Reservation reservation) {
+        if (reservation == null) {
+            return;
+        }
+        synchronized (reservation) {
+            if (reservation.getStatus() == ReservationStatus.COMMITTED) {
+                return;
+            }
+            if (reservation.getStatus() == ReservationStatus.OPEN) {
+                giveAll(reservation);
+            }
+            reservation.clearQuantities();
+            reservation.setStatus(ReservationStatus.RELEASED);
+            reservations.remove(reservation.getReservationID());
+        }
+    }
+
+    /**
+     * Keeps a reservation open for another timeout, such as while its cart is being paid for.
+     * An expired reservation is taken again first.
+     *
+     * @param reservation the reservation to hold
+     * @return true if the reservation is open, false if its stock is no longer free or it has been committed
+     */
+    public static boolean hold(Reservation reservation) {
+        if (reservation == null) {
+            return false;
+        }
+        synchronized (reservation) {
+            return renew(reservation);
+        }
+    }
+
+    /**
+     * Commits a reservation, deducting every quantity it holds from the stored availability of the
+     * menu items. An expired reservation is taken again first.
+     *
+     * @param reservation the reservation to commit
+     * @return true if the reservation was committed, false if its stock is no longer free or it has already been committed
+     */
+    public static boolean commit(Reservation reservation) {
+        if (reservation == null) {
+            return false;
+        }
+        synchronized (reservation) {
+            if (!renew(reservation)) {
+                return false;
+            }
+            for (Map.Entry<Integer, Integer> line : reservation.getQuantities().entrySet()) {
+                sell(line.getKey(), line.getValue());
+            }
+            reservation.setStatus(ReservationStatus.COMMITTED);
+            reservations.remove(reservation.getReservationID());
+            return true;
+        }
+    }
+
+    /**
+     * Returns the stock of a menu item that is free to be reserved.
+     *
+     * @param itemID the ID of the menu item
+     * @return the free stock, or 0 if the item does not exist
+     */
+    public static int getAvailable(int itemID) {
+        ItemStock stock = stock(itemID);
+        return stock == null ? 0 : Math.max(0, stock.free.get());
+    }
+
+    /**
+     * Returns the number of open reservations.
+     *
+     * @return the number of open reservations
+     */
+    public static int getOpenReservationCount() {
+        return reservations.size();
+    }
+
+    /**
+     * Returns how long a reservation is kept after its last use.
+     *
+     * @return the reservation timeout, in milliseconds
+     */
+    public static long getReservationTimeout() {
+        return reservationTimeoutMillis;
+    }
+
+    /**
+     * Sets how long a reservation is kept after its last use. Applies from the next use of each reservation.
+     *
+     * @param millis the reservation timeout, in milliseconds
+     * @throws IllegalArgumentException if the timeout is not positive
+     */
+    public static void setReservationTimeout(long millis) {
+        if (millis <= 0) {
+            throw new IllegalArgumentException("Reservation timeout must be positive.");
+        }
+        reservationTimeoutMillis = millis;
+    }
+
+    /**
+     * Releases the stock of every open reservation that has expired. Called periodically by a background thread.
+     *
+     * @return the number of reservations released
+     */
+    public static int expireReservations() {
+        long now = System.currentTimeMillis();
+        int expired = 0;
+        for (Reservation reservation : reservations.values()) {
+            synchronized (reservation) {
+                if (reservation.getStatus() == ReservationStatus.OPEN && reservation.getExpiresAt() <= now) {
+                    // The quantities are kept, so that the reservation can be taken again on its next use
+                    giveAll(reservation);
+                    reservation.setStatus(ReservationStatus.RELEASED);
+                    reservations.remove(reservation.getReservationID());
+                    expired++;
+                }
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * Returns a quantity of a menu item that was sold but not handed over, such as the items of an
+     * order that was never collected, to its stored availability and its free stock.
+     *
+     * @param itemID the ID of the menu item
+     * @param quantity the quantity to return
+     * @return true if the stock was returned, false if the item no longer exists
+     * @throws IllegalArgumentException if the quantity is not positive
+     */
+    public static boolean restore(int itemID, int quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive.");
+        }
+        ItemStock stock = stock(itemID);
+        if (stock == null) {
+            return false;
+        }
+        synchronized (stock) {
+            if (!BranchMenuItemStorage.adjustAvailability(itemID, quantity)) {
+                return false;
+            }
+            stock.stock += quantity;
+            stock.give(quantity);
+        }
+        return true;
+    }
+
+    /**
+     * Takes the stored availability of a menu item as its new stock, such as after a manager edits it.
+     * Stock already reserved stays reserved. Called by {@link BranchMenuItemStorage} when an item is stored.
+     *
+     * @param item the stored menu item
+     */
+    static void restock(BranchMenuItem item) {
+        ItemStock stock = stocks.get(item.getItemID());
+        if (stock == null) {
+            return;
+        }
+        synchronized (stock) {
+            int delta = item.getAvailability() - stock.stock;
+            stock.stock = item.getAvailability();
+            stock.give(delta);
+        }
+    }
+
+    /**
+     * Forgets the stock of a menu item, such as after it is removed.
+     *
+     * @param itemID the ID of the menu item
+     */
+    static void forget(int itemID) {
+        stocks.remove(itemID);
+    }
+
+    /**
+     * Forgets the stock of every menu item, such as after the menu items are loaded again.
+     */
+    static void reset() {
+        stocks.clear();
+    }
+
+    /**
+     * Keeps a reservation open for another timeout, taking its stock again if it has expired.
+     * Must be called while holding the monitor of the reservation.
+     *
+     * @param reservation the reservation
+     * @return true if the reservation is open, false if it has been committed or its stock is no longer free
+     */
+    private static boolean renew(Reservation reservation) {
+        switch (reservation.getStatus()) {
+            case OPEN:
+                reservation.setExpiresAt(System.currentTimeMillis() + reservationTimeoutMillis);
+                return true;
+            case RELEASED:
+                HashMap<Integer, Integer> taken = new HashMap<>();
+                for (Map.Entry<Integer, Integer> line : reservation.getQuantities().entrySet()) {
+                    ItemStock stock = stock(line.getKey());
+                    if (stock == null || !stock.take(line.getValue())) {
+                        for (Map.Entry<Integer, Integer> undo : taken.entrySet()) {
+                            give(undo.getKey(), undo.getValue());
+                        }
+                        return false;
+                    }
+                    taken.put(line.getKey(), line.getValue());
+                }
+                reservation.setStatus(ReservationStatus.OPEN);
+                reservation.setExpiresAt(System.currentTimeMillis() + reservationTimeoutMillis);
+                reservations.put(reservation.getReservationID(), reservation);
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Returns every quantity held by a reservation to the free stock, keeping the quantities in the reservation.
+     *
+     * @param reservation the reservation
+     */
+    private static void giveAll(Reservation reservation) {
+        for (Map.Entry<Integer, Integer> line : reservation.getQuantities().entrySet()) {
+            give(line.getKey(), line.getValue());
+        }
+    }
+
+    /**
+     * Returns a quantity of a menu item to the free stock, unless the item has been forgotten.
+     *
+     * @param itemID the ID of the menu item
+     * @param quantity the quantity to return
+     */
+    private static void give(int itemID, int quantity) {
+        ItemStock stock = stocks.get(itemID);
+        if (stock != null) {
+            stock.give(quantity);
+        }
+    }
+
+    /**
+     * Deducts a reserved quantity from the stock of a menu item and from the availability of the stored item.
+     *
+     * @param itemID the ID of the menu item
+     * @param quantity the quantity sold
+     */
+    private static void sell(int itemID, int quantity) {
+        ItemStock stock = stocks.get(itemID);
+        if (stock == null) {
+            return;
+        }
+        synchronized (stock) {
+            if (BranchMenuItemStorage.adjustAvailability(itemID, -quantity)) {
+                stock.stock -= quantity;
+            }
+        }
+    }
+
+    /**
+     * Returns the stock of a menu item, starting from its stored availability if nothing has been reserved from it yet.
+     *
+     * @param itemID the ID of the menu item
+     * @return the stock of the item, or null if the item does not exist
+     */
+    private static ItemStock stock(int itemID) {
+        ItemStock stock = stocks.get(itemID);
+        if (stock != null) {
+            return stock;
+        }
+        // Read outside of computeIfAbsent, as the first read may load the menu items, which resets the stocks
+        BranchMenuItem item = BranchMenuItemStorage.get(itemID);
+        if (item == null) {
+            return null;
+        }
+        return stocks.computeIfAbsent(itemID, id -> new ItemStock(item.getAvailability()));
+    }
+}
@@ -0,0 +1,218 @@
+package stores;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.function.Consumer;
+
+import enums.OrderStatus;
+import interfaces.IOrderListener;
+import models.Order;
+
+/**
+ * <p>Queues the orders each branch's kitchen still has to prepare, in the order they were placed.
+ *
+ * <p>The queue of a branch holds its {@link OrderStatus#PREPARING} orders and nothing else, so the
+ * next tickets are read from its head without going through the branch's order history. Orders join
+ * the queue when they are added to {@link OrderStorage}, and leave it when their status changes or
+ * they are removed; the queue follows OrderStorage through its listener events and is never changed
+ * directly. The queue of a branch is built when it is first used, from the status index of the
+ * branch's order shard, so it is rebuilt on restart without reading any other orders.
+ *
+ * <p>All methods and fields are static.
+ */
+public class KitchenQueue {
+
+    /**
+     * The queue of each branch that has been used, keyed by branch ID.
+     */
+    private static final ConcurrentStore<Integer, BranchQueue> queues = new ConcurrentStore<>(BranchQueue::getBranchID);
+
+    static {
+        OrderStorage.addListener(new IOrderListener() {
+            @Override
+            public void onOrderAdded(Order order) {
+                if (order.getOrderStatus() == OrderStatus.PREPARING) {
+                    apply(order.getBranchID(), queue -> queue.enqueue(order));
+                }
+            }
+
+            @Override
+            public void onOrderStatusChanged(Order order, OrderStatus previousStatus) {
+                if (order.getOrderStatus() == OrderStatus.PREPARING) {
+                    apply(order.getBranchID(), queue -> queue.enqueue(order));
+                } else if (previousStatus == OrderStatus.PREPARING) {
+                    apply(order.getBranchID(), queue -> queue.dequeue(order.getOrderID()));
+                }
+            }
+
+            @Override
+            public void onOrderRemoved(Order order) {
+                apply(order.getBranchID(), queue -> queue.dequeue(order.getOrderID()));
+            }
+
+            @Override
+            public void onBranchRemoved(int branchID) {
+                queues.remove(branchID);
+            }
+
+            @Override
+            public void onOrdersReloaded() {
+                queues.clear();
+            }
+        });
+    }
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private KitchenQueue() {
+    }
+
+    /**
+     * Returns the next orders in the queue of a branch, without removing them.
+     *
+     * @param branchID The ID of the branch.
+     * @param count The maximum number of orders to return.
+     * @return Up to {@code count} orders from the head of the queue, oldest first.
+     * @throws IllegalArgumentException if the count is negative.
+     */
+    public static List<Order> peek(int branchID, int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Count must not be negative.");
+        }
+        return queue(branchID).peek(count);
+    }
+
+    /**
+     * Returns the order at the head of the queue of a branch, without removing it.
+     *
+     * @param branchID The ID of the branch.
+     * @return The oldest order still being prepared, or null if the queue is empty.
+     */
+    public static Order next(int branchID) {
+        List<Order> head = queue(branchID).peek(1);
+        return head.isEmpty() ? null : head.get(0);
+    }
+
+    /**
+     * Returns the number of orders in the queue of a branch.
+     *
+     * @param branchID The ID of the branch.
+     * @return The number of orders still being prepared.
+     */
+    public static int size(int branchID) {
+        return queue(branchID).size();
+    }
+
+    /**
+     * Returns the queue of a branch, building it from the branch's orders if it has not been used yet.
+     *
+     * @param branchID The ID of the branch.
+     * @return The queue of the branch.
+     */
+    private static BranchQueue queue(int branchID) {
+        // Loading the orders clears the queues, so it must not happen while a queue is being built
+        OrderStorage.ensureLoaded();
+        return queues.computeIfAbsent(branchID,
+                id -> new BranchQueue(id, OrderStorage.getByBranchAndStatus(id, OrderStatus.PREPARING)));
+    }
+
+    /**
+     * Applies a change to the queue of a branch if it has been built. A queue that has not been built
+     * yet reads the change from OrderStorage when it is built.
+     *
+     * @param branchID The ID of the branch.
+     * @param change The change to apply.
+     */
+    private static void apply(int branchID, Consumer<BranchQueue> change) {
+        queues.withLock(branchID, () -> {
+            BranchQueue queue = queues.get(branchID);
+            if (queue != null) {
+                change.accept(queue);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * The queue of a single branch. Adding an order that is already queued, or removing one that is
+     * not, has no effect, so events may be applied to a queue built after they happened.
+     */
+    private static class BranchQueue {
+
+        /**
+         * The ID of the branch.
+         */
+        private final int branchID;
+        /**
+         * The queued orders, keyed by order ID, oldest first.
+         */
+        private final LinkedHashMap<Integer, Order> orders = new LinkedHashMap<>();
+
+        /**
+         * Constructs a BranchQueue holding the given orders.
+         *
+         * @param branchID The ID of the branch.
+         * @param preparing The orders being prepared, in the order they were placed.
+         */
+        BranchQueue(int branchID, List<Order> preparing) {
+            this.branchID = branchID;
+            for (Order order : preparing) {
+                orders.put(order.getOrderID(), order);
+            }
+        }
+
+        /**
+         * Gets the ID of the branch.
+         *
+         * @return The ID of the branch.
+         */
+        int getBranchID() {
+            return branchID;
+        }
+
+        /**
+         * Adds an order to the tail of the queue, unless it is already queued.
+         *
+         * @param order The order to add.
+         */
+        synchronized void enqueue(Order order) {
+            orders.putIfAbsent(order.getOrderID(), order);
+        }
+
+        /**
+         * Removes an order from the queue, wherever it is.
+         *
+         * @param orderID The ID of the order to remove.
+         */
+        synchronized void dequeue(int orderID) {
+            orders.remove(orderID);
+        }
+
+        /**
+         * Returns the orders at the head of the queue.
+         *
+         * @param count The maximum number of orders to return.
+         * @return Up to {@code count} orders, oldest first.
+         */
+        synchronized List<Order> peek(int count) {
+            List<Order> head = new ArrayList<>(Math.min(count, orders.size()));
+            Iterator<Order> iterator = orders.values().iterator();
+            while (head.size() < count && iterator.hasNext()) {
+                head.add(iterator.next());
+            }
+            return head;
+        }
+
+        /**
+         * Returns the number of orders in the queue.
+         *
+         * @return The number of orders.
+         */
+        synchronized int size() {
+            return orders.size();
+        }
+    }
+}
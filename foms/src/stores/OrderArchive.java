@@ -0,0 +1,351 @@
+package stores;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import enums.OrderStatus;
+import interfaces.IOrderListener;
+import models.Order;
+
+/**
+ * <p>Moves finished orders out of {@link OrderStorage} into an archive of immutable segment files,
+ * so that the stored orders, which are snapshotted and journalled, only hold the orders still in use.
+ *
+ * <p>An archive pass takes every {@link OrderStatus#COMPLETED}, {@link OrderStatus#CANCELLED} and
+ * {@link OrderStatus#UNAVAILABLE} order placed before a cutoff, writes them to new
+ * {@link ArchiveSegment}s in {@code foms/data/archive}, and then removes them from the stored
+ * orders. The segment is on disk before the orders are removed, so a crash never loses orders;
+ * a crash between the two steps can leave an order both stored and archived, and the next pass then
+ * removes it from the stored orders without archiving it again. A pass only reads the branches whose
+ * orders are already loaded. Once started, passes run daily in the background, and the orders of a
+ * branch are also archived when they are loaded, archiving orders older than the retention period,
+ * which defaults to the system property {@code foms.archive.retentionDays} (30).
+ *
+ * <p>Archived orders are read with {@link #scanRecords(Integer, LocalDateTime, LocalDateTime, Consumer)},
+ * which reads them in place from the mapped segments through a reused {@link ArchivedOrder}, or with
+ * {@link #scan(Integer, LocalDateTime, LocalDateTime, Consumer)}, which copies each one into an
+ * {@link Order}. Both skip segments outside the period scanned. All methods and fields are static.
+ */
+public class OrderArchive {
+
+    /**
+     * The directory holding the segment files.
+     */
+    private static final String archiveDirectory = "foms/data/archive";
+    /**
+     * The names of the segment files, capturing the segment number.
+     */
+    private static final Pattern segmentFilePattern = Pattern.compile("segment-(\\d+)\\.seg");
+    /**
+     * The maximum number of orders written to one segment.
+     */
+    private static final int maxSegmentRows = 100_000;
+    /**
+     * The statuses of orders that can be archived.
+     */
+    private static final OrderStatus[] finalStatuses = { OrderStatus.COMPLETED, OrderStatus.CANCELLED, OrderStatus.UNAVAILABLE };
+    /**
+     * How many days orders are kept in the stored orders before they are archived.
+     */
+    private static final long retentionDays = Long.getLong("foms.archive.retentionDays", 30);
+    /**
+     * The segments of the archive, oldest first.
+     */
+    private static final CopyOnWriteArrayList<ArchiveSegment> segments = new CopyOnWriteArrayList<>();
+    /**
+     * Runs the archive passes.
+     */
+    private static final ScheduledExecutorService archiver = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "foms-order-archiver");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * The IDs of the archived orders of each branch, read from the segments on the first archive pass.
+     * Guarded by the monitor of the class.
+     */
+    private static HashMap<Integer, BitSet> archivedOrderIDs;
+    /**
+     * Whether the segments have been opened.
+     */
+    private static volatile boolean loaded;
+    /**
+     * Whether the daily passes have been started.
+     */
+    private static volatile boolean started;
+    /**
+     * The number of the last segment written.
+     */
+    private static int lastSegmentNumber;
+
+    static {
+        OrderStorage.addListener(new IOrderListener() {
+            @Override
+            public void onShardLoaded(int branchID) {
+                if (started) {
+                    archiver.execute(() -> archive(Arrays.asList(branchID), LocalDateTime.now().minusDays(retentionDays)));
+                }
+            }
+        });
+    }
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private OrderArchive() {
+    }
+
+    /**
+     * Starts archiving orders older than the retention period in the background, now and then once a
+     * day, and whenever the orders of a branch are loaded. Does nothing if already started.
+     */
+    public static synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        archiver.scheduleWithFixedDelay(() -> archive(LocalDateTime.now().minusDays(retentionDays)), 0, 1, TimeUnit.DAYS);
+    }
+
+    /**
+     * Archives every finished order placed before a cutoff, of the branches whose orders are loaded.
+     *
+     * @param cutoff The time before which finished orders are archived.
+     * @return The number of orders archived.
+     */
+    public static int archive(LocalDateTime cutoff) {
+        return archive(OrderStorage.getLoadedBranchIDs(), cutoff);
+    }
+
+    /**
+     * Archives every finished order of some branches placed before a cutoff. Orders that are already
+     * archived are only removed from the stored orders.
+     *
+     * @param branchIDs The IDs of the branches.
+     * @param cutoff The time before which finished orders are archived.
+     * @return The number of orders archived.
+     */
+    private static synchronized int archive(List<Integer> branchIDs, LocalDateTime cutoff) {
+        ensureLoaded();
+        if (archivedOrderIDs == null) {
+            archivedOrderIDs = readArchivedOrderIDs();
+        }
+        List<Order> batch = new ArrayList<>();
+        List<Order> alreadyArchived = new ArrayList<>();
+        int archived = 0;
+        for (int branchID : branchIDs) {
+            BitSet branchArchived = archivedOrderIDs.get(branchID);
+            for (OrderStatus status : finalStatuses) {
+                for (Order order : OrderStorage.getByBranchAndStatus(branchID, status)) {
+                    if (branchArchived != null && order.getOrderID() >= 0 && branchArchived.get(order.getOrderID())) {
+                        // Left stored by a pass that stopped after writing its segment
+                        alreadyArchived.add(order);
+                    } else if (order.getOrderTime().isBefore(cutoff)) {
+                        batch.add(order);
+                        if (batch.size() == maxSegmentRows) {
+                            archived += writeSegment(batch);
+                            batch = new ArrayList<>();
+                        }
+                    }
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            archived += writeSegment(batch);
+        }
+        if (!alreadyArchived.isEmpty()) {
+            OrderStorage.removeArchived(alreadyArchived);
+        }
+        if (archived > 0 || !alreadyArchived.isEmpty()) {
+            PersistenceEngine.flush();
+        }
+        return archived;
+    }
+
+    /**
+     * Reads the archived orders of a branch placed in a period, segment by segment, in the order they
+     * were placed within each segment.
+     *
+     * @param branchID The ID of the branch, or null for every branch.
+     * @param from The start of the period, or null for no limit.
+     * @param to The end of the period, or null for no limit.
+     * @param consumer Receives a copy of each matching order.
+     */
+    public static void scan(Integer branchID, LocalDateTime from, LocalDateTime to, Consumer<Order> consumer) {
+        scanRecords(branchID, from, to, record -> consumer.accept(record.toOrder()));
+    }
+
+    /**
+     * Reads the archived orders of a branch placed in a period in place, segment by segment, in the
+     * order they were placed within each segment. Every matching order is passed to the consumer
+     * through the same {@link ArchivedOrder}, which is only valid until the consumer returns, so the
+     * scan does not grow the heap with the number of orders read. Orders are filtered on the mapped
+     * columns before anything is created for them.
+     *
+     * @param branchID The ID of the branch, or null for every branch.
+     * @param from The start of the period, or null for no limit.
+     * @param to The end of the period, or null for no limit.
+     * @param consumer Receives a view of each matching order.
+     */
+    public static void scanRecords(Integer branchID, LocalDateTime from, LocalDateTime to, Consumer<ArchivedOrder> consumer) {
+        ensureLoaded();
+        long fromSeconds = from == null ? Long.MIN_VALUE : ArchiveSegment.secondsOf(from);
+        long toSeconds = to == null ? Long.MAX_VALUE : ArchiveSegment.secondsOf(to);
+        ArchivedOrder record = new ArchivedOrder();
+        for (ArchiveSegment segment : segments) {
+            if (!segment.overlaps(from, to)) {
+                continue;
+            }
+            try {
+                for (int row = 0; row < segment.getRowCount(); row++) {
+                    if (branchID != null && segment.getBranchID(row) != branchID) {
+                        continue;
+                    }
+                    long orderSeconds = segment.getOrderSeconds(row);
+                    if (orderSeconds < fromSeconds || orderSeconds > toSeconds) {
+                        continue;
+                    }
+                    record.moveTo(segment, row);
+                    consumer.accept(record);
+                }
+            } catch (UncheckedIOException e) {
+                System.out.println("Error reading archive segment " + segment.getPath() + ": " + e.getCause().getMessage());
+            }
+        }
+    }
+
+    /**
+     * Returns the number of archived orders.
+     *
+     * @return The number of orders in every segment.
+     */
+    public static int getArchivedCount() {
+        ensureLoaded();
+        int count = 0;
+        for (ArchiveSegment segment : segments) {
+            count += segment.getRowCount();
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of segments of the archive.
+     *
+     * @return The number of segments.
+     */
+    public static int getSegmentCount() {
+        ensureLoaded();
+        return segments.size();
+    }
+
+    /**
+     * Writes a batch of orders to a new segment, then removes them from the stored orders.
+     *
+     * @param batch The orders to archive.
+     * @return The number of orders archived, or 0 if the segment could not be written.
+     */
+    private static int writeSegment(List<Order> batch) {
+        String path = archiveDirectory + "/" + String.format("segment-%06d.seg", lastSegmentNumber + 1);
+        try {
+            ArchiveSegment.write(path, batch);
+            segments.add(new ArchiveSegment(path));
+        } catch (IOException e) {
+            System.out.println("Error writing archive segment " + path + ": " + e.getMessage());
+            return 0;
+        }
+        lastSegmentNumber++;
+        for (Order order : batch) {
+            markArchived(archivedOrderIDs, order.getBranchID(), order.getOrderID());
+        }
+        OrderStorage.removeArchived(batch);
+        return batch.size();
+    }
+
+    /**
+     * Reads the IDs of the archived orders of each branch from the order ID and branch columns of every segment.
+     *
+     * @return The IDs of the archived orders, by branch ID.
+     */
+    private static HashMap<Integer, BitSet> readArchivedOrderIDs() {
+        HashMap<Integer, BitSet> orderIDs = new HashMap<>();
+        for (ArchiveSegment segment : segments) {
+            try {
+                for (int row = 0; row < segment.getRowCount(); row++) {
+                    markArchived(orderIDs, segment.getBranchID(row), segment.getOrderID(row));
+                }
+            } catch (UncheckedIOException e) {
+                System.out.println("Error reading archive segment " + segment.getPath() + ": " + e.getCause().getMessage());
+            }
+        }
+        return orderIDs;
+    }
+
+    /**
+     * Records the ID of an archived order.
+     *
+     * @param orderIDs The IDs of the archived orders, by branch ID.
+     * @param branchID The ID of the branch of the order.
+     * @param orderID The ID of the order.
+     */
+    private static void markArchived(HashMap<Integer, BitSet> orderIDs, int branchID, int orderID) {
+        if (orderID >= 0) {
+            orderIDs.computeIfAbsent(branchID, id -> new BitSet()).set(orderID);
+        }
+    }
+
+    /**
+     * Opens the segments of the archive if they have not been opened yet.
+     */
+    private static void ensureLoaded() {
+        if (!loaded) {
+            synchronized (OrderArchive.class) {
+                if (!loaded) {
+                    load();
+                }
+            }
+        }
+    }
+
+    /**
+     * Opens every segment of the archive. Segments that cannot be read are skipped.
+     */
+    private static void load() {
+        segments.clear();
+        archivedOrderIDs = null;
+        File directory = new File(archiveDirectory);
+        if (!directory.exists() && !directory.mkdirs()) {
+            System.out.println("Error creating archive directory " + archiveDirectory + ".");
+        }
+        String[] names = directory.list();
+        if (names != null) {
+            Arrays.sort(names);
+            for (String name : names) {
+                Matcher matcher = segmentFilePattern.matcher(name);
+                if (matcher.matches()) {
+                    lastSegmentNumber = Math.max(lastSegmentNumber, Integer.parseInt(matcher.group(1)));
+                    try {
+                        segments.add(new ArchiveSegment(archiveDirectory + "/" + name));
+                    } catch (IOException e) {
+                        System.out.println("Error reading archive segment " + name + ": " + e.getMessage());
+                    }
+                }
+            }
+        }
+        loaded = true;
+    }
+}
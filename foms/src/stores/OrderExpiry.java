@@ -0,0 +1,237 @@
+package stores;
+
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import enums.OrderStatus;
+import interfaces.IOrderListener;
+import models.BranchMenuItem;
+import models.Order;
+import models.OrderItem;
+import utils.TimerWheel;
+
+/**
+ * <p>Marks orders that are not collected in time as {@link OrderStatus#UNAVAILABLE}, and returns
+ * their items to the stock of the branch.
+ *
+ * <p>When an order becomes ready, its collection deadline is filed in a {@link TimerWheel}, and it is
+ * taken off the wheel again when the order is collected, cancelled or removed; the wheel follows
+ * {@link OrderStorage} through its listener events. A background thread advances the wheel once per
+ * tick and expires the orders whose deadline passed, in batches, so the cost of a tick depends on the
+ * orders expiring rather than on the orders waiting. The collection timeout defaults to the system
+ * property {@code foms.order.collectionTimeoutSeconds} (300).
+ *
+ * <p>Deadlines are held in memory only. The deadlines of the ready orders of a branch are filed from
+ * their ready time when the orders of that branch are read from disk, so the expiry never reads the
+ * orders of a branch that is not in use. All methods and fields are static.
+ */
+public class OrderExpiry {
+
+    /**
+     * How long, in milliseconds, a ready order waits to be collected.
+     */
+    private static final long collectionTimeoutMillis = Long.getLong("foms.order.collectionTimeoutSeconds", 300) * 1000;
+    /**
+     * The length of a tick of the wheel, in milliseconds.
+     */
+    private static final long tickMillis = 1000;
+    /**
+     * The number of slots of the wheel, enough for a rotation to outlast the collection timeout.
+     */
+    private static final int slotCount = 512;
+    /**
+     * The maximum number of orders expired together.
+     */
+    private static final int batchSize = 256;
+    /**
+     * The collection deadlines of the ready orders, keyed by branch ID and order ID (see {@link #keyOf(int, int)}).
+     */
+    private static final TimerWheel<Long> deadlines = new TimerWheel<>(tickMillis, slotCount);
+    /**
+     * Advances the wheel and files the deadlines of the stored orders.
+     */
+    private static final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "foms-order-expiry");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /**
+     * Whether the ticks have been started.
+     */
+    private static boolean started;
+
+    static {
+        OrderStorage.addListener(new IOrderListener() {
+            @Override
+            public void onOrderAdded(Order order) {
+                if (order.getOrderStatus() == OrderStatus.READY) {
+                    schedule(order);
+                }
+            }
+
+            @Override
+            public void onOrderStatusChanged(Order order, OrderStatus previousStatus) {
+                if (order.getOrderStatus() == OrderStatus.READY) {
+                    schedule(order);
+                } else if (previousStatus == OrderStatus.READY) {
+                    deadlines.cancel(keyOf(order.getBranchID(), order.getOrderID()));
+                }
+            }
+
+            @Override
+            public void onOrderRemoved(Order order) {
+                deadlines.cancel(keyOf(order.getBranchID(), order.getOrderID()));
+            }
+
+            @Override
+            public void onShardLoaded(int branchID) {
+                // The shard may be loaded while OrderStorage is being read, so its deadlines are filed afterwards
+                ticker.execute(() -> scheduleStoredOrders(branchID));
+            }
+
+            @Override
+            public void onOrdersReloaded() {
+                // Every shard is unloaded, and its deadlines are filed again when it is next loaded
+                deadlines.clear();
+            }
+        });
+    }
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private OrderExpiry() {
+    }
+
+    /**
+     * Starts expiring orders in the background, after filing the deadlines of the ready orders of the
+     * branches whose orders have already been read. Does nothing if already started.
+     */
+    public static synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        ticker.execute(() -> {
+            for (int branchID : OrderStorage.getLoadedBranchIDs()) {
+                scheduleStoredOrders(branchID);
+            }
+        });
+        ticker.scheduleWithFixedDelay(OrderExpiry::expireDue, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns how long a ready order waits to be collected.
+     *
+     * @return the collection timeout, in milliseconds
+     */
+    public static long getCollectionTimeout() {
+        return collectionTimeoutMillis;
+    }
+
+    /**
+     * Returns the number of ready orders waiting for their collection deadline.
+     *
+     * @return the number of pending deadlines
+     */
+    public static int getPendingCount() {
+        return deadlines.size();
+    }
+
+    /**
+     * Expires every ready order whose collection deadline has passed. Called once per tick by a background thread.
+     *
+     * @return the number of orders marked as unavailable
+     */
+    public static int expireDue() {
+        long now = System.currentTimeMillis();
+        List<Long> due = deadlines.advance(now);
+        int expired = 0;
+        for (int start = 0; start < due.size(); start += batchSize) {
+            expired += expire(due.subList(start, Math.min(due.size(), start + batchSize)), now);
+        }
+        return expired;
+    }
+
+    /**
+     * Marks a batch of orders as unavailable and returns their items to stock. Orders that have been
+     * collected, cancelled or removed since their deadline was filed are skipped.
+     *
+     * @param keys the keys of the orders
+     * @param now the current time, in milliseconds since the epoch
+     * @return the number of orders marked as unavailable
+     */
+    private static int expire(List<Long> keys, long now) {
+        int expired = 0;
+        for (long key : keys) {
+            Order order = OrderStorage.get((int) (key >>> 32), (int) key);
+            if (order == null || order.getOrderStatus() != OrderStatus.READY) {
+                continue;
+            }
+            if (order.getReadyTime() != null && deadlineOf(order) > now) {
+                // Made ready again since the deadline was filed
+                schedule(order);
+                continue;
+            }
+            if (!OrderStorage.compareAndSetStatus(order, OrderStatus.READY, OrderStatus.UNAVAILABLE)) {
+                // Collected or cancelled in the meantime, so its items are not returned to stock
+                continue;
+            }
+            for (OrderItem orderItem : order.getOrderItems()) {
+                BranchMenuItem item = BranchMenuItemStorage.get(order.getBranchID(), orderItem.getItemName());
+                if (item != null && orderItem.getQuantity() > 0) {
+                    InventoryStorage.restore(item.getItemID(), orderItem.getQuantity());
+                }
+            }
+            expired++;
+        }
+        return expired;
+    }
+
+    /**
+     * Files the deadline of every stored ready order of a branch.
+     *
+     * @param branchID the ID of the branch
+     */
+    private static void scheduleStoredOrders(int branchID) {
+        for (Order order : OrderStorage.getByBranchAndStatus(branchID, OrderStatus.READY)) {
+            schedule(order);
+        }
+    }
+
+    /**
+     * Files the collection deadline of a ready order.
+     *
+     * @param order the order
+     */
+    private static void schedule(Order order) {
+        deadlines.schedule(keyOf(order.getBranchID(), order.getOrderID()), deadlineOf(order));
+    }
+
+    /**
+     * Returns the collection deadline of a ready order.
+     *
+     * @param order the order
+     * @return the deadline, in milliseconds since the epoch
+     */
+    private static long deadlineOf(Order order) {
+        if (order.getReadyTime() == null) {
+            return System.currentTimeMillis() + collectionTimeoutMillis;
+        }
+        return order.getReadyTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() + collectionTimeoutMillis;
+    }
+
+    /**
+     * Returns the key of an order on the wheel. Order IDs are only looked up within their branch, so the key holds both.
+     *
+     * @param branchID the ID of the branch of the order
+     * @param orderID the ID of the order
+     * @return the key of the order
+     */
+    private static long keyOf(int branchID, int orderID) {
+        return ((long) branchID << 32) | (orderID & 0xFFFFFFFFL);
+    }
+}
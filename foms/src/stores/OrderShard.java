@@ -0,0 +1,366 @@
+package stores;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+import enums.OrderStatus;
+import models.Order;
+import services.BinaryDataService;
+import services.OrderJournalService;
+import utils.SnapshotFiles;
+
+/**
+ * <p>Holds the orders of a single branch, persisted in a snapshot file and a journal of its own.
+ *
+ * <p>Mutations are appended to the shard's journal and committed by the {@link PersistenceEngine},
+ * and the journal is folded into the snapshot at periodic checkpoints. The orders are also indexed by
+ * status, in the order they were placed. Used by {@link OrderStorage}, which loads shards on demand.
+ */
+class OrderShard {
+
+    /**
+     * The number of journal records after which the journal is folded into the snapshot.
+     */
+    private static final int checkpointInterval = 1000;
+
+    /**
+     * The ID of the branch whose orders the shard holds.
+     */
+    private final int branchID;
+    /**
+     * The path to the snapshot file of the shard.
+     */
+    private final String dataPath;
+    /**
+     * The path to the journal file of the shard.
+     */
+    private final String journalPath;
+    /**
+     * The journal that records each order mutation of the shard.
+     */
+    private final OrderJournalService journal;
+    /**
+     * The orders of the branch, keyed by order ID, in the order they were placed.
+     */
+    private LinkedHashMap<Integer, Order> orders = new LinkedHashMap<>();
+    /**
+     * The orders of the branch grouped by status, keyed by status and then order ID.
+     */
+    private EnumMap<OrderStatus, LinkedHashMap<Integer, Order>> statusIndex = new EnumMap<>(OrderStatus.class);
+    /**
+     * The status each order is currently indexed under. Orders are updated in place, so the previous
+     * status cannot be read from the order itself when it is updated.
+     */
+    private HashMap<Integer, OrderStatus> indexedStatus = new HashMap<>();
+    /**
+     * Held by {@link OrderStorage} while it changes an order of the shard and tells its listeners, so
+     * that the changes of a branch reach listeners in order, and can be held off while state derived
+     * from them is read.
+     */
+    private final ReentrantLock changeLock = new ReentrantLock();
+    /**
+     * Whether the shard has been deleted, after which it is no longer saved.
+     */
+    private boolean deleted;
+
+    /**
+     * Constructs an empty OrderShard for a branch. Call {@link #load()} to read its orders.
+     *
+     * @param branchID The ID of the branch.
+     * @param directory The directory holding the files of every shard.
+     */
+    OrderShard(int branchID, String directory) {
+        this.branchID = branchID;
+        this.dataPath = directory + "/branch-" + branchID + ".ser";
+        this.journalPath = directory + "/branch-" + branchID + ".journal";
+        this.journal = new OrderJournalService(journalPath);
+    }
+
+    /**
+     * Gets the ID of the branch whose orders the shard holds.
+     *
+     * @return The ID of the branch.
+     */
+    int getBranchID() {
+        return branchID;
+    }
+
+    /**
+     * Gets the lock held while an order of the shard is changed and its listeners are told.
+     *
+     * @return The change lock.
+     */
+    ReentrantLock getChangeLock() {
+        return changeLock;
+    }
+
+    /**
+     * Gets the version of the shard: the number of changes journalled since it was created, which is
+     * kept across restarts and checkpoints.
+     *
+     * @return The version.
+     */
+    synchronized long getVersion() {
+        return journal.getVersion();
+    }
+
+    /**
+     * Adds an order to the shard.
+     *
+     * @param order The order to add.
+     * @throws IllegalArgumentException if an order with the same ID already exists.
+     */
+    synchronized void add(Order order) {
+        if (orders.containsKey(order.getOrderID())) {
+            throw new IllegalArgumentException("Order with ID " + order.getOrderID() + " already exists.");
+        }
+        orders.put(order.getOrderID(), order);
+        index(order);
+        journal.append(OrderJournalService.PUT, order);
+        PersistenceEngine.markDirty(journalPath, this::save);
+    }
+
+    /**
+     * Removes an order from the shard.
+     *
+     * @param order The order to remove.
+     * @return The removed order, or null if the shard did not hold it.
+     */
+    synchronized Order remove(Order order) {
+        Order removed = orders.remove(order.getOrderID());
+        if (removed != null) {
+            unindex(removed);
+            journal.append(OrderJournalService.REMOVE, order);
+            PersistenceEngine.markDirty(journalPath, this::save);
+        }
+        return removed;
+    }
+
+    /**
+     * Updates an order of the shard. The order keeps its position among the orders of the branch,
+     * and is appended to its new status if its status changed.
+     *
+     * @param order The updated order.
+     * @return The status the order had before the update.
+     * @throws IllegalArgumentException if the shard does not hold the order.
+     */
+    synchronized OrderStatus update(Order order) {
+        if (!orders.containsKey(order.getOrderID())) {
+            throw new IllegalArgumentException("Cannot update non-existing or null Order.");
+        }
+        orders.put(order.getOrderID(), order);
+        OrderStatus status = indexedStatus.get(order.getOrderID());
+        if (status != order.getOrderStatus()) {
+            statusIndex.get(status).remove(order.getOrderID());
+            statusIndex.computeIfAbsent(order.getOrderStatus(), k -> new LinkedHashMap<>()).put(order.getOrderID(), order);
+            indexedStatus.put(order.getOrderID(), order.getOrderStatus());
+        } else {
+            statusIndex.get(status).put(order.getOrderID(), order);
+        }
+        journal.append(OrderJournalService.PUT, order);
+        PersistenceEngine.markDirty(journalPath, this::save);
+        return status;
+    }
+
+    /**
+     * Changes the status of an order of the shard only if it still has the expected status. The check
+     * and the change are done under the lock of the shard, so of two callers racing to move an order
+     * out of the same status, only one succeeds.
+     *
+     * @param orderID The ID of the order.
+     * @param expected The status the order must have.
+     * @param next The status to set.
+     * @return The updated order, or null if the shard does not hold the order or its status was not the expected one.
+     */
+    synchronized Order compareAndSetStatus(int orderID, OrderStatus expected, OrderStatus next) {
+        Order order = orders.get(orderID);
+        if (order == null || order.getOrderStatus() != expected) {
+            return null;
+        }
+        order.setOrderStatus(next);
+        update(order);
+        return order;
+    }
+
+    /**
+     * Retrieves an order of the shard by its ID.
+     *
+     * @param orderID The ID of the order.
+     * @return The order, or null if the shard does not hold it.
+     */
+    synchronized Order get(int orderID) {
+        return orders.get(orderID);
+    }
+
+    /**
+     * Retrieves every order of the shard, in the order they were placed.
+     *
+     * @return A list of the orders.
+     */
+    synchronized List<Order> getAll() {
+        return new ArrayList<>(orders.values());
+    }
+
+    /**
+     * Retrieves the orders of the shard with the given status, in the order they were placed.
+     *
+     * @param status The status of the orders.
+     * @return A list of the matching orders, which is empty if there are none.
+     */
+    synchronized List<Order> getByStatus(OrderStatus status) {
+        LinkedHashMap<Integer, Order> matching = statusIndex.get(status);
+        if (matching == null) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(matching.values());
+    }
+
+    /**
+     * Returns the highest order ID in the shard.
+     *
+     * @return The highest order ID, or 0 if the shard is empty.
+     */
+    synchronized int getMaxOrderID() {
+        int max = 0;
+        for (int orderID : orders.keySet()) {
+            max = Math.max(max, orderID);
+        }
+        return max;
+    }
+
+    /**
+     * Commits the pending journal records of the shard, and folds the journal into the snapshot once
+     * it has grown past the checkpoint interval. A failed checkpoint is retried at the next save.
+     *
+     * @throws IllegalStateException if the journal cannot be written; its records stay pending
+     */
+    synchronized void save() {
+        if (deleted) {
+            return;
+        }
+        if (!journal.commit()) {
+            throw new IllegalStateException("Unable to write " + journalPath + ".");
+        }
+        if (journal.getRecordCount() >= checkpointInterval) {
+            checkpoint();
+        }
+    }
+
+    /**
+     * Writes every order of the shard to its snapshot file and empties the journal.
+     *
+     * @return True if the snapshot was written, false otherwise.
+     */
+    synchronized boolean checkpoint() {
+        if (deleted) {
+            return false;
+        }
+        BinaryDataService dataService = new BinaryDataService();
+        if (dataService.exportOrderData(dataPath, new HashMap<>(orders))) {
+            journal.reset();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Loads the orders of the shard from its snapshot file, if there is one, and replays its journal on top of them.
+     */
+    synchronized void load() {
+        HashMap<Integer, Order> loaded = null;
+        if (SnapshotFiles.exists(dataPath)) {
+            BinaryDataService dataService = new BinaryDataService();
+            loaded = dataService.importOrderData(dataPath);
+        }
+        if (loaded == null) {
+            loaded = new HashMap<>();
+        }
+        journal.replay(loaded);
+        List<Integer> orderIDs = new ArrayList<>(loaded.keySet());
+        orderIDs.sort(null);
+        orders = new LinkedHashMap<>();
+        statusIndex = new EnumMap<>(OrderStatus.class);
+        indexedStatus = new HashMap<>();
+        for (int orderID : orderIDs) {
+            Order order = loaded.get(orderID);
+            orders.put(orderID, order);
+            index(order);
+        }
+    }
+
+    /**
+     * Replaces the orders of the shard without journaling them, and writes them to its snapshot file.
+     * Used when orders are moved into the shard from elsewhere.
+     *
+     * @param moved The orders of the branch, in the order they were placed.
+     * @return True if the snapshot was written, false otherwise.
+     */
+    synchronized boolean replaceAll(Collection<Order> moved) {
+        orders = new LinkedHashMap<>();
+        statusIndex = new EnumMap<>(OrderStatus.class);
+        indexedStatus = new HashMap<>();
+        for (Order order : moved) {
+            orders.put(order.getOrderID(), order);
+            index(order);
+        }
+        return checkpoint();
+    }
+
+    /**
+     * Clears the orders of the shard in memory.
+     */
+    synchronized void clear() {
+        orders.clear();
+        statusIndex.clear();
+        indexedStatus.clear();
+    }
+
+    /**
+     * Closes the journal of the shard. Pending journal records are committed first.
+     */
+    synchronized void close() {
+        if (!deleted) {
+            journal.commit();
+        }
+        journal.close();
+    }
+
+    /**
+     * Deletes the shard and its files.
+     */
+    synchronized void delete() {
+        deleted = true;
+        clear();
+        journal.reset();
+        journal.close();
+        SnapshotFiles.delete(dataPath);
+        SnapshotFiles.delete(journalPath);
+    }
+
+    /**
+     * Adds an order to the status index.
+     *
+     * @param order The order to index.
+     */
+    private void index(Order order) {
+        statusIndex.computeIfAbsent(order.getOrderStatus(), k -> new LinkedHashMap<>()).put(order.getOrderID(), order);
+        indexedStatus.put(order.getOrderID(), order.getOrderStatus());
+    }
+
+    /**
+     * Removes an order from the status index, using the status it was indexed under.
+     *
+     * @param order The order to remove from the index.
+     */
+    private void unindex(Order order) {
+        OrderStatus status = indexedStatus.remove(order.getOrderID());
+        if (status != null && statusIndex.containsKey(status)) {
+            statusIndex.get(status).remove(order.getOrderID());
+        }
+    }
+}
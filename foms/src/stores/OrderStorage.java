@@ -1,29 +1,84 @@
 package stores;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+import enums.OrderStatus;
+import interfaces.IOrderListener;
 import models.Order;
-import services.SerialDataService;
+import services.BinaryDataService;
+import services.OrderJournalService;
+import utils.SnapshotFiles;
 
 /**
  * The OrderStorage class implements the Storage interface and provides static methods to manage orders.
+ *
+ * <p>Orders are partitioned into one {@link OrderShard} per branch, each with its own snapshot file and
+ * journal under foms/data/orders. A shard is loaded the first time its branch is accessed, so a process
+ * serving a single branch only reads that branch's orders. Mutations are appended to the shard's journal
+ * and committed in groups by the {@link PersistenceEngine}.
+ *
+ * <p>The orders of each shard are also indexed by status, in the order they were placed, so that
+ * branch queries do not scan the orders of every other branch.
+ *
+ * <p>Each change to the orders of a branch is made, and its listeners told, before the next change
+ * of that branch starts, so state derived from the orders of a branch can be read in step with them
+ * through {@link #whileUnchanged(Consumer)}.
  */
 public class OrderStorage {
 
     /**
-     * The path to the serialized order data file.
+     * The directory holding the snapshot file and journal of each branch.
      */
-    private static final String orderDataPath = "foms/data/orders.ser";
+    private static final String orderDirectory = "foms/data/orders";
     /**
-     * A HashMap that stores orders.
+     * The path to the order data file that held the orders of every branch before they were sharded.
      */
-    private static HashMap<Integer, Order> orders = new HashMap<>();
+    private static final String legacyOrderDataPath = "foms/data/orders.ser";
+    /**
+     * The path to the journal of the legacy order data file.
+     */
+    private static final String legacyOrderJournalPath = "foms/data/orders.journal";
+    /**
+     * The path to the file holding the high-water mark of the order ID sequence.
+     */
+    private static final String orderSequencePath = "foms/data/orders.seq";
+    /**
+     * Matches the name of a shard file and captures its branch ID.
+     */
+    private static final Pattern shardFilePattern = Pattern.compile("branch-(\\d+)\\.(?:ser|prev\\.ser|journal)");
+    /**
+     * The sequence that order IDs are allocated from.
+     */
+    private static final IdSequence orderIDs = new IdSequence(orderSequencePath, 100);
+    /**
+     * The shards that have been loaded, keyed by branch ID. A shard is loaded while holding the write
+     * lock of its branch only, so branches are loaded and accessed independently of each other.
+     */
+    private static final ConcurrentStore<Integer, OrderShard> shards = new ConcurrentStore<>(OrderShard::getBranchID);
+    /**
+     * The IDs of the branches that have a shard, whether it has been loaded or not.
+     */
+    private static final ConcurrentSkipListSet<Integer> shardBranchIDs = new ConcurrentSkipListSet<>();
+    /**
+     * The listeners told about each change to the orders.
+     */
+    private static final CopyOnWriteArrayList<IOrderListener> listeners = new CopyOnWriteArrayList<>();
 
-    // Static initializer to load the orders when the class is first loaded
-    static {
-        load();
-    }
+    /**
+     * Whether the storage has been loaded. The storage is loaded on first access, or earlier by the {@link StoreBootstrap}.
+     */
+    private static volatile boolean loaded;
 
     /**
      * Adds an order to the storage.
@@ -32,19 +87,19 @@ public class OrderStorage {
      * @throws IllegalArgumentException if the order is null or if an order with the same ID already exists.
      */
     public static void add(Order order) {
+        ensureLoaded();
         if (order != null) {
-            if (orders != null){
-                if (!orders.containsKey(order.getOrderID())) {
-                    orders.put(order.getOrderID(), order);
-                } else {
-                    throw new IllegalArgumentException("Order with ID " + order.getOrderID() + " already exists.");
+            OrderShard shard = shard(order.getBranchID());
+            withChangeLock(shard, () -> {
+                shard.add(order);
+                for (IOrderListener listener : listeners) {
+                    listener.onOrderAdded(order);
                 }
-            }
-            else orders.put(order.getOrderID(), order);
+                return null;
+            });
         } else {
             throw new IllegalArgumentException("Parameter must be a non-null Order.");
         }
-        save();
     }
 
     /**
@@ -53,12 +108,21 @@ public class OrderStorage {
      * @param order The order object to be removed.
      */
     public static void remove(Order order) {
+        ensureLoaded();
         if (order != null) {
-            orders.remove(order.getOrderID());
+            OrderShard shard = shard(order.getBranchID());
+            withChangeLock(shard, () -> {
+                Order removed = shard.remove(order);
+                if (removed != null) {
+                    for (IOrderListener listener : listeners) {
+                        listener.onOrderRemoved(removed);
+                    }
+                }
+                return null;
+            });
         } else {
             throw new IllegalArgumentException("Parameter must be a non-null Order.");
         }
-        save();
     }
 
     /**
@@ -67,60 +131,329 @@ public class OrderStorage {
      * @param order The order object to be updated.
      */
     public static void update(Order order) {
-        if (order != null && orders.containsKey(order.getOrderID())) {
-            orders.put(order.getOrderID(), order);
+        ensureLoaded();
+        if (order != null) {
+            OrderShard shard = shard(order.getBranchID());
+            withChangeLock(shard, () -> {
+                OrderStatus previousStatus = shard.update(order);
+                if (previousStatus != order.getOrderStatus()) {
+                    for (IOrderListener listener : listeners) {
+                        listener.onOrderStatusChanged(order, previousStatus);
+                    }
+                }
+                return null;
+            });
         } else {
             throw new IllegalArgumentException("Cannot update non-existing or null Order.");
         }
-        save();
     }
 
     /**
-     * Retrieves an order by its ID from the storage.
+     * Changes the status of an order only if it still has the expected status, as one step. Used where
+     * two parties may race to move the same order on, such as a customer collecting a ready order just
+     * as it expires.
+     *
+     * @param order The order.
+     * @param expected The status the order must have.
+     * @param next The status to set.
+     * @return True if the status was changed, false if the order is not stored or no longer has the expected status.
+     * @throws IllegalArgumentException if the order is null.
+     */
+    public static boolean compareAndSetStatus(Order order, OrderStatus expected, OrderStatus next) {
+        if (order == null) {
+            throw new IllegalArgumentException("Parameter must be a non-null Order.");
+        }
+        return compareAndSetStatus(order.getBranchID(), order.getOrderID(), expected, next);
+    }
+
+    /**
+     * Changes the status of an order of a branch only if it still has the expected status, as one step.
+     * Only the shard of that branch is loaded.
+     *
+     * @param branchID The ID of the branch.
+     * @param orderID The ID of the order.
+     * @param expected The status the order must have.
+     * @param next The status to set.
+     * @return True if the status was changed, false if the branch has no such order or it no longer has the expected status.
+     */
+    public static boolean compareAndSetStatus(int branchID, int orderID, OrderStatus expected, OrderStatus next) {
+        ensureLoaded();
+        OrderShard shard = shard(branchID);
+        return withChangeLock(shard, () -> {
+            Order updated = shard.compareAndSetStatus(orderID, expected, next);
+            if (updated == null) {
+                return false;
+            }
+            if (expected != next) {
+                for (IOrderListener listener : listeners) {
+                    listener.onOrderStatusChanged(updated, expected);
+                }
+            }
+            return true;
+        });
+    }
+
+    /**
+     * Removes every order of a branch, along with the files of its shard.
+     *
+     * @param branchID The ID of the branch.
+     */
+    public static synchronized void removeBranch(int branchID) {
+        ensureLoaded();
+        OrderShard shard = shard(branchID);
+        withChangeLock(shard, () -> {
+            shard.delete();
+            shards.remove(branchID);
+            shardBranchIDs.remove(branchID);
+            for (IOrderListener listener : listeners) {
+                listener.onBranchRemoved(branchID);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Removes orders that have been written to the {@link OrderArchive}, and reports them as archived
+     * rather than removed.
+     *
+     * @param orders The archived orders.
+     */
+    static void removeArchived(List<Order> orders) {
+        ensureLoaded();
+        for (Order order : orders) {
+            OrderShard shard = shard(order.getBranchID());
+            withChangeLock(shard, () -> {
+                Order removed = shard.remove(order);
+                if (removed != null) {
+                    for (IOrderListener listener : listeners) {
+                        listener.onOrderArchived(removed);
+                    }
+                }
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Returns the IDs of the branches that have orders, without loading their shards.
+     *
+     * @return The IDs of the branches, in ascending order.
+     */
+    static List<Integer> getBranchIDs() {
+        ensureLoaded();
+        return new ArrayList<>(shardBranchIDs);
+    }
+
+    /**
+     * Returns the IDs of the branches whose shard has been loaded, without loading the storage or any shard.
+     *
+     * @return The IDs of the branches, in no particular order.
+     */
+    static List<Integer> getLoadedBranchIDs() {
+        List<Integer> branchIDs = new ArrayList<>();
+        for (OrderShard shard : shards.snapshot()) {
+            branchIDs.add(shard.getBranchID());
+        }
+        return branchIDs;
+    }
+
+    /**
+     * Returns the version of the orders of a branch whose shard is loaded: the number of changes
+     * journalled for the branch, which is kept across restarts. Does not load the shard.
+     *
+     * @param branchID The ID of the branch.
+     * @return The version, or -1 if the shard of the branch is not loaded.
+     */
+    static long getVersion(int branchID) {
+        OrderShard shard = shards.get(branchID);
+        return shard == null ? -1 : shard.getVersion();
+    }
+
+    /**
+     * Runs an action while the orders of every loaded branch are held unchanged, so that state derived
+     * from them can be read or rebuilt in step with them. Every change made before the action has been
+     * reported to the listeners, and changes made meanwhile wait until it returns. Shards loaded while
+     * the action runs are not held. Does not load the storage or any shard.
+     *
+     * @param action Receives the version of each held branch, keyed by branch ID.
+     */
+    static void whileUnchanged(Consumer<Map<Integer, Long>> action) {
+        List<OrderShard> held = new ArrayList<>(shards.snapshot());
+        held.sort(Comparator.comparingInt(OrderShard::getBranchID));
+        int locked = 0;
+        try {
+            HashMap<Integer, Long> versions = new HashMap<>();
+            for (OrderShard shard : held) {
+                shard.getChangeLock().lock();
+                locked++;
+                versions.put(shard.getBranchID(), shard.getVersion());
+            }
+            action.accept(versions);
+        } finally {
+            for (int i = 0; i < locked; i++) {
+                held.get(i).getChangeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Registers a listener to be told about each change to the orders from now on.
+     * Changes are reported after they are stored, on the thread that made them.
+     *
+     * @param listener The listener to register.
+     */
+    public static void addListener(IOrderListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener.
+     *
+     * @param listener The listener to unregister.
+     */
+    public static void removeListener(IOrderListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Allocates a new, unused order ID.
      *
+     * @return The allocated order ID.
+     */
+    public static int nextOrderID() {
+        ensureLoaded();
+        return orderIDs.next();
+    }
+
+    /**
+     * Allocates a contiguous block of unused order IDs.
+     *
+     * @param count The number of order IDs to allocate.
+     * @return The first order ID of the block.
+     */
+    public static int reserveOrderIDs(int count) {
+        ensureLoaded();
+        return orderIDs.reserve(count);
+    }
+
+    /**
+     * Retrieves an order of a branch by its ID, loading only the shard of that branch.
+     *
+     * @param branchID The ID of the branch.
      * @param orderID The ID of the order to retrieve.
-     * @return The order object with the specified ID, or null if not found.
+     * @return The order object with the specified ID, or null if the branch has no such order.
+     */
+    public static Order get(int branchID, int orderID) {
+        ensureLoaded();
+        return shard(branchID).get(orderID);
+    }
+
+    /**
+     * Retrieves the orders of a branch, in the order they were placed.
+     *
+     * @param branchID The ID of the branch.
+     * @return A list of the orders of the branch, which is empty if the branch has no orders.
+     */
+    public static List<Order> getByBranch(int branchID) {
+        ensureLoaded();
+        return shard(branchID).getAll();
+    }
+
+    /**
+     * Retrieves the orders of a branch with the given status, in the order they were placed.
+     *
+     * @param branchID The ID of the branch.
+     * @param status The status of the orders to retrieve.
+     * @return A list of the matching orders, which is empty if there are none.
      */
-    public static Order get(int orderID) {
-        return orders.get(orderID);
+    public static List<Order> getByBranchAndStatus(int branchID, OrderStatus status) {
+        ensureLoaded();
+        return shard(branchID).getByStatus(status);
     }
 
     /**
-     * Retrieves all orders from the storage.
+     * Retrieves all orders from the storage. Loads the shard of every branch.
      *
      * @return An array of all order objects in the storage.
      */
     public static Order[] getAll() {
-        if (orders == null) {
-            return new Order[0];  // Return an empty array if orders is null
+        ensureLoaded();
+        List<Order> all = new ArrayList<>();
+        for (int branchID : shardBranchIDs) {
+            all.addAll(shard(branchID).getAll());
         }
-        return orders.values().toArray(new Order[0]);
+        return all.toArray(new Order[0]);
     }
 
     /**
-     * Saves the orders to the data file.
+     * Saves the orders of every loaded shard.
+     * Commits the pending journal records, and only rewrites a shard's data file once its journal
+     * has grown past the checkpoint interval.
      */
-    public static void save() {
-        SerialDataService serialDataService = new SerialDataService();
-        serialDataService.exportOrderData(orders);
+    public static synchronized void save() {
+        for (OrderShard shard : shards.snapshot()) {
+            shard.save();
+        }
     }
 
     /**
-     * Loads the orders from the data file.
-     * If the file does not exist, a new empty storage is created and saved.
+     * Writes the orders of every loaded shard to its data file and empties its journal.
      */
-    public static void load() {
-        File file = new File(orderDataPath);
-        if (file.exists()) {
-            SerialDataService serialDataService = new SerialDataService();
-            orders = serialDataService.importOrderData();
-            if (orders == null){
-                orders = new HashMap<>();
+    public static synchronized void checkpoint() {
+        for (OrderShard shard : shards.snapshot()) {
+            shard.checkpoint();
+        }
+    }
+
+    /**
+     * Finds the order shards on disk and unloads any loaded shard, so that each is read again when
+     * its branch is next accessed. Orders still held in the legacy order file are first moved into shards.
+     */
+    public static synchronized void load() {
+        for (OrderShard shard : shards.snapshot()) {
+            shard.close();
+        }
+        shards.clear();
+        shardBranchIDs.clear();
+        File directory = new File(orderDirectory);
+        if (!directory.exists() && !directory.mkdirs()) {
+            System.out.println("Error creating order directory " + orderDirectory + ".");
+        }
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                Matcher matcher = shardFilePattern.matcher(file.getName());
+                if (matcher.matches()) {
+                    shardBranchIDs.add(Integer.parseInt(matcher.group(1)));
+                }
+            }
+        }
+        migrateLegacyOrders();
+        for (IOrderListener listener : listeners) {
+            listener.onOrdersReloaded();
+        }
+        // Without the sequence file, the highest order ID is only known once every shard is read
+        if (!new File(orderSequencePath).exists()) {
+            for (int branchID : shardBranchIDs) {
+                shard(branchID);
+            }
+        }
+        loaded = true;
+    }
+
+    /**
+     * Loads the storage if it has not been loaded yet, after the storages it depends on.
+     */
+    static void ensureLoaded() {
+        if (!loaded) {
+            synchronized (OrderStorage.class) {
+                if (!loaded) {
+                    StoreBootstrap.loadDependencies(StoreBootstrap.Store.ORDER);
+                    long start = System.nanoTime();
+                    load();
+                    StoreBootstrap.recordLoadTime(StoreBootstrap.Store.ORDER, System.nanoTime() - start);
+                }
             }
-        } else {
-            orders = new HashMap<>();
-            System.out.println("Order storage file not found. Creating new order storage.");
-            save();
         }
     }
 
@@ -128,6 +461,102 @@ public class OrderStorage {
      * Clears all orders from the storage.
      */
     public static void clear() {
-        orders.clear();
+        ensureLoaded();
+        for (int branchID : shardBranchIDs) {
+            // A shard that has not been read is replaced by an empty one rather than read only to be emptied
+            shards.computeIfAbsent(branchID, id -> new OrderShard(id, orderDirectory)).clear();
+            for (IOrderListener listener : listeners) {
+                listener.onBranchRemoved(branchID);
+            }
+        }
+    }
+
+    /**
+     * Returns the shard of a branch, loading it if it has not been loaded yet.
+     *
+     * @param branchID The ID of the branch.
+     * @return The shard of the branch.
+     */
+    private static OrderShard shard(int branchID) {
+        OrderShard loadedShard = shards.get(branchID);
+        if (loadedShard != null) {
+            return loadedShard;
+        }
+        boolean[] created = new boolean[1];
+        OrderShard shard = shards.computeIfAbsent(branchID, id -> {
+            OrderShard newShard = new OrderShard(id, orderDirectory);
+            newShard.load();
+            orderIDs.ensureAbove(newShard.getMaxOrderID());
+            shardBranchIDs.add(id);
+            created[0] = true;
+            return newShard;
+        });
+        // Told outside the lock of the branch, so that listeners can read the shard
+        if (created[0]) {
+            for (IOrderListener listener : listeners) {
+                listener.onShardLoaded(branchID);
+            }
+        }
+        return shard;
+    }
+
+    /**
+     * Makes a change to the orders of a shard and tells the listeners about it while holding the
+     * change lock of the shard, so that the next change of the branch waits for the listeners.
+     *
+     * @param <R> The type of result.
+     * @param shard The shard.
+     * @param change Makes the change and tells the listeners.
+     * @return The result of the change.
+     */
+    private static <R> R withChangeLock(OrderShard shard, Supplier<R> change) {
+        shard.getChangeLock().lock();
+        try {
+            return change.get();
+        } finally {
+            shard.getChangeLock().unlock();
+        }
+    }
+
+    /**
+     * Moves the orders of the legacy order file and its journal into the shard of each branch,
+     * then deletes the legacy files. The legacy files are kept if any shard cannot be written.
+     */
+    private static void migrateLegacyOrders() {
+        boolean hasJournal = new File(legacyOrderJournalPath).exists();
+        if (!SnapshotFiles.exists(legacyOrderDataPath) && !hasJournal) {
+            return;
+        }
+        HashMap<Integer, Order> legacyOrders = new HashMap<>();
+        if (SnapshotFiles.exists(legacyOrderDataPath)) {
+            BinaryDataService dataService = new BinaryDataService();
+            legacyOrders = dataService.importOrderData();
+            if (legacyOrders == null) {
+                System.out.println("Unable to read " + legacyOrderDataPath + ", its orders were not moved.");
+                return;
+            }
+        }
+        OrderJournalService legacyJournal = new OrderJournalService(legacyOrderJournalPath);
+        legacyJournal.replay(legacyOrders);
+        legacyJournal.close();
+
+        List<Integer> orderIDs = new ArrayList<>(legacyOrders.keySet());
+        orderIDs.sort(null);
+        HashMap<Integer, List<Order>> byBranch = new HashMap<>();
+        for (int orderID : orderIDs) {
+            Order order = legacyOrders.get(orderID);
+            byBranch.computeIfAbsent(order.getBranchID(), k -> new ArrayList<>()).add(order);
+        }
+        boolean moved = true;
+        for (int branchID : byBranch.keySet()) {
+            OrderShard shard = new OrderShard(branchID, orderDirectory);
+            moved &= shard.replaceAll(byBranch.get(branchID));
+            shard.close();
+            shardBranchIDs.add(branchID);
+        }
+        if (moved) {
+            SnapshotFiles.delete(legacyOrderDataPath);
+            SnapshotFiles.delete(legacyOrderJournalPath);
+        }
     }
 }
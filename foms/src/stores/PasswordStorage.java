@@ -2,14 +2,17 @@ package stores;
 
 import models.Account;
 import models.User;
-import services.SerialDataService;
+import services.BinaryDataService;
+import utils.SnapshotFiles;
 
-import java.io.File;
 import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * The PasswordStorage class is responsible for storing and managing user accounts and their passwords.
- * All methods and fields are static.
+ * The storage keeps a version that changes with every change to the accounts, so that lookups cached
+ * outside the storage can tell whether they are still current. All methods and fields are static.
  */
 public class PasswordStorage {
     /**
@@ -17,14 +20,18 @@ public class PasswordStorage {
      */
     private static final String passwordDataPath = "foms/data/passwords.ser";
     /**
-     * A HashMap that stores user accounts.
+     * The user accounts, keyed by login ID.
      */
-    private static HashMap<String, Account> accounts = new HashMap<>();
+    private static final ConcurrentStore<String, Account> accounts = new ConcurrentStore<>(Account::getLoginID);
+    /**
+     * The version of the accounts, increased after every add, remove, update, load and clear.
+     */
+    private static final AtomicLong version = new AtomicLong();
 
-    // Static initializer to load the stored accounts from the file
-    static {
-        load();
-    }
+    /**
+     * Whether the storage has been loaded. The storage is loaded on first access, or earlier by the {@link StoreBootstrap}.
+     */
+    private static volatile boolean loaded;
 
     /**
      * Adds an account to the password storage.
@@ -33,15 +40,16 @@ public class PasswordStorage {
      * @throws IllegalArgumentException If the account is null or if an account with the same login ID already exists.
      */
     public static void add(Account account) {
+        ensureLoaded();
         if (account != null) {
-            if (accounts.containsKey(account.getLoginID())) {
+            if (!accounts.add(account)) {
                 throw new IllegalArgumentException("Account with login ID " + account.getLoginID() + " already exists.");
             }
-            accounts.put(account.getLoginID(), account);
+            version.incrementAndGet();
         } else {
             throw new IllegalArgumentException("Parameter must be a non-null Account.");
         }
-        save();
+        PersistenceEngine.markDirty(passwordDataPath, PasswordStorage::save);
     }
 
     /**
@@ -50,12 +58,14 @@ public class PasswordStorage {
      * @param account The account to be removed.
      */
     public static void remove(Account account) {
+        ensureLoaded();
         if (account != null) {
             accounts.remove(account.getLoginID());
+            version.incrementAndGet();
         } else {
             throw new IllegalArgumentException("Parameter must be a non-null Account.");
         }
-        save();
+        PersistenceEngine.markDirty(passwordDataPath, PasswordStorage::save);
     }
 
     /**
@@ -64,12 +74,14 @@ public class PasswordStorage {
      * @param account The account to be updated.
      */
     public static void update(Account account) {
+        ensureLoaded();
         if (account != null) {
-            accounts.put(account.getLoginID(), account); // This will overwrite the existing Account
+            accounts.put(account); // This will overwrite the existing Account
+            version.incrementAndGet();
         } else {
             throw new IllegalArgumentException("Parameter must be a non-null Account.");
         }
-        save();
+        PersistenceEngine.markDirty(passwordDataPath, PasswordStorage::save);
     }
 
     /**
@@ -79,42 +91,87 @@ public class PasswordStorage {
      * @return The account with the specified login ID, or null if not found.
      */
     public static Account get(String loginID) {
+        ensureLoaded();
         return accounts.get(loginID);
     }
 
+    /**
+     * Returns the version of the accounts, which changes whenever an account is added, removed or updated,
+     * or the storage is loaded or cleared.
+     *
+     * @return The current version.
+     */
+    public static long getVersion() {
+        ensureLoaded();
+        return version.get();
+    }
+
     /**
      * Retrieves all accounts from the password storage.
      *
      * @return An array of all accounts in the password storage.
      */
     public static Account[] getAll() {
-        return accounts.values().toArray(new Account[0]);
+        ensureLoaded();
+        return accounts.snapshot().toArray(new Account[0]);
+    }
+
+    /**
+     * Retrieves a consistent snapshot of all accounts, which can be iterated without copying.
+     *
+     * @return An unmodifiable list of all accounts in the password storage.
+     */
+    public static List<Account> snapshot() {
+        ensureLoaded();
+        return accounts.snapshot();
     }
 
     /**
      * Saves the accounts in the password storage to a file.
+     *
+     * @throws IllegalStateException if the file cannot be written
      */
-    public static void save() {
-        SerialDataService serialDataService = new SerialDataService();
-        serialDataService.exportPasswordData(accounts);
+    public static synchronized void save() {
+        BinaryDataService dataService = new BinaryDataService();
+        if (!dataService.exportPasswordData(accounts.toHashMap())) {
+            throw new IllegalStateException("Unable to save " + passwordDataPath + ".");
+        }
     }
 
     /**
      * Loads the accounts from the file into the password storage.
      */
-    public static void load() {
-        File file = new File(passwordDataPath);
-        if (file.exists()) {
-            SerialDataService serialDataService = new SerialDataService();
-            accounts = serialDataService.importPasswordData();
+    public static synchronized void load() {
+        if (SnapshotFiles.exists(passwordDataPath)) {
+            BinaryDataService dataService = new BinaryDataService();
+            accounts.replaceAll(dataService.importPasswordData());
         } else {
-            accounts = new HashMap<>();
+            HashMap<String, Account> defaultAccounts = new HashMap<>();
             System.out.println("No password storage found. Creating a new storage.");
             User[] users = UserStorage.getAll();
             for (User user : users) {
-                accounts.put(user.getLoginID(), new Account(user.getLoginID(), "password"));
+                defaultAccounts.put(user.getLoginID(), new Account(user.getLoginID(), "password"));
+            }
+            accounts.replaceAll(defaultAccounts);
+            PersistenceEngine.markDirty(passwordDataPath, PasswordStorage::save);
+        }
+        version.incrementAndGet();
+        loaded = true;
+    }
+
+    /**
+     * Loads the storage if it has not been loaded yet, after the storages it depends on.
+     */
+    static void ensureLoaded() {
+        if (!loaded) {
+            synchronized (PasswordStorage.class) {
+                if (!loaded) {
+                    StoreBootstrap.loadDependencies(StoreBootstrap.Store.PASSWORD);
+                    long start = System.nanoTime();
+                    load();
+                    StoreBootstrap.recordLoadTime(StoreBootstrap.Store.PASSWORD, System.nanoTime() - start);
+                }
             }
-            save();
         }
     }
 
@@ -122,6 +179,8 @@ public class PasswordStorage {
      * Clears all accounts from the password storage.
      */
     public static void clear() {
+        ensureLoaded();
         accounts.clear();
+        version.incrementAndGet();
     }
 }
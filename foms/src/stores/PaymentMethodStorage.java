@@ -1,10 +1,10 @@
 package stores;
 
-import java.io.File;
-import java.util.HashMap;
+import java.util.List;
 
 import models.PaymentMethod;
-import services.SerialDataService;
+import services.BinaryDataService;
+import utils.SnapshotFiles;
 
 /**
  * The PaymentMethodStorage class is responsible for storing and managing payment methods.
@@ -16,14 +16,14 @@ public class PaymentMethodStorage {
      */
     private static final String paymentMethodDataPath = "foms/data/paymentMethods.ser";
     /**
-     * A HashMap that stores payment methods.
+     * The payment methods, keyed by name.
      */
-    private static HashMap<String, PaymentMethod> paymentMethods = new HashMap<>();
+    private static final ConcurrentStore<String, PaymentMethod> paymentMethods = new ConcurrentStore<>(PaymentMethod::getPaymentMethod);
 
-    // Static initializer to load the payment methods when the class is first loaded
-    static {
-        load();
-    }
+    /**
+     * Whether the storage has been loaded. The storage is loaded on first access, or earlier by the {@link StoreBootstrap}.
+     */
+    private static volatile boolean loaded;
 
     /**
      * Adds a payment method to the storage.
@@ -32,16 +32,15 @@ public class PaymentMethodStorage {
      * @throws IllegalArgumentException if the paymentMethod is null or if a payment method with the same name already exists.
      */
     public static void add(PaymentMethod paymentMethod) {
+        ensureLoaded();
         if (paymentMethod != null) {
-            if (!paymentMethods.containsKey(paymentMethod.getPaymentMethod())) {
-                paymentMethods.put(paymentMethod.getPaymentMethod(), paymentMethod);
-            } else {
+            if (!paymentMethods.add(paymentMethod)) {
                 throw new IllegalArgumentException("Payment method with name " + paymentMethod.getPaymentMethod() + " already exists.");
             }
         } else {
             throw new IllegalArgumentException("Parameter must be a non-null PaymentMethod.");
         }
-        save();
+        PersistenceEngine.markDirty(paymentMethodDataPath, PaymentMethodStorage::save);
     }
 
     /**
@@ -50,12 +49,13 @@ public class PaymentMethodStorage {
      * @param paymentMethod The payment method to be removed.
      */
     public static void remove(PaymentMethod paymentMethod) {
+        ensureLoaded();
         if (paymentMethod != null) {
             paymentMethods.remove(paymentMethod.getPaymentMethod());
         } else {
             throw new IllegalArgumentException("Parameter must be a non-null PaymentMethod.");
         }
-        save();
+        PersistenceEngine.markDirty(paymentMethodDataPath, PaymentMethodStorage::save);
     }
 
     /**
@@ -64,12 +64,11 @@ public class PaymentMethodStorage {
      * @param paymentMethod The payment method to be updated.
      */
     public static void update(PaymentMethod paymentMethod) {
-        if (paymentMethod != null && paymentMethods.containsKey(paymentMethod.getPaymentMethod())) {
-            paymentMethods.put(paymentMethod.getPaymentMethod(), paymentMethod);
-        } else {
+        ensureLoaded();
+        if (paymentMethod == null || !paymentMethods.replace(paymentMethod)) {
             throw new IllegalArgumentException("Cannot update non-existing or null PaymentMethod.");
         }
-        save();
+        PersistenceEngine.markDirty(paymentMethodDataPath, PaymentMethodStorage::save);
     }
 
     /**
@@ -79,6 +78,7 @@ public class PaymentMethodStorage {
      * @return The payment method with the specified name, or null if not found.
      */
     public static PaymentMethod get(String name) {
+        ensureLoaded();
         return paymentMethods.get(name);
     }
 
@@ -88,33 +88,64 @@ public class PaymentMethodStorage {
      * @return An array of all payment methods in the storage.
      */
     public static PaymentMethod[] getAll() {
-        return paymentMethods.values().toArray(new PaymentMethod[0]);
+        ensureLoaded();
+        return paymentMethods.snapshot().toArray(new PaymentMethod[0]);
+    }
+
+    /**
+     * Retrieves a consistent snapshot of all payment methods, which can be iterated without copying.
+     * 
+     * @return An unmodifiable list of all payment methods in the storage.
+     */
+    public static List<PaymentMethod> snapshot() {
+        ensureLoaded();
+        return paymentMethods.snapshot();
     }
 
     /**
      * Saves the payment methods to the storage.
+     *
+     * @throws IllegalStateException if the file cannot be written
      */
-    public static void save() {
-        SerialDataService serialDataService = new SerialDataService();
-        serialDataService.exportPaymentMethodData(paymentMethods);
+    public static synchronized void save() {
+        BinaryDataService dataService = new BinaryDataService();
+        if (!dataService.exportPaymentMethodData(paymentMethods.toHashMap())) {
+            throw new IllegalStateException("Unable to save " + paymentMethodDataPath + ".");
+        }
     }
 
     /**
      * Loads the payment methods from the storage.
      * If the storage file does not exist, creates a new storage with default payment methods.
      */
-    public static void load() {
-        File file = new File(paymentMethodDataPath);
-        if (file.exists()) {
-            SerialDataService serialDataService = new SerialDataService();
-            paymentMethods = serialDataService.importPaymentMethodData();
+    public static synchronized void load() {
+        if (SnapshotFiles.exists(paymentMethodDataPath)) {
+            BinaryDataService dataService = new BinaryDataService();
+            paymentMethods.replaceAll(dataService.importPaymentMethodData());
         } else {
-            paymentMethods = new HashMap<>();
             System.out.println("Payment method storage file not found. Creating new storage.");
-            paymentMethods.put("UOB", new PaymentMethod("UOB","Credit/Debit Card"));
-            paymentMethods.put("DBS", new PaymentMethod("DBS","Credit/Debit Card"));
-            paymentMethods.put("PayPal", new PaymentMethod("PayPal","Online Payment"));
-            save();
+            paymentMethods.clear();
+            paymentMethods.put(new PaymentMethod("UOB","Credit/Debit Card"));
+            paymentMethods.put(new PaymentMethod("DBS","Credit/Debit Card"));
+            paymentMethods.put(new PaymentMethod("PayPal","Online Payment"));
+            PersistenceEngine.markDirty(paymentMethodDataPath, PaymentMethodStorage::save);
+        }
+        loaded = true;
+    }
+
+    /**
+     * Loads the storage if it has not been loaded yet, after the storages it depends on.
+     */
+    static void ensureLoaded() {
+        if (!loaded) {
+            synchronized (PaymentMethodStorage.class) {
+                if (!loaded) {
+                    StoreBootstrap.loadDependencies(StoreBootstrap.Store.PAYMENT_METHOD);
+                    long start = System.nanoTime();
+                    load();
+                    StoreBootstrap.recordLoadTime(StoreBootstrap.Store.PAYMENT_METHOD, System.nanoTime() - start);
+                }
+            }
         }
     }
 
@@ -122,6 +153,7 @@ public class PaymentMethodStorage {
      * Clears all payment methods from the storage.
      */
     public static void clear() {
+        ensureLoaded();
         paymentMethods.clear();
     }
 }
@@ -0,0 +1,124 @@
+package stores;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * <p>Persists the stores in the background, shortly after they change.
+ *
+ * <p>A store marks itself dirty after a mutation instead of saving on the caller's thread. A background
+ * thread waits for a short window after the first mutation, so that a burst of mutations to the same
+ * store, such as adding several items to a cart and checking out, is written with a single save.
+ *
+ * <p>{@link #flush()} is a barrier for callers that need their changes on disk: when it returns, every
+ * store marked dirty before the call has been saved. The stores are also flushed when the application exits.
+ * All methods and fields are static.
+ */
+public class PersistenceEngine {
+
+    /**
+     * How long, in milliseconds, mutations are gathered before the dirty stores are saved.
+     */
+    private static final long flushWindowMillis = 200;
+    /**
+     * The save action of each dirty store, keyed by store and kept in the order the stores were first marked.
+     */
+    private static final LinkedHashMap<String, Runnable> dirtyStores = new LinkedHashMap<>();
+    /**
+     * Held while dirty stores are being saved, so that a flush waits for a save already in progress.
+     */
+    private static final Object flushLock = new Object();
+
+    static {
+        Thread writer = new Thread(PersistenceEngine::run, "foms-persistence");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(PersistenceEngine::flush, "foms-persistence-shutdown"));
+    }
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private PersistenceEngine() {
+    }
+
+    /**
+     * Marks a store as changed, so that it is saved by the background thread.
+     * Marking a store that is already dirty has no further effect.
+     *
+     * @param store The name of the store.
+     * @param save Saves the store.
+     */
+    public static void markDirty(String store, Runnable save) {
+        synchronized (dirtyStores) {
+            if (!dirtyStores.containsKey(store)) {
+                dirtyStores.put(store, save);
+                dirtyStores.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Saves every dirty store on the calling thread, and waits for a save already in progress on the
+     * background thread to finish.
+     */
+    public static void flush() {
+        synchronized (flushLock) {
+            saveDirtyStores();
+        }
+    }
+
+    /**
+     * Checks whether any store has changes that have not been saved yet.
+     *
+     * @return True if a store is dirty, false otherwise.
+     */
+    public static boolean isDirty() {
+        synchronized (dirtyStores) {
+            return !dirtyStores.isEmpty();
+        }
+    }
+
+    /**
+     * The loop of the background thread. Waits for a store to be marked dirty, gathers further
+     * mutations for the flush window and then saves every dirty store.
+     */
+    private static void run() {
+        while (true) {
+            try {
+                synchronized (dirtyStores) {
+                    while (dirtyStores.isEmpty()) {
+                        dirtyStores.wait();
+                    }
+                }
+                Thread.sleep(flushWindowMillis);
+                flush();
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Takes the current set of dirty stores and saves each of them.
+     * A store that fails to save is reported and marked dirty again, so that it is retried.
+     */
+    private static void saveDirtyStores() {
+        List<String> stores;
+        List<Runnable> saves;
+        synchronized (dirtyStores) {
+            stores = new ArrayList<>(dirtyStores.keySet());
+            saves = new ArrayList<>(dirtyStores.values());
+            dirtyStores.clear();
+        }
+        for (int i = 0; i < saves.size(); i++) {
+            try {
+                saves.get(i).run();
+            } catch (RuntimeException e) {
+                System.out.println("Error saving " + stores.get(i) + ": " + e.getMessage());
+                markDirty(stores.get(i), saves.get(i));
+            }
+        }
+    }
+}
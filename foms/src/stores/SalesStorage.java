@@ -0,0 +1,586 @@
+package stores;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+import enums.OrderStatus;
+import enums.OrderType;
+import interfaces.IOrderListener;
+import models.Order;
+import models.OrderItem;
+import models.SalesTotals;
+import utils.SnapshotFiles;
+
+/**
+ * <p>Keeps running sales totals per branch, day and order type, so that sales reports are answered
+ * from the totals instead of from the order history.
+ *
+ * <p>Every order that has not been cancelled counts as a sale on the day it was placed. An order that
+ * was paid for but never collected still counts towards the number of orders and the revenue, but its
+ * items do not count as sold, as their stock is returned to the inventory. The totals
+ * are updated from the listener events of {@link OrderStorage} as orders are placed, cancelled and
+ * removed, and are kept when orders are moved to the {@link OrderArchive}. They are persisted
+ * alongside the orders by the {@link PersistenceEngine}. If the totals file is missing, the totals
+ * are rebuilt from the stored and archived orders once, when they are first queried.
+ *
+ * <p>The totals file and the order journals are written separately, so the totals file also holds
+ * the version of the orders of each branch it was saved in step with (see
+ * {@link OrderStorage#getVersion(int)}). When the orders of a branch are loaded at a different
+ * version, such as after a crash between the two writes, the totals of that branch are rebuilt before
+ * they are next queried. Totals are saved and rebuilt while the orders are held unchanged, so no
+ * change is counted twice or missed.
+ * A report over a period adds up one set of totals per branch, day and order type in the period,
+ * however many orders were placed.
+ *
+ * <p>All methods and fields are static.
+ */
+public class SalesStorage {
+
+    /**
+     * The file path where the sales totals are stored.
+     */
+    private static final String salesDataPath = "foms/data/sales.ser";
+    /**
+     * The version of the format of the sales file. Version 3 has the layout of version 2, but no longer
+     * counts the items of uncollected orders, so totals saved at version 2 are rebuilt.
+     */
+    private static final int formatVersion = 3;
+    /**
+     * The totals of each branch, day and order type, keyed by {@link Bucket#getKey()}.
+     */
+    private static final ConcurrentStore<String, Bucket> buckets = new ConcurrentStore<>(Bucket::getKey);
+    /**
+     * The version of the orders of each branch that the totals were last saved or rebuilt in step with.
+     * A branch without a version has not had any orders journalled.
+     */
+    private static final ConcurrentHashMap<Integer, Long> orderVersions = new ConcurrentHashMap<>();
+    /**
+     * The branches whose orders were loaded at a different version than the totals were saved at, and
+     * whose totals are rebuilt before they are next queried.
+     */
+    private static final Set<Integer> staleBranches = ConcurrentHashMap.newKeySet();
+    /**
+     * Shared by updates to the totals, and held exclusively while the totals are rebuilt or saved.
+     */
+    private static final ReentrantReadWriteLock rebuildLock = new ReentrantReadWriteLock();
+
+    /**
+     * Whether the storage has been loaded. The storage is loaded on first access, or earlier by the {@link StoreBootstrap}.
+     */
+    private static volatile boolean loaded;
+    /**
+     * Whether the totals must be rebuilt from the orders before they are next queried.
+     */
+    private static volatile boolean rebuildPending;
+
+    static {
+        OrderStorage.addListener(new IOrderListener() {
+            @Override
+            public void onOrderAdded(Order order) {
+                OrderStatus status = order.getOrderStatus();
+                record(order, isSale(status) ? 1 : 0, isItemSale(status) ? 1 : 0);
+            }
+
+            @Override
+            public void onOrderStatusChanged(Order order, OrderStatus previousStatus) {
+                OrderStatus status = order.getOrderStatus();
+                record(order, (isSale(status) ? 1 : 0) - (isSale(previousStatus) ? 1 : 0),
+                        (isItemSale(status) ? 1 : 0) - (isItemSale(previousStatus) ? 1 : 0));
+            }
+
+            @Override
+            public void onOrderRemoved(Order order) {
+                OrderStatus status = order.getOrderStatus();
+                record(order, isSale(status) ? -1 : 0, isItemSale(status) ? -1 : 0);
+            }
+
+            @Override
+            public void onBranchRemoved(int branchID) {
+                removeBranch(branchID);
+            }
+
+            @Override
+            public void onShardLoaded(int branchID) {
+                ensureLoaded();
+                if (!rebuildPending && OrderStorage.getVersion(branchID) != orderVersions.getOrDefault(branchID, 0L)) {
+                    staleBranches.add(branchID);
+                }
+            }
+        });
+    }
+
+    /**
+     * The totals of the orders of one branch, placed on one day, of one order type.
+     */
+    private static class Bucket {
+        /**
+         * The ID of the branch.
+         */
+        final int branchID;
+        /**
+         * The day the orders were placed.
+         */
+        final LocalDate day;
+        /**
+         * The type of the orders.
+         */
+        final OrderType orderType;
+        /**
+         * The totals of the orders. Guarded by the monitor of the bucket.
+         */
+        final SalesTotals totals = new SalesTotals();
+
+        /**
+         * Constructs an empty Bucket.
+         *
+         * @param branchID the ID of the branch
+         * @param day the day the orders were placed
+         * @param orderType the type of the orders
+         */
+        Bucket(int branchID, LocalDate day, OrderType orderType) {
+            this.branchID = branchID;
+            this.day = day;
+            this.orderType = orderType;
+        }
+
+        /**
+         * Returns the key of the bucket.
+         *
+         * @return the key
+         */
+        String getKey() {
+            return keyOf(branchID, day, orderType);
+        }
+
+        /**
+         * Checks whether the bucket is in a period, and belongs to a branch.
+         *
+         * @param branch the ID of the branch, or null for every branch
+         * @param from the first day of the period, or null for no limit
+         * @param to the last day of the period, or null for no limit
+         * @return true if the bucket matches
+         */
+        boolean matches(Integer branch, LocalDate from, LocalDate to) {
+            return (branch == null || branch == branchID)
+                    && (from == null || !day.isBefore(from))
+                    && (to == null || !day.isAfter(to));
+        }
+    }
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private SalesStorage() {
+    }
+
+    /**
+     * Returns the sales of a period, per order type.
+     *
+     * @param branchID the ID of the branch, or null for every branch
+     * @param from the first day of the period, or null for no limit
+     * @param to the last day of the period, or null for no limit
+     * @return the totals of each order type with sales
+     */
+    public static Map<OrderType, SalesTotals> getByOrderType(Integer branchID, LocalDate from, LocalDate to) {
+        return aggregate(branchID, from, to, bucket -> bucket.orderType, new EnumMap<>(OrderType.class));
+    }
+
+    /**
+     * Returns the sales of a period, per day.
+     *
+     * @param branchID the ID of the branch, or null for every branch
+     * @param from the first day of the period, or null for no limit
+     * @param to the last day of the period, or null for no limit
+     * @return the totals of each day with sales, in date order
+     */
+    public static Map<LocalDate, SalesTotals> getByDay(Integer branchID, LocalDate from, LocalDate to) {
+        return aggregate(branchID, from, to, bucket -> bucket.day, new TreeMap<>());
+    }
+
+    /**
+     * Returns the sales of a period, per branch.
+     *
+     * @param from the first day of the period, or null for no limit
+     * @param to the last day of the period, or null for no limit
+     * @return the totals of each branch with sales, in branch ID order
+     */
+    public static Map<Integer, SalesTotals> getByBranch(LocalDate from, LocalDate to) {
+        return aggregate(null, from, to, bucket -> bucket.branchID, new TreeMap<>());
+    }
+
+    /**
+     * Rebuilds the totals from every stored and archived order. Reads the orders of every branch.
+     * An order that is both stored and archived, after a crash during an archive pass, is counted once.
+     */
+    public static void rebuild() {
+        ensureLoaded();
+        // Loads the shard of every branch, so that all of them are held while the totals are rebuilt
+        OrderStorage.getAll();
+        OrderStorage.whileUnchanged(versions -> {
+            rebuildLock.writeLock().lock();
+            try {
+                buckets.clear();
+                HashSet<Long> storedOrders = new HashSet<>();
+                for (int branchID : versions.keySet()) {
+                    countStoredOrders(branchID, storedOrders);
+                }
+                OrderArchive.scanRecords(null, null, null, record -> {
+                    if (isSale(record.getOrderStatus()) && !storedOrders.contains(keyOf(record.getBranchID(), record.getOrderID()))) {
+                        apply(record);
+                    }
+                });
+                orderVersions.putAll(versions);
+                staleBranches.removeAll(versions.keySet());
+                rebuildPending = false;
+            } finally {
+                rebuildLock.writeLock().unlock();
+            }
+        });
+        // A branch loaded during the rebuild was not counted
+        for (int branchID : OrderStorage.getLoadedBranchIDs()) {
+            if (OrderStorage.getVersion(branchID) != orderVersions.getOrDefault(branchID, 0L)) {
+                staleBranches.add(branchID);
+            }
+        }
+        PersistenceEngine.markDirty(salesDataPath, SalesStorage::save);
+    }
+
+    /**
+     * Rebuilds the totals of the branches whose orders changed without them, from their stored and
+     * archived orders.
+     */
+    private static void rebuildStaleBranches() {
+        OrderStorage.whileUnchanged(versions -> {
+            rebuildLock.writeLock().lock();
+            try {
+                for (int branchID : new ArrayList<>(staleBranches)) {
+                    staleBranches.remove(branchID);
+                    Long version = versions.get(branchID);
+                    if (version == null) {
+                        // Unloaded since, and checked again when next loaded
+                        continue;
+                    }
+                    for (Bucket bucket : buckets.snapshot()) {
+                        if (bucket.branchID == branchID) {
+                            buckets.remove(bucket.getKey());
+                        }
+                    }
+                    HashSet<Long> storedOrders = new HashSet<>();
+                    countStoredOrders(branchID, storedOrders);
+                    OrderArchive.scanRecords(branchID, null, null, record -> {
+                        if (isSale(record.getOrderStatus()) && !storedOrders.contains(keyOf(branchID, record.getOrderID()))) {
+                            apply(record);
+                        }
+                    });
+                    orderVersions.put(branchID, version);
+                }
+            } finally {
+                rebuildLock.writeLock().unlock();
+            }
+        });
+        PersistenceEngine.markDirty(salesDataPath, SalesStorage::save);
+    }
+
+    /**
+     * Adds the stored orders of a branch to the totals, while they are being rebuilt.
+     *
+     * @param branchID the ID of the branch
+     * @param storedOrders receives the key of each stored order (see {@link #keyOf(int, int)})
+     */
+    private static void countStoredOrders(int branchID, Set<Long> storedOrders) {
+        for (Order order : OrderStorage.getByBranch(branchID)) {
+            storedOrders.add(keyOf(branchID, order.getOrderID()));
+            if (isSale(order.getOrderStatus())) {
+                apply(order, 1, isItemSale(order.getOrderStatus()) ? 1 : 0);
+            }
+        }
+    }
+
+    /**
+     * Saves the sales totals to the storage, with the version of the orders of each branch they are in
+     * step with. The totals are copied while the orders are held unchanged, and written afterwards.
+     * Totals waiting to be rebuilt from the orders are not saved.
+     *
+     * @throws UncheckedIOException if the file cannot be written
+     */
+    public static synchronized void save() {
+        if (rebuildPending) {
+            return;
+        }
+        List<Bucket> copies = new ArrayList<>();
+        HashMap<Integer, Long> savedVersions = new HashMap<>();
+        OrderStorage.whileUnchanged(versions -> {
+            rebuildLock.writeLock().lock();
+            try {
+                for (Bucket bucket : buckets.snapshot()) {
+                    Bucket copy = new Bucket(bucket.branchID, bucket.day, bucket.orderType);
+                    synchronized (bucket) {
+                        copy.totals.merge(bucket.totals);
+                    }
+                    copies.add(copy);
+                }
+                for (Map.Entry<Integer, Long> version : versions.entrySet()) {
+                    if (!staleBranches.contains(version.getKey())) {
+                        orderVersions.put(version.getKey(), version.getValue());
+                    }
+                }
+                savedVersions.putAll(orderVersions);
+            } finally {
+                rebuildLock.writeLock().unlock();
+            }
+        });
+        try {
+            SnapshotFiles.write(salesDataPath, out -> {
+                DataOutputStream data = new DataOutputStream(out);
+                data.writeInt(formatVersion);
+                data.writeInt(copies.size());
+                for (Bucket bucket : copies) {
+                    data.writeInt(bucket.branchID);
+                    data.writeLong(bucket.day.toEpochDay());
+                    data.writeInt(bucket.orderType.ordinal());
+                    data.writeInt(bucket.totals.getOrderCount());
+                    data.writeDouble(bucket.totals.getRevenue());
+                    data.writeInt(bucket.totals.getItemQuantities().size());
+                    for (Map.Entry<String, Integer> item : bucket.totals.getItemQuantities().entrySet()) {
+                        data.writeUTF(item.getKey());
+                        data.writeInt(item.getValue());
+                    }
+                }
+                data.writeInt(savedVersions.size());
+                for (Map.Entry<Integer, Long> version : savedVersions.entrySet()) {
+                    data.writeInt(version.getKey());
+                    data.writeLong(version.getValue());
+                }
+                data.flush();
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to save " + salesDataPath + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Loads the sales totals from the storage, with the version of the orders of each branch they were saved in step with.
+     * If the storage file does not exist or cannot be read, the totals are rebuilt from the orders when first queried.
+     */
+    public static synchronized void load() {
+        buckets.clear();
+        orderVersions.clear();
+        staleBranches.clear();
+        rebuildPending = true;
+        if (SnapshotFiles.exists(salesDataPath)) {
+            try (InputStream in = SnapshotFiles.open(salesDataPath)) {
+                DataInputStream data = new DataInputStream(in);
+                if (data.readInt() != formatVersion) {
+                    throw new IOException("unsupported format version");
+                }
+                int count = data.readInt();
+                for (int i = 0; i < count; i++) {
+                    Bucket bucket = new Bucket(data.readInt(), LocalDate.ofEpochDay(data.readLong()), OrderType.values()[data.readInt()]);
+                    bucket.totals.add(data.readInt(), data.readDouble());
+                    int itemCount = data.readInt();
+                    for (int j = 0; j < itemCount; j++) {
+                        bucket.totals.addItem(data.readUTF(), data.readInt());
+                    }
+                    buckets.put(bucket);
+                }
+                int versionCount = data.readInt();
+                for (int i = 0; i < versionCount; i++) {
+                    orderVersions.put(data.readInt(), data.readLong());
+                }
+                rebuildPending = false;
+            } catch (IOException | RuntimeException e) {
+                System.out.println("Error loading sales data, rebuilding from orders: " + e.getMessage());
+                buckets.clear();
+                orderVersions.clear();
+            }
+        }
+        loaded = true;
+    }
+
+    /**
+     * Loads the storage if it has not been loaded yet, after the storages it depends on.
+     */
+    static void ensureLoaded() {
+        if (!loaded) {
+            synchronized (SalesStorage.class) {
+                if (!loaded) {
+                    StoreBootstrap.loadDependencies(StoreBootstrap.Store.SALES);
+                    long start = System.nanoTime();
+                    load();
+                    StoreBootstrap.recordLoadTime(StoreBootstrap.Store.SALES, System.nanoTime() - start);
+                }
+            }
+        }
+    }
+
+    /**
+     * Clears all sales totals from the storage.
+     */
+    public static void clear() {
+        ensureLoaded();
+        buckets.clear();
+        PersistenceEngine.markDirty(salesDataPath, SalesStorage::save);
+    }
+
+    /**
+     * Adds up the totals of the buckets in a period, grouped by a property of the bucket.
+     *
+     * @param <K> the type of the property
+     * @param branchID the ID of the branch, or null for every branch
+     * @param from the first day of the period, or null for no limit
+     * @param to the last day of the period, or null for no limit
+     * @param groupBy the property to group by
+     * @param groups the map to add the totals to
+     * @return the map of totals
+     */
+    private static <K> Map<K, SalesTotals> aggregate(Integer branchID, LocalDate from, LocalDate to,
+            Function<Bucket, K> groupBy, Map<K, SalesTotals> groups) {
+        ensureLoaded();
+        if (rebuildPending) {
+            rebuild();
+        } else if (!staleBranches.isEmpty()) {
+            rebuildStaleBranches();
+        }
+        for (Bucket bucket : buckets.snapshot()) {
+            if (bucket.matches(branchID, from, to)) {
+                synchronized (bucket) {
+                    groups.computeIfAbsent(groupBy.apply(bucket), k -> new SalesTotals()).merge(bucket.totals);
+                }
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * Adds an order and its items to the totals of its bucket, or takes them off, and marks the totals for saving.
+     *
+     * @param order the order
+     * @param orderSign 1 to add the order, -1 to take it off, 0 to leave it
+     * @param itemSign 1 to add the items of the order, -1 to take them off, 0 to leave them
+     */
+    private static void record(Order order, int orderSign, int itemSign) {
+        if (orderSign == 0 && itemSign == 0) {
+            return;
+        }
+        ensureLoaded();
+        rebuildLock.readLock().lock();
+        try {
+            apply(order, orderSign, itemSign);
+        } finally {
+            rebuildLock.readLock().unlock();
+        }
+        PersistenceEngine.markDirty(salesDataPath, SalesStorage::save);
+    }
+
+    /**
+     * Adds an order and its items to the totals of its bucket, or takes them off.
+     *
+     * @param order the order
+     * @param orderSign 1 to add the order, -1 to take it off, 0 to leave it
+     * @param itemSign 1 to add the items of the order, -1 to take them off, 0 to leave them
+     */
+    private static void apply(Order order, int orderSign, int itemSign) {
+        LocalDate day = order.getOrderTime().toLocalDate();
+        Bucket bucket = buckets.computeIfAbsent(keyOf(order.getBranchID(), day, order.getOrderType()),
+                key -> new Bucket(order.getBranchID(), day, order.getOrderType()));
+        synchronized (bucket) {
+            bucket.totals.add(orderSign, orderSign * order.getTotalPrice());
+            bucket.totals.addItems(order, itemSign);
+        }
+    }
+
+    /**
+     * Adds an archived order to the totals, reading it in place from the archive.
+     *
+     * @param record the archived order
+     */
+    private static void apply(ArchivedOrder record) {
+        int branchID = record.getBranchID();
+        LocalDate day = record.getOrderTime().toLocalDate();
+        OrderType orderType = record.getOrderType();
+        Bucket bucket = buckets.computeIfAbsent(keyOf(branchID, day, orderType), key -> new Bucket(branchID, day, orderType));
+        synchronized (bucket) {
+            bucket.totals.add(1, record.getTotalPrice());
+            if (isItemSale(record.getOrderStatus())) {
+                for (OrderItem item : record.getOrderItems()) {
+                    bucket.totals.addItem(item.getItemName(), item.getQuantity());
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes the totals of a branch.
+     *
+     * @param branchID the ID of the branch
+     */
+    private static void removeBranch(int branchID) {
+        ensureLoaded();
+        for (Bucket bucket : buckets.snapshot()) {
+            if (bucket.branchID == branchID) {
+                buckets.remove(bucket.getKey());
+            }
+        }
+        orderVersions.remove(branchID);
+        staleBranches.remove(branchID);
+        PersistenceEngine.markDirty(salesDataPath, SalesStorage::save);
+    }
+
+    /**
+     * Checks whether an order with the given status counts as a sale.
+     *
+     * @param status the status of the order
+     * @return true unless the order was cancelled
+     */
+    private static boolean isSale(OrderStatus status) {
+        return status != OrderStatus.CANCELLED;
+    }
+
+    /**
+     * Checks whether the items of an order with the given status count as sold.
+     *
+     * @param status the status of the order
+     * @return true unless the order was cancelled or never collected, as the stock of its items was returned
+     */
+    private static boolean isItemSale(OrderStatus status) {
+        return status != OrderStatus.CANCELLED && status != OrderStatus.UNAVAILABLE;
+    }
+
+    /**
+     * Returns a key identifying an order, whose ID is only unique within its branch.
+     *
+     * @param branchID the ID of the branch
+     * @param orderID the ID of the order
+     * @return the key
+     */
+    private static long keyOf(int branchID, int orderID) {
+        return ((long) branchID << 32) | (orderID & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Returns the key of the bucket of a branch, day and order type.
+     *
+     * @param branchID the ID of the branch
+     * @param day the day
+     * @param orderType the order type
+     * @return the key
+     */
+    private static String keyOf(int branchID, LocalDate day, OrderType orderType) {
+        return branchID + ":" + day + ":" + orderType;
+    }
+}
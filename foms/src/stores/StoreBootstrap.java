@@ -0,0 +1,246 @@
+package stores;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * <p>Loads the stores at startup, following the dependencies between them.
+ *
+ * <p>A store is only loaded once the stores it reads while loading have been loaded, e.g. users are
+ * linked to the branch users they are, and branch users are seeded with the branch they belong to.
+ * Stores that do not depend on each other are loaded in parallel. Rarely used stores are not loaded
+ * at startup, and are loaded by the first access to them instead, as is any store accessed before
+ * the bootstrap has loaded it.
+ *
+ * <p>The time each store took to load is recorded and can be reported. All methods and fields are static.
+ */
+public class StoreBootstrap {
+
+    /**
+     * The stores of the application, each with the stores it depends on.
+     */
+    public enum Store {
+        /**
+         * The branches, in {@link BranchStorage}.
+         */
+        BRANCH,
+        /**
+         * The staff and managers of each branch, in {@link BranchUserStorage}.
+         */
+        BRANCH_USER(BRANCH),
+        /**
+         * Every user, in {@link UserStorage}.
+         */
+        USER(BRANCH_USER),
+        /**
+         * The account of every user, in {@link PasswordStorage}.
+         */
+        PASSWORD(USER),
+        /**
+         * The menu items of each branch, in {@link BranchMenuItemStorage}.
+         */
+        MENU(BRANCH),
+        /**
+         * The payment methods, in {@link PaymentMethodStorage}.
+         */
+        PAYMENT_METHOD,
+        /**
+         * The sales totals, in {@link SalesStorage}.
+         */
+        SALES,
+        /**
+         * The orders, in {@link OrderStorage}. Loaded after the sales totals, so that they follow every change to the orders.
+         */
+        ORDER(SALES);
+
+        /**
+         * The stores that must be loaded before this store.
+         */
+        private final Store[] dependencies;
+
+        /**
+         * Constructs a Store.
+         *
+         * @param dependencies The stores that must be loaded before this store.
+         */
+        Store(Store... dependencies) {
+            this.dependencies = dependencies;
+        }
+
+        /**
+         * Gets the stores that must be loaded before this store.
+         *
+         * @return The stores this store depends on.
+         */
+        public Store[] getDependencies() {
+            return dependencies.clone();
+        }
+    }
+
+    /**
+     * The stores that are not loaded at startup, but on first access.
+     */
+    private static final EnumSet<Store> deferredStores = EnumSet.of(Store.PAYMENT_METHOD, Store.ORDER);
+    /**
+     * The load of each store started by the bootstrap.
+     */
+    private static final EnumMap<Store, CompletableFuture<Void>> loads = new EnumMap<>(Store.class);
+    /**
+     * The time each store took to load, in nanoseconds, not counting the stores it depends on.
+     */
+    private static final EnumMap<Store, Long> loadTimes = new EnumMap<>(Store.class);
+    /**
+     * Runs the loads of the stores.
+     */
+    private static final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "foms-store-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private StoreBootstrap() {
+    }
+
+    /**
+     * Starts loading every store that is not deferred, in the background.
+     * Each store is loaded once all of its dependencies have been loaded.
+     *
+     * @return A future that completes once every started store has been loaded.
+     */
+    public static synchronized CompletableFuture<Void> start() {
+        List<CompletableFuture<Void>> started = new ArrayList<>();
+        for (Store store : Store.values()) {
+            if (!deferredStores.contains(store)) {
+                started.add(loadAsync(store));
+            }
+        }
+        return CompletableFuture.allOf(started.toArray(new CompletableFuture<?>[0]));
+    }
+
+    /**
+     * Loads the given stores on the calling thread if they have not been loaded yet, and waits for
+     * any of them that is being loaded in the background.
+     *
+     * @param stores The stores to wait for.
+     */
+    public static void await(Store... stores) {
+        for (Store store : stores) {
+            ensureLoaded(store);
+        }
+    }
+
+    /**
+     * Returns the time each store took to load so far, not counting the stores it depends on.
+     *
+     * @return The load time of each loaded store, in milliseconds.
+     */
+    public static synchronized Map<Store, Double> getLoadTimes() {
+        EnumMap<Store, Double> millis = new EnumMap<>(Store.class);
+        for (Map.Entry<Store, Long> entry : loadTimes.entrySet()) {
+            millis.put(entry.getKey(), entry.getValue() / 1e6);
+        }
+        return millis;
+    }
+
+    /**
+     * Prints the time each store took to load so far.
+     */
+    public static void printLoadTimes() {
+        Map<Store, Double> millis = getLoadTimes();
+        System.out.println("Store load times:");
+        for (Store store : Store.values()) {
+            if (millis.containsKey(store)) {
+                System.out.println("\t" + store + ": " + String.format("%.1f", millis.get(store)) + " ms");
+            } else {
+                System.out.println("\t" + store + ": not loaded");
+            }
+        }
+    }
+
+    /**
+     * Loads the stores a store depends on. Called by a store before it loads itself.
+     *
+     * @param store The store about to be loaded.
+     */
+    static void loadDependencies(Store store) {
+        for (Store dependency : store.dependencies) {
+            ensureLoaded(dependency);
+        }
+    }
+
+    /**
+     * Records the time a store took to load.
+     *
+     * @param store The store that was loaded.
+     * @param nanos The time it took, in nanoseconds.
+     */
+    static synchronized void recordLoadTime(Store store, long nanos) {
+        loadTimes.put(store, nanos);
+    }
+
+    /**
+     * Starts loading a store in the background once its dependencies have been loaded, unless it has already been started.
+     *
+     * @param store The store to load.
+     * @return The future of the load.
+     */
+    private static synchronized CompletableFuture<Void> loadAsync(Store store) {
+        CompletableFuture<Void> load = loads.get(store);
+        if (load == null) {
+            CompletableFuture<?>[] dependencies = new CompletableFuture<?>[store.dependencies.length];
+            for (int i = 0; i < dependencies.length; i++) {
+                dependencies[i] = loadAsync(store.dependencies[i]);
+            }
+            load = CompletableFuture.allOf(dependencies).thenRunAsync(() -> ensureLoaded(store), executor);
+            load.exceptionally(e -> {
+                System.out.println("Error loading " + store + ": " + e.getMessage());
+                return null;
+            });
+            loads.put(store, load);
+        }
+        return load;
+    }
+
+    /**
+     * Loads a store on the calling thread if it has not been loaded yet.
+     *
+     * @param store The store to load.
+     */
+    private static void ensureLoaded(Store store) {
+        switch (store) {
+            case BRANCH:
+                BranchStorage.ensureLoaded();
+                break;
+            case BRANCH_USER:
+                BranchUserStorage.ensureLoaded();
+                break;
+            case USER:
+                UserStorage.ensureLoaded();
+                break;
+            case PASSWORD:
+                PasswordStorage.ensureLoaded();
+                break;
+            case MENU:
+                BranchMenuItemStorage.ensureLoaded();
+                break;
+            case PAYMENT_METHOD:
+                PaymentMethodStorage.ensureLoaded();
+                break;
+            case SALES:
+                SalesStorage.ensureLoaded();
+                break;
+            case ORDER:
+                OrderStorage.ensureLoaded();
+                break;
+        }
+    }
+}
@@ -1,12 +1,13 @@
 package stores;
 
-import java.io.File;
 import java.util.HashMap;
+import java.util.List;
 
 import models.BranchUser;
 import models.User;
 import services.CSVDataService;
-import services.SerialDataService;
+import services.BinaryDataService;
+import utils.SnapshotFiles;
 
 /**
  * The UserStorage class is responsible for storing and managing User objects.
@@ -14,18 +15,18 @@ import services.SerialDataService;
  */
 public class UserStorage {
     /**
-     * A HashMap that stores User objects.
+     * The User objects, keyed by login ID.
      */
-    private static HashMap<String, User> users = new HashMap<>();
+    private static final ConcurrentStore<String, User> users = new ConcurrentStore<>(User::getLoginID);
     /**
      * The filename of the serialized user data file.
      */
     private static final String userFilename = "foms/data/users.ser";
 
-    // Static initializer to load the stored data when the class is first used
-    static {
-        load();
-    }
+    /**
+     * Whether the storage has been loaded. The storage is loaded on first access, or earlier by the {@link StoreBootstrap}.
+     */
+    private static volatile boolean loaded;
 
     /**
      * Adds a User object to the storage.
@@ -34,17 +35,15 @@ public class UserStorage {
      * @throws IllegalArgumentException if the user is null or if a user with the same login ID already exists.
      */
     public static void add(User user) {
+        ensureLoaded();
         if (user != null) {
-            String loginID = user.getLoginID();
-            if (!users.containsKey(loginID)) {
-                users.put(loginID, user);
-            } else {
-                throw new IllegalArgumentException("User with login ID " + loginID + " already exists.");
+            if (!users.add(user)) {
+                throw new IllegalArgumentException("User with login ID " + user.getLoginID() + " already exists.");
             }
         } else {
             throw new IllegalArgumentException("Parameter must be a non-null User.");
         }
-        save();
+        PersistenceEngine.markDirty(userFilename, UserStorage::save);
     }
 
     /**
@@ -53,12 +52,13 @@ public class UserStorage {
      * @param user The User object to be removed.
      */
     public static void remove(User user) {
+        ensureLoaded();
         if (user != null) {
             users.remove(user.getLoginID());
         } else {
             throw new IllegalArgumentException("Parameter must be a non-null User.");
         }
-        save();
+        PersistenceEngine.markDirty(userFilename, UserStorage::save);
     }
 
     /**
@@ -67,12 +67,13 @@ public class UserStorage {
      * @param user The User object to be updated.
      */
     public static void update(User user) {
+        ensureLoaded();
         if (user != null) {
-            users.put(user.getLoginID(), user);
+            users.put(user);
         } else {
             throw new IllegalArgumentException("Parameter must be a non-null User.");
         }
-        save();
+        PersistenceEngine.markDirty(userFilename, UserStorage::save);
     }
 
     /**
@@ -82,6 +83,7 @@ public class UserStorage {
      * @return The User object with the specified login ID, or null if not found.
      */
     public static User get(String loginID) {
+        ensureLoaded();
         return users.get(loginID);
     }
 
@@ -91,45 +93,77 @@ public class UserStorage {
      * @return An array of User objects.
      */
     public static User[] getAll() {
-        return users.values().toArray(new User[0]);
+        ensureLoaded();
+        return users.snapshot().toArray(new User[0]);
+    }
+
+    /**
+     * Retrieves a consistent snapshot of all User objects, which can be iterated without copying.
+     *
+     * @return An unmodifiable list of User objects.
+     */
+    public static List<User> snapshot() {
+        ensureLoaded();
+        return users.snapshot();
     }
 
     /**
      * Saves the User storage to a file.
+     *
+     * @throws IllegalStateException if the file cannot be written
      */
-    public static void save() {
-        SerialDataService serialDataService = new SerialDataService();
-        serialDataService.exportUserData(users);
+    public static synchronized void save() {
+        BinaryDataService dataService = new BinaryDataService();
+        if (!dataService.exportUserData(users.toHashMap())) {
+            throw new IllegalStateException("Unable to save " + userFilename + ".");
+        }
     }
 
     /**
      * Loads the User storage from a file.
      * If the file does not exist, it initializes the storage with data from a CSV file using CSVDataService and saves it.
      */
-    public static void load() {
-        File file = new File(userFilename);
+    public static synchronized void load() {
         BranchUser[] branchUsers = BranchUserStorage.getAll();
-        if (file.exists()) {
-            SerialDataService serialDataService = new SerialDataService();
-            users = serialDataService.importUserData();
+        if (SnapshotFiles.exists(userFilename)) {
+            BinaryDataService dataService = new BinaryDataService();
+            HashMap<String, User> loadedUsers = dataService.importUserData();
             for (BranchUser branchUser : branchUsers) {
-                for (User user : users.values()) {
+                for (User user : loadedUsers.values()) {
                     if (user.getLoginID().equals(branchUser.getLoginID())) {
-                        users.remove(user.getLoginID());
-                        users.put(branchUser.getLoginID(), branchUser);
+                        loadedUsers.remove(user.getLoginID());
+                        loadedUsers.put(branchUser.getLoginID(), branchUser);
                         break;
                     }
                 }             
             }
+            users.replaceAll(loadedUsers);
 
         } else {
-            users = new HashMap<>();
             CSVDataService csvDataService = new CSVDataService();
-            users = csvDataService.importUserData();      
+            HashMap<String, User> loadedUsers = csvDataService.importUserData();      
             for (BranchUser branchUser : branchUsers) {
-                users.put(branchUser.getLoginID(), branchUser);
+                loadedUsers.put(branchUser.getLoginID(), branchUser);
+            }
+            users.replaceAll(loadedUsers);
+            PersistenceEngine.markDirty(userFilename, UserStorage::save);
+        }
+        loaded = true;
+    }
+
+    /**
+     * Loads the storage if it has not been loaded yet, after the storages it depends on.
+     */
+    static void ensureLoaded() {
+        if (!loaded) {
+            synchronized (UserStorage.class) {
+                if (!loaded) {
+                    StoreBootstrap.loadDependencies(StoreBootstrap.Store.USER);
+                    long start = System.nanoTime();
+                    load();
+                    StoreBootstrap.recordLoadTime(StoreBootstrap.Store.USER, System.nanoTime() - start);
+                }
             }
-            save();
         }
     }
 
@@ -137,6 +171,7 @@ public class UserStorage {
      * Clears the User storage.
      */
     public static void clear() {
+        ensureLoaded();
         users.clear();
     }
 }
@@ -0,0 +1,153 @@
+package test;
+
+import enums.Gender;
+import enums.Role;
+import models.Account;
+import models.BranchUser;
+import services.LoginService;
+import services.ManagerService;
+import stores.PasswordStorage;
+import stores.PersistenceEngine;
+
+/**
+ * Measures the latency of logins and password changes as the number of staff accounts grows, through
+ * the keyed account access the services share, against the scan over every account that the services
+ * used before.
+ *
+ * <p>Generated accounts are added to the password storage for each staff count and removed again
+ * before the benchmark exits, so the password file in foms/data is left with the accounts it had.
+ * Run it from the project root.
+ */
+public class AccountLookupBenchmark {
+
+    /**
+     * The prefix of the login IDs of the generated accounts.
+     */
+    private static final String prefix = "bench-";
+    /**
+     * The number of timed operations of each kind per staff count.
+     */
+    private static final int operations = 2000;
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private AccountLookupBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optionally, the staff counts to measure (default 1000 10000 50000)
+     * @throws Exception if a password change fails
+     */
+    public static void main(String[] args) throws Exception {
+        int[] staffCounts = { 1000, 10000, 50000 };
+        if (args.length > 0) {
+            staffCounts = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                staffCounts[i] = Integer.parseInt(args[i]);
+            }
+        }
+        LoginService loginService = new LoginService();
+        ManagerService managerService = new ManagerService();
+
+        System.out.printf("%8s %14s %14s %14s %14s %14s%n", "Staff", "Login (us)", "Miss (us)",
+                "Change (us)", "Scan (us)", "Scan chg (us)");
+        System.out.println("------------------------------------------------------------------------------");
+        int added = 0;
+        try {
+            for (int staffCount : staffCounts) {
+                for (; added < staffCount; added++) {
+                    PasswordStorage.add(new Account(prefix + added, "password"));
+                }
+                int count = added;
+                // Warm up every path before timing
+                for (int i = 0; i < operations; i++) {
+                    loginService.login(prefix + (i % count), "password");
+                    loginService.login("missing-" + i, "password");
+                }
+
+                long login = time(i -> {
+                    if (!loginService.login(prefix + ((i * 7919) % count), "password")) {
+                        throw new IllegalStateException("Login failed.");
+                    }
+                });
+                long miss = time(i -> {
+                    if (loginService.login("missing-" + (i % 100), "password")) {
+                        throw new IllegalStateException("Login with a missing account succeeded.");
+                    }
+                });
+                long change = time(i -> {
+                    BranchUser user = new BranchUser("Bench", prefix + ((i * 7919) % count), Role.STAFF, Gender.MALE, 30, 1);
+                    Account account = managerService.findAccountByLoginID(user.getLoginID());
+                    managerService.changePassword(user, account.getPassword(), "changed" + i);
+                });
+                long scan = time(i -> {
+                    if (scan(prefix + ((i * 7919) % count)) == null) {
+                        throw new IllegalStateException("Scan failed.");
+                    }
+                });
+                long scanChange = time(i -> {
+                    Account account = scan(prefix + ((i * 7919) % count));
+                    account.setPassword("scanned" + i);
+                    PasswordStorage.update(account);
+                });
+                System.out.printf("%8d %14.2f %14.2f %14.2f %14.2f %14.2f%n", count, login / 1e3 / operations,
+                        miss / 1e3 / operations, change / 1e3 / operations, scan / 1e3 / operations,
+                        scanChange / 1e3 / operations);
+                for (int i = 0; i < count; i++) {
+                    PasswordStorage.update(new Account(prefix + i, "password"));
+                }
+            }
+        } finally {
+            for (int i = 0; i < added; i++) {
+                PasswordStorage.remove(new Account(prefix + i, "password"));
+            }
+            PersistenceEngine.flush();
+        }
+    }
+
+    /**
+     * An operation to time, given its index.
+     */
+    private interface Operation {
+        /**
+         * Runs the operation.
+         *
+         * @param index the index of the operation
+         * @throws Exception if the operation fails
+         */
+        void run(int index) throws Exception;
+    }
+
+    /**
+     * Times a number of operations.
+     *
+     * @param operation the operation
+     * @return the total time taken, in nanoseconds
+     * @throws Exception if an operation fails
+     */
+    private static long time(Operation operation) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < operations; i++) {
+            operation.run(i);
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Finds an account by scanning every account, as the services did before the keyed account access.
+     *
+     * @param loginID the login ID of the account
+     * @return the account, or null if not found
+     */
+    private static Account scan(String loginID) {
+        for (Account account : PasswordStorage.snapshot()) {
+            if (account.getLoginID().equals(loginID)) {
+                return account;
+            }
+        }
+        return null;
+    }
+}
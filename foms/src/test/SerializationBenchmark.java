@@ -0,0 +1,207 @@
+package test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import enums.OrderType;
+import models.BranchMenuItem;
+import models.Order;
+import models.OrderItem;
+import utils.BinaryCodec;
+
+/**
+ * Compares the binary format of {@link BinaryCodec} against Java serialization, as used by
+ * {@code SerialDataService}, on generated orders and menu items.
+ *
+ * <p>Reports encode and decode throughput and the encoded size of each format. Everything is done in
+ * memory, so the data files in foms/data are not touched.
+ */
+public class SerializationBenchmark {
+
+    /**
+     * The number of timed rounds for each measurement.
+     */
+    private static final int rounds = 5;
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private SerializationBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optionally, the number of orders to generate (default 100000)
+     * @throws Exception if encoding or decoding fails
+     */
+    public static void main(String[] args) throws Exception {
+        int orderCount = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+
+        HashMap<Integer, Order> orders = new HashMap<>();
+        for (int i = 1; i <= orderCount; i++) {
+            List<OrderItem> items = new ArrayList<>();
+            items.add(new OrderItem("FRIES", "side", 1 + i % 3, 3.2, "none"));
+            items.add(new OrderItem("3PC set meal", "set meal", 1, 9.9, "no ice"));
+            items.add(new OrderItem("PEPSI", "drink", 2, 2.1, "none"));
+            orders.put(i, new Order(i, 1 + i % 4, items, i % 2 == 0 ? OrderType.DINE_IN : OrderType.TAKEAWAY, 21.3));
+        }
+        HashMap<Integer, BranchMenuItem> menu = new HashMap<>();
+        for (int i = 1; i <= orderCount / 10; i++) {
+            menu.put(i, new BranchMenuItem("Item " + i, i, "burger", 5.5, 20, "A menu item description", 1 + i % 4));
+        }
+
+        System.out.println("Orders: " + orderCount + ", menu items: " + menu.size());
+        System.out.println("--------------------------------------------------");
+        compare("Orders", orders, BinaryCodec.KIND_ORDER, true);
+        compare("Menu items", menu, BinaryCodec.KIND_MENU, false);
+    }
+
+    /**
+     * Measures both formats on the given data and prints the results.
+     *
+     * @param label the name of the data set
+     * @param data the data to encode
+     * @param kind the binary record kind of the data
+     * @param isOrder true if the data holds orders, false if it holds menu items
+     * @throws Exception if encoding or decoding fails
+     */
+    private static void compare(String label, HashMap<Integer, ?> data, byte kind, boolean isOrder) throws Exception {
+        byte[] serialized = serialize(data);
+        byte[] binary = encode(data, kind, isOrder);
+        // Warm up both paths before timing
+        for (int i = 0; i < 2; i++) {
+            deserialize(serialize(data));
+            decode(encode(data, kind, isOrder), kind, isOrder);
+        }
+
+        long serialEncode = 0, serialDecode = 0, binaryEncode = 0, binaryDecode = 0;
+        for (int i = 0; i < rounds; i++) {
+            long start = System.nanoTime();
+            serialize(data);
+            serialEncode += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            deserialize(serialized);
+            serialDecode += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            encode(data, kind, isOrder);
+            binaryEncode += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            int decoded = decode(binary, kind, isOrder);
+            binaryDecode += System.nanoTime() - start;
+            if (decoded != data.size()) {
+                throw new IllegalStateException("Decoded " + decoded + " records, expected " + data.size() + ".");
+            }
+        }
+
+        System.out.println(label + ":");
+        print("Java serialization", data.size(), serialized.length, serialEncode, serialDecode);
+        print("Binary codec", data.size(), binary.length, binaryEncode, binaryDecode);
+        System.out.println("\tSize ratio: " + String.format("%.2f", (double) binary.length / serialized.length));
+        System.out.println("--------------------------------------------------");
+    }
+
+    /**
+     * Prints the results of one format.
+     *
+     * @param format the name of the format
+     * @param records the number of records per round
+     * @param size the encoded size in bytes
+     * @param encodeNanos the total encoding time over all rounds
+     * @param decodeNanos the total decoding time over all rounds
+     */
+    private static void print(String format, int records, int size, long encodeNanos, long decodeNanos) {
+        double encodeRate = records * (double) rounds / (encodeNanos / 1e9);
+        double decodeRate = records * (double) rounds / (decodeNanos / 1e9);
+        System.out.println("\t" + format + ": " + size + " bytes, encode " + String.format("%,.0f", encodeRate)
+                + " records/s, decode " + String.format("%,.0f", decodeRate) + " records/s");
+    }
+
+    /**
+     * Encodes the data with Java serialization, as {@code SerialDataService} does.
+     *
+     * @param data the data to encode
+     * @return the encoded data
+     * @throws IOException if encoding fails
+     */
+    private static byte[] serialize(HashMap<Integer, ?> data) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(buffer)) {
+            oos.writeObject(data);
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Decodes data encoded with Java serialization.
+     *
+     * @param bytes the encoded data
+     * @return the decoded map
+     * @throws Exception if decoding fails
+     */
+    private static Object deserialize(byte[] bytes) throws Exception {
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return ois.readObject();
+        }
+    }
+
+    /**
+     * Encodes the data with the binary codec, as {@code BinaryDataService} does.
+     *
+     * @param data the data to encode
+     * @param kind the record kind of the data
+     * @param isOrder true if the data holds orders, false if it holds menu items
+     * @return the encoded data
+     * @throws IOException if encoding fails
+     */
+    private static byte[] encode(HashMap<Integer, ?> data, byte kind, boolean isOrder) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(buffer);
+        BinaryCodec.writeHeader(dos, kind, data.size());
+        for (Object value : data.values()) {
+            if (isOrder) {
+                BinaryCodec.writeOrder(dos, (Order) value);
+            } else {
+                BinaryCodec.writeBranchMenuItem(dos, (BranchMenuItem) value);
+            }
+        }
+        dos.flush();
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Decodes data encoded with the binary codec into a new map.
+     *
+     * @param bytes the encoded data
+     * @param kind the record kind of the data
+     * @param isOrder true if the data holds orders, false if it holds menu items
+     * @return the number of records decoded
+     * @throws IOException if decoding fails
+     */
+    private static int decode(byte[] bytes, byte kind, boolean isOrder) throws IOException {
+        DataInputStream dis = new DataInputStream(new ByteArrayInputStream(bytes));
+        int count = BinaryCodec.readHeader(dis, kind);
+        HashMap<Integer, Object> decoded = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            if (isOrder) {
+                Order order = BinaryCodec.readOrder(dis);
+                decoded.put(order.getOrderID(), order);
+            } else {
+                BranchMenuItem item = BinaryCodec.readBranchMenuItem(dis);
+                decoded.put(item.getItemID(), item);
+            }
+        }
+        return decoded.size();
+    }
+}
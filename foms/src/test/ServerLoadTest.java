@@ -0,0 +1,169 @@
+package test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import main.FomsServer;
+import stores.StoreBootstrap;
+
+/**
+ * Load tests the server mode of {@link FomsServer} with hundreds of terminals connected at once.
+ *
+ * <p>Every terminal connects and waits at the welcome screen until all of them are connected, then
+ * runs the same scripted session: it picks a branch, starts a dine-in order, displays the empty cart,
+ * cancels the order and exits. Reports the peak number of sessions the server held at once and the
+ * latency of the sessions. The sessions do not place orders or reserve stock, so the data files in
+ * foms/data are only read. Run from the project root, like the application.
+ */
+public class ServerLoadTest {
+
+    /**
+     * The input of each session, one line per prompt.
+     */
+    private static final String script = String.join("\n",
+            "1",  // Customer
+            "1",  // First branch
+            "2",  // Make a new order
+            "1",  // Dine in
+            "4",  // Display cart
+            "",   // Continue
+            "6",  // Cancel order
+            "3",  // Leave the branch
+            "",   // Return to the main page
+            "3",  // Exit
+            "");
+    /**
+     * The prompt of the welcome screen.
+     */
+    private static final String welcomePrompt = "Enter your choice: ";
+    /**
+     * The last line of a session that ran to completion.
+     */
+    private static final String goodbye = "Thank you for using FOMS. Goodbye!";
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private ServerLoadTest() {
+    }
+
+    /**
+     * Runs the load test.
+     *
+     * @param args optionally, the number of sessions (default 500)
+     * @throws Exception if the server cannot be started or a client thread is interrupted
+     */
+    public static void main(String[] args) throws Exception {
+        int sessionCount = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        StoreBootstrap.start().join();
+        StoreBootstrap.await(StoreBootstrap.Store.values());
+
+        try (FomsServer server = FomsServer.start(0)) {
+            System.out.println("Sessions: " + sessionCount + ", port: " + server.getPort()
+                    + (server.usesVirtualThreads() ? ", virtual threads" : ", platform threads"));
+            System.out.println("--------------------------------------------------");
+
+            CountDownLatch connected = new CountDownLatch(sessionCount);
+            CountDownLatch go = new CountDownLatch(1);
+            AtomicInteger completed = new AtomicInteger();
+            AtomicInteger failed = new AtomicInteger();
+            long[] latencies = new long[sessionCount];
+            List<Thread> clients = new ArrayList<>();
+            for (int i = 0; i < sessionCount; i++) {
+                int index = i;
+                Thread client = new Thread(() -> {
+                    try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+                        InputStream in = socket.getInputStream();
+                        OutputStream out = socket.getOutputStream();
+                        readUntil(in, welcomePrompt);
+                        connected.countDown();
+                        go.await();
+                        long start = System.nanoTime();
+                        out.write(script.getBytes(StandardCharsets.UTF_8));
+                        out.flush();
+                        String output = readUntil(in, goodbye);
+                        latencies[index] = System.nanoTime() - start;
+                        if (output.contains("Order cancelled successfully.") && output.contains(goodbye)) {
+                            completed.incrementAndGet();
+                        } else {
+                            failed.incrementAndGet();
+                        }
+                    } catch (IOException | InterruptedException e) {
+                        failed.incrementAndGet();
+                        connected.countDown();
+                    }
+                });
+                client.start();
+                clients.add(client);
+            }
+
+            long connectStart = System.nanoTime();
+            connected.await();
+            long connectNanos = System.nanoTime() - connectStart;
+            int simultaneous = server.getActiveSessionCount();
+            long runStart = System.nanoTime();
+            go.countDown();
+            for (Thread client : clients) {
+                client.join();
+            }
+            long runNanos = System.nanoTime() - runStart;
+
+            Arrays.sort(latencies);
+            System.out.printf("Connected %d sessions in %.1f ms, %d active at once (peak %d)%n",
+                    sessionCount, connectNanos / 1e6, simultaneous, server.getPeakSessionCount());
+            System.out.printf("Ran %d sessions in %.1f ms (%.0f sessions/s)%n",
+                    sessionCount, runNanos / 1e6, sessionCount / (runNanos / 1e9));
+            System.out.printf("Session latency: p50 %.1f ms, p99 %.1f ms, max %.1f ms%n",
+                    percentile(latencies, 0.50) / 1e6, percentile(latencies, 0.99) / 1e6, latencies[sessionCount - 1] / 1e6);
+            System.out.println("--------------------------------------------------");
+            System.out.println("Completed: " + completed.get() + ", failed: " + failed.get());
+            if (failed.get() > 0 || simultaneous < sessionCount) {
+                System.out.println("Some sessions FAILED.");
+                System.exit(1);
+            }
+            System.out.println("All sessions completed.");
+        }
+    }
+
+    /**
+     * Reads the output of a session until it contains the given text or the session ends.
+     *
+     * @param in the output of the session
+     * @param marker the text to wait for
+     * @return the output read
+     * @throws IOException if the output cannot be read
+     */
+    private static String readUntil(InputStream in, String marker) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            output.write(buffer, 0, read);
+            if (output.toString(StandardCharsets.UTF_8).contains(marker)) {
+                break;
+            }
+        }
+        return output.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns a percentile of sorted values.
+     *
+     * @param sorted the values, in ascending order
+     * @param fraction the percentile, between 0 and 1
+     * @return the value at the percentile
+     */
+    private static long percentile(long[] sorted, double fraction) {
+        return sorted[Math.min(sorted.length - 1, (int) (fraction * sorted.length))];
+    }
+}
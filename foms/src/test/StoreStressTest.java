@@ -0,0 +1,222 @@
+package test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+
+import models.BranchMenuItem;
+import stores.ConcurrentStore;
+
+/**
+ * Stress tests {@link ConcurrentStore}, the core of each store, with many threads adding, updating,
+ * reading and removing menu items at the same time.
+ *
+ * <p>Checks that each key is added exactly once when threads race to add it, that read-modify-write
+ * updates under the key's lock are not lost, and that snapshots taken while writes are in progress
+ * are consistent. Reports the throughput of each phase. Everything is done in memory, so the data
+ * files in foms/data are not touched.
+ */
+public class StoreStressTest {
+
+    /**
+     * The number of keys the threads contend on.
+     */
+    private static final int keyCount = 1000;
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private StoreStressTest() {
+    }
+
+    /**
+     * Runs the stress test.
+     *
+     * @param args optionally, the number of threads (default 16) and the number of operations per thread (default 200000)
+     * @throws Exception if a thread is interrupted
+     */
+    public static void main(String[] args) throws Exception {
+        int threadCount = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int operations = args.length > 1 ? Integer.parseInt(args[1]) : 200000;
+        System.out.println("Threads: " + threadCount + ", operations per thread: " + operations + ", keys: " + keyCount);
+        System.out.println("--------------------------------------------------");
+
+        boolean passed = contendedAdd(threadCount);
+        passed &= mixedWorkload(threadCount, operations);
+        System.out.println("--------------------------------------------------");
+        System.out.println(passed ? "All checks passed." : "Some checks FAILED.");
+        if (!passed) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Has every thread try to add every key, and checks that each key was added by exactly one thread.
+     *
+     * @param threadCount the number of threads
+     * @return true if the checks passed, false otherwise
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    private static boolean contendedAdd(int threadCount) throws InterruptedException {
+        ConcurrentStore<Integer, BranchMenuItem> store = new ConcurrentStore<>(BranchMenuItem::getItemID);
+        AtomicInteger added = new AtomicInteger();
+        long nanos = run(threadCount, thread -> {
+            for (int key = 0; key < keyCount; key++) {
+                if (store.add(item(key, thread))) {
+                    added.incrementAndGet();
+                }
+            }
+        });
+        boolean passed = check("each key added exactly once", added.get() == keyCount && store.size() == keyCount);
+        report("Contended add", (long) threadCount * keyCount, nanos);
+        return passed;
+    }
+
+    /**
+     * Has every thread read, update, remove and re-add random keys while one thread keeps taking
+     * snapshots, and checks that no update was lost and that every snapshot was consistent.
+     *
+     * @param threadCount the number of threads
+     * @param operations the number of operations per thread
+     * @return true if the checks passed, false otherwise
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    private static boolean mixedWorkload(int threadCount, int operations) throws InterruptedException {
+        ConcurrentStore<Integer, BranchMenuItem> store = new ConcurrentStore<>(BranchMenuItem::getItemID);
+        // Keys below half are only incremented; keys above half are also removed and re-added
+        int stableKeys = keyCount / 2;
+        for (int key = 0; key < keyCount; key++) {
+            store.add(item(key, 0));
+        }
+        AtomicLong increments = new AtomicLong();
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicBoolean consistent = new AtomicBoolean(true);
+        AtomicLong snapshots = new AtomicLong();
+
+        Thread reader = new Thread(() -> {
+            while (running.get()) {
+                List<BranchMenuItem> snapshot = store.snapshot();
+                int stable = 0;
+                for (BranchMenuItem item : snapshot) {
+                    if (item.getItemID() < stableKeys) {
+                        stable++;
+                    }
+                }
+                if (stable != stableKeys || snapshot.size() > keyCount) {
+                    consistent.set(false);
+                }
+                snapshots.incrementAndGet();
+            }
+        });
+        reader.start();
+
+        long nanos = run(threadCount, thread -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < operations; i++) {
+                int key = random.nextInt(keyCount);
+                int op = random.nextInt(10);
+                if (op < 6) {
+                    store.get(key);
+                } else if (op < 9 || key < stableKeys) {
+                    if (key < stableKeys) {
+                        store.withLock(key, () -> {
+                            BranchMenuItem current = store.get(key);
+                            BranchMenuItem next = item(key, current.getAvailability() + 1);
+                            store.put(next);
+                            return next;
+                        });
+                        increments.incrementAndGet();
+                    } else {
+                        store.replace(item(key, thread));
+                    }
+                } else if (store.remove(key) == null) {
+                    store.add(item(key, thread));
+                }
+            }
+        });
+        running.set(false);
+        reader.join();
+
+        long total = 0;
+        for (int key = 0; key < stableKeys; key++) {
+            total += store.get(key).getAvailability();
+        }
+        boolean passed = check("no increment lost", total == increments.get());
+        passed &= check("snapshots consistent (" + snapshots.get() + " taken)", consistent.get());
+        passed &= check("size within bounds", store.size() >= stableKeys && store.size() <= keyCount);
+        passed &= check("snapshot matches store", store.snapshot().size() == store.size());
+        report("Mixed workload", (long) threadCount * operations, nanos);
+        return passed;
+    }
+
+    /**
+     * Runs a task on each of the given number of threads, started together, and waits for all of them.
+     *
+     * @param threadCount the number of threads
+     * @param task the task, given the index of the thread
+     * @return the time taken by all threads, in nanoseconds
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    private static long run(int threadCount, IntConsumer task) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < threadCount; i++) {
+            int index = i;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                task.accept(index);
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return System.nanoTime() - begin;
+    }
+
+    /**
+     * Creates a menu item.
+     *
+     * @param key the item ID
+     * @param availability the availability, used as a counter
+     * @return the menu item
+     */
+    private static BranchMenuItem item(int key, int availability) {
+        return new BranchMenuItem("Item " + key, key, "burger", 5.5, availability, "A menu item description", 1);
+    }
+
+    /**
+     * Prints the outcome of a check.
+     *
+     * @param name the name of the check
+     * @param passed whether the check passed
+     * @return whether the check passed
+     */
+    private static boolean check(String name, boolean passed) {
+        System.out.println((passed ? "PASS " : "FAIL ") + name);
+        return passed;
+    }
+
+    /**
+     * Prints the throughput of a phase.
+     *
+     * @param label the name of the phase
+     * @param operations the number of operations done
+     * @param nanos the time taken, in nanoseconds
+     */
+    private static void report(String label, long operations, long nanos) {
+        System.out.printf("%-16s %10d ops in %7.1f ms (%.0f ops/ms)%n", label, operations, nanos / 1e6, operations / (nanos / 1e6));
+    }
+}
@@ -0,0 +1,538 @@
+package utils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import enums.Gender;
+import enums.OrderStatus;
+import enums.OrderType;
+import enums.Role;
+import models.Account;
+import models.Admin;
+import models.Branch;
+import models.BranchMenuItem;
+import models.BranchUser;
+import models.Order;
+import models.OrderItem;
+import models.PaymentMethod;
+import models.User;
+
+/**
+ * <p>Hand-written binary encoding of the model classes, used in place of Java serialization.
+ *
+ * <p>Every file starts with a header of {@link #MAGIC}, the format version and a record kind, followed
+ * by the number of records. Fields are written explicitly in a fixed order, so adding a field to a model
+ * class only requires a new format version rather than breaking every existing file.
+ *
+ * <p>IDs, counts and quantities are written as variable-length ints and strings as length-prefixed
+ * UTF-8. Enums are stored by ordinal, so new constants must only ever be appended to an enum.
+ */
+public class BinaryCodec {
+
+    /**
+     * The magic number at the start of every binary data file ("FOMS").
+     */
+    public static final int MAGIC = 0x464F4D53;
+    /**
+     * The current format version.
+     */
+    public static final short VERSION = 1;
+
+    /**
+     * Record kind of order files.
+     */
+    public static final byte KIND_ORDER = 1;
+    /**
+     * Record kind of user files.
+     */
+    public static final byte KIND_USER = 2;
+    /**
+     * Record kind of branch user files.
+     */
+    public static final byte KIND_BRANCH_USER = 3;
+    /**
+     * Record kind of menu files.
+     */
+    public static final byte KIND_MENU = 4;
+    /**
+     * Record kind of payment method files.
+     */
+    public static final byte KIND_PAYMENT_METHOD = 5;
+    /**
+     * Record kind of branch files.
+     */
+    public static final byte KIND_BRANCH = 6;
+    /**
+     * Record kind of password files.
+     */
+    public static final byte KIND_ACCOUNT = 7;
+
+    /**
+     * Tag of an {@link Admin} within a user record.
+     */
+    private static final byte TAG_ADMIN = 'A';
+    /**
+     * Tag of a {@link BranchUser} within a user record.
+     */
+    private static final byte TAG_BRANCH_USER = 'B';
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private BinaryCodec() {
+    }
+
+    /**
+     * Writes a file header.
+     *
+     * @param out the output to write to
+     * @param kind the kind of records that follow
+     * @param count the number of records that follow
+     * @throws IOException if the header cannot be written
+     */
+    public static void writeHeader(DataOutput out, byte kind, int count) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeByte(kind);
+        out.writeInt(count);
+    }
+
+    /**
+     * Reads and validates a file header.
+     *
+     * @param in the input to read from
+     * @param kind the kind of records expected
+     * @return the number of records that follow
+     * @throws IOException if the header is missing, of an unsupported version or of the wrong kind
+     */
+    public static int readHeader(DataInput in, byte kind) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a FOMS data file.");
+        }
+        short version = in.readShort();
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Unsupported data file version " + version + ".");
+        }
+        byte fileKind = in.readByte();
+        if (fileKind != kind) {
+            throw new IOException("Expected record kind " + kind + " but found " + fileKind + ".");
+        }
+        return in.readInt();
+    }
+
+    /**
+     * Writes an order and its items.
+     *
+     * @param out the output to write to
+     * @param order the order to write
+     * @throws IOException if the order cannot be written
+     */
+    public static void writeOrder(DataOutput out, Order order) throws IOException {
+        writeVarInt(out, order.getOrderID());
+        writeVarInt(out, order.getBranchID());
+        writeEnum(out, order.getOrderStatus());
+        writeEnum(out, order.getOrderType());
+        out.writeDouble(order.getTotalPrice());
+        writeDateTime(out, order.getOrderTime());
+        writeDateTime(out, order.getReadyTime());
+        List<OrderItem> items = order.getOrderItems();
+        writeVarInt(out, items == null ? -1 : items.size());
+        if (items != null) {
+            for (OrderItem item : items) {
+                writeOrderItem(out, item);
+            }
+        }
+    }
+
+    /**
+     * Reads an order and its items.
+     *
+     * @param in the input to read from
+     * @return the order read
+     * @throws IOException if the order cannot be read
+     */
+    public static Order readOrder(DataInput in) throws IOException {
+        int orderID = readVarInt(in);
+        int branchID = readVarInt(in);
+        OrderStatus status = readEnum(in, OrderStatus.values());
+        OrderType type = readEnum(in, OrderType.values());
+        double totalPrice = in.readDouble();
+        LocalDateTime orderTime = readDateTime(in);
+        LocalDateTime readyTime = readDateTime(in);
+        int itemCount = readVarInt(in);
+        List<OrderItem> items = null;
+        if (itemCount >= 0) {
+            items = new ArrayList<>(itemCount);
+            for (int i = 0; i < itemCount; i++) {
+                items.add(readOrderItem(in));
+            }
+        }
+        return new Order(orderID, branchID, items, type, totalPrice, status, orderTime, readyTime);
+    }
+
+    /**
+     * Writes an order item.
+     *
+     * @param out the output to write to
+     * @param item the order item to write
+     * @throws IOException if the item cannot be written
+     */
+    public static void writeOrderItem(DataOutput out, OrderItem item) throws IOException {
+        writeString(out, item.getItemName());
+        writeString(out, item.getCategory());
+        writeVarInt(out, item.getQuantity());
+        out.writeDouble(item.getPrice());
+        writeString(out, item.getSpecialRequest());
+    }
+
+    /**
+     * Reads an order item.
+     *
+     * @param in the input to read from
+     * @return the order item read
+     * @throws IOException if the item cannot be read
+     */
+    public static OrderItem readOrderItem(DataInput in) throws IOException {
+        String name = readString(in);
+        String category = readString(in);
+        int quantity = readVarInt(in);
+        double price = in.readDouble();
+        String specialRequest = readString(in);
+        return new OrderItem(name, category, quantity, price, specialRequest);
+    }
+
+    /**
+     * Writes a branch menu item.
+     *
+     * @param out the output to write to
+     * @param item the menu item to write
+     * @throws IOException if the item cannot be written
+     */
+    public static void writeBranchMenuItem(DataOutput out, BranchMenuItem item) throws IOException {
+        writeVarInt(out, item.getItemID());
+        writeVarInt(out, item.getBranchID());
+        writeString(out, item.getName());
+        writeString(out, item.getCategory());
+        out.writeDouble(item.getPrice());
+        writeVarInt(out, item.getAvailability());
+        writeString(out, item.getDescription());
+    }
+
+    /**
+     * Reads a branch menu item.
+     *
+     * @param in the input to read from
+     * @return the menu item read
+     * @throws IOException if the item cannot be read
+     */
+    public static BranchMenuItem readBranchMenuItem(DataInput in) throws IOException {
+        int itemID = readVarInt(in);
+        int branchID = readVarInt(in);
+        String name = readString(in);
+        String category = readString(in);
+        double price = in.readDouble();
+        int availability = readVarInt(in);
+        String description = readString(in);
+        return new BranchMenuItem(name, itemID, category, price, availability, description, branchID);
+    }
+
+    /**
+     * Writes a user, tagged with its concrete type.
+     *
+     * @param out the output to write to
+     * @param user the user to write
+     * @throws IOException if the user cannot be written
+     */
+    public static void writeUser(DataOutput out, User user) throws IOException {
+        if (user instanceof BranchUser) {
+            out.writeByte(TAG_BRANCH_USER);
+            writeBranchUser(out, (BranchUser) user);
+        } else if (user instanceof Admin) {
+            out.writeByte(TAG_ADMIN);
+            writeString(out, user.getName());
+            writeString(out, user.getLoginID());
+            writeEnum(out, user.getRole());
+            writeEnum(out, user.getGender());
+            writeVarInt(out, user.getAge());
+        } else {
+            throw new IOException("Unsupported user type " + user.getClass().getName() + ".");
+        }
+    }
+
+    /**
+     * Reads a user written by {@link #writeUser(DataOutput, User)}.
+     *
+     * @param in the input to read from
+     * @return the user read
+     * @throws IOException if the user cannot be read
+     */
+    public static User readUser(DataInput in) throws IOException {
+        byte tag = in.readByte();
+        if (tag == TAG_BRANCH_USER) {
+            return readBranchUser(in);
+        } else if (tag == TAG_ADMIN) {
+            String name = readString(in);
+            String loginID = readString(in);
+            Role role = readEnum(in, Role.values());
+            Gender gender = readEnum(in, Gender.values());
+            int age = readVarInt(in);
+            Admin admin = new Admin(name, loginID, gender, age);
+            admin.setRole(role);
+            return admin;
+        }
+        throw new IOException("Unknown user tag " + tag + ".");
+    }
+
+    /**
+     * Writes a branch user.
+     *
+     * @param out the output to write to
+     * @param user the branch user to write
+     * @throws IOException if the user cannot be written
+     */
+    public static void writeBranchUser(DataOutput out, BranchUser user) throws IOException {
+        writeString(out, user.getName());
+        writeString(out, user.getLoginID());
+        writeEnum(out, user.getRole());
+        writeEnum(out, user.getGender());
+        writeVarInt(out, user.getAge());
+        writeVarInt(out, user.getBranchID());
+    }
+
+    /**
+     * Reads a branch user.
+     *
+     * @param in the input to read from
+     * @return the branch user read
+     * @throws IOException if the user cannot be read
+     */
+    public static BranchUser readBranchUser(DataInput in) throws IOException {
+        String name = readString(in);
+        String loginID = readString(in);
+        Role role = readEnum(in, Role.values());
+        Gender gender = readEnum(in, Gender.values());
+        int age = readVarInt(in);
+        int branchID = readVarInt(in);
+        return new BranchUser(name, loginID, role, gender, age, branchID);
+    }
+
+    /**
+     * Writes a branch.
+     *
+     * @param out the output to write to
+     * @param branch the branch to write
+     * @throws IOException if the branch cannot be written
+     */
+    public static void writeBranch(DataOutput out, Branch branch) throws IOException {
+        writeVarInt(out, branch.getID());
+        writeString(out, branch.getName());
+        writeString(out, branch.getLocation());
+        writeVarInt(out, branch.getStaffQuota());
+    }
+
+    /**
+     * Reads a branch.
+     *
+     * @param in the input to read from
+     * @return the branch read
+     * @throws IOException if the branch cannot be read
+     */
+    public static Branch readBranch(DataInput in) throws IOException {
+        int branchID = readVarInt(in);
+        String name = readString(in);
+        String location = readString(in);
+        int staffQuota = readVarInt(in);
+        return new Branch(branchID, name, location, staffQuota);
+    }
+
+    /**
+     * Writes an account.
+     *
+     * @param out the output to write to
+     * @param account the account to write
+     * @throws IOException if the account cannot be written
+     */
+    public static void writeAccount(DataOutput out, Account account) throws IOException {
+        writeString(out, account.getLoginID());
+        writeString(out, account.getPassword());
+    }
+
+    /**
+     * Reads an account.
+     *
+     * @param in the input to read from
+     * @return the account read
+     * @throws IOException if the account cannot be read
+     */
+    public static Account readAccount(DataInput in) throws IOException {
+        String loginID = readString(in);
+        String password = readString(in);
+        return new Account(loginID, password);
+    }
+
+    /**
+     * Writes a payment method.
+     *
+     * @param out the output to write to
+     * @param paymentMethod the payment method to write
+     * @throws IOException if the payment method cannot be written
+     */
+    public static void writePaymentMethod(DataOutput out, PaymentMethod paymentMethod) throws IOException {
+        writeString(out, paymentMethod.getPaymentMethod());
+        writeString(out, paymentMethod.getType());
+    }
+
+    /**
+     * Reads a payment method.
+     *
+     * @param in the input to read from
+     * @return the payment method read
+     * @throws IOException if the payment method cannot be read
+     */
+    public static PaymentMethod readPaymentMethod(DataInput in) throws IOException {
+        String name = readString(in);
+        String type = readString(in);
+        return new PaymentMethod(name, type);
+    }
+
+    /**
+     * Writes a nullable string as its UTF-8 length plus one, followed by its UTF-8 bytes.
+     * A length of zero marks a null string.
+     *
+     * @param out the output to write to
+     * @param value the string to write, may be null
+     * @throws IOException if the string cannot be written
+     */
+    private static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length + 1);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a nullable string.
+     *
+     * @param in the input to read from
+     * @return the string read, or null
+     * @throws IOException if the string cannot be read
+     */
+    private static String readString(DataInput in) throws IOException {
+        int length = readVarInt(in) - 1;
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes an int in a variable number of bytes, seven bits at a time, so that small values
+     * such as IDs and quantities take a single byte. Negative values take five bytes.
+     *
+     * @param out the output to write to
+     * @param value the value to write
+     * @throws IOException if the value cannot be written
+     */
+    private static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * Reads an int written by {@link #writeVarInt(DataOutput, int)}.
+     *
+     * @param in the input to read from
+     * @return the value read
+     * @throws IOException if the value cannot be read or is malformed
+     */
+    private static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable-length int.");
+    }
+
+    /**
+     * Writes a nullable enum constant by ordinal.
+     *
+     * @param out the output to write to
+     * @param value the constant to write, may be null
+     * @throws IOException if the constant cannot be written
+     */
+    private static void writeEnum(DataOutput out, Enum<?> value) throws IOException {
+        out.writeByte(value == null ? -1 : value.ordinal());
+    }
+
+    /**
+     * Reads a nullable enum constant by ordinal.
+     *
+     * @param <E> the enum type
+     * @param in the input to read from
+     * @param values the constants of the enum
+     * @return the constant read, or null
+     * @throws IOException if the constant cannot be read or is out of range
+     */
+    private static <E extends Enum<E>> E readEnum(DataInput in, E[] values) throws IOException {
+        int ordinal = in.readByte();
+        if (ordinal < 0) {
+            return null;
+        }
+        if (ordinal >= values.length) {
+            throw new IOException("Unknown enum ordinal " + ordinal + ".");
+        }
+        return values[ordinal];
+    }
+
+    /**
+     * Writes a nullable date and time as UTC epoch seconds and nanoseconds.
+     * A null value is written as a single zero byte.
+     *
+     * @param out the output to write to
+     * @param value the date and time to write, may be null
+     * @throws IOException if the value cannot be written
+     */
+    private static void writeDateTime(DataOutput out, LocalDateTime value) throws IOException {
+        if (value == null) {
+            out.writeByte(0);
+            return;
+        }
+        out.writeByte(1);
+        out.writeLong(value.toEpochSecond(ZoneOffset.UTC));
+        writeVarInt(out, value.getNano());
+    }
+
+    /**
+     * Reads a nullable date and time.
+     *
+     * @param in the input to read from
+     * @return the date and time read, or null
+     * @throws IOException if the value cannot be read
+     */
+    private static LocalDateTime readDateTime(DataInput in) throws IOException {
+        if (in.readByte() == 0) {
+            return null;
+        }
+        long seconds = in.readLong();
+        int nanos = readVarInt(in);
+        return LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC);
+    }
+}
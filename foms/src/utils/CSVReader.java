@@ -0,0 +1,437 @@
+package utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * <p>Reads a UTF-8 CSV file record by record, through a {@link FileChannel} and fixed-size buffers, so
+ * files of any size are read in constant memory.
+ *
+ * <p>Fields are separated by commas and records by line breaks ({@code \n}, {@code \r\n} or {@code \r}).
+ * A field in double quotes may hold commas, line breaks and doubled quotes ({@code ""}), which stand for
+ * one quote. Whitespace around a field is ignored, except inside quotes. A byte order mark at the start of
+ * the file and blank lines are skipped.
+ *
+ * <p>The fields of the current record are held in a buffer that is reused by the next record; a field
+ * only becomes a {@link String} when it is read with {@link #get(int)}, and {@link #getInt(int)} parses a
+ * number in place.
+ */
+public class CSVReader implements AutoCloseable {
+
+    /**
+     * The size of the byte and character buffers.
+     */
+    private static final int bufferSize = 1 << 16;
+    /**
+     * The value returned by {@link #read()} at the end of the file.
+     */
+    private static final int endOfFile = -1;
+    /**
+     * The value of {@link #lookahead} when no character has been read ahead.
+     */
+    private static final int none = -2;
+
+    /**
+     * The file being read.
+     */
+    private final FileChannel channel;
+    /**
+     * The bytes read from the file and not decoded yet.
+     */
+    private final ByteBuffer bytes = ByteBuffer.allocate(bufferSize);
+    /**
+     * The decoded characters not read yet.
+     */
+    private final CharBuffer chars = CharBuffer.allocate(bufferSize);
+    /**
+     * Decodes the file as UTF-8, replacing malformed input.
+     */
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    /**
+     * Whether the whole file has been read from the channel.
+     */
+    private boolean endOfInput;
+    /**
+     * Whether the decoder has been flushed at the end of the file.
+     */
+    private boolean flushed;
+    /**
+     * A character read ahead, or {@link #none}.
+     */
+    private int lookahead = none;
+
+    /**
+     * The characters of the fields of the current record.
+     */
+    private char[] record = new char[256];
+    /**
+     * The start of each field of the current record in {@link #record}.
+     */
+    private int[] fieldStarts = new int[16];
+    /**
+     * The end of each field of the current record in {@link #record}.
+     */
+    private int[] fieldEnds = new int[16];
+    /**
+     * Whether each field of the current record was quoted.
+     */
+    private boolean[] fieldQuoted = new boolean[16];
+    /**
+     * The number of fields of the current record.
+     */
+    private int fieldCount;
+    /**
+     * The number of records read, including the current record.
+     */
+    private long recordNumber;
+
+    /**
+     * Opens a CSV file.
+     *
+     * @param path the path to the file
+     * @throws IOException if the file cannot be opened
+     */
+    public CSVReader(String path) throws IOException {
+        this.channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+        chars.flip();
+        if (peek() == '\uFEFF') {
+            read();
+        }
+    }
+
+    /**
+     * Moves to the next record of the file, skipping blank lines.
+     *
+     * @return true if there is a next record, or false at the end of the file
+     * @throws IOException if the file cannot be read
+     */
+    public boolean next() throws IOException {
+        do {
+            if (!readRecord()) {
+                return false;
+            }
+        } while (fieldCount == 1 && !fieldQuoted[0] && isBlank(0));
+        recordNumber++;
+        return true;
+    }
+
+    /**
+     * Returns the number of fields of the current record.
+     *
+     * @return the number of fields
+     */
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * Returns the number of the current record in the file, counting from 1 and leaving out blank lines.
+     *
+     * @return the record number
+     */
+    public long getRecordNumber() {
+        return recordNumber;
+    }
+
+    /**
+     * Returns a field of the current record.
+     *
+     * @param index the index of the field, from 0
+     * @return the field, without surrounding whitespace unless it was quoted
+     * @throws IllegalArgumentException if the record has no such field
+     */
+    public String get(int index) {
+        checkIndex(index);
+        return new String(record, fieldStarts[index], fieldEnds[index] - fieldStarts[index]);
+    }
+
+    /**
+     * Returns a field of the current record as an int, parsed in place.
+     *
+     * @param index the index of the field, from 0
+     * @return the value of the field
+     * @throws IllegalArgumentException if the record has no such field
+     * @throws NumberFormatException if the field is not an int
+     */
+    public int getInt(int index) {
+        checkIndex(index);
+        int position = fieldStarts[index];
+        int end = fieldEnds[index];
+        boolean negative = position < end && record[position] == '-';
+        if (negative || (position < end && record[position] == '+')) {
+            position++;
+        }
+        if (position == end || end - position > 10) {
+            return Integer.parseInt(get(index));
+        }
+        long value = 0;
+        for (; position < end; position++) {
+            int digit = record[position] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("For input string: \"" + get(index) + "\"");
+            }
+            value = value * 10 + digit;
+        }
+        value = negative ? -value : value;
+        if (value != (int) value) {
+            throw new NumberFormatException("For input string: \"" + get(index) + "\"");
+        }
+        return (int) value;
+    }
+
+    /**
+     * Returns a field of the current record as a double.
+     *
+     * @param index the index of the field, from 0
+     * @return the value of the field
+     * @throws IllegalArgumentException if the record has no such field
+     * @throws NumberFormatException if the field is not a number
+     */
+    public double getDouble(int index) {
+        return Double.parseDouble(get(index));
+    }
+
+    /**
+     * Closes the file.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Reads the fields of the next record, or of a blank line, into the record buffer.
+     *
+     * @return true if a record was read, or false at the end of the file
+     * @throws IOException if the file cannot be read
+     */
+    private boolean readRecord() throws IOException {
+        int c = read();
+        if (c == endOfFile) {
+            return false;
+        }
+        fieldCount = 0;
+        int length = 0;
+        int fieldStart = 0;
+        boolean quoted = false;
+        boolean inQuotes = false;
+        while (true) {
+            if (inQuotes) {
+                if (c == endOfFile) {
+                    throw new IOException("Unterminated quoted field in record " + (recordNumber + 1) + ".");
+                }
+                if (c == '"') {
+                    if (peek() == '"') {
+                        read();
+                        length = append(length, '"');
+                    } else {
+                        inQuotes = false;
+                    }
+                } else {
+                    length = append(length, (char) c);
+                }
+            } else if (c == ',' || c == '\n' || c == '\r' || c == endOfFile) {
+                endField(fieldStart, length, quoted);
+                if (c == ',') {
+                    fieldStart = length;
+                    quoted = false;
+                } else {
+                    if (c == '\r' && peek() == '\n') {
+                        read();
+                    }
+                    return true;
+                }
+            } else if (c == '"' && !quoted && isBlank(fieldStart, length)) {
+                // An opening quote: whitespace before it is not part of the field
+                length = fieldStart;
+                quoted = true;
+                inQuotes = true;
+            } else if (!quoted) {
+                length = appendPlain(append(length, (char) c));
+            } else if (c > ' ') {
+                // Whitespace after a closing quote is not part of the field
+                length = append(length, (char) c);
+            }
+            c = read();
+        }
+    }
+
+    /**
+     * Records the end of a field, leaving out surrounding whitespace unless it was quoted.
+     *
+     * @param start the start of the field in the record buffer
+     * @param end the end of the field in the record buffer
+     * @param quoted whether the field was quoted
+     */
+    private void endField(int start, int end, boolean quoted) {
+        if (fieldCount == fieldStarts.length) {
+            fieldStarts = Arrays.copyOf(fieldStarts, fieldCount * 2);
+            fieldEnds = Arrays.copyOf(fieldEnds, fieldCount * 2);
+            fieldQuoted = Arrays.copyOf(fieldQuoted, fieldCount * 2);
+        }
+        if (!quoted) {
+            while (start < end && record[start] <= ' ') {
+                start++;
+            }
+            while (end > start && record[end - 1] <= ' ') {
+                end--;
+            }
+        }
+        fieldStarts[fieldCount] = start;
+        fieldEnds[fieldCount] = end;
+        fieldQuoted[fieldCount] = quoted;
+        fieldCount++;
+    }
+
+    /**
+     * Appends a character to the record buffer, growing it if needed.
+     *
+     * @param length the length of the record buffer
+     * @param c the character
+     * @return the new length of the record buffer
+     */
+    private int append(int length, char c) {
+        if (length == record.length) {
+            record = Arrays.copyOf(record, length * 2);
+        }
+        record[length] = c;
+        return length + 1;
+    }
+
+    /**
+     * Appends the decoded characters up to the next comma, line break or quote to the record buffer in one
+     * copy, which reads an unquoted field much faster than one character at a time.
+     *
+     * @param length the length of the record buffer
+     * @return the new length of the record buffer
+     */
+    private int appendPlain(int length) {
+        if (lookahead != none) {
+            return length;
+        }
+        char[] decoded = chars.array();
+        int start = chars.position();
+        int end = start;
+        int limit = chars.limit();
+        while (end < limit) {
+            char c = decoded[end];
+            if (c == ',' || c == '\n' || c == '\r' || c == '"') {
+                break;
+            }
+            end++;
+        }
+        int count = end - start;
+        if (length + count > record.length) {
+            record = Arrays.copyOf(record, Math.max(record.length * 2, length + count));
+        }
+        System.arraycopy(decoded, start, record, length, count);
+        chars.position(end);
+        return length + count;
+    }
+
+    /**
+     * Checks whether a field of the current record is empty.
+     *
+     * @param index the index of the field
+     * @return true if the field is empty
+     */
+    private boolean isBlank(int index) {
+        return fieldStarts[index] == fieldEnds[index];
+    }
+
+    /**
+     * Checks whether part of the record buffer is only whitespace.
+     *
+     * @param start the start of the part
+     * @param end the end of the part
+     * @return true if every character of the part is whitespace
+     */
+    private boolean isBlank(int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (record[i] > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks that the current record has a field.
+     *
+     * @param index the index of the field
+     * @throws IllegalArgumentException if the record has no such field
+     */
+    private void checkIndex(int index) {
+        if (index < 0 || index >= fieldCount) {
+            throw new IllegalArgumentException("Record " + recordNumber + " has no field " + (index + 1) + ".");
+        }
+    }
+
+    /**
+     * Reads the next character.
+     *
+     * @return the character, or {@link #endOfFile}
+     * @throws IOException if the file cannot be read
+     */
+    private int read() throws IOException {
+        if (lookahead != none) {
+            int c = lookahead;
+            lookahead = none;
+            return c;
+        }
+        if (!chars.hasRemaining() && !fill()) {
+            return endOfFile;
+        }
+        return chars.get();
+    }
+
+    /**
+     * Returns the next character without consuming it.
+     *
+     * @return the character, or {@link #endOfFile}
+     * @throws IOException if the file cannot be read
+     */
+    private int peek() throws IOException {
+        if (lookahead == none) {
+            lookahead = read();
+        }
+        return lookahead;
+    }
+
+    /**
+     * Decodes more characters from the file once the decoded characters have all been read.
+     *
+     * @return true if characters were decoded, or false at the end of the file
+     * @throws IOException if the file cannot be read
+     */
+    private boolean fill() throws IOException {
+        chars.clear();
+        while (chars.position() == 0 && !flushed) {
+            if (!endOfInput && channel.read(bytes) < 0) {
+                endOfInput = true;
+            }
+            bytes.flip();
+            CoderResult result = decoder.decode(bytes, chars, endOfInput);
+            bytes.compact();
+            if (endOfInput && result.isUnderflow()) {
+                decoder.flush(chars);
+                flushed = true;
+            }
+        }
+        chars.flip();
+        return chars.hasRemaining();
+    }
+}
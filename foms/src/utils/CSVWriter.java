@@ -0,0 +1,371 @@
+package utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+
+/**
+ * <p>Writes a UTF-8 CSV file field by field, through a fixed-size buffer and a {@link FileChannel}, so
+ * files of any size are written in constant memory.
+ *
+ * <p>Fields are encoded straight into the buffer, without building a string per record or per number.
+ * A field holding a comma, a quote, a line break or surrounding whitespace is written in double quotes,
+ * with its quotes doubled, so that {@link CSVReader} reads it back unchanged. A null field is written
+ * empty. Records end with {@code \n}, like the seed files.
+ *
+ * <p>The file is written next to its path and only moved into place by {@link #commit()}; a writer
+ * closed without being committed deletes what it wrote, so a file that is being written, or whose
+ * export failed, never replaces a complete one.
+ */
+public class CSVWriter implements AutoCloseable {
+
+    /**
+     * The size of the buffer.
+     */
+    private static final int bufferSize = 1 << 16;
+    /**
+     * The most bytes one character is encoded to.
+     */
+    private static final int maxCharLength = 4;
+    /**
+     * The digits of the numbers below 100, two characters per number, for writing times.
+     */
+    private static final char[] twoDigits = new char[200];
+
+    static {
+        for (int i = 0; i < 100; i++) {
+            twoDigits[2 * i] = (char) ('0' + i / 10);
+            twoDigits[2 * i + 1] = (char) ('0' + i % 10);
+        }
+    }
+
+    /**
+     * The path the file is moved to once written.
+     */
+    private final Path path;
+    /**
+     * The path the file is written to.
+     */
+    private final Path temporaryPath;
+    /**
+     * The file being written.
+     */
+    private final FileChannel channel;
+    /**
+     * The bytes encoded and not written to the file yet.
+     */
+    private final ByteBuffer buffer = ByteBuffer.allocate(bufferSize);
+    /**
+     * The digits of the number being written, in reverse.
+     */
+    private final byte[] digits = new byte[20];
+    /**
+     * Whether the next field is the first field of its record.
+     */
+    private boolean firstField = true;
+    /**
+     * Whether the file has been written completely and moved into place.
+     */
+    private boolean committed;
+
+    /**
+     * Creates a CSV file, and the directories holding it if needed.
+     *
+     * @param pathString the path to the file
+     * @param header the names of the columns, written as the first record
+     * @throws IOException if the file cannot be created
+     */
+    public CSVWriter(String pathString, String... header) throws IOException {
+        this.path = Paths.get(pathString);
+        this.temporaryPath = Paths.get(pathString + ".tmp");
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        this.channel = FileChannel.open(temporaryPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        for (String name : header) {
+            field(name);
+        }
+        endRecord();
+    }
+
+    /**
+     * Writes a text field.
+     *
+     * @param value the value, or null for an empty field
+     * @return this writer
+     * @throws IOException if the file cannot be written
+     */
+    public CSVWriter field(String value) throws IOException {
+        separate();
+        if (value == null) {
+            return this;
+        }
+        if (!needsQuotes(value)) {
+            encode(value);
+            return this;
+        }
+        put('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                put('"');
+            }
+            encode(value, i, c);
+            if (Character.isHighSurrogate(c) && i + 1 < value.length()) {
+                i++;
+            }
+        }
+        put('"');
+        return this;
+    }
+
+    /**
+     * Writes a number field.
+     *
+     * @param value the value
+     * @return this writer
+     * @throws IOException if the file cannot be written
+     */
+    public CSVWriter field(long value) throws IOException {
+        separate();
+        ensureRoom(digits.length + 1);
+        if (value < 0) {
+            buffer.put((byte) '-');
+        } else {
+            value = -value;
+        }
+        // Digits are taken from the negative value, which also holds Long.MIN_VALUE
+        int count = 0;
+        do {
+            digits[count++] = (byte) ('0' - value % 10);
+            value /= 10;
+        } while (value != 0);
+        while (count > 0) {
+            buffer.put(digits[--count]);
+        }
+        return this;
+    }
+
+    /**
+     * Writes a decimal number field, in a form that reads back as the same value.
+     *
+     * @param value the value
+     * @return this writer
+     * @throws IOException if the file cannot be written
+     */
+    public CSVWriter field(double value) throws IOException {
+        if (value == (long) value && Math.abs(value) < 1e15) {
+            field((long) value);
+            encode(".0");
+            return this;
+        }
+        separate();
+        encode(Double.toString(value));
+        return this;
+    }
+
+    /**
+     * Writes a date-time field in ISO-8601 format, to the second.
+     *
+     * @param value the value, or null for an empty field
+     * @return this writer
+     * @throws IOException if the file cannot be written
+     */
+    public CSVWriter field(LocalDateTime value) throws IOException {
+        separate();
+        if (value == null) {
+            return this;
+        }
+        int year = value.getYear();
+        if (year < 0 || year > 9999) {
+            encode(value.withNano(0).toString());
+            return this;
+        }
+        ensureRoom(19);
+        putTwoDigits(year / 100);
+        putTwoDigits(year % 100);
+        buffer.put((byte) '-');
+        putTwoDigits(value.getMonthValue());
+        buffer.put((byte) '-');
+        putTwoDigits(value.getDayOfMonth());
+        buffer.put((byte) 'T');
+        putTwoDigits(value.getHour());
+        buffer.put((byte) ':');
+        putTwoDigits(value.getMinute());
+        buffer.put((byte) ':');
+        putTwoDigits(value.getSecond());
+        return this;
+    }
+
+    /**
+     * Ends the current record.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    public void endRecord() throws IOException {
+        put('\n');
+        firstField = true;
+    }
+
+    /**
+     * Writes what is left in the buffer, closes the file and moves it into place, replacing any file
+     * already there.
+     *
+     * @throws IOException if the file cannot be written or moved
+     */
+    public void commit() throws IOException {
+        flush();
+        channel.force(false);
+        channel.close();
+        Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        committed = true;
+    }
+
+    /**
+     * Closes the file. If it has not been committed, what was written is deleted.
+     *
+     * @throws IOException if the file cannot be closed or deleted
+     */
+    @Override
+    public void close() throws IOException {
+        if (!committed) {
+            channel.close();
+            Files.deleteIfExists(temporaryPath);
+        }
+    }
+
+    /**
+     * Writes a separator before every field but the first of a record.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    private void separate() throws IOException {
+        if (firstField) {
+            firstField = false;
+        } else {
+            put(',');
+        }
+    }
+
+    /**
+     * Checks whether a field must be quoted to be read back unchanged.
+     *
+     * @param value the value of the field
+     * @return true if the field holds a comma, a quote or a line break, or starts or ends with whitespace
+     */
+    private static boolean needsQuotes(String value) {
+        int length = value.length();
+        if (length > 0 && (value.charAt(0) <= ' ' || value.charAt(length - 1) <= ' ')) {
+            return true;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Encodes a string as UTF-8 into the buffer.
+     *
+     * @param value the string
+     * @throws IOException if the file cannot be written
+     */
+    private void encode(String value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            encode(value, i, c);
+            if (Character.isHighSurrogate(c) && i + 1 < value.length()) {
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Encodes a character of a string as UTF-8 into the buffer. A surrogate pair is encoded together
+     * with the character after it; a lone surrogate is encoded as {@code ?}.
+     *
+     * @param value the string
+     * @param index the index of the character
+     * @param c the character
+     * @throws IOException if the file cannot be written
+     */
+    private void encode(String value, int index, char c) throws IOException {
+        ensureRoom(maxCharLength);
+        if (c < 0x80) {
+            buffer.put((byte) c);
+        } else if (c < 0x800) {
+            buffer.put((byte) (0xC0 | (c >> 6)));
+            buffer.put((byte) (0x80 | (c & 0x3F)));
+        } else if (Character.isSurrogate(c)) {
+            if (Character.isHighSurrogate(c) && index + 1 < value.length() && Character.isLowSurrogate(value.charAt(index + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(index + 1));
+                buffer.put((byte) (0xF0 | (codePoint >> 18)));
+                buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+            } else {
+                buffer.put((byte) '?');
+            }
+        } else {
+            buffer.put((byte) (0xE0 | (c >> 12)));
+            buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+            buffer.put((byte) (0x80 | (c & 0x3F)));
+        }
+    }
+
+    /**
+     * Puts an ASCII character into the buffer.
+     *
+     * @param c the character
+     * @throws IOException if the file cannot be written
+     */
+    private void put(char c) throws IOException {
+        ensureRoom(1);
+        buffer.put((byte) c);
+    }
+
+    /**
+     * Puts a number below 100 into the buffer as two digits. The buffer must have room for them.
+     *
+     * @param value the number
+     */
+    private void putTwoDigits(int value) {
+        buffer.put((byte) twoDigits[2 * value]);
+        buffer.put((byte) twoDigits[2 * value + 1]);
+    }
+
+    /**
+     * Writes the buffer to the file if it has less room left than needed.
+     *
+     * @param needed the number of bytes about to be put
+     * @throws IOException if the file cannot be written
+     */
+    private void ensureRoom(int needed) throws IOException {
+        if (buffer.remaining() < needed) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes the buffer to the file.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -15,8 +15,13 @@ public class ChangePage {
      * The command for Windows is "cls", and for Unix-like systems it is "\033[H\033[2J".
      * 
      * <p>Process Builder is run twice to ensure that the screen is cleared.
+     * In a {@link TerminalSession}, the clear sequence is written to the session instead.
      */
     public static void changePage() {
+        if (TerminalSession.isActive()) {
+            System.out.print("\033[H\033[2J");
+            return;
+        }
         String os = System.getProperty("os.name").toLowerCase();
         try {
             if (os.contains("win")) {
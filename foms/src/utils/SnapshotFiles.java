@@ -0,0 +1,289 @@
+package utils;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataOutputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * <p>Writes and reads data files as crash-safe snapshots.
+ *
+ * <p>A snapshot is written to a temporary file, synced to disk and then renamed over the data file,
+ * so the data file is always either the old or the new snapshot. The snapshot it replaces is kept as
+ * the previous generation, e.g. {@code orders.prev.ser} next to {@code orders.ser}.
+ *
+ * <p>Each snapshot ends with a trailer holding the length and CRC32 checksum of its contents. On read,
+ * a data file that is missing or fails its check is skipped in favour of the previous generation.
+ * Data files written before trailers were introduced are read as they are.
+ */
+public class SnapshotFiles {
+
+    /**
+     * The last four bytes of every snapshot ("FOMC").
+     */
+    private static final int trailerMagic = 0x464F4D43;
+    /**
+     * The size of the trailer: the content length, the checksum and the magic number.
+     */
+    private static final int trailerLength = Long.BYTES + Integer.BYTES + Integer.BYTES;
+
+    /**
+     * Writes the contents of a snapshot.
+     */
+    public interface SnapshotWriter {
+        /**
+         * Writes the contents of the snapshot to the given stream. Any buffering added on top of the
+         * stream must be flushed before returning, and the stream must not be closed.
+         *
+         * @param out the stream to write to
+         * @throws IOException if the contents cannot be written
+         */
+        void write(OutputStream out) throws IOException;
+    }
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private SnapshotFiles() {
+    }
+
+    /**
+     * Atomically replaces the data file at the given path with a new snapshot.
+     *
+     * @param pathString the path to the data file
+     * @param writer writes the contents of the snapshot
+     * @throws IOException if the snapshot cannot be written, in which case the data file is left unchanged
+     */
+    public static void write(String pathString, SnapshotWriter writer) throws IOException {
+        Path path = Paths.get(pathString);
+        Path temp = Paths.get(pathString + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(temp.toFile())) {
+            CheckedOutputStream checked = new CheckedOutputStream(fos, new CRC32());
+            DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(checked, 1 << 16));
+            writer.write(dos);
+            dos.flush();
+            long length = dos.size();
+            int checksum = (int) checked.getChecksum().getValue();
+            dos.writeLong(length);
+            dos.writeInt(checksum);
+            dos.writeInt(trailerMagic);
+            dos.flush();
+            fos.getFD().sync();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        if (Files.exists(path)) {
+            move(path, previousPath(path));
+        }
+        move(temp, path);
+        syncDirectory(path);
+    }
+
+    /**
+     * Opens the contents of the snapshot at the given path, after checking it against its checksum.
+     * Falls back to the previous generation if the data file is missing or damaged.
+     *
+     * @param pathString the path to the data file
+     * @return a stream over the contents of the snapshot
+     * @throws FileNotFoundException if neither the data file nor its previous generation exists
+     * @throws IOException if no generation of the data file passes its check or can be read
+     */
+    public static InputStream open(String pathString) throws IOException {
+        Path path = Paths.get(pathString);
+        Path previous = previousPath(path);
+        boolean hasPrevious = Files.exists(previous);
+        if (Files.exists(path)) {
+            byte[] data = Files.readAllBytes(path);
+            // A file without a trailer predates snapshots, unless a snapshot has already been written next to it
+            int length = verifiedLength(data, !hasPrevious);
+            if (length >= 0) {
+                return new ByteArrayInputStream(data, 0, length);
+            }
+            System.out.println(pathString + " is damaged, reading the previous snapshot instead.");
+        }
+        if (hasPrevious) {
+            byte[] data = Files.readAllBytes(previous);
+            int length = verifiedLength(data, true);
+            if (length >= 0) {
+                return new ByteArrayInputStream(data, 0, length);
+            }
+            throw new IOException(previous + " is damaged.");
+        }
+        if (Files.exists(path)) {
+            throw new IOException(pathString + " is damaged.");
+        }
+        throw new FileNotFoundException(pathString + " (No such file or directory)");
+    }
+
+    /**
+     * Maps the contents of the snapshot at the given path into memory, after checking it against its
+     * checksum. The contents are read through the page cache rather than copied onto the heap, so
+     * large snapshots can be read without growing the heap. Falls back to the previous generation if
+     * the data file is missing or damaged. Only snapshots with a trailer can be mapped.
+     *
+     * @param pathString the path to the data file
+     * @return a read-only buffer over the contents of the snapshot, from position 0
+     * @throws FileNotFoundException if neither the data file nor its previous generation exists
+     * @throws IOException if no generation of the data file passes its check or can be mapped
+     */
+    public static ByteBuffer map(String pathString) throws IOException {
+        Path path = Paths.get(pathString);
+        Path previous = previousPath(path);
+        for (Path candidate : new Path[] { path, previous }) {
+            if (Files.exists(candidate)) {
+                ByteBuffer data = mapFile(candidate);
+                int length = verifiedLength(data, false);
+                if (length >= 0) {
+                    data.limit(length);
+                    return data.slice();
+                }
+                System.out.println(candidate + " is damaged.");
+            }
+        }
+        if (Files.exists(path) || Files.exists(previous)) {
+            throw new IOException(pathString + " is damaged.");
+        }
+        throw new FileNotFoundException(pathString + " (No such file or directory)");
+    }
+
+    /**
+     * Checks whether the data file at the given path or its previous generation exists.
+     *
+     * @param pathString the path to the data file
+     * @return true if either file exists, false otherwise
+     */
+    public static boolean exists(String pathString) {
+        Path path = Paths.get(pathString);
+        return Files.exists(path) || Files.exists(previousPath(path));
+    }
+
+    /**
+     * Deletes the data file at the given path along with its previous generation.
+     *
+     * @param pathString the path to the data file
+     * @return true if the files no longer exist, false if one of them could not be deleted
+     */
+    public static boolean delete(String pathString) {
+        Path path = Paths.get(pathString);
+        try {
+            Files.deleteIfExists(path);
+            Files.deleteIfExists(previousPath(path));
+            return true;
+        } catch (IOException e) {
+            System.out.println("Error deleting " + pathString + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Returns the length of the contents of a snapshot if its trailer and checksum are intact.
+     *
+     * @param data the whole snapshot file
+     * @param allowUnchecked true to accept a file without a trailer as a whole
+     * @return the length of the contents, or -1 if the snapshot is damaged
+     */
+    private static int verifiedLength(byte[] data, boolean allowUnchecked) {
+        return verifiedLength(ByteBuffer.wrap(data), allowUnchecked);
+    }
+
+    /**
+     * Returns the length of the contents of a snapshot if its trailer and checksum are intact.
+     *
+     * @param data the whole snapshot file, from position 0 to the limit of the buffer
+     * @param allowUnchecked true to accept a file without a trailer as a whole
+     * @return the length of the contents, or -1 if the snapshot is damaged
+     */
+    private static int verifiedLength(ByteBuffer data, boolean allowUnchecked) {
+        int size = data.limit();
+        if (size < trailerLength) {
+            return allowUnchecked && size > 0 ? size : -1;
+        }
+        long length = data.getLong(size - trailerLength);
+        int checksum = data.getInt(size - trailerLength + Long.BYTES);
+        if (data.getInt(size - Integer.BYTES) != trailerMagic) {
+            return allowUnchecked ? size : -1;
+        }
+        if (length != size - trailerLength) {
+            return -1;
+        }
+        CRC32 crc = new CRC32();
+        ByteBuffer contents = data.duplicate();
+        contents.position(0).limit((int) length);
+        crc.update(contents);
+        return (int) crc.getValue() == checksum ? (int) length : -1;
+    }
+
+    /**
+     * Maps a whole file into memory, read-only.
+     *
+     * @param path the file to map
+     * @return the mapped file
+     * @throws IOException if the file cannot be mapped
+     */
+    private static ByteBuffer mapFile(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Returns the path of the previous generation of a data file, e.g. {@code orders.prev.ser} for {@code orders.ser}.
+     *
+     * @param path the path to the data file
+     * @return the path to its previous generation
+     */
+    private static Path previousPath(Path path) {
+        String name = path.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String previousName = dot > 0 ? name.substring(0, dot) + ".prev" + name.substring(dot) : name + ".prev";
+        return path.resolveSibling(previousName);
+    }
+
+    /**
+     * Renames a file, atomically where the file system supports it.
+     *
+     * @param source the file to rename
+     * @param target the new path, replaced if it exists
+     * @throws IOException if the file cannot be renamed
+     */
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Syncs the directory holding a file, so that a rename within it is durable.
+     * Not every platform allows directories to be opened, in which case this does nothing.
+     *
+     * @param path the file whose directory to sync
+     */
+    private static void syncDirectory(Path path) {
+        Path directory = path.toAbsolutePath().getParent();
+        if (directory == null) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Directories cannot be synced on this platform
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package utils;
+
+/**
+ * Reads user input from the terminal of the calling thread's {@link TerminalSession}, or from the
+ * console if the thread runs no session. Used by the controllers in place of a {@code Scanner} over
+ * {@code System.in}, so that the same controllers can serve many sessions at once.
+ */
+public class TerminalInput {
+
+    /**
+     * Constructs a TerminalInput.
+     */
+    public TerminalInput() {
+    }
+
+    /**
+     * Reads the rest of the current line.
+     *
+     * @return the line, without its line separator
+     */
+    public String nextLine() {
+        return TerminalSession.scanner().nextLine();
+    }
+
+    /**
+     * Reads the next token as an int.
+     *
+     * @return the int read
+     * @throws java.util.InputMismatchException if the next token is not an int
+     */
+    public int nextInt() {
+        return TerminalSession.scanner().nextInt();
+    }
+
+    /**
+     * Reads the next token as a double.
+     *
+     * @return the double read
+     * @throws java.util.InputMismatchException if the next token is not a double
+     */
+    public double nextDouble() {
+        return TerminalSession.scanner().nextDouble();
+    }
+}
@@ -0,0 +1,309 @@
+package utils;
+
+import java.io.BufferedOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Scanner;
+
+/**
+ * <p>Binds the input and output of a terminal session to the thread that runs it.
+ *
+ * <p>The controllers read input through a {@link TerminalInput} and write output to {@code System.out}.
+ * Without a session, both go to the console the application was started from. While a thread runs a
+ * session, such as one connected over a socket in server mode, its input is read from the session's
+ * stream and everything it prints to {@code System.out} is written to the session's stream instead,
+ * so many sessions can run side by side in one process. All methods and fields are static.
+ */
+public class TerminalSession {
+
+    /**
+     * The session run by each thread, or null for threads using the console.
+     */
+    private static final ThreadLocal<TerminalSession> current = new ThreadLocal<>();
+    /**
+     * The console output, as {@code System.out} was before sessions were routed.
+     */
+    private static final PrintStream console = System.out;
+    /**
+     * The scanner over the console input, shared by every controller. Created on first use.
+     */
+    private static Scanner consoleScanner;
+    /**
+     * Whether {@code System.out} has been replaced by the routing stream.
+     */
+    private static boolean routed;
+
+    /**
+     * The scanner over the input of the session.
+     */
+    private final Scanner scanner;
+    /**
+     * The output of the session. Buffered, and flushed whenever the session waits for input.
+     */
+    private final PrintStream out;
+
+    /**
+     * Constructs a TerminalSession.
+     *
+     * @param in the input of the session
+     * @param out the output of the session
+     */
+    private TerminalSession(InputStream in, OutputStream out) {
+        this.scanner = new Scanner(in, StandardCharsets.UTF_8);
+        this.out = new PrintStream(new BufferedOutputStream(out, 1 << 13), false, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A functional interface for the body of a session.
+     */
+    public interface SessionBody {
+        /**
+         * Runs the session.
+         *
+         * @throws Exception if the session fails
+         */
+        void run() throws Exception;
+    }
+
+    /**
+     * Runs a session on the calling thread, reading from and writing to the given streams.
+     * The streams are not closed.
+     *
+     * @param in the input of the session
+     * @param out the output of the session
+     * @param body the session to run
+     * @throws Exception if the session fails
+     */
+    public static void run(InputStream in, OutputStream out, SessionBody body) throws Exception {
+        routeSystemOut();
+        TerminalSession session = new TerminalSession(in, out);
+        current.set(session);
+        try {
+            body.run();
+        } finally {
+            session.out.flush();
+            current.remove();
+        }
+    }
+
+    /**
+     * Checks whether the calling thread runs a session rather than using the console.
+     *
+     * @return true if the calling thread runs a session, false otherwise
+     */
+    public static boolean isActive() {
+        return current.get() != null;
+    }
+
+    /**
+     * Returns the scanner over the input of the calling thread's session, or over the console input.
+     * The output of the session is flushed first, as the caller is about to wait for input.
+     *
+     * @return the scanner to read input from
+     */
+    static Scanner scanner() {
+        TerminalSession session = current.get();
+        if (session != null) {
+            session.out.flush();
+            return session.scanner;
+        }
+        synchronized (TerminalSession.class) {
+            if (consoleScanner == null) {
+                consoleScanner = new Scanner(System.in);
+            }
+            return consoleScanner;
+        }
+    }
+
+    /**
+     * Returns the output of the calling thread's session, or the console output.
+     *
+     * @return the stream to write output to
+     */
+    private static PrintStream out() {
+        TerminalSession session = current.get();
+        return session != null ? session.out : console;
+    }
+
+    /**
+     * Replaces {@code System.out} with a stream that writes to the output of the calling thread's session.
+     */
+    private static synchronized void routeSystemOut() {
+        if (!routed) {
+            System.setOut(new RoutingPrintStream());
+            routed = true;
+        }
+    }
+
+    /**
+     * A print stream that forwards every call to the output of the calling thread's session, so that
+     * sessions never wait on each other's output.
+     */
+    private static class RoutingPrintStream extends PrintStream {
+
+        /**
+         * Constructs a RoutingPrintStream.
+         */
+        RoutingPrintStream() {
+            super(console, true);
+        }
+
+        @Override
+        public void write(int b) {
+            out().write(b);
+        }
+
+        @Override
+        public void write(byte[] buf, int off, int len) {
+            out().write(buf, off, len);
+        }
+
+        @Override
+        public void flush() {
+            out().flush();
+        }
+
+        @Override
+        public void close() {
+            out().flush();
+        }
+
+        @Override
+        public boolean checkError() {
+            return out().checkError();
+        }
+
+        @Override
+        public void print(boolean b) {
+            out().print(b);
+        }
+
+        @Override
+        public void print(char c) {
+            out().print(c);
+        }
+
+        @Override
+        public void print(int i) {
+            out().print(i);
+        }
+
+        @Override
+        public void print(long l) {
+            out().print(l);
+        }
+
+        @Override
+        public void print(float f) {
+            out().print(f);
+        }
+
+        @Override
+        public void print(double d) {
+            out().print(d);
+        }
+
+        @Override
+        public void print(char[] s) {
+            out().print(s);
+        }
+
+        @Override
+        public void print(String s) {
+            out().print(s);
+        }
+
+        @Override
+        public void print(Object obj) {
+            out().print(obj);
+        }
+
+        @Override
+        public void println() {
+            out().println();
+        }
+
+        @Override
+        public void println(boolean x) {
+            out().println(x);
+        }
+
+        @Override
+        public void println(char x) {
+            out().println(x);
+        }
+
+        @Override
+        public void println(int x) {
+            out().println(x);
+        }
+
+        @Override
+        public void println(long x) {
+            out().println(x);
+        }
+
+        @Override
+        public void println(float x) {
+            out().println(x);
+        }
+
+        @Override
+        public void println(double x) {
+            out().println(x);
+        }
+
+        @Override
+        public void println(char[] x) {
+            out().println(x);
+        }
+
+        @Override
+        public void println(String x) {
+            out().println(x);
+        }
+
+        @Override
+        public void println(Object x) {
+            out().println(x);
+        }
+
+        @Override
+        public PrintStream printf(String format, Object... args) {
+            return out().printf(format, args);
+        }
+
+        @Override
+        public PrintStream printf(Locale l, String format, Object... args) {
+            return out().printf(l, format, args);
+        }
+
+        @Override
+        public PrintStream format(String format, Object... args) {
+            return out().format(format, args);
+        }
+
+        @Override
+        public PrintStream format(Locale l, String format, Object... args) {
+            return out().format(l, format, args);
+        }
+
+        @Override
+        public PrintStream append(CharSequence csq) {
+            return out().append(csq);
+        }
+
+        @Override
+        public PrintStream append(CharSequence csq, int start, int end) {
+            return out().append(csq, start, end);
+        }
+
+        @Override
+        public PrintStream append(char c) {
+            return out().append(c);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Tracks deadlines in a hashed timer wheel, so that a large number of them can be expired at a
+ * near-constant cost per tick.
+ *
+ * <p>Time is divided into ticks of a fixed length, and the wheel has a fixed number of slots, one per
+ * tick, reused in rotation. A deadline is filed in the slot of the tick it falls in, so advancing the
+ * wheel by one tick only looks at the deadlines of that slot, instead of every deadline. A deadline
+ * further away than a full rotation waits in its slot until the rotation it falls in. Deadlines are
+ * rounded up to the next tick, so they expire up to one tick late but never early.
+ *
+ * <p>Each key has at most one deadline; scheduling a key again moves its deadline. All methods are
+ * thread-safe.
+ *
+ * @param <K> the type of keys the deadlines are held for
+ */
+public class TimerWheel<K> {
+
+    /**
+     * The length of a tick, in milliseconds.
+     */
+    private final long tickMillis;
+    /**
+     * The keys whose deadline falls in each slot, with the tick of their deadline.
+     */
+    private final HashMap<K, Long>[] slots;
+    /**
+     * The tick of the deadline of each key, to find the slot of the key when it is cancelled.
+     */
+    private final HashMap<K, Long> deadlines = new HashMap<>();
+    /**
+     * The last tick that has been expired.
+     */
+    private long currentTick;
+
+    /**
+     * Constructs an empty TimerWheel whose current time is now.
+     *
+     * @param tickMillis the length of a tick, in milliseconds
+     * @param slotCount the number of slots; a rotation of the wheel lasts {@code tickMillis * slotCount} milliseconds
+     * @throws IllegalArgumentException if the tick length or slot count is not positive
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public TimerWheel(long tickMillis, int slotCount) {
+        if (tickMillis < 1 || slotCount < 1) {
+            throw new IllegalArgumentException("Tick length and slot count must be positive.");
+        }
+        this.tickMillis = tickMillis;
+        this.slots = new HashMap[slotCount];
+        for (int i = 0; i < slotCount; i++) {
+            slots[i] = new HashMap<>();
+        }
+        this.currentTick = System.currentTimeMillis() / tickMillis;
+    }
+
+    /**
+     * Schedules a deadline for a key, replacing its previous deadline. A deadline that has already
+     * passed expires on the next call to {@link #advance(long)}.
+     *
+     * @param key the key
+     * @param deadlineMillis the deadline, in milliseconds since the epoch
+     */
+    public synchronized void schedule(K key, long deadlineMillis) {
+        cancel(key);
+        long tick = Math.max(currentTick + 1, Math.floorDiv(deadlineMillis + tickMillis - 1, tickMillis));
+        slots[slotOf(tick)].put(key, tick);
+        deadlines.put(key, tick);
+    }
+
+    /**
+     * Cancels the deadline of a key.
+     *
+     * @param key the key
+     * @return true if the key had a deadline, false otherwise
+     */
+    public synchronized boolean cancel(K key) {
+        Long tick = deadlines.remove(key);
+        if (tick == null) {
+            return false;
+        }
+        slots[slotOf(tick)].remove(key);
+        return true;
+    }
+
+    /**
+     * Advances the wheel to the given time and removes every deadline that has passed.
+     *
+     * @param nowMillis the current time, in milliseconds since the epoch
+     * @return the keys whose deadline passed
+     */
+    public synchronized List<K> advance(long nowMillis) {
+        long nowTick = Math.floorDiv(nowMillis, tickMillis);
+        List<K> expired = new ArrayList<>();
+        if (nowTick <= currentTick) {
+            return expired;
+        }
+        // After a full rotation every slot has been visited, so a longer gap needs no further ticks
+        long lastTick = Math.min(nowTick, currentTick + slots.length);
+        for (long tick = currentTick + 1; tick <= lastTick; tick++) {
+            Iterator<Map.Entry<K, Long>> iterator = slots[slotOf(tick)].entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<K, Long> entry = iterator.next();
+                if (entry.getValue() <= nowTick) {
+                    expired.add(entry.getKey());
+                    deadlines.remove(entry.getKey());
+                    iterator.remove();
+                }
+            }
+        }
+        currentTick = nowTick;
+        return expired;
+    }
+
+    /**
+     * Returns the number of keys with a deadline.
+     *
+     * @return the number of pending deadlines
+     */
+    public synchronized int size() {
+        return deadlines.size();
+    }
+
+    /**
+     * Cancels every deadline.
+     */
+    public synchronized void clear() {
+        for (HashMap<K, Long> slot : slots) {
+            slot.clear();
+        }
+        deadlines.clear();
+    }
+
+    /**
+     * Returns the slot a tick falls in.
+     *
+     * @param tick the tick
+     * @return the index of the slot
+     */
+    private int slotOf(long tick) {
+        return (int) Math.floorMod(tick, (long) slots.length);
+    }
+}
@@ -0,0 +1,17 @@
+package utils.exceptions;
+
+/**
+ * The {@link PaymentFailedException} class is a custom exception that is thrown when a payment cannot be completed,
+ * such as when the payment gateway is unavailable or does not respond in time.
+ * It extends the {@link Exception} class.
+ */
+public class PaymentFailedException extends Exception {
+    /**
+     * Constructs a new PaymentFailedException with the specified detail message.
+     *
+     * @param message the detail message
+     */
+    public PaymentFailedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,82 @@
+package views;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+import enums.OrderType;
+import interfaces.ISalesReportView;
+import models.SalesTotals;
+
+/**
+ * The {@link SalesReportView} class implements the ISalesReportView interface and is responsible for displaying sales reports.
+ */
+public class SalesReportView implements ISalesReportView {
+
+    /**
+     * The number of best-selling items displayed.
+     */
+    private static final int topItemCount = 5;
+
+    /**
+     * Displays the total sales of a period, the sales of each order type and the best-selling items.
+     *
+     * @param salesByOrderType the sales totals of each order type
+     */
+    public void displaySalesSummary(Map<OrderType, SalesTotals> salesByOrderType) {
+        SalesTotals total = new SalesTotals();
+        for (SalesTotals sales : salesByOrderType.values()) {
+            total.merge(sales);
+        }
+        System.out.println("Total:");
+        System.out.println("\tOrders: " + total.getOrderCount());
+        System.out.println("\tRevenue: $" + String.format("%.2f", total.getRevenue()));
+        for (OrderType orderType : OrderType.values()) {
+            SalesTotals sales = salesByOrderType.get(orderType);
+            if (sales != null) {
+                System.out.println(orderType + ":");
+                System.out.println("\tOrders: " + sales.getOrderCount());
+                System.out.println("\tRevenue: $" + String.format("%.2f", sales.getRevenue()));
+            }
+        }
+        System.out.println("Best-selling items:");
+        if (total.getItemQuantities().isEmpty()) {
+            System.out.println("\tNone");
+        }
+        int rank = 1;
+        for (Map.Entry<String, Integer> item : total.getTopItems(topItemCount)) {
+            System.out.println("\t" + rank++ + ". " + item.getKey() + " x" + item.getValue());
+        }
+    }
+
+    /**
+     * Displays the sales of each day of a period.
+     *
+     * @param salesByDay the sales totals of each day, in date order
+     */
+    public void displayDailySales(Map<LocalDate, SalesTotals> salesByDay) {
+        System.out.println("Daily sales:");
+        if (salesByDay.isEmpty()) {
+            System.out.println("\tNone");
+        }
+        for (Map.Entry<LocalDate, SalesTotals> day : salesByDay.entrySet()) {
+            System.out.println("\t" + day.getKey() + ": " + day.getValue().getOrderCount() + " orders, $"
+                    + String.format("%.2f", day.getValue().getRevenue()));
+        }
+    }
+
+    /**
+     * Displays the sales of each branch in a period.
+     *
+     * @param salesByBranch the sales totals of each branch, keyed by branch name
+     */
+    public void displayBranchSales(Map<String, SalesTotals> salesByBranch) {
+        System.out.println("Sales by branch:");
+        if (salesByBranch.isEmpty()) {
+            System.out.println("\tNone");
+        }
+        for (Map.Entry<String, SalesTotals> branch : salesByBranch.entrySet()) {
+            System.out.println("\t" + branch.getKey() + ": " + branch.getValue().getOrderCount() + " orders, $"
+                    + String.format("%.2f", branch.getValue().getRevenue()));
+        }
+    }
+}